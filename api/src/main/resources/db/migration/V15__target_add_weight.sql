@@ -0,0 +1 @@
+ALTER TABLE `target` ADD COLUMN `weight` int(11) DEFAULT 1;
\ No newline at end of file
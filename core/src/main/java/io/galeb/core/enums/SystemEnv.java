@@ -114,6 +114,51 @@ public enum SystemEnv {
      */
     ROUTER_PORT           ("ROUTER_PORT",           8000),
 
+    /**
+     * Prometheus metrics port. Zero disables it (the metrics are always available in the __metrics__ virtualhost).
+     */
+    METRICS_PORT          ("METRICS_PORT",          0),
+
+    /**
+     * HTTPS (TLS) router port. Zero disables it.
+     */
+    HTTPS_PORT            ("HTTPS_PORT",            0),
+
+    /**
+     * Enable HTTP/2 when the HTTPS listener is enabled (negotiated with ALPN; the HTTP listener accepts h2c upgrades).
+     */
+    HTTPS_HTTP2           ("HTTPS_HTTP2",           Boolean.TRUE),
+
+    /**
+     * Keystore with the certificates of the HTTPS listener. The certificate of each virtualhost is chosen by SNI.
+     */
+    TLS_KEYSTORE          ("TLS_KEYSTORE",          ""),
+
+    /**
+     * Keystore type (PKCS12 or JKS).
+     */
+    TLS_KEYSTORE_TYPE     ("TLS_KEYSTORE_TYPE",     "PKCS12"),
+
+    /**
+     * Keystore (and keys) password.
+     */
+    TLS_KEYSTORE_PASSWORD ("TLS_KEYSTORE_PASSWORD", ""),
+
+    /**
+     * Alias of the certificate used without SNI or for unknown names (empty uses the first alias).
+     */
+    TLS_DEFAULT_ALIAS     ("TLS_DEFAULT_ALIAS",     ""),
+
+    /**
+     * Max TLS sessions kept for resumption (shared by all the virtualhosts).
+     */
+    TLS_SESSION_CACHE_SIZE ("TLS_SESSION_CACHE_SIZE", 20480),
+
+    /**
+     * Lifetime (s) of a resumable TLS session, counted from the full handshake.
+     */
+    TLS_SESSION_TIMEOUT   ("TLS_SESSION_TIMEOUT",   3600),
+
     /**
      * Galeb Manager Farm -> Environment Name
      */
@@ -149,6 +194,16 @@ public enum SystemEnv {
      */
     STATSD_PORT           ("STATSD_PORT",           8125),
 
+    /**
+     * Statsd flush interval (ms). Metrics are aggregated in memory and sent in batches at each interval.
+     */
+    STATSD_FLUSH_INTERVAL ("STATSD_FLUSH_INTERVAL", 1000),
+
+    /**
+     * Statsd max packet size (bytes) of the batches.
+     */
+    STATSD_PACKET_SIZE    ("STATSD_PACKET_SIZE",    1432),
+
     /**
      * Specify the number of I/O threads to create for the worker. If not specified, a default will be chosen.
      */
@@ -197,6 +252,111 @@ public enum SystemEnv {
      */
     POOL_MAX_REQUEST_TIME ("POOL_MAX_REQUEST_TIME", -1),
 
+    /**
+     * Default slow start window (ms) of new or re-admitted targets. Zero disables it. See pool property "slowStartTime".
+     */
+    POOL_SLOW_START_TIME  ("POOL_SLOW_START_TIME",  0),
+
+    /**
+     * Enable the adaptive in-flight request limit of the pools (gradient of the RTT vs the long term RTT).
+     * Requests over the limit are rejected (POOL_OVERLOADED). See pool property "adaptiveConcurrency".
+     */
+    POOL_ADAPTIVE_CONCURRENCY ("POOL_ADAPTIVE_CONCURRENCY", Boolean.FALSE),
+
+    /**
+     * Initial in-flight request limit of a pool with adaptive concurrency.
+     */
+    POOL_CONCURRENCY_INITIAL_LIMIT ("POOL_CONCURRENCY_INITIAL_LIMIT", 100),
+
+    /**
+     * Min in-flight request limit of a pool with adaptive concurrency.
+     */
+    POOL_CONCURRENCY_MIN_LIMIT ("POOL_CONCURRENCY_MIN_LIMIT", 10),
+
+    /**
+     * Max in-flight request limit of a pool with adaptive concurrency.
+     */
+    POOL_CONCURRENCY_MAX_LIMIT ("POOL_CONCURRENCY_MAX_LIMIT", 2000),
+
+    /**
+     * Max requests waiting (per IO thread) for a connection when all the targets of a pool are full.
+     * Zero disables the queue (the requests fail at once). See pool property "queueSize".
+     */
+    POOL_QUEUE_SIZE       ("POOL_QUEUE_SIZE",       0),
+
+    /**
+     * CoDel target (ms): if no request waited less than this in the last POOL_QUEUE_INTERVAL, the queue is
+     * considered overloaded and the requests waiting longer than the target are dropped.
+     */
+    POOL_QUEUE_TARGET     ("POOL_QUEUE_TARGET",     50),
+
+    /**
+     * CoDel interval (ms).
+     */
+    POOL_QUEUE_INTERVAL   ("POOL_QUEUE_INTERVAL",   500),
+
+    /**
+     * Request header with the time budget (ms) of the request. A queued request past its deadline (or past
+     * POOL_MAX_REQUEST_TIME) fails without taking a connection.
+     */
+    DEADLINE_HEADER       ("DEADLINE_HEADER",       "X-Request-Timeout"),
+
+    /**
+     * Max retries of a request on other targets of the pool, after a connection or I/O failure.
+     */
+    POOL_MAX_RETRIES      ("POOL_MAX_RETRIES",      1),
+
+    /**
+     * Retry budget: retries (and hedged requests) allowed per request of the pool.
+     */
+    POOL_RETRY_BUDGET_RATIO ("POOL_RETRY_BUDGET_RATIO", 0.1),
+
+    /**
+     * Retries per second always allowed, so pools with little traffic can still retry.
+     */
+    POOL_RETRY_BUDGET_MIN_PER_SECOND ("POOL_RETRY_BUDGET_MIN_PER_SECOND", 10),
+
+    /**
+     * Retry on another target the GET/HEAD/OPTIONS requests answered with 502 or 503.
+     */
+    POOL_RETRY_ON_5XX     ("POOL_RETRY_ON_5XX",     Boolean.FALSE),
+
+    /**
+     * Hedge the GET/HEAD requests: if the response headers did not arrive by the p95 of the pool, send the
+     * request to another target too and use the first response.
+     */
+    POOL_HEDGE            ("POOL_HEDGE",            Boolean.FALSE),
+
+    /**
+     * Lower bound (ms) of the hedging delay.
+     */
+    POOL_HEDGE_MIN_DELAY  ("POOL_HEDGE_MIN_DELAY",  10),
+
+    /**
+     * Keep-alive connections opened per IO thread to each target when a pool is published (0 disables it).
+     */
+    POOL_PREWARM_CONNECTIONS ("POOL_PREWARM_CONNECTIONS", 0),
+
+    /**
+     * Max time (ms) the first pre-warm holds the readiness (ping) of the router.
+     */
+    POOL_PREWARM_TIMEOUT  ("POOL_PREWARM_TIMEOUT",  5000),
+
+    /**
+     * Protocol of the connections to the targets: http/1.1, h2c (HTTP/2 with prior knowledge) or h2 (HTTP/2 over TLS, ALPN).
+     */
+    POOL_UPSTREAM_PROTOCOL ("POOL_UPSTREAM_PROTOCOL", "http/1.1"),
+
+    /**
+     * HTTP/2 connections per IO thread to each target.
+     */
+    POOL_H2_CONN_PER_THREAD ("POOL_H2_CONN_PER_THREAD", 1),
+
+    /**
+     * Max concurrent streams (requests) of each HTTP/2 connection.
+     */
+    POOL_H2_MAX_STREAMS   ("POOL_H2_MAX_STREAMS",   100),
+
     /**
      *  The frontend Max Connections
      */
@@ -207,6 +367,126 @@ public enum SystemEnv {
      */
     ENABLE_ACCESSLOG      ("ENABLE_ACCESSLOG",      Boolean.TRUE),
 
+    /**
+     * AccessLog ring buffer size (lines waiting to be written). Rounded up to a power of two.
+     */
+    ACCESSLOG_BUFFER_SIZE ("ACCESSLOG_BUFFER_SIZE", 16384),
+
+    /**
+     * AccessLog behavior when the ring buffer is full: drop the line (false) or block the IO thread until there is room (true).
+     */
+    ACCESSLOG_BLOCK_WHEN_FULL ("ACCESSLOG_BLOCK_WHEN_FULL", Boolean.FALSE),
+
+    /**
+     * AccessLog file. If empty, the lines are sent to the logger (see log4j2-spring.xml).
+     */
+    ACCESSLOG_FILE        ("ACCESSLOG_FILE",        ""),
+
+    /**
+     * Enable latency histograms per virtualhost/pool/target (see __latency__ and JMX).
+     */
+    ENABLE_LATENCY_HISTOGRAM     ("ENABLE_LATENCY_HISTOGRAM",     Boolean.TRUE),
+
+    /**
+     * Max number of latency histograms. The least recently used are evicted at the end of each interval.
+     */
+    LATENCY_HISTOGRAM_MAX_SERIES ("LATENCY_HISTOGRAM_MAX_SERIES", 1000),
+
+    /**
+     * Latency histograms interval (ms) of the snapshots. Histograms idle for a full interval are released.
+     */
+    LATENCY_HISTOGRAM_INTERVAL   ("LATENCY_HISTOGRAM_INTERVAL",   60000),
+
+    /**
+     * Enable the per request phase timing (virtualhost lookup, rule match, host selection, connection wait,
+     * backend time to first byte and response streaming), sent to the access log, statsd and the latency histograms.
+     */
+    ENABLE_PHASE_TIMING          ("ENABLE_PHASE_TIMING",          Boolean.FALSE),
+
+    /**
+     * Enable the Flight Recorder events of the routing decisions. The events are only recorded when enabled
+     * in the recording settings (see jfr/galeb-router.jfc) and the JVM supports jdk.jfr.
+     */
+    ENABLE_JFR_EVENTS            ("ENABLE_JFR_EVENTS",            Boolean.TRUE),
+
+    /**
+     * Enable the top clients, URIs and user agents (SpaceSaving) and unique clients (HyperLogLog) per virtualhost.
+     */
+    ENABLE_TRAFFIC_SKETCH        ("ENABLE_TRAFFIC_SKETCH",        Boolean.FALSE),
+
+    /**
+     * Number of heavy hitters kept by each top list of the traffic sketches.
+     */
+    TRAFFIC_SKETCH_TOPK          ("TRAFFIC_SKETCH_TOPK",          20),
+
+    /**
+     * Window (ms) of the traffic sketches. The last closed window is kept for the queries.
+     */
+    TRAFFIC_SKETCH_INTERVAL      ("TRAFFIC_SKETCH_INTERVAL",      60000),
+
+    /**
+     * Max number of virtualhosts with traffic sketches.
+     */
+    TRAFFIC_SKETCH_MAX_VIRTUALHOSTS ("TRAFFIC_SKETCH_MAX_VIRTUALHOSTS", 1000),
+
+    /**
+     * Default requests per second of each virtualhost without the "rateLimit" property. Zero disables it.
+     */
+    RATE_LIMIT                   ("RATE_LIMIT",                   0),
+
+    /**
+     * Default burst of each virtualhost without the "rateLimitBurst" property. Zero uses the rate.
+     */
+    RATE_LIMIT_BURST             ("RATE_LIMIT_BURST",             0),
+
+    /**
+     * Default requests per second of each client without the "rateLimitPerClient" property. Zero disables it.
+     */
+    RATE_LIMIT_PER_CLIENT        ("RATE_LIMIT_PER_CLIENT",        0),
+
+    /**
+     * Default burst of each client without the "rateLimitPerClientBurst" property. Zero uses the rate.
+     */
+    RATE_LIMIT_PER_CLIENT_BURST  ("RATE_LIMIT_PER_CLIENT_BURST",  0),
+
+    /**
+     * Max number of client keys with a token bucket, per virtualhost with the "rateLimitPerClient" property.
+     * Idle buckets are evicted first.
+     */
+    RATE_LIMIT_MAX_CLIENTS       ("RATE_LIMIT_MAX_CLIENTS",       10000),
+
+    /**
+     * Default response cache of each virtualhost without the "responseCache" property.
+     */
+    RESPONSE_CACHE               ("RESPONSE_CACHE",               Boolean.FALSE),
+
+    /**
+     * Off-heap memory (bytes) of the response cache, shared by all virtualhosts with the "responseCache" property.
+     * The slabs are allocated on demand.
+     */
+    RESPONSE_CACHE_MEMORY        ("RESPONSE_CACHE_MEMORY",        67108864),
+
+    /**
+     * Max body size (bytes) of a cached response. Larger responses are only proxied.
+     */
+    RESPONSE_CACHE_MAX_OBJECT    ("RESPONSE_CACHE_MAX_OBJECT",    1048576),
+
+    /**
+     * Default request coalescing of each virtualhost without the "requestCoalescing" property.
+     */
+    REQUEST_COALESCING           ("REQUEST_COALESCING",           Boolean.FALSE),
+
+    /**
+     * Max time (ms) a coalesced request waits for the response of the identical request in flight.
+     * After it, the request is sent to the pool.
+     */
+    REQUEST_COALESCING_TIMEOUT   ("REQUEST_COALESCING_TIMEOUT",   5000),
+
+    /**
+     * Max body size (bytes) of a response shared with the coalesced requests.
+     */
+    REQUEST_COALESCING_MAX_BODY  ("REQUEST_COALESCING_MAX_BODY",  1048576),
+
     /**
      * Enable send metrics to statsd server. See STATSD_HOST and STATSD_PORT.
      */
@@ -237,6 +517,49 @@ public enum SystemEnv {
      */
     IGNORE_XFORWARDED_FOR ("IGNORE_XFORWARDED_FOR", Boolean.FALSE),
 
+    /**
+     * HashSourceIpHostSelector and HashUriPathHostSelector exclusive use. Consistent hashing with bounded loads:
+     * a target with more than (1 + HASH_BOUNDED_LOAD) times the average of open connections spills the request
+     * to the next target of the ring. Zero disables it.
+     */
+    HASH_BOUNDED_LOAD     ("HASH_BOUNDED_LOAD",     0.0),
+
+    /**
+     * PeakEwmaHostSelector exclusive use. Decay time (ms) of the target latency average. Idle targets decay to zero.
+     */
+    PEAK_EWMA_DECAY_TIME  ("PEAK_EWMA_DECAY_TIME",  10000),
+
+    /**
+     * Outlier detection: consecutive 5xx responses that eject a target. Zero (default) disables it.
+     */
+    OUTLIER_CONSECUTIVE_5XX      ("OUTLIER_CONSECUTIVE_5XX",      0),
+
+    /**
+     * Outlier detection: consecutive responses slower than OUTLIER_LATENCY_FACTOR times the pool average that eject a target.
+     */
+    OUTLIER_CONSECUTIVE_SLOW     ("OUTLIER_CONSECUTIVE_SLOW",     10),
+
+    /**
+     * Outlier detection: a response is slow if its headers take more than this factor times the pool average.
+     * Zero (default) disables it.
+     */
+    OUTLIER_LATENCY_FACTOR       ("OUTLIER_LATENCY_FACTOR",       0.0),
+
+    /**
+     * Outlier detection: ejection time (ms) of a target. It doubles at each new ejection, up to OUTLIER_MAX_EJECTION_TIME.
+     */
+    OUTLIER_BASE_EJECTION_TIME   ("OUTLIER_BASE_EJECTION_TIME",   5000),
+
+    /**
+     * Outlier detection: max ejection time (ms) of a target.
+     */
+    OUTLIER_MAX_EJECTION_TIME    ("OUTLIER_MAX_EJECTION_TIME",    300000),
+
+    /**
+     * Outlier detection: max percent of the targets of a pool ejected at the same time.
+     */
+    OUTLIER_MAX_EJECTION_PERCENT ("OUTLIER_MAX_EJECTION_PERCENT", 50),
+
     /**
      * External Data provider tcp max connections
      */
@@ -55,6 +55,7 @@ public class ConverterV1 implements Converter {
     public static final  String API_VERSION                  = "v1";
     private static final String PROP_DISCOVERED_MEMBERS_SIZE = "discoveredMembersSize";
     private static final String PROP_CONN_PER_THREAD         = "connPerThread";
+    private static final String PROP_TARGET_WEIGHT           = "weight";
     private static final String FULLHASH_PROP                = "fullhash";
     // @formatter:on
 
@@ -188,6 +189,10 @@ public class ConverterV1 implements Converter {
                 targetV1 = new Target();
                 targetV1.setId(queryResultLine.getTargetId());
                 targetV1.setName(queryResultLine.getTargetName());
+                Integer targetWeight = queryResultLine.getTargetWeight();
+                if (targetWeight != null) {
+                    targetV1.setProperties(Collections.singletonMap(PROP_TARGET_WEIGHT, String.valueOf(targetWeight)));
+                }
             }
 
             if (canSendTargetToRoute(queryResultLine.getHealthStatusStatus())) {
@@ -43,6 +43,7 @@ public class QueryResultLine implements Serializable {
     private final String hsStatus;
     private final Long rId;
     private final Long tId;
+    private final Integer tWeight;
 
     public QueryResultLine(Object[] objects) {
         this.vId = objects[0] instanceof BigInteger ? ((BigInteger) objects[0]).longValue() : (Long) objects[0];
@@ -64,6 +65,7 @@ public class QueryResultLine implements Serializable {
         this.hsStatus = (String) objects[16];
         this.rId = objects[17] instanceof BigInteger ? ((BigInteger) objects[17]).longValue() : (Long) objects[17];
         this.tId = objects[18] instanceof BigInteger ? ((BigInteger) objects[18]).longValue() : (Long) objects[18];
+        this.tWeight = (Integer) objects[19];
     }
 
     public Long getVirtualhostId() {
@@ -141,4 +143,8 @@ public class QueryResultLine implements Serializable {
     public Long getTargetId() {
         return tId;
     }
+
+    public Integer getTargetWeight() {
+        return tWeight;
+    }
 }
@@ -55,7 +55,8 @@ public interface VirtualHostRepository extends JpaRepository<VirtualHost, Long>
             + "GROUP_CONCAT(IFNULL(hs.last_modified_at, 'NULL')) as hs_last_modified_at, " //15
             + "GROUP_CONCAT(IFNULL(hs.status, 'UNKNOWN')) as hs_status, " //16
             + "r.id as r_id, " // 17
-            + "t.id as t_id "  // 18
+            + "t.id as t_id, " // 18
+            + "t.weight as t_weight " // 19
             + "FROM virtualhost v "
             + "INNER JOIN virtualhost_environments v_e on v.id=v_e.virtualhost_id "
             + "INNER JOIN virtualhostgroup vhg on v.virtualhostgroup_id=vhg.id "
@@ -136,212 +136,212 @@ public class ConverterV1Test {
     private HashMap<State, List<Object[]>> states = new HashMap<State, List<Object[]>>() {{
         // @formatter:off
         put(State.INITIAL, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", "NULL", Status.UNKNOWN.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", "NULL", Status.UNKNOWN.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", "NULL", Status.UNKNOWN.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", "NULL", Status.UNKNOWN.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", "NULL", Status.UNKNOWN.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", "NULL", Status.UNKNOWN.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", "NULL", Status.UNKNOWN.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", "NULL", Status.UNKNOWN.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", "NULL", Status.UNKNOWN.toString(), 8L, 5L, 3},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", "NULL", Status.UNKNOWN.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", "NULL", Status.UNKNOWN.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", "NULL", Status.UNKNOWN.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", "NULL", Status.UNKNOWN.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", "NULL", Status.UNKNOWN.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", "NULL", Status.UNKNOWN.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", "NULL", Status.UNKNOWN.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_1, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", "NULL", Status.UNKNOWN.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateOne.toString(), Status.UNKNOWN.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", "NULL", Status.UNKNOWN.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateOne.toString(), Status.UNKNOWN.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.FAIL.toString() + "," + Status.UNKNOWN.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.UNKNOWN.toString() + "," + Status.HEALTHY.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.FAIL.toString() + "," + Status.UNKNOWN.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.UNKNOWN.toString() + "," + Status.HEALTHY.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.UNKNOWN.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.UNKNOWN.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.UNKNOWN.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.FAIL.toString() + "," + Status.UNKNOWN.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.UNKNOWN.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.FAIL.toString() + "," + Status.UNKNOWN.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.UNKNOWN.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.UNKNOWN.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_2, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", "NULL", Status.UNKNOWN.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateOne.toString(), Status.UNKNOWN.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", "NULL", Status.UNKNOWN.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", "NULL", Status.UNKNOWN.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateOne.toString(), Status.UNKNOWN.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateTwo.toString(), Status.FAIL.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateTwo.toString(), Status.FAIL.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_3, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateOne.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_4, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.FAIL.toString() + "," + Status.FAIL.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_5, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateOne, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateOne, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateOne, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateOne, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateOne, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_6, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateOne, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateOne, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateOne, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateOne, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateOne, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateOne, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateOne, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateOne, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateOne, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_7, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 0, dateOne, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 1, dateOne, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 2, dateOne, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 0, dateOne, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 1, dateOne, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 2, dateOne, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateTwo, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateTwo, 0, dateOne, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateOne, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateOne, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateOne, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_8, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 0, dateTwo, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 1, dateTwo, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 2, dateTwo, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 0, dateTwo, false, "rule1", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 1, dateTwo, false, "rule2", "/2", dateOne, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 2, dateTwo, false, "rule3", "/", dateOne, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 0, dateTwo, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 1, dateTwo, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 2, dateTwo, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 0, dateTwo, false, "rule4", "/1", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 1, dateTwo, false, "rule5", "/2", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 2, dateTwo, false, "rule6", "/", dateOne, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateTwo, 0, dateTwo, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateTwo, 0, dateTwo, false, "rule7", "/", dateOne, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateOne, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateOne, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateOne, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_9, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 0, dateTwo, false, "rule1", "/1", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 1, dateTwo, false, "rule2", "/2", dateTwo, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 2, dateTwo, false, "rule3", "/", dateTwo, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 0, dateTwo, false, "rule1", "/1", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 1, dateTwo, false, "rule2", "/2", dateTwo, "pool2", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 2, dateTwo, false, "rule3", "/", dateTwo, "pool3", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 0, dateTwo, false, "rule4", "/1", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 1, dateTwo, false, "rule5", "/2", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 2, dateTwo, false, "rule6", "/", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 0, dateTwo, false, "rule4", "/1", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 1, dateTwo, false, "rule5", "/2", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 2, dateTwo, false, "rule6", "/", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateTwo, 0, dateTwo, false, "rule7", "/", dateTwo, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateTwo, 0, dateTwo, false, "rule7", "/", dateTwo, "pool4", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateTwo, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateTwo, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateTwo, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateTwo, "pool5", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool6", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool7", BigInteger.valueOf(1L), "default", dateOne, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L, 1},
         }));
 
         put(State.STATE_10, Arrays.asList(new Object[][]{
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 0, dateTwo, false, "rule1", "/1", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 1, dateTwo, false, "rule2", "/2", dateTwo, "pool2", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L},
-        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 2, dateTwo, false, "rule3", "/", dateTwo, "pool3", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 0, dateTwo, false, "rule1", "/1", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.1", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 1L, 1L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 1, dateTwo, false, "rule2", "/2", dateTwo, "pool2", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.2", dateTwo.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 2L, 2L, 1},
+        {BigInteger.valueOf(1L), dateTwo, "virtualhost1", dateTwo, 2, dateTwo, false, "rule3", "/", dateTwo, "pool3", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.3", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 3L, 3L, 1},
 
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 0, dateTwo, false, "rule4", "/1", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 1, dateTwo, false, "rule5", "/2", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L},
-        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 2, dateTwo, false, "rule6", "/", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 0, dateTwo, false, "rule4", "/1", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 4L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 1, dateTwo, false, "rule5", "/2", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 5L, 1L, 1},
+        {BigInteger.valueOf(2L), dateTwo, "virtualhost2", dateTwo, 2, dateTwo, false, "rule6", "/", dateTwo, "pool1", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.1", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 6L, 1L, 1},
 
-        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateTwo, 0, dateTwo, false, "rule7", "/", dateTwo, "pool4", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L},
+        {BigInteger.valueOf(3L), dateTwo, "virtualhost3", dateTwo, 0, dateTwo, false, "rule7", "/", dateTwo, "pool4", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.4", dateOne.toString(), Status.HEALTHY.toString(), 7L, 4L, 1},
 
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateTwo, "pool5", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L},
-        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateTwo, "pool5", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateTwo, "pool5", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.5", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.FAIL.toString(), 8L, 5L, 1},
+        {BigInteger.valueOf(4L), dateTwo, "virtualhost4", dateTwo, 0, dateTwo, false, "rule8", "/", dateTwo, "pool5", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.6", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 8L, 6L, 1},
 
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool6", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool6", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L},
-        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool7", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool6", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.7", dateOne.toString(), Status.HEALTHY.toString() + "," + Status.HEALTHY.toString(), 9L, 7L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool6", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.8", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 8L, 1},
+        {BigInteger.valueOf(5L), dateTwo, "virtualhost5", dateTwo, 0, dateTwo, false, "rule9", "/", dateTwo, "pool7", BigInteger.valueOf(1L), "default", dateTwo, "http://127.0.0.9", dateTwo.toString(), Status.FAIL.toString() + "," + Status.HEALTHY.toString(), 9L, 9L, 1},
         }));
 
         // @formatter:on
@@ -383,6 +383,15 @@ public class ConverterV1Test {
         }
     }
 
+    @Test
+    public void targetWeightTest() {
+        String jsonStr = convertToString(State.INITIAL);
+        JSONArray weights = JsonPath.read(jsonStr, "$.virtualhosts[?(@.name == 'virtualhost4')].rules[*].pool.targets[?(@.name == 'http://127.0.0.5')].properties.weight");
+        Assert.assertEquals("target weight problem", "3", weights.get(0));
+        weights = JsonPath.read(jsonStr, "$.virtualhosts[?(@.name == 'virtualhost4')].rules[*].pool.targets[?(@.name == 'http://127.0.0.6')].properties.weight");
+        Assert.assertEquals("target weight problem", "1", weights.get(0));
+    }
+
     private void checkStateChanges(State currentState, State nextState) {
         final List<QueryResultLine> queryResultLinesBefore = converterV1.get(currentState).getQueryResultLines(states.get(currentState));
         final List<QueryResultLine> queryResultLinesAfter = converterV1.get(nextState).getQueryResultLines(states.get(nextState));
@@ -47,6 +47,8 @@ public class Target extends AbstractEntity implements WithStatus {
     @Column(nullable = false)
     private String name;
 
+    private Integer weight = 1;
+
     @Transient
     private Map<Long, Status> status = new HashMap<>();
 
@@ -78,6 +80,16 @@ public class Target extends AbstractEntity implements WithStatus {
         this.name = name;
     }
 
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        if (weight != null) {
+            this.weight = weight;
+        }
+    }
+
     @Override
     public Map<Long, Status> getStatus() {
         return status;
@@ -30,11 +30,16 @@ public enum ResponseCodeOnError {
     VIRTUALHOST_NOT_FOUND            ("VIRTUALHOST_NOT_FOUND",            503),
     RULES_EMPTY                      ("RULES_EMPTY",                      503),
     HOSTS_EMPTY                      ("HOSTS_EMPTY",                      502),
+    POOL_OVERLOADED                  ("POOL_OVERLOADED",                  503),
     IPACL_FORBIDDEN                  ("FORBIDDEN",                        403),
+    RATE_LIMITED                     ("RATE_LIMITED",                     429),
     ROOT_HANDLER_FAILED              ("ROOT_HANDLER_FAILED",              503),
     PROXY_HANDLER_NULL               ("PROXY_HANDLER_NULL",               503),
     COULD_NOT_RESOLVE_BACKEND        ("COULD_NOT_RESOLVE_BACKEND",        0), // HttpStatus NOT modifiable
-    QUEUED_REQUEST_FAILED            ("QUEUED_REQUEST_FAILED",            0); // HttpStatus NOT modifiable
+    QUEUED_REQUEST_FAILED            ("QUEUED_REQUEST_FAILED",            0), // HttpStatus NOT modifiable
+    POOL_QUEUE_DROPPED               ("POOL_QUEUE_DROPPED",               0), // HttpStatus NOT modifiable
+    DEADLINE_EXCEEDED                ("DEADLINE_EXCEEDED",                0), // HttpStatus NOT modifiable
+    RETRY_BUDGET_EXHAUSTED           ("RETRY_BUDGET_EXHAUSTED",           0); // HttpStatus NOT modifiable
 
     public static class Header {
         public static final HttpString X_GALEB_ERROR = tryFromString("X-Galeb-Error");
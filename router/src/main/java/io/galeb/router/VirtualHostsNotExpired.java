@@ -25,7 +25,10 @@ import static io.undertow.util.HttpString.tryFromString;
 public enum VirtualHostsNotExpired {
     PING              ("__ping__"),
     CACHE             ("__cache__"),
-    INFO              ("__info__");
+    INFO              ("__info__"),
+    LATENCY           ("__latency__"),
+    METRICS           ("__metrics__"),
+    TRAFFIC           ("__traffic__");
 
     private final String host;
 
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.client;
+
+import io.galeb.core.enums.SystemEnv;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpServerExchange;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive in-flight request limit of a pool (gradient algorithm).
+ *
+ * The requests of a window give the short term RTT, which is compared with a long term average: when the
+ * backends slow down (queueing) the gradient longRtt / shortRtt drops below 1 and the limit shrinks; otherwise
+ * the limit grows by sqrt(limit). Gateway errors (502-504) back off the limit multiplicatively (AIMD).
+ *
+ * The request path only touches atomics. The window is closed by the request that crosses its end.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final AtomicLong REJECTED = new AtomicLong(0L);
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double LONG_RTT_ALPHA = 0.05;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inflight = new AtomicInteger(0);
+    private final AtomicInteger maxInflight = new AtomicInteger(0);
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    private final AtomicLong windowEnd;
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRtt = 0.0;
+
+    public AdaptiveConcurrencyLimit() {
+        this(Integer.parseInt(SystemEnv.POOL_CONCURRENCY_INITIAL_LIMIT.getValue()),
+             Integer.parseInt(SystemEnv.POOL_CONCURRENCY_MIN_LIMIT.getValue()),
+             Integer.parseInt(SystemEnv.POOL_CONCURRENCY_MAX_LIMIT.getValue()));
+    }
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+        this.estimatedLimit = limit;
+        this.windowEnd = new AtomicLong(System.nanoTime() + WINDOW);
+    }
+
+    public static long getRejected() {
+        return REJECTED.get();
+    }
+
+    /**
+     * Admits the request, releasing it when the exchange completes. Returns false if the pool is at its limit.
+     */
+    public boolean tryAcquire(final HttpServerExchange exchange) {
+        final int current = inflight.incrementAndGet();
+        if (current > limit) {
+            inflight.decrementAndGet();
+            REJECTED.incrementAndGet();
+            return false;
+        }
+        int max;
+        while (current > (max = maxInflight.get()) && !maxInflight.compareAndSet(max, current)) {
+            // retry
+        }
+        exchange.addExchangeCompleteListener(new Permit(System.nanoTime()));
+        return true;
+    }
+
+    public void release(long rtt, boolean didDrop, long now) {
+        inflight.decrementAndGet();
+        rttSum.add(rtt);
+        samples.increment();
+        if (didDrop) drops.increment();
+        final long end = windowEnd.get();
+        if (now - end >= 0L && samples.sum() >= MIN_WINDOW_SAMPLES && windowEnd.compareAndSet(end, now + WINDOW)) {
+            update();
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    private synchronized void update() {
+        final long count = samples.sumThenReset();
+        final long sum = rttSum.sumThenReset();
+        final long dropped = drops.sumThenReset();
+        final int peak = maxInflight.getAndSet(inflight.get());
+        if (count == 0L) return;
+
+        final double shortRtt = (double) sum / count;
+        if (longRtt == 0.0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt += LONG_RTT_ALPHA * (shortRtt - longRtt);
+            if (longRtt / shortRtt > 2.0) {
+                // the backends recovered: forget the slow past faster
+                longRtt *= 0.95;
+            }
+        }
+
+        double newLimit;
+        if (dropped > 0L) {
+            newLimit = estimatedLimit * BACKOFF;
+        } else if (peak < estimatedLimit / 2) {
+            // the pool is not using its limit, so the RTT says nothing about it
+            return;
+        } else {
+            final double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / shortRtt));
+            newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            newLimit = estimatedLimit * (1.0 - SMOOTHING) + newLimit * SMOOTHING;
+        }
+        estimatedLimit = Math.min(Math.max(newLimit, minLimit), maxLimit);
+        limit = (int) estimatedLimit;
+    }
+
+    private class Permit implements ExchangeCompletionListener {
+        private final long start;
+
+        private Permit(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+            try {
+                final long now = System.nanoTime();
+                final int statusCode = exchange.getStatusCode();
+                release(now - start, statusCode >= 502 && statusCode <= 504, now);
+            } finally {
+                nextListener.proceed();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.client;
+
+/**
+ * CoDel (controlled delay) drop decision of a queue, in the variant used by servers: the queue is overloaded
+ * when the smallest sojourn time of the last interval exceeded the target. A standing queue then drops the
+ * requests that already waited longer than the target, while short bursts are still absorbed.
+ *
+ * Not thread-safe: each queue has its own instance, used by a single thread.
+ */
+public class CoDel {
+
+    private final long target;
+    private final long interval;
+
+    private long intervalEnd;
+    private long minSojourn = Long.MAX_VALUE;
+    private boolean overloaded = false;
+
+    /**
+     * @param target target sojourn time (ns)
+     * @param interval interval (ns)
+     */
+    public CoDel(long target, long interval, long now) {
+        this.target = target;
+        this.interval = interval;
+        this.intervalEnd = now + interval;
+    }
+
+    public boolean shouldDrop(long sojourn, long now) {
+        if (now - intervalEnd >= 0L) {
+            overloaded = minSojourn != Long.MAX_VALUE && minSojourn > target;
+            minSojourn = Long.MAX_VALUE;
+            intervalEnd = now + interval;
+        }
+        if (sojourn < minSojourn) {
+            minSojourn = sojourn;
+        }
+        return overloaded && sojourn > target;
+    }
+
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+}
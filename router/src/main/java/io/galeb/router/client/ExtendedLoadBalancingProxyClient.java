@@ -16,14 +16,25 @@
 
 package io.galeb.router.client;
 
+import io.galeb.core.enums.SystemEnv;
 import io.galeb.router.ResponseCodeOnError;
 import io.galeb.router.client.hostselectors.HostSelector;
 import io.galeb.router.client.hostselectors.RoundRobinHostSelector;
+import io.galeb.router.handlers.PoolHandler;
+import io.galeb.router.metrics.RequestPhases;
+import io.galeb.router.metrics.RequestPhases.Stamp;
+import io.galeb.router.metrics.jfr.ConnectionAcquireEvent;
+import io.galeb.router.metrics.jfr.HostSelectionEvent;
+import io.galeb.router.metrics.jfr.RouterEvents;
 import io.undertow.UndertowLogger;
 import io.undertow.client.ClientConnection;
 import io.undertow.client.ClientStatistics;
 import io.undertow.client.UndertowClient;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.server.Connectors;
+import io.undertow.server.ExchangeCompletionListener;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ResponseCommitListener;
 import io.undertow.server.ServerConnection;
 import io.undertow.server.handlers.Cookie;
 import io.undertow.server.handlers.proxy.ConnectionPoolErrorHandler;
@@ -36,18 +47,24 @@ import io.undertow.server.handlers.proxy.ProxyConnectionPool;
 import io.undertow.util.AttachmentKey;
 import io.undertow.util.AttachmentList;
 import io.undertow.util.CopyOnWriteMap;
+import io.undertow.util.HttpString;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.xnio.OptionMap;
+import org.xnio.XnioIoThread;
 import org.xnio.ssl.XnioSsl;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 import static io.undertow.server.handlers.proxy.ProxyConnectionPool.AvailabilityType.AVAILABLE;
 import static io.undertow.server.handlers.proxy.ProxyConnectionPool.AvailabilityType.FULL;
@@ -64,6 +81,12 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
 
     private static final AttachmentKey<AttachmentList<Host>> ATTEMPTED_HOSTS = AttachmentKey.createList(Host.class);
 
+    private static final AttachmentKey<Host> SELECTED_HOST = AttachmentKey.create(Host.class);
+
+    private static final AttachmentKey<Long> RESPONSE_HEADERS_TIME = AttachmentKey.create(Long.class);
+
+    private static final HttpString DEADLINE_HEADER = HttpString.tryFromString(SystemEnv.DEADLINE_HEADER.getValue());
+
     // If a host fails we retry periodically every X seconds
     private volatile int problemServerRetry = 10; // seconds
 
@@ -73,6 +96,12 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
     private volatile int maxQueueSize = 0;
     private volatile int softMaxConnectionsPerThread = 5;
     private volatile int ttl = -1;
+    private volatile SlowStart slowStart = SlowStart.DISABLED;
+    private volatile PoolWaitQueue waitQueue = null;
+    private volatile RetryPolicy retryPolicy = null;
+    private volatile UpstreamProtocol upstreamProtocol = UpstreamProtocol.HTTP_1_1;
+    private volatile int multiplexedConnectionsPerThread = 1;
+    private volatile int maxStreams = 100;
 
     private volatile Host[] hosts = {};
 
@@ -83,6 +112,38 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
 
     private final ExclusivityChecker exclusivityChecker;
 
+    private final OutlierDetector outlierDetector = new OutlierDetector();
+
+    /**
+     * Stamps the response headers: the latency of a target ends there, not after the body was streamed to the client.
+     */
+    private static final ResponseCommitListener RESPONSE_HEADERS_LISTENER =
+            exchange -> exchange.putAttachment(RESPONSE_HEADERS_TIME, System.nanoTime());
+
+    private final ExchangeCompletionListener hostStatisticsListener = (exchange, nextListener) -> {
+        try {
+            final Host host = exchange.getAttachment(SELECTED_HOST);
+            if (host != null) {
+                final long now = System.nanoTime();
+                final long requestStartTime = exchange.getRequestStartTime();
+                final Long headersTime = exchange.getAttachment(RESPONSE_HEADERS_TIME);
+                final long responseTime = requestStartTime > 0 && headersTime != null ? headersTime - requestStartTime : -1L;
+                if (responseTime >= 0L) {
+                    host.peakEwma.observe(responseTime, now);
+                }
+                if (outlierDetector.onResponse(hosts, host, exchange.getStatusCode(), responseTime, now)) {
+                    exchange.putAttachment(OutlierDetector.EJECTED, true);
+                }
+            }
+            final PoolWaitQueue queue = waitQueue;
+            if (queue != null) {
+                queue.signal(exchange.getIoThread());
+            }
+        } finally {
+            nextListener.proceed();
+        }
+    };
+
     private static final ProxyTarget PROXY_TARGET = new ProxyTarget() {
     };
 
@@ -145,6 +206,68 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
         return maxQueueSize;
     }
 
+    /**
+     * Queue of the requests waiting while all the hosts are full. Null disables it.
+     */
+    public ExtendedLoadBalancingProxyClient setWaitQueue(final PoolWaitQueue waitQueue) {
+        if (waitQueue != null) {
+            waitQueue.setDispatcher(new PoolWaitQueue.Dispatcher() {
+                @Override
+                public boolean hasAvailableHost() {
+                    return ExtendedLoadBalancingProxyClient.this.hasAvailableHost();
+                }
+
+                @Override
+                public void dispatch(ProxyTarget target, HttpServerExchange exchange, ProxyCallback<ProxyConnection> callback, long timeout, TimeUnit timeUnit) {
+                    getConnection(target, exchange, callback, timeout, timeUnit);
+                }
+            });
+        }
+        this.waitQueue = waitQueue;
+        return this;
+    }
+
+    public PoolWaitQueue getWaitQueue() {
+        return waitQueue;
+    }
+
+    /**
+     * Opens keep-alive connections to each host (up to connections, but not more than the connections per thread)
+     * in the connection pools of the IO thread. They go back to the pools as idle connections, so POOL_CONN_TTL
+     * applies to them as to any other. onDone runs in the IO thread when every attempt finished.
+     */
+    public void prewarm(final XnioIoThread ioThread, final ByteBufferPool bufferPool, int connections, final Runnable onDone) {
+        ioThread.execute(new Prewarm(ioThread, bufferPool, connections, onDone));
+    }
+
+    /**
+     * Retry budget, 5xx retries and hedging of the pool. Null disables the budget (Undertow retries freely).
+     */
+    public ExtendedLoadBalancingProxyClient setRetryPolicy(final RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Protocol of the connections to the hosts added from now on. With HTTP/2, the requests of each IO thread
+     * share multiplexedConnectionsPerThread connections per host, up to maxStreams concurrent requests each
+     * (the requests that require an exclusive connection, e.g. upgrades, still use HTTP/1.1).
+     */
+    public ExtendedLoadBalancingProxyClient setUpstreamProtocol(final UpstreamProtocol upstreamProtocol, int multiplexedConnectionsPerThread, int maxStreams) {
+        this.upstreamProtocol = upstreamProtocol;
+        this.multiplexedConnectionsPerThread = multiplexedConnectionsPerThread;
+        this.maxStreams = maxStreams;
+        return this;
+    }
+
+    public UpstreamProtocol getUpstreamProtocol() {
+        return upstreamProtocol;
+    }
+
     public ExtendedLoadBalancingProxyClient setMaxQueueSize(int maxQueueSize) {
         this.maxQueueSize = maxQueueSize;
         return this;
@@ -155,6 +278,14 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
         return this;
     }
 
+    /**
+     * Slow start of the hosts added from now on (and of the hosts re-admitted after an ejection).
+     */
+    public ExtendedLoadBalancingProxyClient setSlowStart(final SlowStart slowStart) {
+        this.slowStart = slowStart;
+        return this;
+    }
+
     public ExtendedLoadBalancingProxyClient setSoftMaxConnectionsPerThread(int softMaxConnectionsPerThread) {
         this.softMaxConnectionsPerThread = softMaxConnectionsPerThread;
         return this;
@@ -225,12 +356,30 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
         System.arraycopy(existing, found + 1, newHosts, found, existing.length - found - 1);
         this.hosts = newHosts;
         removedHost.connectionPool.close();
+        if (removedHost.multiplexedPool != null) {
+            removedHost.multiplexedPool.close();
+        }
         if (removedHost.jvmRoute != null) {
             routes.remove(removedHost.jvmRoute);
         }
         return this;
     }
 
+    /**
+     * Changes the weight of a host. The hosts array is republished, so the selectors rebuild their schedules.
+     */
+    public synchronized ExtendedLoadBalancingProxyClient setHostWeight(final URI uri, int weight) {
+        final Host[] existing = hosts;
+        for (Host host : existing) {
+            if (host.uri.equals(uri) && host.weight != Math.max(weight, 1)) {
+                host.weight = Math.max(weight, 1);
+                this.hosts = existing.clone();
+                break;
+            }
+        }
+        return this;
+    }
+
     @Override
     public ProxyTarget findTarget(HttpServerExchange exchange) {
         return PROXY_TARGET;
@@ -245,28 +394,161 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
             return;
         }
 
+        final RetryPolicy retryPolicy = this.retryPolicy;
+        if (retryPolicy != null && exchange.getAttachment(ATTEMPTED_HOSTS) != null &&
+                !retryPolicy.getBudget().tryWithdraw(System.nanoTime())) {
+            exchange.getResponseHeaders().add(ResponseCodeOnError.Header.X_GALEB_ERROR, ResponseCodeOnError.RETRY_BUDGET_EXHAUSTED.getMessage());
+            callback.couldNotResolveBackend(exchange);
+            return;
+        }
+
+        final HostSelectionEvent selectionEvent = RouterEvents.ENABLED ? HostSelectionEvent.start() : null;
         final Host host = selectHost(exchange);
+        RequestPhases.stamp(exchange, Stamp.HOST_SELECTED);
+        if (selectionEvent != null && selectionEvent.finish()) {
+            commitSelectionEvent(selectionEvent, exchange, host);
+        }
         if (host == null) {
             exchange.getResponseHeaders().add(ResponseCodeOnError.Header.X_GALEB_ERROR, ResponseCodeOnError.COULD_NOT_RESOLVE_BACKEND.getMessage());
             callback.couldNotResolveBackend(exchange);
-        } else {
+        } else if (!enqueueIfFull(host, holder, target, exchange, callback, timeout, timeUnit)) {
+            if (exchange.getAttachment(ATTEMPTED_HOSTS) == null) {
+                exchange.addExchangeCompleteListener(hostStatisticsListener);
+                exchange.addResponseCommitListener(RESPONSE_HEADERS_LISTENER);
+                if (retryPolicy != null) {
+                    retryPolicy.getBudget().deposit();
+                }
+            }
             exchange.addToAttachmentList(ATTEMPTED_HOSTS, host);
-            final URI uri = host.getUri();
-            exchange.putAttachment(HostSelector.REAL_DEST, uri != null ? uri.toString() : "UNDEF");
+            host.selections.increment();
+            markSelected(exchange, host);
             if (holder != null || (exclusivityChecker != null && exclusivityChecker.isExclusivityRequired(exchange))) {
                 // If we have a holder, even if the connection was closed we now exclusivity was already requested so our client
                 // may be assuming it still exists.
-                host.connectionPool.connect(target, exchange, new ProxyConnectionProxyCallback()
+                host.connect(target, exchange, new ProxyConnectionProxyCallback()
                         .setHolder(holder).setCallback(callback).setTarget(target).setTimeout(timeout).setTimeUnit(timeUnit).setHost(host).setExclusive(),
                         timeout, timeUnit, true);
             } else {
-                host.connectionPool.connect(target, exchange, new ProxyConnectionProxyCallback()
+                host.connect(target, exchange, new ProxyConnectionProxyCallback()
                         .setCallback(callback).setTarget(target).setTimeout(timeout).setTimeUnit(timeUnit).setHost(host), timeout,
                         timeUnit, false);
             }
         }
     }
 
+    /**
+     * Queues the request if the chosen host (so every host) is full and the pool has a wait queue.
+     * Returns false if the request must go on (i.e. the queue is full: the connection pool rejects it).
+     */
+    private boolean enqueueIfFull(final Host host, final ExclusiveConnectionHolder holder, final ProxyTarget target,
+                                  final HttpServerExchange exchange, final ProxyCallback<ProxyConnection> callback,
+                                  long timeout, TimeUnit timeUnit) {
+        final PoolWaitQueue queue = waitQueue;
+        if (queue == null || holder != null || host.available() != FULL_QUEUE ||
+                (exclusivityChecker != null && exclusivityChecker.isExclusivityRequired(exchange))) {
+            return false;
+        }
+        final long deadline = deadline(exchange, timeout, timeUnit);
+        if (System.nanoTime() - deadline >= 0L) {
+            exchange.getResponseHeaders().add(ResponseCodeOnError.Header.X_GALEB_ERROR, ResponseCodeOnError.DEADLINE_EXCEEDED.getMessage());
+            callback.queuedRequestFailed(exchange);
+            return true;
+        }
+        return queue.offer(target, exchange, callback, timeout, timeUnit, deadline);
+    }
+
+    /**
+     * The earliest of the request timeout (POOL_MAX_REQUEST_TIME) and the budget of the deadline header.
+     */
+    private long deadline(final HttpServerExchange exchange, long timeout, TimeUnit timeUnit) {
+        final long now = System.nanoTime();
+        long deadline = timeout > 0L ? now + timeUnit.toNanos(timeout) : Long.MAX_VALUE;
+        final String budget = exchange.getRequestHeaders().getFirst(DEADLINE_HEADER);
+        if (budget != null) {
+            try {
+                final long start = exchange.getRequestStartTime();
+                deadline = Math.min(deadline, (start > 0L ? start : now) + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(budget.trim())));
+            } catch (NumberFormatException ignore) {}
+        }
+        return deadline;
+    }
+
+    /**
+     * A host not attempted yet by the exchange that can take a hedged or retried request right now, or null.
+     * The host selector is not used, so the alternates do not shift its state (e.g. the round robin position).
+     */
+    Host selectAlternate(final HttpServerExchange exchange) {
+        final AttachmentList<Host> attempted = exchange.getAttachment(ATTEMPTED_HOSTS);
+        final Host[] hosts = this.hosts;
+        if (hosts.length == 0) {
+            return null;
+        }
+        final int start = ThreadLocalRandom.current().nextInt(hosts.length);
+        for (int i = 0; i < hosts.length; i++) {
+            final Host host = hosts[(start + i) % hosts.length];
+            if ((attempted == null || !attempted.contains(host)) &&
+                    host.available() == AVAILABLE && !outlierDetector.isEjected(host)) {
+                return host;
+            }
+        }
+        return null;
+    }
+
+    void connectAlternate(final Host host, final ProxyTarget target, final HttpServerExchange exchange,
+                          final ProxyCallback<ProxyConnection> callback, long timeout, TimeUnit timeUnit) {
+        exchange.addToAttachmentList(ATTEMPTED_HOSTS, host);
+        host.selections.increment();
+        host.connect(target, exchange, callback, timeout, timeUnit, false);
+    }
+
+    /**
+     * The response of the exchange comes from the host (a hedged or retried request won).
+     */
+    void markSelected(final HttpServerExchange exchange, final Host host) {
+        final URI uri = host.getUri();
+        exchange.putAttachment(HostSelector.REAL_DEST, uri != null ? uri.toString() : "UNDEF");
+        exchange.putAttachment(SELECTED_HOST, host);
+    }
+
+    private boolean hasAvailableHost() {
+        for (Host host : hosts) {
+            if (host.available() == AVAILABLE && !outlierDetector.isEjected(host)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void commitSelectionEvent(final HostSelectionEvent event, final HttpServerExchange exchange, final Host host) {
+        final Host[] hosts = this.hosts;
+        int index = -1;
+        for (int i = 0; host != null && i < hosts.length; i++) {
+            if (hosts[i] == host) {
+                index = i;
+                break;
+            }
+        }
+        final AttachmentList<Host> attempted = exchange.getAttachment(ATTEMPTED_HOSTS);
+        event.commit(exchange.getAttachment(PoolHandler.POOL_NAME),
+                host != null && host.getUri() != null ? host.getUri().toString() : null,
+                index, hosts.length, selectionReason(exchange, host), attempted != null ? attempted.size() : 0);
+    }
+
+    /**
+     * Why selectHost chose the host. Evaluated after the choice and only for the Flight Recorder, so it may
+     * disagree with the selection if the state of the host changed meanwhile.
+     */
+    private String selectionReason(final HttpServerExchange exchange, final Host host) {
+        if (host == null) return "none";
+        if (host == findStickyHost(exchange)) return "sticky";
+        final ProxyConnectionPool.AvailabilityType available = host.available();
+        if (available == AVAILABLE) {
+            if (outlierDetector.isEjected(host)) return "ejected";
+            return host.getSlowStartWeight() < 1.0 ? "warming" : "available";
+        }
+        return available == FULL ? "full" : "problem";
+    }
+
     protected Host selectHost(HttpServerExchange exchange) {
         AttachmentList<Host> attempted = exchange.getAttachment(ATTEMPTED_HOSTS);
         Host[] hosts = this.hosts;
@@ -274,7 +556,7 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
             return null;
         }
         Host sticky = findStickyHost(exchange);
-        if (sticky != null) {
+        if (sticky != null && !outlierDetector.isEjected(sticky)) {
             if(attempted == null || !attempted.contains(sticky)) {
                 return sticky;
             }
@@ -283,12 +565,31 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
         final int startHost = host; //if the all hosts have problems we come back to this one
         Host full = null;
         Host problem = null;
+        Host ejected = null;
+        Host warming = null;
+        Host admitted = null;
+        int admittedCount = 0;
         do {
             Host selected = hosts[host];
             if(attempted == null || !attempted.contains(selected)) {
-                ProxyConnectionPool.AvailabilityType available = selected.connectionPool.available();
+                ProxyConnectionPool.AvailabilityType available = selected.available();
                 if (available == AVAILABLE) {
-                    return selected;
+                    if (outlierDetector.isEjected(selected)) {
+                        if (ejected == null) {
+                            ejected = selected;
+                        }
+                    } else if (SlowStart.admit(selected.getSlowStartWeight())) {
+                        if (warming == null) {
+                            return selected;
+                        }
+                        // a warming host was refused: one of the admitted hosts at random (reservoir sampling),
+                        // so its share is not all given to the next host
+                        if (ThreadLocalRandom.current().nextInt(++admittedCount) == 0) {
+                            admitted = selected;
+                        }
+                    } else if (warming == null) {
+                        warming = selected;
+                    }
                 } else if (available == FULL && full == null) {
                     full = selected;
                 } else if ((available == PROBLEM || available == FULL_QUEUE) && problem == null) {
@@ -300,9 +601,18 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
             }
             host = (host + 1) % hosts.length;
         } while (host != startHost);
+        if (admitted != null) {
+            return admitted;
+        }
+        if (warming != null) {
+            return warming;
+        }
         if (full != null) {
             return full;
         }
+        if (ejected != null) {
+            return ejected;
+        }
         if (problem != null) {
             return problem;
         }
@@ -335,6 +645,17 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
         Arrays.sort(newHosts, Host::compareTo);
     }
 
+    /**
+     * The current hosts. The array is replaced, never changed, when the hosts change.
+     */
+    public Host[] getHosts() {
+        return hosts;
+    }
+
+    public List<URI> getHostUris() {
+        return Arrays.stream(hosts).map(Host::getUri).collect(Collectors.toList());
+    }
+
     @Override
     public boolean isHostsEmpty() {
         return hosts.length == 0;
@@ -347,15 +668,25 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
 
     public class Host extends ConnectionPoolErrorHandler.SimpleConnectionPoolErrorHandler implements ConnectionPoolManager, Comparable<Host> {
         final ProxyConnectionPool connectionPool;
+        final MultiplexedConnectionPool multiplexedPool;
         final String jvmRoute;
         final URI uri;
         final XnioSsl ssl;
+        final PeakEwma peakEwma = new PeakEwma();
+        final OutlierDetector.Status outlierStatus = new OutlierDetector.Status();
+        volatile long slowStartBegin;
+        volatile int weight = 1;
+        final LongAdder selections = new LongAdder();
 
         public Host(String jvmRoute, InetSocketAddress bindAddress, URI uri, XnioSsl ssl, OptionMap options) {
             this.connectionPool = new ProxyConnectionPool(this, bindAddress, uri, ssl, client, options);
+            final UpstreamProtocol protocol = upstreamProtocol;
+            this.multiplexedPool = protocol.isMultiplexed() ? new MultiplexedConnectionPool(this, bindAddress, uri, protocol,
+                    ssl, client, options, multiplexedConnectionsPerThread, maxStreams) : null;
             this.jvmRoute = jvmRoute;
             this.uri = uri;
             this.ssl = ssl;
+            this.slowStartBegin = slowStart.isEnabled() ? System.nanoTime() : 0L;
         }
 
         @Override
@@ -392,12 +723,64 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
             return uri;
         }
 
+        /**
+         * Open connections or, with HTTP/2, open streams (plus the exclusive HTTP/1.1 connections).
+         */
         public int getOpenConnection() {
-            return connectionPool.getOpenConnections();
+            final int open = connectionPool.getOpenConnections();
+            return multiplexedPool != null ? open + multiplexedPool.getOpenStreams() : open;
+        }
+
+        /**
+         * Open HTTP/2 connections (0 if the host uses HTTP/1.1).
+         */
+        public int getMultiplexedConnections() {
+            return multiplexedPool != null ? multiplexedPool.getOpenConnections() : 0;
         }
 
         public ClientStatistics getClientStatistics() {
-            return connectionPool.getClientStatistics();
+            return multiplexedPool != null ? multiplexedPool.getClientStatistics() : connectionPool.getClientStatistics();
+        }
+
+        ProxyConnectionPool.AvailabilityType available() {
+            return multiplexedPool != null ? multiplexedPool.available() : connectionPool.available();
+        }
+
+        void connect(final ProxyTarget target, final HttpServerExchange exchange, final ProxyCallback<ProxyConnection> callback,
+                     long timeout, TimeUnit timeUnit, boolean exclusive) {
+            if (multiplexedPool != null && !exclusive) {
+                multiplexedPool.connect(exchange, callback, timeout, timeUnit);
+            } else {
+                connectionPool.connect(target, exchange, callback, timeout, timeUnit, exclusive);
+            }
+        }
+
+        public PeakEwma getPeakEwma() {
+            return peakEwma;
+        }
+
+        public OutlierDetector.Status getOutlierStatus() {
+            return outlierStatus;
+        }
+
+        public long getSelections() {
+            return selections.sum();
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public double getSlowStartWeight() {
+            final long begin = slowStartBegin;
+            if (begin == 0L) {
+                return 1.0;
+            }
+            final double weight = slowStart.weight(begin, System.nanoTime());
+            if (weight >= 1.0) {
+                slowStartBegin = 0L;
+            }
+            return weight;
         }
 
         @Override
@@ -406,6 +789,98 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
         }
     }
 
+    private final class Prewarm implements Runnable {
+
+        private final XnioIoThread ioThread;
+        private final ByteBufferPool bufferPool;
+        private final int connections;
+        private final Runnable onDone;
+        private int pending = 1;
+
+        private Prewarm(final XnioIoThread ioThread, final ByteBufferPool bufferPool, int connections, final Runnable onDone) {
+            this.ioThread = ioThread;
+            this.bufferPool = bufferPool;
+            this.connections = connections;
+            this.onDone = onDone;
+        }
+
+        @Override
+        public void run() {
+            final ServerConnection serverConnection = new PrewarmServerConnection(ioThread, bufferPool);
+            final int perHost = Math.min(connections, connectionsPerThread);
+            if (perHost > 0) {
+                for (Host host : hosts) {
+                    if (!outlierDetector.isEjected(host) && host.available() != PROBLEM) {
+                        pending++;
+                        new HostPrewarm(host, perHost).start(serverConnection);
+                    }
+                }
+            }
+            finished();
+        }
+
+        private void finished() {
+            if (--pending == 0) {
+                onDone.run();
+            }
+        }
+
+        /**
+         * Holds the exchanges until every connection of the host is open, so the pool cannot hand the same
+         * connection twice, then completes them: the connections return to the pool.
+         */
+        private final class HostPrewarm implements ProxyCallback<ProxyConnection> {
+
+            private final Host host;
+            private final HttpServerExchange[] exchanges;
+            private int remaining;
+
+            private HostPrewarm(final Host host, int connections) {
+                this.host = host;
+                this.exchanges = new HttpServerExchange[connections];
+                this.remaining = connections;
+            }
+
+            private void start(final ServerConnection serverConnection) {
+                for (int i = 0; i < exchanges.length; i++) {
+                    exchanges[i] = new HttpServerExchange(serverConnection);
+                    host.connect(PROXY_TARGET, exchanges[i], this, -1L, TimeUnit.MILLISECONDS, false);
+                }
+            }
+
+            private void done() {
+                if (--remaining == 0) {
+                    for (HttpServerExchange exchange : exchanges) {
+                        exchange.getResponseChannel();
+                        Connectors.terminateRequest(exchange);
+                        Connectors.terminateResponse(exchange);
+                    }
+                    finished();
+                }
+            }
+
+            @Override
+            public void completed(HttpServerExchange exchange, ProxyConnection result) {
+                done();
+            }
+
+            @Override
+            public void failed(HttpServerExchange exchange) {
+                done();
+            }
+
+            @Override
+            public void queuedRequestFailed(HttpServerExchange exchange) {
+                done();
+            }
+
+            @Override
+            public void couldNotResolveBackend(HttpServerExchange exchange) {
+                done();
+            }
+        }
+    }
+
     private static class ExclusiveConnectionHolder {
 
         private ProxyConnection connection;
@@ -421,9 +896,18 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
         private TimeUnit timeUnit;
         private Host host;
         private boolean exclusive = false;
+        private final ConnectionAcquireEvent acquireEvent = RouterEvents.ENABLED ? ConnectionAcquireEvent.start() : null;
 
         @Override
         public void completed(HttpServerExchange exchange, ProxyConnection result) {
+            RequestPhases.stamp(exchange, Stamp.CONNECTED);
+            commitAcquireEvent("connected");
+            final RetryPolicy policy = retryPolicy;
+            if (!exclusive && policy != null && policy.appliesTo(exchange)) {
+                callback.completed(exchange, new ProxyConnection(new HedgingClientConnection(ExtendedLoadBalancingProxyClient.this,
+                        policy, exchange, target, timeout, timeUnit, host, result.getConnection()), result.getTargetPath()));
+                return;
+            }
             if (exclusive) {
                 if (holder != null) {
                     holder.connection = result;
@@ -446,23 +930,39 @@ public class ExtendedLoadBalancingProxyClient implements ProxyClient, ExtendedPr
         @Override
         public void queuedRequestFailed(HttpServerExchange exchange) {
             exchange.removeAttachment(HostSelector.REAL_DEST);
+            exchange.removeAttachment(SELECTED_HOST);
             exchange.getResponseHeaders().add(ResponseCodeOnError.Header.X_GALEB_ERROR, ResponseCodeOnError.QUEUED_REQUEST_FAILED.getMessage());
+            commitAcquireEvent("queueFailed");
             callback.queuedRequestFailed(exchange);
         }
 
         @Override
         public void failed(HttpServerExchange exchange) {
             exchange.removeAttachment(HostSelector.REAL_DEST);
+            exchange.removeAttachment(SELECTED_HOST);
             UndertowLogger.PROXY_REQUEST_LOGGER.proxyFailedToConnectToBackend(exchange.getRequestURI(), host.uri);
+            commitAcquireEvent("failed");
+            final PoolWaitQueue queue = waitQueue;
+            if (queue != null) {
+                queue.signal(exchange.getIoThread());
+            }
             callback.failed(exchange);
         }
 
         @Override
         public void couldNotResolveBackend(HttpServerExchange exchange) {
             exchange.removeAttachment(HostSelector.REAL_DEST);
+            exchange.removeAttachment(SELECTED_HOST);
             exchange.getResponseHeaders().add(ResponseCodeOnError.Header.X_GALEB_ERROR, ResponseCodeOnError.COULD_NOT_RESOLVE_BACKEND.getMessage());
+            commitAcquireEvent("unresolved");
             callback.couldNotResolveBackend(exchange);
         }
+
+        private void commitAcquireEvent(String outcome) {
+            if (acquireEvent != null) {
+                acquireEvent.commit(host != null && host.uri != null ? host.uri.toString() : null, outcome);
+            }
+        }
         
         public ProxyConnectionProxyCallback setHolder(final ExclusiveConnectionHolder holder) {
             this.holder = holder;
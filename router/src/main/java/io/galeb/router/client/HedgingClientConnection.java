@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.undertow.client.ClientCallback;
+import io.undertow.client.ClientConnection;
+import io.undertow.client.ClientExchange;
+import io.undertow.client.ClientRequest;
+import io.undertow.client.ClientResponse;
+import io.undertow.client.ClientStatistics;
+import io.undertow.client.ContinueNotification;
+import io.undertow.client.PushCallback;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyClient.ProxyTarget;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.AttachmentList;
+import org.xnio.ChannelListener;
+import org.xnio.ChannelListeners;
+import org.xnio.Option;
+import org.xnio.StreamConnection;
+import org.xnio.XnioExecutor;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSinkChannel;
+import org.xnio.channels.StreamSourceChannel;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.xnio.IoUtils.safeClose;
+
+/**
+ * Connection given to the ProxyHandler for the requests covered by the {@link RetryPolicy}. The request may
+ * also be sent to a second target (a hedge after the hedging delay, or a retry after a 502/503) and the
+ * ProxyHandler only sees the exchange of the response that was chosen. The other response is drained, or its
+ * connection is closed if it did not arrive yet.
+ *
+ * Every callback runs in the IO thread of the exchange, so the state needs no synchronization.
+ */
+class HedgingClientConnection implements ClientConnection {
+
+    private final ExtendedLoadBalancingProxyClient proxyClient;
+    private final RetryPolicy policy;
+    private final HttpServerExchange exchange;
+    private final ProxyTarget target;
+    private final long timeout;
+    private final TimeUnit timeUnit;
+    private final Leg first;
+    private final WrappedExchange wrappedExchange = new WrappedExchange();
+
+    private Leg second = null;
+    private Leg current;
+    private ClientRequest request;
+    private ClientCallback<ClientExchange> requestCallback;
+    private ClientCallback<ClientExchange> responseListener;
+    private boolean delivered = false;
+    private boolean decided = false;
+    private XnioExecutor.Key hedgeKey = null;
+
+    HedgingClientConnection(final ExtendedLoadBalancingProxyClient proxyClient, final RetryPolicy policy,
+                            final HttpServerExchange exchange, final ProxyTarget target, long timeout, TimeUnit timeUnit,
+                            final Host host, final ClientConnection connection) {
+        this.proxyClient = proxyClient;
+        this.policy = policy;
+        this.exchange = exchange;
+        this.target = target;
+        this.timeout = timeout;
+        this.timeUnit = timeUnit;
+        this.first = new Leg(host);
+        this.first.connection = connection;
+        this.current = first;
+    }
+
+    @Override
+    public void sendRequest(final ClientRequest request, final ClientCallback<ClientExchange> clientCallback) {
+        this.request = request;
+        this.requestCallback = clientCallback;
+        send(first);
+        final long delay = policy.hedgeDelay(exchange.getRequestMethod(), System.nanoTime());
+        if (delay > 0L) {
+            hedgeKey = first.connection.getIoThread().executeAfter(this::hedge, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void send(final Leg leg) {
+        leg.sentAt = System.nanoTime();
+        leg.connection.sendRequest(request, new ClientCallback<ClientExchange>() {
+            @Override
+            public void completed(ClientExchange result) {
+                if (leg.closed) return;
+                leg.exchange = result;
+                result.setResponseListener(new ResponseListener(leg));
+                if (!delivered) {
+                    delivered = true;
+                    current = leg;
+                    requestCallback.completed(wrappedExchange);
+                }
+            }
+
+            @Override
+            public void failed(IOException e) {
+                legFailed(leg, e);
+            }
+        });
+    }
+
+    private void hedge() {
+        hedgeKey = null;
+        if (decided || second != null) return;
+        final Host host = proxyClient.selectAlternate(exchange);
+        if (host != null && policy.getBudget().tryWithdraw(System.nanoTime())) {
+            policy.hedged();
+            launch(host);
+        }
+    }
+
+    private void launch(final Host host) {
+        final Leg leg = new Leg(host);
+        second = leg;
+        proxyClient.connectAlternate(host, target, exchange, new ProxyCallback<ProxyConnection>() {
+            @Override
+            public void completed(HttpServerExchange exchange, ProxyConnection result) {
+                // if unused, the connection returns to the pool at the end of the exchange
+                if (decided || leg.closed) return;
+                leg.connection = result.getConnection();
+                send(leg);
+            }
+
+            @Override
+            public void failed(HttpServerExchange exchange) {
+                legFailed(leg, new IOException("could not connect to " + host.getUri()));
+            }
+
+            @Override
+            public void queuedRequestFailed(HttpServerExchange exchange) {
+                legFailed(leg, new IOException("no connection available to " + host.getUri()));
+            }
+
+            @Override
+            public void couldNotResolveBackend(HttpServerExchange exchange) {
+                legFailed(leg, new IOException("could not resolve " + host.getUri()));
+            }
+        }, timeout, timeUnit);
+    }
+
+    private void legFailed(final Leg leg, final IOException e) {
+        if (leg.closed) return;
+        discard(leg);
+        if (decided || isPending(other(leg))) return;
+        decided = true;
+        cancelHedge();
+        if (!delivered) {
+            delivered = true;
+            requestCallback.failed(e);
+        } else {
+            responseListener.failed(e);
+        }
+    }
+
+    private void responded(final Leg leg, final ClientExchange result) {
+        if (leg.closed) return;
+        if (decided) {
+            drain(leg);
+            return;
+        }
+        final long now = System.nanoTime();
+        policy.recordFirstByte(now - leg.sentAt);
+        if (policy.isRetriable(result.getResponse().getResponseCode())) {
+            if (isPending(other(leg))) {
+                drain(leg);
+                return;
+            }
+            final Host host = second == null ? proxyClient.selectAlternate(exchange) : null;
+            if (host != null && policy.getBudget().tryWithdraw(now)) {
+                drain(leg);
+                cancelHedge();
+                policy.retried();
+                launch(host);
+                return;
+            }
+        }
+        decided = true;
+        cancelHedge();
+        final Leg other = other(leg);
+        if (other != null) {
+            discard(other);
+        }
+        current = leg;
+        if (leg != first) {
+            proxyClient.markSelected(exchange, leg.host);
+        }
+        responseListener.completed(wrappedExchange);
+    }
+
+    private Leg other(final Leg leg) {
+        return leg == first ? second : first;
+    }
+
+    private boolean isPending(final Leg leg) {
+        return leg != null && !leg.closed;
+    }
+
+    private void discard(final Leg leg) {
+        if (leg.closed) {
+            return;
+        }
+        leg.closed = true;
+        if (leg.connection != null) {
+            safeClose(leg.connection);
+        }
+    }
+
+    /**
+     * The response of the leg arrived but is not used: its body is read and dropped, so the connection is kept
+     * (and returned to the pool at the end of the exchange) instead of being closed while the target is degraded.
+     */
+    private void drain(final Leg leg) {
+        leg.closed = true;
+        final StreamSourceChannel responseChannel = leg.exchange.getResponseChannel();
+        try {
+            if (Channels.drain(responseChannel, Long.MAX_VALUE) == -1L) {
+                return;
+            }
+        } catch (IOException e) {
+            safeClose(leg.connection);
+            return;
+        }
+        responseChannel.getReadSetter().set(ChannelListeners.<StreamSourceChannel>drainListener(Long.MAX_VALUE,
+                StreamSourceChannel::suspendReads, (channel, e) -> safeClose(leg.connection)));
+        responseChannel.resumeReads();
+    }
+
+    private void cancelHedge() {
+        if (hedgeKey != null) {
+            hedgeKey.remove();
+            hedgeKey = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        decided = true;
+        cancelHedge();
+        discard(first);
+        if (second != null) {
+            discard(second);
+        }
+    }
+
+    @Override
+    public StreamConnection performUpgrade() throws IOException {
+        return current.connection.performUpgrade();
+    }
+
+    @Override
+    public ByteBufferPool getBufferPool() {
+        return current.connection.getBufferPool();
+    }
+
+    @Override
+    public SocketAddress getPeerAddress() {
+        return current.connection.getPeerAddress();
+    }
+
+    @Override
+    public <A extends SocketAddress> A getPeerAddress(Class<A> type) {
+        return current.connection.getPeerAddress(type);
+    }
+
+    @Override
+    public ChannelListener.Setter<? extends ClientConnection> getCloseSetter() {
+        return current.connection.getCloseSetter();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return current.connection.getLocalAddress();
+    }
+
+    @Override
+    public <A extends SocketAddress> A getLocalAddress(Class<A> type) {
+        return current.connection.getLocalAddress(type);
+    }
+
+    @Override
+    public XnioWorker getWorker() {
+        return current.connection.getWorker();
+    }
+
+    @Override
+    public XnioIoThread getIoThread() {
+        return current.connection.getIoThread();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return current.connection.isOpen();
+    }
+
+    @Override
+    public boolean supportsOption(Option<?> option) {
+        return current.connection.supportsOption(option);
+    }
+
+    @Override
+    public <T> T getOption(Option<T> option) throws IOException {
+        return current.connection.getOption(option);
+    }
+
+    @Override
+    public <T> T setOption(Option<T> option, T value) throws IllegalArgumentException, IOException {
+        return current.connection.setOption(option, value);
+    }
+
+    @Override
+    public boolean isUpgraded() {
+        return current.connection.isUpgraded();
+    }
+
+    @Override
+    public boolean isPushSupported() {
+        return current.connection.isPushSupported();
+    }
+
+    @Override
+    public boolean isMultiplexingSupported() {
+        return current.connection.isMultiplexingSupported();
+    }
+
+    @Override
+    public ClientStatistics getStatistics() {
+        return current.connection.getStatistics();
+    }
+
+    @Override
+    public boolean isUpgradeSupported() {
+        return current.connection.isUpgradeSupported();
+    }
+
+    @Override
+    public void addCloseListener(ChannelListener<ClientConnection> listener) {
+        current.connection.addCloseListener(listener);
+    }
+
+    private static class Leg {
+        private final Host host;
+        private ClientConnection connection = null;
+        private ClientExchange exchange = null;
+        private long sentAt;
+        private boolean closed = false;
+
+        private Leg(final Host host) {
+            this.host = host;
+        }
+    }
+
+    private class ResponseListener implements ClientCallback<ClientExchange> {
+
+        private final Leg leg;
+
+        private ResponseListener(final Leg leg) {
+            this.leg = leg;
+        }
+
+        @Override
+        public void completed(ClientExchange result) {
+            responded(leg, result);
+        }
+
+        @Override
+        public void failed(IOException e) {
+            legFailed(leg, e);
+        }
+    }
+
+    /**
+     * The exchange seen by the ProxyHandler: the exchange of the current leg.
+     */
+    private class WrappedExchange implements ClientExchange {
+
+        @Override
+        public void setResponseListener(ClientCallback<ClientExchange> responseListener) {
+            HedgingClientConnection.this.responseListener = responseListener;
+        }
+
+        @Override
+        public void setContinueHandler(ContinueNotification continueHandler) {
+            current.exchange.setContinueHandler(continueHandler);
+        }
+
+        @Override
+        public void setPushHandler(PushCallback pushCallback) {
+            current.exchange.setPushHandler(pushCallback);
+        }
+
+        @Override
+        public StreamSinkChannel getRequestChannel() {
+            return current.exchange.getRequestChannel();
+        }
+
+        @Override
+        public StreamSourceChannel getResponseChannel() {
+            return current.exchange.getResponseChannel();
+        }
+
+        @Override
+        public ClientRequest getRequest() {
+            return current.exchange.getRequest();
+        }
+
+        @Override
+        public ClientResponse getResponse() {
+            return current.exchange.getResponse();
+        }
+
+        @Override
+        public ClientResponse getContinueResponse() {
+            return current.exchange.getContinueResponse();
+        }
+
+        @Override
+        public ClientConnection getConnection() {
+            return HedgingClientConnection.this;
+        }
+
+        @Override
+        public <T> T getAttachment(AttachmentKey<T> key) {
+            return current.exchange.getAttachment(key);
+        }
+
+        @Override
+        public <T> List<T> getAttachmentList(AttachmentKey<? extends List<T>> key) {
+            return current.exchange.getAttachmentList(key);
+        }
+
+        @Override
+        public <T> T putAttachment(AttachmentKey<T> key, T value) {
+            return current.exchange.putAttachment(key, value);
+        }
+
+        @Override
+        public <T> T removeAttachment(AttachmentKey<T> key) {
+            return current.exchange.removeAttachment(key);
+        }
+
+        @Override
+        public <T> void addToAttachmentList(AttachmentKey<AttachmentList<T>> key, T value) {
+            current.exchange.addToAttachmentList(key, value);
+        }
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import io.undertow.UndertowLogger;
+import io.undertow.client.ClientCallback;
+import io.undertow.client.ClientConnection;
+import io.undertow.client.ClientExchange;
+import io.undertow.client.ClientRequest;
+import io.undertow.client.ClientStatistics;
+import io.undertow.client.UndertowClient;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.protocols.http2.Http2Channel;
+import io.undertow.protocols.http2.Http2StreamSinkChannel;
+import io.undertow.protocols.ssl.UndertowXnioSsl;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ConnectionPoolManager;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.server.handlers.proxy.ProxyConnectionPool.AvailabilityType;
+import org.xnio.ChannelListener;
+import org.xnio.Option;
+import org.xnio.OptionMap;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioExecutor;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.channels.StreamSinkChannel;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.ssl.XnioSsl;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.xnio.IoUtils.safeClose;
+
+/**
+ * Multiplexed (HTTP/2) connections to a host. Each IO thread keeps up to maxConnections connections and sends
+ * up to maxStreams concurrent requests (streams) through each of them. The requests beyond that wait for a
+ * stream, up to the max queue size of the host per IO thread.
+ *
+ * The open streams are the open connections of the host (see {@link ExtendedLoadBalancingProxyClient.Host#getOpenConnection()}),
+ * so the least-connection host selectors compare in-flight requests whatever the protocol of the pool.
+ */
+class MultiplexedConnectionPool implements Closeable {
+
+    private final ConnectionPoolManager manager;
+    private final InetSocketAddress bindAddress;
+    private final URI connectUri;
+    private final String targetPath;
+    private final XnioSsl ssl;
+    private final UndertowClient client;
+    private final OptionMap options;
+    private final int maxConnections;
+    private final int maxStreams;
+
+    private final ConcurrentMap<XnioIoThread, ThreadData> threadData = new ConcurrentHashMap<>();
+    private final AtomicInteger openStreams = new AtomicInteger(0);
+    private final LongAdder closedRequests = new LongAdder();
+    private final LongAdder closedRead = new LongAdder();
+    private final LongAdder closedWritten = new LongAdder();
+
+    private volatile boolean closed = false;
+    private volatile long problemSince = 0L;
+
+    MultiplexedConnectionPool(final ConnectionPoolManager manager, final InetSocketAddress bindAddress, final URI uri,
+                              final UpstreamProtocol protocol, final XnioSsl ssl, final UndertowClient client,
+                              final OptionMap options, int maxConnections, int maxStreams) {
+        this.manager = manager;
+        this.bindAddress = bindAddress;
+        this.connectUri = protocol.connectUri(uri);
+        this.targetPath = uri.getPath() == null || uri.getPath().isEmpty() ? "/" : uri.getPath();
+        this.ssl = ssl == null && protocol == UpstreamProtocol.H2 ? DefaultSsl.INSTANCE : ssl;
+        this.client = client;
+        this.options = options;
+        this.maxConnections = Math.max(maxConnections, 1);
+        this.maxStreams = Math.max(maxStreams, 1);
+    }
+
+    public void connect(final HttpServerExchange exchange, final ProxyCallback<ProxyConnection> callback, long timeout, TimeUnit timeUnit) {
+        if (closed) {
+            callback.failed(exchange);
+            return;
+        }
+        final ThreadData data = getData(exchange.getIoThread());
+        final Connection connection = data.leastLoaded();
+        if (connection != null) {
+            ready(data, connection, exchange, callback);
+            return;
+        }
+        if (data.waiters.size() >= data.connecting * maxStreams && data.connections.size() + data.connecting < maxConnections) {
+            openConnection(data, exchange);
+        } else if (data.waiters.size() >= manager.getMaxQueueSize() + data.connecting * maxStreams) {
+            callback.queuedRequestFailed(exchange);
+            return;
+        }
+        final Waiter waiter = new Waiter(exchange, callback);
+        data.waiters.add(waiter);
+        if (timeout > 0L) {
+            waiter.timeoutKey = data.ioThread.executeAfter(() -> {
+                if (data.waiters.remove(waiter)) {
+                    callback.queuedRequestFailed(exchange);
+                }
+            }, timeout, timeUnit);
+        }
+    }
+
+    /**
+     * Availability of the host to the current IO thread.
+     */
+    public AvailabilityType available() {
+        if (closed) {
+            return AvailabilityType.CLOSED;
+        }
+        if (!manager.isAvailable() && System.nanoTime() - problemSince < TimeUnit.SECONDS.toNanos(manager.getProblemServerRetry())) {
+            return AvailabilityType.PROBLEM;
+        }
+        final Thread thread = Thread.currentThread();
+        final ThreadData data = thread instanceof XnioIoThread ? threadData.get(thread) : null;
+        if (data == null || data.leastLoaded() != null || data.connections.size() + data.connecting < maxConnections ||
+                data.waiters.size() < data.connecting * maxStreams) {
+            return AvailabilityType.AVAILABLE;
+        }
+        return data.waiters.size() < manager.getMaxQueueSize() + data.connecting * maxStreams ? AvailabilityType.FULL : AvailabilityType.FULL_QUEUE;
+    }
+
+    public int getOpenStreams() {
+        return openStreams.get();
+    }
+
+    public int getOpenConnections() {
+        int open = 0;
+        for (ThreadData data : threadData.values()) {
+            open += data.connections.size();
+        }
+        return open;
+    }
+
+    public ClientStatistics getClientStatistics() {
+        long requests = closedRequests.sum();
+        long read = closedRead.sum();
+        long written = closedWritten.sum();
+        for (ThreadData data : threadData.values()) {
+            for (Connection connection : data.connections) {
+                final ClientStatistics statistics = connection.clientConnection.getStatistics();
+                if (statistics != null) {
+                    requests += statistics.getRequests();
+                    read += statistics.getRead();
+                    written += statistics.getWritten();
+                }
+            }
+        }
+        final long totalRequests = requests;
+        final long totalRead = read;
+        final long totalWritten = written;
+        return new ClientStatistics() {
+            @Override
+            public long getRequests() {
+                return totalRequests;
+            }
+
+            @Override
+            public long getRead() {
+                return totalRead;
+            }
+
+            @Override
+            public long getWritten() {
+                return totalWritten;
+            }
+
+            @Override
+            public void reset() {
+                // snapshot
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        threadData.values().forEach(data -> data.ioThread.execute(() -> {
+            data.connections.forEach(connection -> safeClose(connection.clientConnection));
+            failWaiters(data);
+        }));
+    }
+
+    private ThreadData getData(final XnioIoThread ioThread) {
+        return threadData.computeIfAbsent(ioThread, ThreadData::new);
+    }
+
+    private void openConnection(final ThreadData data, final HttpServerExchange exchange) {
+        data.connecting++;
+        client.connect(new ClientCallback<ClientConnection>() {
+            @Override
+            public void completed(ClientConnection clientConnection) {
+                data.connecting--;
+                if (closed) {
+                    safeClose(clientConnection);
+                    failWaiters(data);
+                    return;
+                }
+                manager.clearError();
+                final Connection connection = new Connection(clientConnection);
+                data.connections.add(connection);
+                clientConnection.addCloseListener(closedConnection -> {
+                    data.connections.remove(connection);
+                    final ClientStatistics statistics = closedConnection.getStatistics();
+                    if (statistics != null) {
+                        closedRequests.add(statistics.getRequests());
+                        closedRead.add(statistics.getRead());
+                        closedWritten.add(statistics.getWritten());
+                    }
+                });
+                dispatch(data);
+                if (connection.streams == 0) {
+                    scheduleIdleTimeout(connection);
+                }
+            }
+
+            @Override
+            public void failed(IOException e) {
+                data.connecting--;
+                UndertowLogger.REQUEST_LOGGER.debug("Failed to connect to " + connectUri, e);
+                problemSince = System.nanoTime();
+                manager.handleError();
+                if (data.connecting == 0 && data.leastLoaded() == null) {
+                    failWaiters(data);
+                }
+            }
+        }, bindAddress, connectUri, data.ioThread, ssl, exchange.getConnection().getByteBufferPool(), options);
+    }
+
+    private void dispatch(final ThreadData data) {
+        Connection connection;
+        while (!data.waiters.isEmpty() && (connection = data.leastLoaded()) != null) {
+            final Waiter waiter = data.waiters.poll();
+            if (waiter.timeoutKey != null) {
+                waiter.timeoutKey.remove();
+            }
+            ready(data, connection, waiter.exchange, waiter.callback);
+        }
+    }
+
+    private void failWaiters(final ThreadData data) {
+        Waiter waiter;
+        while ((waiter = data.waiters.poll()) != null) {
+            if (waiter.timeoutKey != null) {
+                waiter.timeoutKey.remove();
+            }
+            waiter.callback.failed(waiter.exchange);
+        }
+    }
+
+    private void ready(final ThreadData data, final Connection connection, final HttpServerExchange exchange,
+                       final ProxyCallback<ProxyConnection> callback) {
+        connection.streams++;
+        openStreams.incrementAndGet();
+        final Stream stream = new Stream(data, connection);
+        exchange.addExchangeCompleteListener((completed, nextListener) -> {
+            try {
+                stream.release();
+            } finally {
+                nextListener.proceed();
+            }
+        });
+        callback.completed(exchange, new ProxyConnection(stream, targetPath));
+    }
+
+    private void release(final ThreadData data, final Connection connection) {
+        connection.streams--;
+        openStreams.decrementAndGet();
+        if (connection.streams == 0) {
+            connection.idleSince = System.nanoTime();
+            scheduleIdleTimeout(connection);
+        }
+        dispatch(data);
+    }
+
+    /**
+     * Idle connections (without streams) are closed after the ttl of the host, as the HTTP/1.1 pooled connections.
+     */
+    private void scheduleIdleTimeout(final Connection connection) {
+        final long ttl = manager.getTtl();
+        if (ttl <= 0L || connection.idleTimeoutScheduled) {
+            return;
+        }
+        connection.idleTimeoutScheduled = true;
+        connection.clientConnection.getIoThread().executeAfter(() -> {
+            connection.idleTimeoutScheduled = false;
+            if (connection.streams > 0) {
+                return;
+            }
+            final long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connection.idleSince);
+            if (idle >= ttl) {
+                safeClose(connection.clientConnection);
+            } else {
+                scheduleIdleTimeout(connection);
+            }
+        }, ttl, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Connections and waiting requests of an IO thread. Only the IO thread changes them.
+     */
+    private final class ThreadData {
+        private final XnioIoThread ioThread;
+        private final List<Connection> connections = new CopyOnWriteArrayList<>();
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int connecting = 0;
+
+        private ThreadData(final XnioIoThread ioThread) {
+            this.ioThread = ioThread;
+        }
+
+        private Connection leastLoaded() {
+            Connection leastLoaded = null;
+            for (Connection connection : connections) {
+                if (connection.clientConnection.isOpen() && connection.streams < maxStreams &&
+                        (leastLoaded == null || connection.streams < leastLoaded.streams)) {
+                    leastLoaded = connection;
+                }
+            }
+            return leastLoaded;
+        }
+    }
+
+    private static final class Connection {
+        private final ClientConnection clientConnection;
+        private int streams = 0;
+        private long idleSince = System.nanoTime();
+        private boolean idleTimeoutScheduled = false;
+
+        private Connection(final ClientConnection clientConnection) {
+            this.clientConnection = clientConnection;
+        }
+    }
+
+    /**
+     * Connection given to the ProxyHandler for one request. The HTTP/2 connection is shared by the other streams,
+     * so closing it (a max request time, an IO error or a discarded hedge) resets only the stream of the request
+     * and releases its slot.
+     */
+    private final class Stream implements ClientConnection {
+        private final ThreadData data;
+        private final Connection connection;
+        private ClientExchange clientExchange = null;
+        private boolean closed = false;
+        private boolean released = false;
+
+        private Stream(final ThreadData data, final Connection connection) {
+            this.data = data;
+            this.connection = connection;
+        }
+
+        private void release() {
+            if (Thread.currentThread() != data.ioThread) {
+                data.ioThread.execute(this::release);
+                return;
+            }
+            if (!released) {
+                released = true;
+                MultiplexedConnectionPool.this.release(data, connection);
+            }
+        }
+
+        @Override
+        public void sendRequest(final ClientRequest request, final ClientCallback<ClientExchange> clientCallback) {
+            if (closed) {
+                clientCallback.failed(new ClosedChannelException());
+                return;
+            }
+            connection.clientConnection.sendRequest(request, new ClientCallback<ClientExchange>() {
+                @Override
+                public void completed(ClientExchange result) {
+                    clientExchange = result;
+                    clientCallback.completed(result);
+                }
+
+                @Override
+                public void failed(IOException e) {
+                    clientCallback.failed(e);
+                }
+            });
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (clientExchange != null) {
+                final StreamSourceChannel responseChannel = clientExchange.getResponseChannel();
+                final StreamSinkChannel requestChannel = clientExchange.getRequestChannel();
+                if (responseChannel != null) {
+                    // forcibly closing the response resets the stream
+                    safeClose(responseChannel);
+                } else if (requestChannel instanceof Http2StreamSinkChannel) {
+                    final Http2StreamSinkChannel streamSinkChannel = (Http2StreamSinkChannel) requestChannel;
+                    streamSinkChannel.getChannel().sendRstStream(streamSinkChannel.getStreamId(), Http2Channel.ERROR_CANCEL);
+                } else {
+                    safeClose(requestChannel);
+                }
+            }
+            release();
+        }
+
+        @Override
+        public StreamConnection performUpgrade() throws IOException {
+            throw new IOException("HTTP/2 streams can not be upgraded");
+        }
+
+        @Override
+        public ByteBufferPool getBufferPool() {
+            return connection.clientConnection.getBufferPool();
+        }
+
+        @Override
+        public SocketAddress getPeerAddress() {
+            return connection.clientConnection.getPeerAddress();
+        }
+
+        @Override
+        public <A extends SocketAddress> A getPeerAddress(Class<A> type) {
+            return connection.clientConnection.getPeerAddress(type);
+        }
+
+        @Override
+        public ChannelListener.Setter<? extends ClientConnection> getCloseSetter() {
+            return connection.clientConnection.getCloseSetter();
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return connection.clientConnection.getLocalAddress();
+        }
+
+        @Override
+        public <A extends SocketAddress> A getLocalAddress(Class<A> type) {
+            return connection.clientConnection.getLocalAddress(type);
+        }
+
+        @Override
+        public XnioWorker getWorker() {
+            return connection.clientConnection.getWorker();
+        }
+
+        @Override
+        public XnioIoThread getIoThread() {
+            return connection.clientConnection.getIoThread();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed && connection.clientConnection.isOpen();
+        }
+
+        @Override
+        public boolean supportsOption(Option<?> option) {
+            return connection.clientConnection.supportsOption(option);
+        }
+
+        @Override
+        public <T> T getOption(Option<T> option) throws IOException {
+            return connection.clientConnection.getOption(option);
+        }
+
+        @Override
+        public <T> T setOption(Option<T> option, T value) throws IllegalArgumentException, IOException {
+            return connection.clientConnection.setOption(option, value);
+        }
+
+        @Override
+        public boolean isUpgraded() {
+            return connection.clientConnection.isUpgraded();
+        }
+
+        @Override
+        public boolean isPushSupported() {
+            return connection.clientConnection.isPushSupported();
+        }
+
+        @Override
+        public boolean isMultiplexingSupported() {
+            return connection.clientConnection.isMultiplexingSupported();
+        }
+
+        @Override
+        public ClientStatistics getStatistics() {
+            return connection.clientConnection.getStatistics();
+        }
+
+        @Override
+        public boolean isUpgradeSupported() {
+            return false;
+        }
+
+        @Override
+        public void addCloseListener(ChannelListener<ClientConnection> listener) {
+            connection.clientConnection.addCloseListener(listener);
+        }
+    }
+
+    /**
+     * TLS of the h2 targets added without an XnioSsl: the default SSLContext of the JVM.
+     */
+    private static final class DefaultSsl {
+        private static final XnioSsl INSTANCE;
+
+        static {
+            try {
+                INSTANCE = new UndertowXnioSsl(Xnio.getInstance(), OptionMap.EMPTY, SSLContext.getDefault());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final HttpServerExchange exchange;
+        private final ProxyCallback<ProxyConnection> callback;
+        private XnioExecutor.Key timeoutKey;
+
+        private Waiter(final HttpServerExchange exchange, final ProxyCallback<ProxyConnection> callback) {
+            this.exchange = exchange;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.undertow.util.AttachmentKey;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passive outlier detection of the targets of a pool, fed by the completed exchanges.
+ *
+ * A target is ejected after consecutive 5xx responses or consecutive responses much slower than the
+ * pool average. The ejection time doubles at each new ejection (exponential back-off) and never more
+ * than a percentage of the pool is ejected at the same time.
+ */
+public class OutlierDetector {
+
+    public static final AttachmentKey<Boolean> EJECTED = AttachmentKey.create(Boolean.class);
+
+    private static final AtomicLong EJECTIONS = new AtomicLong(0L);
+
+    private static final double POOL_LATENCY_ALPHA = 0.05;
+
+    private final Log logger = LogFactory.getLog(this.getClass());
+
+    private final int consecutive5xx;
+    private final int consecutiveSlow;
+    private final double latencyFactor;
+    private final long baseEjectionTime;
+    private final long maxEjectionTime;
+    private final int maxEjectionPercent;
+
+    private final AtomicLong poolLatencyBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+    public OutlierDetector() {
+        this(Integer.parseInt(SystemEnv.OUTLIER_CONSECUTIVE_5XX.getValue()),
+             Integer.parseInt(SystemEnv.OUTLIER_CONSECUTIVE_SLOW.getValue()),
+             Double.parseDouble(SystemEnv.OUTLIER_LATENCY_FACTOR.getValue()),
+             Long.parseLong(SystemEnv.OUTLIER_BASE_EJECTION_TIME.getValue()),
+             Long.parseLong(SystemEnv.OUTLIER_MAX_EJECTION_TIME.getValue()),
+             Integer.parseInt(SystemEnv.OUTLIER_MAX_EJECTION_PERCENT.getValue()));
+    }
+
+    public OutlierDetector(int consecutive5xx,
+                           int consecutiveSlow,
+                           double latencyFactor,
+                           long baseEjectionTimeMs,
+                           long maxEjectionTimeMs,
+                           int maxEjectionPercent) {
+        this.consecutive5xx = consecutive5xx;
+        this.consecutiveSlow = consecutiveSlow;
+        this.latencyFactor = latencyFactor;
+        this.baseEjectionTime = TimeUnit.MILLISECONDS.toNanos(baseEjectionTimeMs);
+        this.maxEjectionTime = TimeUnit.MILLISECONDS.toNanos(maxEjectionTimeMs);
+        this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    public static long getEjections() {
+        return EJECTIONS.get();
+    }
+
+    public boolean isEjected(final Host host) {
+        final long ejectedUntil = host.getOutlierStatus().ejectedUntil;
+        return ejectedUntil != 0L && System.nanoTime() - ejectedUntil < 0L;
+    }
+
+    public boolean isEjected(final Host host, long now) {
+        final long ejectedUntil = host.getOutlierStatus().ejectedUntil;
+        return ejectedUntil != 0L && now - ejectedUntil < 0L;
+    }
+
+    /**
+     * Registers a response of the host. Returns true if the host was ejected.
+     *
+     * @param responseTime response time (ns) or a negative value, if unknown
+     */
+    public boolean onResponse(final Host[] hosts, final Host host, int statusCode, long responseTime, long now) {
+        final Status status = host.getOutlierStatus();
+        boolean isOutlier = false;
+        if (consecutive5xx > 0) {
+            if (statusCode >= 500) {
+                isOutlier = status.consecutive5xx.incrementAndGet() >= consecutive5xx;
+            } else if (status.consecutive5xx.get() != 0) {
+                status.consecutive5xx.set(0);
+            }
+        }
+        if (latencyFactor > 0.0 && responseTime >= 0L) {
+            final double poolLatency = updatePoolLatency(responseTime, latencyFactor);
+            if (poolLatency > 0.0 && responseTime > poolLatency * latencyFactor) {
+                isOutlier |= status.consecutiveSlow.incrementAndGet() >= consecutiveSlow;
+            } else if (status.consecutiveSlow.get() != 0) {
+                status.consecutiveSlow.set(0);
+            }
+        }
+        return isOutlier && eject(hosts, host, now);
+    }
+
+    private synchronized boolean eject(final Host[] hosts, final Host host, long now) {
+        final Status status = host.getOutlierStatus();
+        status.consecutive5xx.set(0);
+        status.consecutiveSlow.set(0);
+        if (isEjected(host, now)) {
+            return false;
+        }
+        int ejected = 0;
+        for (Host other : hosts) {
+            if (isEjected(other, now)) {
+                ejected++;
+            }
+        }
+        if (ejected >= hosts.length * maxEjectionPercent / 100) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Host " + host.getUri() + " is an outlier, but " + ejected + " host(s) are already ejected");
+            }
+            return false;
+        }
+        if (status.ejectedUntil != 0L && now - status.ejectedUntil > maxEjectionTime) {
+            status.ejections = 0;
+        }
+        status.ejections++;
+        final long ejectionTime = Math.min(baseEjectionTime << Math.min(status.ejections - 1, 30), maxEjectionTime);
+        status.ejectedUntil = (now + ejectionTime) != 0L ? now + ejectionTime : 1L;
+        host.slowStartBegin = status.ejectedUntil;
+        EJECTIONS.incrementAndGet();
+        logger.warn("Host " + host.getUri() + " ejected for " + TimeUnit.NANOSECONDS.toMillis(ejectionTime) + " ms (outlier)");
+        return true;
+    }
+
+    /**
+     * Updates the pool average and returns the previous value. A slow sample counts as latencyFactor times the
+     * average, so outliers do not hide themselves, but the average still follows a slowdown of the whole pool.
+     */
+    private double updatePoolLatency(long responseTime, double latencyFactor) {
+        while (true) {
+            final long currentBits = poolLatencyBits.get();
+            final double current = Double.longBitsToDouble(currentBits);
+            final double sample = current == 0.0 ? responseTime : Math.min(responseTime, current * latencyFactor);
+            final double next = current + POOL_LATENCY_ALPHA * (sample - current);
+            if (poolLatencyBits.compareAndSet(currentBits, Double.doubleToRawLongBits(next))) {
+                return current;
+            }
+        }
+    }
+
+    public static class Status {
+        private final AtomicInteger consecutive5xx = new AtomicInteger(0);
+        private final AtomicInteger consecutiveSlow = new AtomicInteger(0);
+        private volatile long ejectedUntil = 0L;
+        private int ejections = 0;
+
+        public boolean isEjected() {
+            final long until = ejectedUntil;
+            return until != 0L && System.nanoTime() - until < 0L;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import io.galeb.core.enums.SystemEnv;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Peak exponentially weighted moving average of a target latency (nanoseconds).
+ *
+ * A sample above the average replaces it at once (peak), a lower sample is merged with a weight that
+ * depends on the time since the last update, and without samples the average decays to zero, so
+ * an idle target is tried again. Lock-free: the cost is updated by CAS and the timestamp is
+ * best effort.
+ */
+public class PeakEwma {
+
+    private static final double DECAY_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(SystemEnv.PEAK_EWMA_DECAY_TIME.getValue()));
+
+    private final AtomicLong costBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private volatile long stamp = System.nanoTime();
+
+    public void observe(long rtt) {
+        observe(rtt, System.nanoTime());
+    }
+
+    public void observe(long rtt, long now) {
+        while (true) {
+            final long currentBits = costBits.get();
+            final double current = Double.longBitsToDouble(currentBits);
+            final double next;
+            if (rtt > current) {
+                next = rtt;
+            } else {
+                final double weight = weight(now);
+                next = current * weight + rtt * (1.0 - weight);
+            }
+            if (costBits.compareAndSet(currentBits, Double.doubleToRawLongBits(next))) {
+                stamp = now;
+                return;
+            }
+        }
+    }
+
+    public double get() {
+        return get(System.nanoTime());
+    }
+
+    public double get(long now) {
+        return Double.longBitsToDouble(costBits.get()) * weight(now);
+    }
+
+    private double weight(long now) {
+        return Math.exp(-Math.max(now - stamp, 0L) / DECAY_NANOS);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.client;
+
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.ResponseCodeOnError;
+import io.galeb.router.metrics.LatencyHistogram;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyClient.ProxyTarget;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import org.xnio.XnioExecutor;
+import org.xnio.XnioIoThread;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Requests of a pool waiting for a connection while all the targets are full.
+ *
+ * The connections of a target belong to an IO thread, so there is one queue per IO thread, only touched by
+ * that thread. A queue is drained when a request of the pool completes on its thread. The head is dropped
+ * by {@link CoDel} or when its deadline passed; otherwise it is dispatched while a target is available.
+ * A request whose exchange ends while it waits (e.g. cancelled by POOL_MAX_REQUEST_TIME) leaves the queue.
+ */
+public class PoolWaitQueue {
+
+    private final int maxSize;
+    private final long target;
+    private final long interval;
+    private final Map<XnioIoThread, ThreadQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger depth = new AtomicInteger(0);
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LatencyHistogram sojourn = new LatencyHistogram();
+
+    private volatile Dispatcher dispatcher;
+
+    public interface Dispatcher {
+        boolean hasAvailableHost();
+        void dispatch(ProxyTarget target, HttpServerExchange exchange, ProxyCallback<ProxyConnection> callback, long timeout, TimeUnit timeUnit);
+    }
+
+    public PoolWaitQueue(int maxSize) {
+        this(maxSize,
+             TimeUnit.MILLISECONDS.toNanos(Long.parseLong(SystemEnv.POOL_QUEUE_TARGET.getValue())),
+             TimeUnit.MILLISECONDS.toNanos(Long.parseLong(SystemEnv.POOL_QUEUE_INTERVAL.getValue())));
+    }
+
+    public PoolWaitQueue(int maxSize, long target, long interval) {
+        this.maxSize = maxSize;
+        this.target = target;
+        this.interval = interval;
+    }
+
+    PoolWaitQueue setDispatcher(final Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * Queues the request. Must be called on the IO thread of the exchange. Returns false if the queue is full.
+     *
+     * @param deadline nanoTime after which the request can no longer succeed, or Long.MAX_VALUE
+     */
+    public boolean offer(ProxyTarget proxyTarget, HttpServerExchange exchange, ProxyCallback<ProxyConnection> callback,
+                         long timeout, TimeUnit timeUnit, long deadline) {
+        final XnioIoThread ioThread = exchange.getIoThread();
+        final ThreadQueue queue = queues.computeIfAbsent(ioThread, t -> new ThreadQueue());
+        if (queue.waiters.size() >= maxSize) {
+            return false;
+        }
+        final long now = System.nanoTime();
+        final Waiter waiter = new Waiter(proxyTarget, exchange, callback, timeout, timeUnit, now, deadline);
+        queue.waiters.add(waiter);
+        depth.incrementAndGet();
+        if (deadline != Long.MAX_VALUE) {
+            waiter.timeoutKey = ioThread.executeAfter(() -> expire(queue, waiter), Math.max(deadline - now, 0L), TimeUnit.NANOSECONDS);
+        }
+        exchange.addExchangeCompleteListener((completed, nextListener) -> {
+            if (!waiter.done) {
+                leave(waiter, System.nanoTime() - waiter.enqueued);
+                // otherwise it is skipped (and removed) by the next drain
+                if (Thread.currentThread() == ioThread) {
+                    queue.waiters.remove(waiter);
+                }
+            }
+            nextListener.proceed();
+        });
+        return true;
+    }
+
+    /**
+     * A connection of the pool may be free on the thread: drains its queue after the current task.
+     */
+    public void signal(final XnioIoThread ioThread) {
+        final ThreadQueue queue = ioThread != null ? queues.get(ioThread) : null;
+        if (queue != null && !queue.waiters.isEmpty()) {
+            ioThread.execute(() -> drain(queue));
+        }
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Sojourn time (microseconds) of the requests that left the queue.
+     */
+    public LatencyHistogram getSojourn() {
+        return sojourn;
+    }
+
+    private void drain(final ThreadQueue queue) {
+        final Dispatcher dispatcher = this.dispatcher;
+        Waiter waiter;
+        while ((waiter = queue.waiters.peek()) != null) {
+            if (waiter.done) {
+                queue.waiters.poll();
+                continue;
+            }
+            final long now = System.nanoTime();
+            final long waited = now - waiter.enqueued;
+            if (now - waiter.deadline >= 0L) {
+                queue.waiters.poll();
+                fail(waiter, waited, ResponseCodeOnError.DEADLINE_EXCEEDED, expired);
+                continue;
+            }
+            if (queue.coDel.shouldDrop(waited, now)) {
+                queue.waiters.poll();
+                fail(waiter, waited, ResponseCodeOnError.POOL_QUEUE_DROPPED, dropped);
+                continue;
+            }
+            if (dispatcher == null || !dispatcher.hasAvailableHost()) {
+                return;
+            }
+            queue.waiters.poll();
+            leave(waiter, waited);
+            dispatcher.dispatch(waiter.proxyTarget, waiter.exchange, waiter.callback, remaining(waiter, now), waiter.timeUnit);
+        }
+    }
+
+    private void expire(final ThreadQueue queue, final Waiter waiter) {
+        if (!waiter.done) {
+            fail(waiter, System.nanoTime() - waiter.enqueued, ResponseCodeOnError.DEADLINE_EXCEEDED, expired);
+        }
+        // the waiter is skipped (and removed) by the next drain
+        if (queue.waiters.peek() == waiter) {
+            queue.waiters.poll();
+        }
+    }
+
+    private void fail(final Waiter waiter, long waited, final ResponseCodeOnError error, final LongAdder counter) {
+        leave(waiter, waited);
+        counter.increment();
+        waiter.exchange.getResponseHeaders().add(ResponseCodeOnError.Header.X_GALEB_ERROR, error.getMessage());
+        waiter.callback.queuedRequestFailed(waiter.exchange);
+    }
+
+    private void leave(final Waiter waiter, long waited) {
+        waiter.done = true;
+        if (waiter.timeoutKey != null) {
+            waiter.timeoutKey.remove();
+        }
+        depth.decrementAndGet();
+        sojourn.record(TimeUnit.NANOSECONDS.toMicros(waited));
+    }
+
+    private long remaining(final Waiter waiter, long now) {
+        if (waiter.timeout <= 0L) {
+            return waiter.timeout;
+        }
+        final long elapsed = waiter.timeUnit.convert(now - waiter.enqueued, TimeUnit.NANOSECONDS);
+        return Math.max(waiter.timeout - elapsed, 1L);
+    }
+
+    private class ThreadQueue {
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private final CoDel coDel = new CoDel(target, interval, System.nanoTime());
+    }
+
+    private static class Waiter {
+        private final ProxyTarget proxyTarget;
+        private final HttpServerExchange exchange;
+        private final ProxyCallback<ProxyConnection> callback;
+        private final long timeout;
+        private final TimeUnit timeUnit;
+        private final long enqueued;
+        private final long deadline;
+        private XnioExecutor.Key timeoutKey = null;
+        private boolean done = false;
+
+        private Waiter(ProxyTarget proxyTarget, HttpServerExchange exchange, ProxyCallback<ProxyConnection> callback,
+                       long timeout, TimeUnit timeUnit, long enqueued, long deadline) {
+            this.proxyTarget = proxyTarget;
+            this.exchange = exchange;
+            this.callback = callback;
+            this.timeout = timeout;
+            this.timeUnit = timeUnit;
+            this.enqueued = enqueued;
+            this.deadline = deadline;
+        }
+    }
+}
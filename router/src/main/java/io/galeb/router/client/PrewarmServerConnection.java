@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.HttpUpgradeListener;
+import io.undertow.server.SSLSessionInfo;
+import io.undertow.server.ServerConnection;
+import io.undertow.server.XnioBufferPoolAdaptor;
+import org.xnio.ChannelListener;
+import org.xnio.Option;
+import org.xnio.OptionMap;
+import org.xnio.Pool;
+import org.xnio.StreamConnection;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.channels.ConnectedChannel;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+import org.xnio.conduits.EmptyStreamSourceConduit;
+import org.xnio.conduits.NullStreamSinkConduit;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Server side of the exchanges used to pre-warm the connection pools. ProxyConnectionPool only opens
+ * connections for an exchange: it needs its IO thread and buffer pool, and it takes the connections back
+ * when the exchange completes. Nothing is ever read from it, and the (empty) response is discarded.
+ * Upgrades, CONNECT and 100-continue are not supported, so the methods serving them are never called.
+ */
+class PrewarmServerConnection extends ServerConnection {
+
+    private final XnioIoThread ioThread;
+    private final ByteBufferPool bufferPool;
+
+    PrewarmServerConnection(final XnioIoThread ioThread, final ByteBufferPool bufferPool) {
+        this.ioThread = ioThread;
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Pool<ByteBuffer> getBufferPool() {
+        return new XnioBufferPoolAdaptor(bufferPool);
+    }
+
+    @Override
+    public ByteBufferPool getByteBufferPool() {
+        return bufferPool;
+    }
+
+    @Override
+    public XnioWorker getWorker() {
+        return ioThread.getWorker();
+    }
+
+    @Override
+    public XnioIoThread getIoThread() {
+        return ioThread;
+    }
+
+    /**
+     * Only used for 100-continue, which is not supported (see {@link #isContinueResponseSupported()}).
+     */
+    @Override
+    public HttpServerExchange sendOutOfBandResponse(HttpServerExchange exchange) {
+        throw new UnsupportedOperationException("100-continue is not supported by the pre-warm connection");
+    }
+
+    @Override
+    public boolean isContinueResponseSupported() {
+        return false;
+    }
+
+    @Override
+    public void terminateRequestChannel(HttpServerExchange exchange) {
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsOption(Option<?> option) {
+        return false;
+    }
+
+    @Override
+    public <T> T getOption(Option<T> option) {
+        return null;
+    }
+
+    @Override
+    public <T> T setOption(Option<T> option, T value) throws IllegalArgumentException {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public ChannelListener.Setter<? extends ConnectedChannel> getCloseSetter() {
+        return new ChannelListener.SimpleSetter<>();
+    }
+
+    @Override
+    public SocketAddress getPeerAddress() {
+        return null;
+    }
+
+    @Override
+    public <A extends SocketAddress> A getPeerAddress(Class<A> type) {
+        return null;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public <A extends SocketAddress> A getLocalAddress(Class<A> type) {
+        return null;
+    }
+
+    @Override
+    public OptionMap getUndertowOptions() {
+        return OptionMap.EMPTY;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferPool.getBufferSize();
+    }
+
+    @Override
+    public SSLSessionInfo getSslSessionInfo() {
+        return null;
+    }
+
+    @Override
+    public void setSslSessionInfo(SSLSessionInfo sessionInfo) {
+    }
+
+    @Override
+    public void addCloseListener(CloseListener listener) {
+    }
+
+    /**
+     * Only used by upgrades and CONNECT, which are not supported (see {@link #isUpgradeSupported()}).
+     */
+    @Override
+    protected StreamConnection upgradeChannel() {
+        throw new UnsupportedOperationException("upgrade is not supported by the pre-warm connection");
+    }
+
+    @Override
+    protected ConduitStreamSinkChannel getSinkChannel() {
+        return new ConduitStreamSinkChannel(null, new NullStreamSinkConduit(ioThread));
+    }
+
+    @Override
+    protected ConduitStreamSourceChannel getSourceChannel() {
+        return new ConduitStreamSourceChannel(null, new EmptyStreamSourceConduit(ioThread));
+    }
+
+    @Override
+    protected StreamSinkConduit getSinkConduit(HttpServerExchange exchange, StreamSinkConduit conduit) {
+        return conduit;
+    }
+
+    @Override
+    protected boolean isUpgradeSupported() {
+        return false;
+    }
+
+    @Override
+    protected boolean isConnectSupported() {
+        return false;
+    }
+
+    @Override
+    protected void exchangeComplete(HttpServerExchange exchange) {
+    }
+
+    @Override
+    protected void setUpgradeListener(HttpUpgradeListener upgradeListener) {
+    }
+
+    @Override
+    protected void setConnectListener(HttpUpgradeListener connectListener) {
+    }
+
+    @Override
+    protected void maxEntitySizeUpdated(HttpServerExchange exchange) {
+    }
+
+    @Override
+    public String getTransportProtocol() {
+        return "prewarm";
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import io.galeb.core.enums.SystemEnv;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry budget of a pool: each request deposits a fraction of a retry and each retry (or hedged request)
+ * withdraws a whole one, so retries never exceed that fraction of the requests plus a small per second
+ * reserve. A failing pool stops being retried instead of receiving a multiple of its traffic.
+ */
+public class RetryBudget {
+
+    private static final long UNIT = 1000L;
+
+    // the balance never exceeds the retries funded by this many requests, so a long healthy period cannot pay for a storm
+    private static final long MAX_FUNDED_REQUESTS = 1000L;
+
+    private final long deposit;
+    private final long maxBalance;
+    private final int minPerSecond;
+
+    private final AtomicLong balance = new AtomicLong(0L);
+    private final AtomicLong reserve = new AtomicLong(0L); // second << 32 | used
+    private final AtomicLong retries = new AtomicLong(0L);
+    private final AtomicLong exhausted = new AtomicLong(0L);
+
+    public RetryBudget() {
+        this(Double.parseDouble(SystemEnv.POOL_RETRY_BUDGET_RATIO.getValue()),
+             Integer.parseInt(SystemEnv.POOL_RETRY_BUDGET_MIN_PER_SECOND.getValue()));
+    }
+
+    public RetryBudget(double ratio, int minPerSecond) {
+        this.deposit = Math.max(0L, Math.round(ratio * UNIT));
+        this.maxBalance = Math.max(UNIT, deposit * MAX_FUNDED_REQUESTS);
+        this.minPerSecond = Math.max(0, minPerSecond);
+    }
+
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    /**
+     * Registers a request of the pool.
+     */
+    public void deposit() {
+        if (deposit == 0L) return;
+        long current;
+        while ((current = balance.get()) < maxBalance) {
+            if (balance.compareAndSet(current, Math.min(current + deposit, maxBalance))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns true if a retry is allowed, and charges it.
+     */
+    public boolean tryWithdraw(long now) {
+        long current;
+        while ((current = balance.get()) >= UNIT) {
+            if (balance.compareAndSet(current, current - UNIT)) {
+                retries.incrementAndGet();
+                return true;
+            }
+        }
+        if (tryReserve(TimeUnit.NANOSECONDS.toSeconds(now))) {
+            retries.incrementAndGet();
+            return true;
+        }
+        exhausted.incrementAndGet();
+        return false;
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    private boolean tryReserve(long second) {
+        while (true) {
+            final long current = reserve.get();
+            final long used = (current >>> 32) == (second & 0xffffffffL) ? current & 0xffffffffL : 0L;
+            if (used >= minPerSecond) {
+                return false;
+            }
+            if (reserve.compareAndSet(current, ((second & 0xffffffffL) << 32) | (used + 1L))) {
+                return true;
+            }
+        }
+    }
+}
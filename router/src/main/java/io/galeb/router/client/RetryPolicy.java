@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.metrics.LatencyHistogram;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries of a pool beyond the connection failures: 502/503 responses of idempotent requests are retried
+ * on another target and slow GET/HEAD requests are hedged. Both are charged to the retry budget of the pool.
+ *
+ * Only requests without body qualify, so the request can be sent again without buffering it.
+ */
+public class RetryPolicy {
+
+    private static final double HEDGE_PERCENTILE = 95.0;
+    private static final long MIN_SAMPLES = 20L;
+    private static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(1L);
+
+    private final RetryBudget budget;
+    private final boolean retryOn5xx;
+    private final boolean hedge;
+    private final long minHedgeDelay;
+
+    private final AtomicLong hedged = new AtomicLong(0L);
+    private final AtomicLong retried = new AtomicLong(0L);
+    private final LatencyHistogram firstByte = new LatencyHistogram(); // us
+    private final AtomicLong samples = new AtomicLong(0L);
+    private final AtomicLong nextRefresh = new AtomicLong(System.nanoTime() + REFRESH_INTERVAL);
+    private volatile long hedgeDelay = 0L; // ns, 0 until the pool has enough samples
+
+    public RetryPolicy(final RetryBudget budget, boolean retryOn5xx, boolean hedge) {
+        this(budget, retryOn5xx, hedge, Long.parseLong(SystemEnv.POOL_HEDGE_MIN_DELAY.getValue()));
+    }
+
+    /**
+     * @param minHedgeDelayMs lower bound of the hedging delay (ms)
+     */
+    public RetryPolicy(final RetryBudget budget, boolean retryOn5xx, boolean hedge, long minHedgeDelayMs) {
+        this.budget = budget;
+        this.retryOn5xx = retryOn5xx;
+        this.hedge = hedge;
+        this.minHedgeDelay = TimeUnit.MILLISECONDS.toNanos(Math.max(minHedgeDelayMs, 1L));
+    }
+
+    public long getHedged() {
+        return hedged.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public boolean isEnabled() {
+        return retryOn5xx || hedge;
+    }
+
+    /**
+     * Returns true if the response of the request may be retried or hedged.
+     */
+    public boolean appliesTo(final HttpServerExchange exchange) {
+        if (!isEnabled()) return false;
+        final HttpString method = exchange.getRequestMethod();
+        final boolean hedgeable = Methods.GET.equals(method) || Methods.HEAD.equals(method);
+        if (!hedgeable && !(retryOn5xx && Methods.OPTIONS.equals(method))) return false;
+        final HeaderMap headers = exchange.getRequestHeaders();
+        final String contentLength = headers.getFirst(Headers.CONTENT_LENGTH);
+        return (contentLength == null || "0".equals(contentLength)) &&
+                !headers.contains(Headers.TRANSFER_ENCODING) && !headers.contains(Headers.EXPECT);
+    }
+
+    public boolean isRetriable(int statusCode) {
+        return retryOn5xx && (statusCode == 502 || statusCode == 503);
+    }
+
+    /**
+     * The delay (ns) after which a request without response is hedged, or 0 if it must not be hedged.
+     */
+    public long hedgeDelay(final HttpString method, long now) {
+        if (!hedge || !(Methods.GET.equals(method) || Methods.HEAD.equals(method))) return 0L;
+        // refreshed at most once per second, and only with enough samples (a quiet pool keeps accumulating them)
+        final long next = nextRefresh.get();
+        if (now - next >= 0L && samples.get() >= MIN_SAMPLES && nextRefresh.compareAndSet(next, now + REFRESH_INTERVAL)) {
+            samples.set(0L);
+            final LatencyHistogram.Snapshot interval = firstByte.interval();
+            hedgeDelay = Math.max(TimeUnit.MICROSECONDS.toNanos(interval.getValueAtPercentile(HEDGE_PERCENTILE)), minHedgeDelay);
+        }
+        return hedgeDelay;
+    }
+
+    /**
+     * Time (ns) from the request to the response headers of a target.
+     */
+    public void recordFirstByte(long time) {
+        firstByte.record(TimeUnit.NANOSECONDS.toMicros(time));
+        samples.incrementAndGet();
+    }
+
+    void hedged() {
+        hedged.incrementAndGet();
+    }
+
+    void retried() {
+        retried.incrementAndGet();
+    }
+}
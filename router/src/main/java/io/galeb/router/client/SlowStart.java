@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slow start of new or re-admitted targets: during the window, the effective weight of a host ramps
+ * from {@link #MIN_WEIGHT} to 1.0, linearly or exponentially. A host chosen by any HostSelector is
+ * admitted with a probability equal to its weight, otherwise the proxy client picks one of the other admitted
+ * hosts at random.
+ */
+public class SlowStart {
+
+    public static final SlowStart DISABLED = new SlowStart(0L, Mode.LINEAR);
+
+    public static final double MIN_WEIGHT = 0.1;
+
+    public enum Mode {
+        LINEAR,
+        EXPONENTIAL;
+
+        public static Mode fromString(String mode) {
+            return "exponential".equalsIgnoreCase(mode) ? EXPONENTIAL : LINEAR;
+        }
+    }
+
+    private final long window;
+    private final Mode mode;
+
+    public SlowStart(long windowMs, final Mode mode) {
+        this.window = TimeUnit.MILLISECONDS.toNanos(Math.max(windowMs, 0L));
+        this.mode = mode;
+    }
+
+    public boolean isEnabled() {
+        return window > 0L;
+    }
+
+    /**
+     * Effective weight of a host in slow start since {@code begin} (nanoTime).
+     */
+    public double weight(long begin, long now) {
+        final long elapsed = now - begin;
+        if (window <= 0L || elapsed >= window) {
+            return 1.0;
+        }
+        if (elapsed <= 0L) {
+            return MIN_WEIGHT;
+        }
+        final double progress = (double) elapsed / window;
+        if (mode == Mode.EXPONENTIAL) {
+            return Math.pow(MIN_WEIGHT, 1.0 - progress);
+        }
+        return MIN_WEIGHT + (1.0 - MIN_WEIGHT) * progress;
+    }
+
+    public static boolean admit(double weight) {
+        return weight >= 1.0 || ThreadLocalRandom.current().nextDouble() < weight;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Protocol of the connections to the targets. The HTTP/2 protocols replace the scheme of the target uri
+ * with the scheme of the Undertow client provider that speaks them.
+ */
+public enum UpstreamProtocol {
+    HTTP_1_1("http/1.1", null),
+    H2C("h2c", "h2c-prior"),
+    H2("h2", "h2");
+
+    private final String name;
+    private final String scheme;
+
+    UpstreamProtocol(String name, String scheme) {
+        this.name = name;
+        this.scheme = scheme;
+    }
+
+    public static UpstreamProtocol fromString(String protocol) {
+        for (UpstreamProtocol upstreamProtocol : values()) {
+            if (upstreamProtocol.name.equalsIgnoreCase(protocol)) {
+                return upstreamProtocol;
+            }
+        }
+        return HTTP_1_1;
+    }
+
+    public boolean isMultiplexed() {
+        return scheme != null;
+    }
+
+    /**
+     * The uri used to connect to the target.
+     */
+    public URI connectUri(final URI uri) {
+        if (scheme == null) {
+            return uri;
+        }
+        try {
+            return new URI(scheme, uri.getUserInfo(), uri.getHost(), uri.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client.hostselectors;
+
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Consistent hashing over a {@link ConsistentHashRing}, rebuilt only when the host array changes.
+ *
+ * With bounded loads enabled (see {@link SystemEnv#HASH_BOUNDED_LOAD}), a host whose open connections
+ * exceed (1 + factor) times the average is skipped and the key goes to the next host of the ring,
+ * so a hot key keeps its affinity without overloading a single target.
+ */
+public abstract class AbstractHashHostSelector extends ClientStatisticsMarker implements HostSelector {
+
+    private volatile ConsistentHashRing ring = null;
+
+    private double boundedLoadFactor = Double.parseDouble(SystemEnv.HASH_BOUNDED_LOAD.getValue());
+
+    @Override
+    public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
+        int pos = DEFAULT_POS;
+        if (availableHosts.length > 1) {
+            final ConsistentHashRing currentRing = ring(availableHosts);
+            int slot = currentRing.slot(getKey(exchange).hashCode());
+            pos = currentRing.host(slot);
+            if (boundedLoadFactor > 0.0) {
+                pos = boundedLoadPos(availableHosts, currentRing, slot, pos);
+            }
+        }
+        stamp(availableHosts[pos], exchange);
+        return pos;
+    }
+
+    public AbstractHashHostSelector setBoundedLoadFactor(double boundedLoadFactor) {
+        this.boundedLoadFactor = boundedLoadFactor;
+        return this;
+    }
+
+    protected abstract String getKey(final HttpServerExchange exchange);
+
+    private ConsistentHashRing ring(final Host[] availableHosts) {
+        ConsistentHashRing currentRing = ring;
+        if (currentRing == null || !currentRing.isBuiltFrom(availableHosts)) {
+            currentRing = ConsistentHashRing.build(availableHosts);
+            ring = currentRing;
+        }
+        return currentRing;
+    }
+
+    private int boundedLoadPos(final Host[] availableHosts, final ConsistentHashRing currentRing, int slot, int pos) {
+        long total = 1L;
+        for (Host host : availableHosts) {
+            total += host.getOpenConnection();
+        }
+        final double capacity = Math.ceil(total * (1.0 + boundedLoadFactor) / availableHosts.length);
+        int candidate = pos;
+        int lastChecked = -1;
+        for (int step = 0; step < currentRing.size(); step++) {
+            if (candidate != lastChecked) {
+                if (availableHosts[candidate].getOpenConnection() < capacity) {
+                    return candidate;
+                }
+                lastChecked = candidate;
+            }
+            slot = currentRing.nextSlot(slot);
+            candidate = currentRing.host(slot);
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client.hostselectors;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.google.common.hash.Hashing.murmur3_32;
+
+/**
+ * Maglev lookup table (Eisenbud et al., NSDI 2016) built from a host array.
+ *
+ * Each host fills the table following its own permutation, derived from the host URI, so the same
+ * backends produce the same table whatever their position and removing one host moves little more
+ * than its own share of keys. A lookup is a single array access.
+ */
+final class ConsistentHashRing {
+
+    /**
+     * Prime table size. It must not depend on the number of hosts, otherwise every key moves when a host changes.
+     */
+    static final int SIZE = 65537;
+
+    private static final char EMPTY = Character.MAX_VALUE;
+
+    private final Host[] hosts;
+    private final char[] table;
+
+    private ConsistentHashRing(final Host[] hosts, final char[] table) {
+        this.hosts = hosts;
+        this.table = table;
+    }
+
+    static ConsistentHashRing build(final Host[] hosts) {
+        final char[] table = new char[SIZE];
+        Arrays.fill(table, EMPTY);
+        if (hosts.length == 0 || hosts.length >= EMPTY) {
+            return new ConsistentHashRing(hosts, table);
+        }
+        final long[] offset = new long[hosts.length];
+        final long[] skip = new long[hosts.length];
+        final long[] next = new long[hosts.length];
+        for (int i = 0; i < hosts.length; i++) {
+            final String name = hosts[i].getUri().toString();
+            offset[i] = (murmur3_32(0).hashString(name, StandardCharsets.UTF_8).asInt() & Integer.MAX_VALUE) % SIZE;
+            skip[i] = (murmur3_32(1).hashString(name, StandardCharsets.UTF_8).asInt() & Integer.MAX_VALUE) % (SIZE - 1) + 1;
+        }
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < hosts.length; i++) {
+                int slot = (int) ((offset[i] + next[i] * skip[i]) % SIZE);
+                while (table[slot] != EMPTY) {
+                    next[i]++;
+                    slot = (int) ((offset[i] + next[i] * skip[i]) % SIZE);
+                }
+                table[slot] = (char) i;
+                next[i]++;
+                if (++filled == SIZE) {
+                    return new ConsistentHashRing(hosts, table);
+                }
+            }
+        }
+    }
+
+    boolean isBuiltFrom(final Host[] availableHosts) {
+        return hosts == availableHosts;
+    }
+
+    int slot(int hash) {
+        return (mix(hash) & Integer.MAX_VALUE) % table.length;
+    }
+
+    int host(int slot) {
+        final char pos = table[slot];
+        return pos != EMPTY ? pos : HostSelector.DEFAULT_POS;
+    }
+
+    int nextSlot(int slot) {
+        return slot + 1 < table.length ? slot + 1 : 0;
+    }
+
+    int size() {
+        return table.length;
+    }
+
+    /**
+     * Murmur3 finalizer, so that similar keys (i.e. IPs of the same network) fall far apart.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -17,27 +17,22 @@
 package io.galeb.router.client.hostselectors;
 
 import io.galeb.core.enums.SystemEnv;
-import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HeaderValues;
 
-import java.nio.charset.Charset;
+public class HashSourceIpHostSelector extends AbstractHashHostSelector {
 
-import static com.google.common.hash.Hashing.consistentHash;
-import static com.google.common.hash.Hashing.sipHash24;
-
-public class HashSourceIpHostSelector extends ClientStatisticsMarker implements HostSelector {
-
-    private final boolean ignoreXForwardedFor = Boolean.parseBoolean(SystemEnv.IGNORE_XFORWARDED_FOR.getValue());
+    private static final boolean IGNORE_XFORWARDED_FOR = Boolean.parseBoolean(SystemEnv.IGNORE_XFORWARDED_FOR.getValue());
 
     @Override
-    public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
-        int pos = consistentHash(sipHash24().hashString(getKey(exchange), Charset.defaultCharset()), availableHosts.length);
-        stamp(availableHosts[pos], exchange);
-        return pos;
+    protected String getKey(final HttpServerExchange exchange) {
+        return sourceIp(exchange);
     }
 
-    private String getKey(final HttpServerExchange exchange) {
+    /**
+     * The client address: X-Real-IP, the first X-Forwarded-For address or the peer address (see IGNORE_XFORWARDED_FOR).
+     */
+    public static String sourceIp(final HttpServerExchange exchange) {
         String aSourceIP;
         String defaultSourceIp = "127.0.0.1";
         String httpHeaderXrealIp = "X-Real-IP";
@@ -47,7 +42,7 @@ public class HashSourceIpHostSelector extends ClientStatisticsMarker implements
             return defaultSourceIp;
         }
 
-        if (ignoreXForwardedFor) {
+        if (IGNORE_XFORWARDED_FOR) {
             aSourceIP = exchange.getSourceAddress().getHostString();
         } else {
             final HeaderValues headerXrealIp = exchange.getRequestHeaders().get(httpHeaderXrealIp);
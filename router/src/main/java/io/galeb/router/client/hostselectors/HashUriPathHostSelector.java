@@ -16,24 +16,12 @@
 
 package io.galeb.router.client.hostselectors;
 
-import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
 import io.undertow.server.HttpServerExchange;
 
-import java.nio.charset.Charset;
-
-import static com.google.common.hash.Hashing.consistentHash;
-import static com.google.common.hash.Hashing.sipHash24;
-
-public class HashUriPathHostSelector extends ClientStatisticsMarker implements HostSelector {
+public class HashUriPathHostSelector extends AbstractHashHostSelector {
 
     @Override
-    public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
-        int pos = consistentHash(sipHash24().hashString(getKey(exchange), Charset.defaultCharset()), availableHosts.length);
-        stamp(availableHosts[pos], exchange);
-        return pos;
-    }
-
-    private String getKey(final HttpServerExchange exchange) {
+    protected String getKey(final HttpServerExchange exchange) {
         return exchange.getRelativePath();
     }
 
@@ -31,6 +31,9 @@ public class HostSelectorLookup {
     public static final HostSelectorLookup ROUNDROBIN       = new HostSelectorLookup("RoundRobin",      RoundRobinHostSelector.class);
     public static final HostSelectorLookup STRICT_LEASTCONN = new HostSelectorLookup("StrictLeastConn", StrictLeastConnHostSelector.class);
     public static final HostSelectorLookup LEASTCONN        = new HostSelectorLookup("LeastConn",       LeastConnWithRRHostSelector.class);
+    public static final HostSelectorLookup P2C_LEASTCONN    = new HostSelectorLookup("P2CLeastConn",    P2CLeastConnHostSelector.class);
+    public static final HostSelectorLookup PEAK_EWMA        = new HostSelectorLookup("PeakEwma",        PeakEwmaHostSelector.class);
+    public static final HostSelectorLookup WEIGHTED_RR      = new HostSelectorLookup("WeightedRoundRobin", WeightedRoundRobinHostSelector.class);
     public static final HostSelectorLookup HASH_SOURCEIP    = new HostSelectorLookup("HashSourceIp",    HashSourceIpHostSelector.class);
     public static final HostSelectorLookup HASH_URIPATH     = new HostSelectorLookup("HashUriPath",     HashUriPathHostSelector.class);
 
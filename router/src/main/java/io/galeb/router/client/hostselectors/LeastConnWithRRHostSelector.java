@@ -20,39 +20,36 @@ import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.AttachmentKey;
 
-import java.util.Comparator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Round robin over the ranks of the least loaded fraction (cutting line) of the hosts.
+ * Every request ranks the hosts again with a quickselect over a per thread array, so there is
+ * no lock, no allocation and no stale ranking: a request costs one atomic increment and an O(n) scan.
+ */
 public class LeastConnWithRRHostSelector extends ClientStatisticsMarker implements HostSelector {
 
     @SuppressWarnings("WeakerAccess")
     public static final AttachmentKey<Float> CUTTING_LINE_ATTACH = AttachmentKey.create(Float.class);
 
-    private ConcurrentLinkedQueue<Integer> leastConnList = null;
+    // open connections << 32 | position, reordered in place by the selection
+    private static final ThreadLocal<long[]> RANKING = ThreadLocal.withInitial(() -> new long[0]);
+
+    private final AtomicInteger cursor = new AtomicInteger(0);
 
-    private float cuttingLine = 0.666f;
+    private volatile float cuttingLine = 0.666f;
 
     @Override
     public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
-        if (leastConnList == null || leastConnList.isEmpty()) {
-            Float tempCuttingLine = exchange.getAttachment(CUTTING_LINE_ATTACH);
-            cuttingLine = tempCuttingLine != null ? tempCuttingLine : cuttingLine;
-
-            final long limit = (int) Math.ceil((float) availableHosts.length * cuttingLine);
-            leastConnList = convertToMapStream(availableHosts)
-                            .sorted(Comparator.comparing(e -> e.getValue().getOpenConnection()))
-                            .limit(limit)
-                            .map(Map.Entry::getKey)
-                            .collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
-        }
-        Integer pos = leastConnList.poll();
-        if (pos != null) {
-            stamp(availableHosts[pos], exchange);
-            return pos;
+        Float tempCuttingLine = exchange.getAttachment(CUTTING_LINE_ATTACH);
+        if (tempCuttingLine != null && tempCuttingLine != cuttingLine) {
+            cuttingLine = tempCuttingLine;
         }
-        return selectHost(availableHosts, exchange);
+        int limit = Math.max(1, (int) Math.ceil((float) availableHosts.length * cuttingLine));
+        int rank = (cursor.getAndIncrement() & Integer.MAX_VALUE) % Math.min(limit, availableHosts.length);
+        int pos = rankedPosition(availableHosts, rank);
+        stamp(availableHosts[pos], exchange);
+        return pos;
     }
 
     public float getCuttingLine() {
@@ -60,9 +57,45 @@ public class LeastConnWithRRHostSelector extends ClientStatisticsMarker implemen
     }
 
     // Test only
-    public synchronized void reset() {
-        if (leastConnList != null) {
-            leastConnList.clear();
+    public void reset() {
+        cursor.set(0);
+    }
+
+    /**
+     * Position of the host with the given rank by open connections (ties keep the host order).
+     */
+    private int rankedPosition(final Host[] availableHosts, int rank) {
+        long[] ranking = RANKING.get();
+        if (ranking.length < availableHosts.length) {
+            ranking = new long[availableHosts.length];
+            RANKING.set(ranking);
+        }
+        for (int i = 0; i < availableHosts.length; i++) {
+            ranking[i] = (long) availableHosts[i].getOpenConnection() << 32 | i;
+        }
+        int left = 0;
+        int right = availableHosts.length - 1;
+        while (left < right) {
+            final long pivot = ranking[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (ranking[i] < pivot) i++;
+                while (ranking[j] > pivot) j--;
+                if (i <= j) {
+                    final long swap = ranking[i];
+                    ranking[i++] = ranking[j];
+                    ranking[j--] = swap;
+                }
+            }
+            if (rank <= j) {
+                right = j;
+            } else if (rank >= i) {
+                left = i;
+            } else {
+                break;
+            }
         }
+        return (int) ranking[rank];
     }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client.hostselectors;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.undertow.server.HttpServerExchange;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency aware power of two choices: samples two distinct hosts and picks the one with the lower
+ * peak EWMA latency times (open connections + 1). The latency is fed by the proxy client when the
+ * exchange completes.
+ */
+public class PeakEwmaHostSelector extends ClientStatisticsMarker implements HostSelector {
+
+    @Override
+    public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
+        int pos = DEFAULT_POS;
+        if (availableHosts.length > 1) {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(availableHosts.length);
+            int second = random.nextInt(availableHosts.length - 1);
+            if (second >= first) {
+                second++;
+            }
+            pos = isBetter(availableHosts[second], availableHosts[first]) ? second : first;
+        }
+        stamp(availableHosts[pos], exchange);
+        return pos;
+    }
+
+    private boolean isBetter(final Host host, final Host other) {
+        int openConnection = host.getOpenConnection();
+        int otherOpenConnection = other.getOpenConnection();
+        double score = host.getPeakEwma().get() * (openConnection + 1);
+        double otherScore = other.getPeakEwma().get() * (otherOpenConnection + 1);
+        return score < otherScore || (score == otherScore && openConnection < otherOpenConnection);
+    }
+}
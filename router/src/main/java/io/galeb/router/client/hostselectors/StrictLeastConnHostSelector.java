@@ -19,18 +19,19 @@ package io.galeb.router.client.hostselectors;
 import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
 import io.undertow.server.HttpServerExchange;
 
-import java.util.Comparator;
-import java.util.Map;
-
 public class StrictLeastConnHostSelector extends ClientStatisticsMarker implements HostSelector {
 
     @Override
     public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
-        int pos = convertToMapStream(availableHosts)
-                .sorted(Comparator.comparing(e -> e.getValue().getOpenConnection()))
-                .findFirst()
-                .map(Map.Entry::getKey)
-                .orElse(DEFAULT_POS);
+        int pos = DEFAULT_POS;
+        int least = Integer.MAX_VALUE;
+        for (int i = 0; i < availableHosts.length; i++) {
+            int openConnection = availableHosts[i].getOpenConnection();
+            if (openConnection < least) {
+                least = openConnection;
+                pos = i;
+            }
+        }
         stamp(availableHosts[pos], exchange);
         return pos;
     }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.client.hostselectors;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.undertow.server.HttpServerExchange;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Smooth weighted round robin (as in nginx) over the host weights.
+ *
+ * The sequence is precomputed once per host array, so a request costs one atomic increment.
+ * Heavier hosts are interleaved with the others (i.e. weights 5,1,1 give a a b a c a a).
+ */
+public class WeightedRoundRobinHostSelector extends ClientStatisticsMarker implements HostSelector {
+
+    private static final int MAX_SCHEDULE_SIZE = 65536;
+
+    private final AtomicInteger currentHost = new AtomicInteger(0);
+
+    private volatile Schedule schedule = null;
+
+    @Override
+    public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
+        Schedule currentSchedule = schedule;
+        if (currentSchedule == null || currentSchedule.hosts != availableHosts) {
+            currentSchedule = new Schedule(availableHosts);
+            schedule = currentSchedule;
+        }
+        final int[] positions = currentSchedule.positions;
+        final int pos = positions[(currentHost.getAndIncrement() & Integer.MAX_VALUE) % positions.length];
+        stamp(availableHosts[pos], exchange);
+        return pos;
+    }
+
+    // Test only
+    public synchronized void reset() {
+        currentHost.set(0);
+    }
+
+    private static final class Schedule {
+        private final Host[] hosts;
+        private final int[] positions;
+
+        private Schedule(final Host[] hosts) {
+            this.hosts = hosts;
+            this.positions = smoothWeightedSequence(weights(hosts));
+        }
+
+        private static int[] weights(final Host[] hosts) {
+            final int[] weights = new int[hosts.length];
+            long total = 0L;
+            for (int i = 0; i < hosts.length; i++) {
+                weights[i] = Math.max(hosts[i].getWeight(), 1);
+                total += weights[i];
+            }
+            int gcd = 0;
+            for (int weight : weights) {
+                gcd = gcd(weight, gcd);
+            }
+            final double scale = total > MAX_SCHEDULE_SIZE ? (double) MAX_SCHEDULE_SIZE / total : 1.0;
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = Math.max((int) (weights[i] / gcd * scale), 1);
+            }
+            return weights;
+        }
+
+        private static int[] smoothWeightedSequence(final int[] weights) {
+            int total = 0;
+            for (int weight : weights) {
+                total += weight;
+            }
+            final int[] sequence = new int[Math.max(total, 1)];
+            final int[] current = new int[weights.length];
+            for (int step = 0; step < total; step++) {
+                int best = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    current[i] += weights[i];
+                    if (current[i] > current[best]) {
+                        best = i;
+                    }
+                }
+                current[best] -= total;
+                sequence[step] = best;
+            }
+            return sequence;
+        }
+
+        private static int gcd(int a, int b) {
+            return b == 0 ? a : gcd(b, a % b);
+        }
+    }
+}
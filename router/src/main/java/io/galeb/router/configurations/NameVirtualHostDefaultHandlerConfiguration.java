@@ -16,29 +16,16 @@
 
 package io.galeb.router.configurations;
 
-import io.galeb.router.configurations.ManagerClientCacheConfiguration.ManagerClientCache;
 import io.galeb.router.handlers.NameVirtualHostDefaultHandler;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class NameVirtualHostDefaultHandlerConfiguration {
 
-    private final ApplicationContext context;
-    private final ManagerClientCache cache;
-
-    @Autowired
-    public NameVirtualHostDefaultHandlerConfiguration(final ApplicationContext context,
-                                                      final ManagerClientCache cache) {
-        this.context = context;
-        this.cache = cache;
-    }
-
     @Bean
     public NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler() {
-        return new NameVirtualHostDefaultHandler(context, cache);
+        return new NameVirtualHostDefaultHandler();
     }
 
 }
@@ -18,9 +18,12 @@ package io.galeb.router.configurations;
 
 import io.galeb.router.VirtualHostsNotExpired;
 import io.galeb.router.handlers.InfoHandler;
+import io.galeb.router.handlers.LatencyHistogramHandler;
 import io.galeb.router.handlers.NameVirtualHostDefaultHandler;
 import io.galeb.router.handlers.PingHandler;
+import io.galeb.router.handlers.PrometheusMetricsHandler;
 import io.galeb.router.handlers.ShowVirtualHostCachedHandler;
+import io.galeb.router.handlers.TrafficSketchHandler;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.handlers.NameVirtualHostHandler;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,16 +37,25 @@ public class NameVirtualHostHandlerConfiguration {
     private final PingHandler pingHandler;
     private final ShowVirtualHostCachedHandler showVirtualHostCachedHandler;
     private final InfoHandler infoHandler;
+    private final LatencyHistogramHandler latencyHistogramHandler;
+    private final PrometheusMetricsHandler prometheusMetricsHandler;
+    private final TrafficSketchHandler trafficSketchHandler;
 
     @Autowired
     public NameVirtualHostHandlerConfiguration(final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler,
                                                final ShowVirtualHostCachedHandler showVirtualHostCachedHandler,
                                                final PingHandler pingHandler,
-                                               final InfoHandler infoHandler) {
+                                               final InfoHandler infoHandler,
+                                               final LatencyHistogramHandler latencyHistogramHandler,
+                                               final PrometheusMetricsHandler prometheusMetricsHandler,
+                                               final TrafficSketchHandler trafficSketchHandler) {
         this.nameVirtualHostDefaultHandler = nameVirtualHostDefaultHandler;
         this.showVirtualHostCachedHandler = showVirtualHostCachedHandler;
         this.pingHandler = pingHandler;
         this.infoHandler = infoHandler;
+        this.latencyHistogramHandler = latencyHistogramHandler;
+        this.prometheusMetricsHandler = prometheusMetricsHandler;
+        this.trafficSketchHandler = trafficSketchHandler;
     }
 
     @Bean
@@ -53,6 +65,9 @@ public class NameVirtualHostHandlerConfiguration {
         nameVirtualHostHandler.addHost(VirtualHostsNotExpired.PING.getHost(), pingHandler);
         nameVirtualHostHandler.addHost(VirtualHostsNotExpired.CACHE.getHost(), showVirtualHostCachedHandler);
         nameVirtualHostHandler.addHost(VirtualHostsNotExpired.INFO.getHost(), infoHandler);
+        nameVirtualHostHandler.addHost(VirtualHostsNotExpired.LATENCY.getHost(), latencyHistogramHandler);
+        nameVirtualHostHandler.addHost(VirtualHostsNotExpired.METRICS.getHost(), prometheusMetricsHandler);
+        nameVirtualHostHandler.addHost(VirtualHostsNotExpired.TRAFFIC.getHost(), trafficSketchHandler);
         return nameVirtualHostHandler;
     }
 
@@ -17,7 +17,9 @@
 package io.galeb.router.configurations;
 
 import io.galeb.router.handlers.completionListeners.AccessLogCompletionListener;
+import io.galeb.router.handlers.completionListeners.LatencyHistogramCompletionListener;
 import io.galeb.router.handlers.completionListeners.StatsdCompletionListener;
+import io.galeb.router.handlers.completionListeners.TrafficSketchCompletionListener;
 import io.galeb.router.handlers.RootHandler;
 import io.undertow.server.handlers.NameVirtualHostHandler;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,19 +34,26 @@ public class RootHandlerConfiguration {
     private final NameVirtualHostHandler nameVirtualHostHandler;
     private final AccessLogCompletionListener accessLogCompletionListener;
     private final StatsdCompletionListener statsdCompletionListener;
+    private final LatencyHistogramCompletionListener latencyHistogramCompletionListener;
+    private final TrafficSketchCompletionListener trafficSketchCompletionListener;
 
     @Autowired
     public RootHandlerConfiguration(final NameVirtualHostHandler nameVirtualHostHandler,
                                     final AccessLogCompletionListener accessLogCompletionListener,
-                                    final StatsdCompletionListener statsdCompletionListener) {
+                                    final StatsdCompletionListener statsdCompletionListener,
+                                    final LatencyHistogramCompletionListener latencyHistogramCompletionListener,
+                                    final TrafficSketchCompletionListener trafficSketchCompletionListener) {
         this.nameVirtualHostHandler = nameVirtualHostHandler;
         this.accessLogCompletionListener = accessLogCompletionListener;
         this.statsdCompletionListener = statsdCompletionListener;
+        this.latencyHistogramCompletionListener = latencyHistogramCompletionListener;
+        this.trafficSketchCompletionListener = trafficSketchCompletionListener;
     }
 
     @Bean
     public RootHandler rootHandler() {
-        return new RootHandler(nameVirtualHostHandler, accessLogCompletionListener, statsdCompletionListener);
+        return new RootHandler(nameVirtualHostHandler, accessLogCompletionListener, statsdCompletionListener, latencyHistogramCompletionListener,
+                trafficSketchCompletionListener);
     }
 
 }
@@ -17,7 +17,9 @@
 package io.galeb.router.configurations;
 
 import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.handlers.PrometheusMetricsHandler;
 import io.galeb.router.handlers.RootHandler;
+import io.galeb.router.tls.ServerSslContextFactory;
 import io.undertow.Undertow;
 import io.undertow.UndertowOptions;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,16 +33,28 @@ import org.xnio.Options;
 public class UndertowConfiguration {
 
     private final int port = Integer.parseInt(SystemEnv.ROUTER_PORT.getValue());
+    private final int metricsPort = Integer.parseInt(SystemEnv.METRICS_PORT.getValue());
+    private final int httpsPort = Integer.parseInt(SystemEnv.HTTPS_PORT.getValue());
     private final RootHandler rootHandler;
+    private final PrometheusMetricsHandler prometheusMetricsHandler;
 
     @Autowired
-    public UndertowConfiguration(final RootHandler rootHandler) {
+    public UndertowConfiguration(final RootHandler rootHandler, final PrometheusMetricsHandler prometheusMetricsHandler) {
         this.rootHandler = rootHandler;
+        this.prometheusMetricsHandler = prometheusMetricsHandler;
     }
 
     @Bean
     public Undertow undertow() {
-        return Undertow.builder().addHttpListener(port, "0.0.0.0", rootHandler)
+        final Undertow.Builder builder = Undertow.builder().addHttpListener(port, "0.0.0.0", rootHandler);
+        if (metricsPort > 0) {
+            builder.addHttpListener(metricsPort, "0.0.0.0", prometheusMetricsHandler);
+        }
+        if (httpsPort > 0) {
+            builder.addHttpsListener(httpsPort, "0.0.0.0", ServerSslContextFactory.fromSystemEnv(), rootHandler)
+                    .setServerOption(UndertowOptions.ENABLE_HTTP2, Boolean.parseBoolean(SystemEnv.HTTPS_HTTP2.getValue()));
+        }
+        return builder
                 .setIoThreads(Integer.parseInt(SystemEnv.IO_THREADS.getValue()))
                 .setWorkerThreads(Integer.parseInt(SystemEnv.WORKER_THREADS.getValue()))
                 .setBufferSize(Integer.parseInt(SystemEnv.BUFFER_SIZE.getValue()))
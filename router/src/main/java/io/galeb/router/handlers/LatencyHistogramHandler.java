@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.galeb.router.metrics.LatencyHistogram.Snapshot;
+import io.galeb.router.metrics.RequestPhases;
+import io.galeb.router.services.LatencyHistogramService;
+import io.galeb.router.services.LatencyHistogramService.Series;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Shows the latency histograms (microseconds). The "virtualhost", "pool" and "target" query parameters filter the series.
+ */
+@Component
+public class LatencyHistogramHandler implements HttpHandler {
+
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final LatencyHistogramService latencyHistogramService;
+
+    @Autowired
+    public LatencyHistogramHandler(final LatencyHistogramService latencyHistogramService) {
+        this.latencyHistogramService = latencyHistogramService;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final Map<String, Deque<String>> params = exchange.getQueryParameters();
+        final List<Map<String, Object>> series = latencyHistogramService.getSeries().stream()
+                .filter(s -> matches(params, "virtualhost", s.getVirtualhost()) &&
+                             matches(params, "pool", s.getPool()) &&
+                             matches(params, "target", s.getTarget()))
+                .sorted(Comparator.comparing(Series::getVirtualhost).thenComparing(Series::getPool).thenComparing(Series::getTarget))
+                .map(this::toMap)
+                .collect(Collectors.toList());
+        final Map<String, Object> json = new HashMap<>();
+        json.put("unit", "us");
+        json.put("series", series);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseHeaders().put(Headers.SERVER, "GALEB");
+        exchange.setStatusCode(StatusCodes.OK);
+        exchange.getResponseSender().send(gson.toJson(json));
+        exchange.endExchange();
+    }
+
+    private boolean matches(Map<String, Deque<String>> params, String param, String value) {
+        final Deque<String> expected = params.get(param);
+        return expected == null || expected.isEmpty() || expected.contains(value);
+    }
+
+    private Map<String, Object> toMap(Series series) {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("virtualhost", series.getVirtualhost());
+        map.put("pool", series.getPool());
+        map.put("target", series.getTarget());
+        map.put("interval", toMap(series.lastInterval()));
+        map.put("total", toMap(series.snapshot()));
+        if (RequestPhases.ENABLED) {
+            final Map<String, Object> phases = new LinkedHashMap<>();
+            for (int phase = 0; phase < RequestPhases.PHASES; phase++) {
+                final Snapshot snapshot = series.phaseSnapshot(phase);
+                if (snapshot != null) {
+                    phases.put(RequestPhases.phaseName(phase), toMap(snapshot));
+                }
+            }
+            map.put("phases", phases);
+        }
+        return map;
+    }
+
+    private Map<String, Object> toMap(Snapshot snapshot) {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", snapshot.getCount());
+        map.put("mean", Math.round(snapshot.getMean()));
+        map.put("max", snapshot.getMax());
+        map.put("p50", snapshot.getValueAtPercentile(50.0));
+        map.put("p90", snapshot.getValueAtPercentile(90.0));
+        map.put("p99", snapshot.getValueAtPercentile(99.0));
+        map.put("p999", snapshot.getValueAtPercentile(99.9));
+        return map;
+    }
+}
@@ -16,66 +16,39 @@
 
 package io.galeb.router.handlers;
 
-import io.galeb.core.entity.VirtualHost;
 import io.galeb.router.ResponseCodeOnError;
-import io.galeb.router.configurations.ManagerClientCacheConfiguration.ManagerClientCache;
+import io.galeb.router.handlers.RoutingTable.Route;
+import io.galeb.router.metrics.RequestPhases;
+import io.galeb.router.metrics.RequestPhases.Stamp;
+import io.galeb.router.metrics.jfr.RouterEvents;
+import io.galeb.router.metrics.jfr.VirtualHostEvent;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
-import io.undertow.server.handlers.IPAddressAccessControlHandler;
-import io.undertow.server.handlers.NameVirtualHostHandler;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.context.ApplicationContext;
-
-import java.util.Arrays;
 
 public class NameVirtualHostDefaultHandler implements HttpHandler {
 
     public static final String IPACL_ALLOW = "allow";
 
-    private final Logger logger = LoggerFactory.getLogger(this.getClass());
-
-    private final ApplicationContext context;
-    private final ManagerClientCache cache;
-
-    public NameVirtualHostDefaultHandler(final ApplicationContext context,
-                                         final ManagerClientCache cache) {
-        this.context = context;
-        this.cache = cache;
-    }
+    private volatile RoutingTable routingTable = RoutingTable.EMPTY;
 
     @Override
-    public synchronized void handleRequest(HttpServerExchange exchange) throws Exception {
-        final String hostName = exchange.getHostName();
-        final NameVirtualHostHandler nameVirtualHostHandler = context.getBean(NameVirtualHostHandler.class);
-        if (isValid(hostName, nameVirtualHostHandler)) {
-            logger.info("adding " + hostName);
-            final VirtualHost virtualHost = cache.get(hostName);
-            nameVirtualHostHandler.addHost(hostName, defineNextHandler(virtualHost));
-            nameVirtualHostHandler.handleRequest(exchange);
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final VirtualHostEvent event = RouterEvents.ENABLED ? VirtualHostEvent.start() : null;
+        final Route route = routingTable.get(exchange.getHostName());
+        if (event != null) event.commit(exchange.getHostName(), route != null);
+        if (route != null) {
+            RequestPhases.stamp(exchange, Stamp.VIRTUALHOST);
+            route.getHandler().handleRequest(exchange);
         } else {
             ResponseCodeOnError.VIRTUALHOST_NOT_FOUND.getHandler().handleRequest(exchange);
         }
     }
 
-    private synchronized boolean isValid(String hostName, final NameVirtualHostHandler nameVirtualHostHandler) {
-        return existHostname(hostName) && !nameVirtualHostHandler.getHosts().containsKey(hostName);
+    public RoutingTable getRoutingTable() {
+        return routingTable;
     }
 
-    private boolean existHostname(String hostname) {
-        return cache.exist(hostname);
-    }
-
-    private HttpHandler defineNextHandler(final VirtualHost virtualHost) {
-        final RuleTargetHandler ruleTargetHandler =  new RuleTargetHandler(virtualHost);
-        if (virtualHost.getProperties().containsKey(IPACL_ALLOW)) {
-            final IPAddressAccessControlHandler ipAddressAccessControlHandler = new IPAddressAccessControlHandler().setNext(ruleTargetHandler);
-            Arrays.asList(virtualHost.getProperties().get(IPACL_ALLOW).split(","))
-                    .forEach(ipAddressAccessControlHandler::addAllow);
-            ipAddressAccessControlHandler.setDefaultAllow(false);
-            return ipAddressAccessControlHandler;
-        } else {
-            return ruleTargetHandler;
-        }
+    public void setRoutingTable(final RoutingTable routingTable) {
+        this.routingTable = routingTable;
     }
 }
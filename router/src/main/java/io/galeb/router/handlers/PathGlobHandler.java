@@ -25,15 +25,17 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import io.galeb.core.logutils.ErrorLogger;
 import io.galeb.router.ResponseCodeOnError;
+import io.galeb.router.metrics.RequestPhases;
+import io.galeb.router.metrics.RequestPhases.Stamp;
+import io.galeb.router.metrics.jfr.RuleMatchEvent;
+import io.galeb.router.metrics.jfr.RouterEvents;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
-import jodd.util.Wildcard;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +45,8 @@ public class PathGlobHandler implements HttpHandler {
 
     private final ConcurrentMap<PathOrdered, HttpHandler> paths = new ConcurrentSkipListMap<>();
 
+    private volatile PathGlobMatcher matcher = PathGlobMatcher.EMPTY;
+
     private HttpHandler defaultHandler = ResponseCodeOnError.RULE_PATH_NOT_FOUND.getHandler();
 
     private HttpHandler pathGlobHandlerCheck() {
@@ -60,26 +64,25 @@ public class PathGlobHandler implements HttpHandler {
             pathGlobHandlerCheck().handleRequest(exchange);
             return;
         }
-        final AtomicBoolean hit = new AtomicBoolean(false);
-        paths.forEach((key, handler) -> {
-            if (!hit.get()) {
-                final String pathKey = key.getPath();
-                hit.set(Wildcard.match(path, pathKey));
-                if (hit.get()) {
-                    try {
-                        if (handler != null) {
-                            handler.handleRequest(exchange);
-                        } else {
-                            logger.error("Handler is null");
-                        }
-                    } catch (Exception e) {
-                        ErrorLogger.logError(e, this.getClass());
-                    }
-                }
-            }
-        });
-        if (!hit.get()) {
+        final RuleMatchEvent event = RouterEvents.ENABLED ? RuleMatchEvent.start() : null;
+        final Map.Entry<PathOrdered, HttpHandler> rule = matcher.match(path);
+        if (event != null) {
+            event.commit(exchange.getHostName(), path, rule != null ? rule.getKey().getPath() : null, rule != null ? rule.getKey().getOrder() : -1);
+        }
+        RequestPhases.stamp(exchange, Stamp.RULE);
+        if (rule == null) {
             defaultHandler.handleRequest(exchange);
+            return;
+        }
+        final HttpHandler handler = rule.getValue();
+        try {
+            if (handler != null) {
+                handler.handleRequest(exchange);
+            } else {
+                logger.error("Handler is null");
+            }
+        } catch (Exception e) {
+            ErrorLogger.logError(e, this.getClass());
         }
     }
 
@@ -92,7 +95,9 @@ public class PathGlobHandler implements HttpHandler {
     }
 
     public synchronized boolean addPath(final String path, int order, final HttpHandler handler) {
-        return paths.put(new PathOrdered(path.endsWith("/") && !path.contains("*")? path + "*" : path, order), handler) == null;
+        boolean added = paths.put(new PathOrdered(path.endsWith("/") && !path.contains("*")? path + "*" : path, order), handler) == null;
+        matcher = PathGlobMatcher.compile(paths);
+        return added;
     }
 
     public synchronized boolean removePath(final String path) {
@@ -101,6 +106,7 @@ public class PathGlobHandler implements HttpHandler {
                 .filter(p -> p.getPath().equals(path))
                 .collect(Collectors.toList());
         listOfpaths.forEach(paths::remove);
+        matcher = PathGlobMatcher.compile(paths);
         return !listOfpaths.isEmpty();
     }
 
@@ -115,6 +121,7 @@ public class PathGlobHandler implements HttpHandler {
 
     public synchronized void clear() {
         paths.clear();
+        matcher = PathGlobMatcher.EMPTY;
     }
 
     public static class PathOrdered implements Comparable<PathOrdered> {
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.handlers;
+
+import io.galeb.router.handlers.PathGlobHandler.PathOrdered;
+import io.undertow.server.HttpHandler;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable matcher compiled from the ordered path rules of a {@link PathGlobHandler}.
+ *
+ * Literal rules are resolved by a hash lookup, "prefix*" rules by walking a prefix trie
+ * and only the remaining globs are tested one by one. The winner is always the rule with
+ * the lowest rank in the {@link PathOrdered} ordering, the same one the linear
+ * {@link jodd.util.Wildcard} scan used to pick.
+ */
+public final class PathGlobMatcher {
+
+    public static final PathGlobMatcher EMPTY = new PathGlobMatcher(new ArrayList<>(), new HashMap<>(), new Node(), new Glob[0]);
+
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final List<Map.Entry<PathOrdered, HttpHandler>> rules;
+    private final Map<String, Integer> literals;
+    private final Node prefixes;
+    private final Glob[] globs;
+
+    private PathGlobMatcher(final List<Map.Entry<PathOrdered, HttpHandler>> rules,
+                            final Map<String, Integer> literals,
+                            final Node prefixes,
+                            final Glob[] globs) {
+        this.rules = rules;
+        this.literals = literals;
+        this.prefixes = prefixes;
+        this.globs = globs;
+    }
+
+    /**
+     * Compiles the rules. The map iteration order defines the rule precedence.
+     */
+    public static PathGlobMatcher compile(final Map<PathOrdered, HttpHandler> paths) {
+        final List<Map.Entry<PathOrdered, HttpHandler>> rules = new ArrayList<>(paths.size());
+        final Map<String, Integer> literals = new HashMap<>();
+        final Node prefixes = new Node();
+        final List<Glob> globs = new ArrayList<>();
+        paths.forEach((pathOrdered, handler) -> {
+            final int rank = rules.size();
+            rules.add(new SimpleImmutableEntry<>(pathOrdered, handler));
+            final Glob glob = Glob.parse(pathOrdered.getPath(), rank);
+            if (glob.isLiteral()) {
+                literals.putIfAbsent(glob.literalPrefix(), rank);
+            } else if (glob.isPrefix()) {
+                prefixes.insert(glob.literalPrefix(), rank);
+            } else {
+                globs.add(glob);
+            }
+        });
+        return new PathGlobMatcher(rules, literals, prefixes, globs.toArray(new Glob[0]));
+    }
+
+    /**
+     * Returns the rule with the highest precedence matching the path, or null.
+     */
+    public Map.Entry<PathOrdered, HttpHandler> match(final String path) {
+        if (rules.isEmpty()) {
+            return null;
+        }
+        final Integer literal = literals.get(path);
+        int best = literal != null ? literal : NO_MATCH;
+        best = Math.min(best, prefixes.bestPrefixOf(path));
+        for (Glob glob : globs) {
+            if (glob.rank >= best) {
+                break;
+            }
+            if (glob.matches(path)) {
+                best = glob.rank;
+                break;
+            }
+        }
+        return best != NO_MATCH ? rules.get(best) : null;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int rank = NO_MATCH;
+
+        void insert(final String prefix, int rank) {
+            Node node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.childOrCreate(prefix.charAt(i));
+            }
+            node.rank = Math.min(node.rank, rank);
+        }
+
+        int bestPrefixOf(final String path) {
+            Node node = this;
+            int best = node.rank;
+            for (int i = 0; i < path.length() && node != null; i++) {
+                node = node.child(path.charAt(i));
+                if (node != null && node.rank < best) {
+                    best = node.rank;
+                }
+            }
+            return best;
+        }
+
+        private Node child(char c) {
+            int pos = Arrays.binarySearch(keys, c);
+            return pos >= 0 ? children[pos] : null;
+        }
+
+        private Node childOrCreate(char c) {
+            int pos = Arrays.binarySearch(keys, c);
+            if (pos >= 0) {
+                return children[pos];
+            }
+            int insertAt = -(pos + 1);
+            final char[] newKeys = new char[keys.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            final Node node = new Node();
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = node;
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+
+    /**
+     * Pre-tokenized glob with the same semantics of {@link jodd.util.Wildcard#match}:
+     * '*' matches any sequence, '?' matches one char and '\' escapes the next char.
+     */
+    private static final class Glob {
+        private static final byte CHAR    = 0;
+        private static final byte ANY_ONE = 1;
+        private static final byte ANY_SEQ = 2;
+
+        private final char[] chars;
+        private final byte[] types;
+        private final int rank;
+        private final boolean never;
+
+        private Glob(char[] chars, byte[] types, int rank, boolean never) {
+            this.chars = chars;
+            this.types = types;
+            this.rank = rank;
+            this.never = never;
+        }
+
+        static Glob parse(final String pattern, int rank) {
+            final char[] chars = new char[pattern.length()];
+            final byte[] types = new byte[pattern.length()];
+            int len = 0;
+            boolean escaped = false;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                    continue;
+                } else if (c == '*') {
+                    if (len == 0 || types[len - 1] != ANY_SEQ) {
+                        types[len++] = ANY_SEQ;
+                    }
+                    continue;
+                } else if (c == '?') {
+                    types[len++] = ANY_ONE;
+                    continue;
+                }
+                chars[len] = c;
+                types[len++] = CHAR;
+            }
+            // a dangling escape never matches, as in the Wildcard implementation
+            return new Glob(Arrays.copyOf(chars, len), Arrays.copyOf(types, len), rank, escaped);
+        }
+
+        boolean isLiteral() {
+            return !never && wildcards() == 0;
+        }
+
+        boolean isPrefix() {
+            return !never && wildcards() == 1 && types.length > 0 && types[types.length - 1] == ANY_SEQ;
+        }
+
+        String literalPrefix() {
+            int len = 0;
+            while (len < types.length && types[len] == CHAR) len++;
+            return new String(chars, 0, len);
+        }
+
+        private int wildcards() {
+            int count = 0;
+            for (byte type : types) {
+                if (type != CHAR) count++;
+            }
+            return count;
+        }
+
+        boolean matches(final String path) {
+            if (never) return false;
+            int s = 0, p = 0, starP = -1, starS = 0;
+            final int sLen = path.length();
+            final int pLen = types.length;
+            while (s < sLen) {
+                if (p < pLen && (types[p] == ANY_ONE || (types[p] == CHAR && chars[p] == path.charAt(s)))) {
+                    s++;
+                    p++;
+                } else if (p < pLen && types[p] == ANY_SEQ) {
+                    starP = p++;
+                    starS = s;
+                } else if (starP != -1) {
+                    p = starP + 1;
+                    s = ++starS;
+                } else {
+                    return false;
+                }
+            }
+            while (p < pLen && types[p] == ANY_SEQ) p++;
+            return p == pLen;
+        }
+    }
+}
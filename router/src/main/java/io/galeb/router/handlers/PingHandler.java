@@ -17,6 +17,7 @@
 package io.galeb.router.handlers;
 
 import io.galeb.router.configurations.ManagerClientCacheConfiguration.ManagerClientCache;
+import io.galeb.router.services.PrewarmService;
 import io.galeb.router.services.UpdaterService;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
@@ -37,6 +38,7 @@ public class PingHandler implements HttpHandler {
         FAIL,
         EMPTY,
         OUTDATED,
+        WARMING,
         WORKING
     }
 
@@ -45,12 +47,15 @@ public class PingHandler implements HttpHandler {
     private final AtomicLong lastPing = new AtomicLong(0L);
     private final ManagerClientCache cache;
     private final UpdaterService updaterService;
+    private final PrewarmService prewarmService;
 
     @Autowired
     public PingHandler(final ManagerClientCache cache,
-                       @Lazy UpdaterService updaterService) {
+                       @Lazy UpdaterService updaterService,
+                       final PrewarmService prewarmService) {
         this.cache = cache;
         this.updaterService = updaterService;
+        this.prewarmService = prewarmService;
     }
 
     @Override
@@ -68,7 +73,11 @@ public class PingHandler implements HttpHandler {
     }
 
     private String getStatusBody(boolean hasNoUpdate) {
-        return isOutdated(hasNoUpdate) ? OUTDATED.name() : (isEmpty() ? EMPTY.name() : WORKING.name());
+        return isOutdated(hasNoUpdate) ? OUTDATED.name() : (isEmpty() ? EMPTY.name() : (isWarming() ? WARMING.name() : WORKING.name()));
+    }
+
+    private boolean isWarming() {
+        return !prewarmService.isReady();
     }
 
     private boolean isEmpty() {
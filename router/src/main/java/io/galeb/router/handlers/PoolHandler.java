@@ -19,13 +19,23 @@ package io.galeb.router.handlers;
 import io.galeb.core.enums.SystemEnv;
 import io.galeb.core.entity.BalancePolicy;
 import io.galeb.core.entity.Pool;
+import io.galeb.core.entity.Target;
+import io.galeb.router.client.AdaptiveConcurrencyLimit;
 import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.client.PoolWaitQueue;
+import io.galeb.router.client.RetryBudget;
+import io.galeb.router.client.RetryPolicy;
+import io.galeb.router.client.SlowStart;
+import io.galeb.router.client.UpstreamProtocol;
 import io.galeb.router.client.hostselectors.HostSelector;
 import io.galeb.router.client.hostselectors.HostSelectorLookup;
 import io.galeb.router.ResponseCodeOnError;
 import io.galeb.router.client.hostselectors.RoundRobinHostSelector;
+import io.galeb.router.metrics.RequestPhases;
+import io.galeb.router.metrics.RequestPhases.Stamp;
 import io.undertow.attribute.ExchangeAttribute;
 import io.undertow.client.UndertowClient;
+import io.undertow.connector.ByteBufferPool;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.proxy.ExclusivityChecker;
@@ -35,18 +45,32 @@ import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnio.XnioIoThread;
 
 import java.net.URI;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class PoolHandler implements HttpHandler {
 
     public static final AttachmentKey<String> POOL_NAME = AttachmentKey.create(String.class);
 
-    private static final String CHECK_RULE_HEADER  = "X-Check-Pool";
+    public static final String CHECK_RULE_HEADER   = "X-Check-Pool";
     private static final String X_POOL_NAME_HEADER = "X-Pool-Name";
 
     public static final String PROP_CONN_PER_THREAD         = "connPerThread";
     public static final String PROP_DISCOVERED_MEMBERS_SIZE = "discoveredMembersSize";
+    public static final String PROP_SLOW_START_TIME         = "slowStartTime";
+    public static final String PROP_SLOW_START_MODE         = "slowStartMode";
+    public static final String PROP_TARGET_WEIGHT           = "weight";
+    public static final String PROP_ADAPTIVE_CONCURRENCY    = "adaptiveConcurrency";
+    public static final String PROP_QUEUE_SIZE              = "queueSize";
+    public static final String PROP_MAX_RETRIES             = "maxRetries";
+    public static final String PROP_RETRY_ON_5XX            = "retryOn5xx";
+    public static final String PROP_HEDGE                   = "hedge";
+    public static final String PROP_PREWARM_CONNECTIONS     = "prewarmConnections";
+    public static final String PROP_UPSTREAM_PROTOCOL       = "upstreamProtocol";
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -54,21 +78,40 @@ public class PoolHandler implements HttpHandler {
     private final boolean reuseXForwarded = Boolean.parseBoolean(SystemEnv.REUSE_XFORWARDED.getValue());
     private final boolean rewriteHostHeader = Boolean.parseBoolean(SystemEnv.REWRITE_HOST_HEADER.getValue());
     private final RequestIDHandler requestIDHandler = new RequestIDHandler();
-    private final HttpHandler defaultHandler;
+    private final ProxyHandler proxyHandler;
+    private final ExtendedLoadBalancingProxyClient proxyClient;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
 
-    private ProxyHandler proxyHandler = null;
-    private ExtendedLoadBalancingProxyClient proxyClient;
-
-    private final Pool pool;
+    private volatile Pool pool;
 
     public PoolHandler(final Pool pool) {
         this.pool = pool;
-        this.defaultHandler = buildPoolHandler();
+        if (pool != null) {
+            logger.info("creating pool " + pool.getName());
+            this.proxyClient = getProxyClient();
+            defineUpstreamProtocol(proxyClient);
+            addTargets(proxyClient);
+            proxyClient.setSlowStart(defineSlowStart());
+            proxyClient.setWaitQueue(defineWaitQueue());
+            proxyClient.setRetryPolicy(defineRetryPolicy());
+            this.proxyHandler = new ProxyHandler(proxyClient, maxRequestTime, badGatewayHandler(), rewriteHostHeader, reuseXForwarded, getMaxRetries());
+            requestIDHandler.setNext(proxyHandler);
+            this.concurrencyLimit = defineConcurrencyLimit();
+        } else {
+            this.proxyClient = null;
+            this.proxyHandler = null;
+            this.concurrencyLimit = null;
+        }
     }
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (pool == null) {
+            ResponseCodeOnError.POOL_NOT_DEFINED.getHandler().handleRequest(exchange);
+            return;
+        }
         exchange.putAttachment(POOL_NAME, pool.getName());
+        RequestPhases.stampIfAbsent(exchange, Stamp.RULE);
         if (exchange.getRequestHeaders().contains(CHECK_RULE_HEADER)) {
             healthcheckPoolHandler().handleRequest(exchange);
             return;
@@ -77,7 +120,11 @@ public class PoolHandler implements HttpHandler {
             ResponseCodeOnError.HOSTS_EMPTY.getHandler().handleRequest(exchange);
             return;
         }
-        requestIDHandler.setNext(proxyHandler != null ? proxyHandler : defaultHandler).handleRequest(exchange);
+        if (concurrencyLimit != null && !concurrencyLimit.tryAcquire(exchange)) {
+            ResponseCodeOnError.POOL_OVERLOADED.getHandler().handleRequest(exchange);
+            return;
+        }
+        requestIDHandler.handleRequest(exchange);
     }
 
     public Pool getPool() {
@@ -88,18 +135,57 @@ public class PoolHandler implements HttpHandler {
         return proxyHandler;
     }
 
-    private synchronized HttpHandler buildPoolHandler() {
-        return exchange -> {
-            if (pool != null) {
-                logger.info("creating pool " + pool.getName());
-                proxyClient = getProxyClient();
-                addTargets(proxyClient);
-                proxyHandler = new ProxyHandler(proxyClient, maxRequestTime, badGatewayHandler(), rewriteHostHeader, reuseXForwarded);
-                proxyHandler.handleRequest(exchange);
-                return;
-            }
-            ResponseCodeOnError.POOL_NOT_DEFINED.getHandler().handleRequest(exchange);
-        };
+    /**
+     * The adaptive in-flight limit, or null if it is disabled for the pool.
+     */
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Pre-warms the connection pools of the IO thread (see {@link ExtendedLoadBalancingProxyClient#prewarm}).
+     * Returns false, without calling onDone, if there is nothing to pre-warm.
+     */
+    public boolean prewarm(final XnioIoThread ioThread, final ByteBufferPool bufferPool, final Runnable onDone) {
+        final int connections = proxyClient != null ? getPrewarmConnections() : 0;
+        if (connections <= 0 || proxyClient.isHostsEmpty()) {
+            return false;
+        }
+        proxyClient.prewarm(ioThread, bufferPool, connections, onDone);
+        return true;
+    }
+
+    /**
+     * A pool is reusable if only its targets changed.
+     */
+    public boolean isReusable(final Pool newPool) {
+        return pool != null && newPool != null && proxyClient != null &&
+                pool.getName().equals(newPool.getName()) &&
+                Objects.equals(balancePolicyName(pool), balancePolicyName(newPool)) &&
+                Objects.equals(pool.getProperties(), newPool.getProperties());
+    }
+
+    /**
+     * Adds and removes only the targets that changed, keeping the connections of the others.
+     */
+    public synchronized void updateTargets(final Pool newPool) {
+        final Set<URI> uris = newPool.getTargets().stream().map(target -> URI.create(target.getName())).collect(Collectors.toSet());
+        final Set<URI> current = proxyClient.getHostUris().stream().collect(Collectors.toSet());
+        current.stream().filter(uri -> !uris.contains(uri)).forEach(uri -> {
+            proxyClient.removeHost(uri);
+            logger.info("[pool:" + newPool.getName() + "] removed Target " + uri);
+        });
+        uris.stream().filter(uri -> !current.contains(uri)).forEach(uri -> {
+            proxyClient.addHost(uri);
+            logger.info("[pool:" + newPool.getName() + "] added Target " + uri);
+        });
+        newPool.getTargets().forEach(target -> proxyClient.setHostWeight(URI.create(target.getName()), targetWeight(target)));
+        this.pool = newPool;
+    }
+
+    private String balancePolicyName(final Pool pool) {
+        final BalancePolicy balancePolicy = pool.getBalancePolicy();
+        return balancePolicy != null ? balancePolicy.getName() : null;
     }
 
     private ExtendedLoadBalancingProxyClient getProxyClient() {
@@ -113,6 +199,19 @@ public class PoolHandler implements HttpHandler {
                         .setSoftMaxConnectionsPerThread(Integer.parseInt(SystemEnv.POOL_SOFTMAXCONN.getValue()));
     }
 
+    private void defineUpstreamProtocol(final ExtendedLoadBalancingProxyClient proxyClient) {
+        final String propUpstreamProtocol = pool.getProperties().get(PROP_UPSTREAM_PROTOCOL);
+        final UpstreamProtocol upstreamProtocol = UpstreamProtocol.fromString(propUpstreamProtocol != null ?
+                propUpstreamProtocol : SystemEnv.POOL_UPSTREAM_PROTOCOL.getValue());
+        if (upstreamProtocol.isMultiplexed()) {
+            final int connPerThread = Integer.parseInt(SystemEnv.POOL_H2_CONN_PER_THREAD.getValue());
+            final int maxStreams = Integer.parseInt(SystemEnv.POOL_H2_MAX_STREAMS.getValue());
+            proxyClient.setUpstreamProtocol(upstreamProtocol, connPerThread, maxStreams);
+            logger.info("[Pool " + pool.getName() + "] upstream protocol: " + upstreamProtocol + " (" + connPerThread +
+                    " connection(s) per IO thread, " + maxStreams + " streams per connection)");
+        }
+    }
+
     private int getConnPerThread() {
         int poolMaxConn = Integer.parseInt(SystemEnv.POOL_MAXCONN.getValue());
         int connPerThread = poolMaxConn / Integer.parseInt(SystemEnv.IO_THREADS.getValue());
@@ -132,6 +231,82 @@ public class PoolHandler implements HttpHandler {
         return connPerThread;
     }
 
+    private SlowStart defineSlowStart() {
+        long slowStartTime = Long.parseLong(SystemEnv.POOL_SLOW_START_TIME.getValue());
+        String propSlowStartTime = pool.getProperties().get(PROP_SLOW_START_TIME);
+        if (propSlowStartTime != null) {
+            try {
+                slowStartTime = Long.parseLong(propSlowStartTime);
+            } catch (NumberFormatException ignore) {}
+        }
+        final SlowStart slowStart = new SlowStart(slowStartTime, SlowStart.Mode.fromString(pool.getProperties().get(PROP_SLOW_START_MODE)));
+        if (slowStart.isEnabled()) {
+            logger.info("[Pool " + pool.getName() + "] slow start: " + slowStartTime + " ms");
+        }
+        return slowStart;
+    }
+
+    private PoolWaitQueue defineWaitQueue() {
+        int queueSize = Integer.parseInt(SystemEnv.POOL_QUEUE_SIZE.getValue());
+        String propQueueSize = pool.getProperties().get(PROP_QUEUE_SIZE);
+        if (propQueueSize != null) {
+            try {
+                queueSize = Integer.parseInt(propQueueSize);
+            } catch (NumberFormatException ignore) {}
+        }
+        if (queueSize <= 0) {
+            return null;
+        }
+        logger.info("[Pool " + pool.getName() + "] wait queue: " + queueSize + " request(s) per IO thread");
+        return new PoolWaitQueue(queueSize);
+    }
+
+    private int getMaxRetries() {
+        int maxRetries = Integer.parseInt(SystemEnv.POOL_MAX_RETRIES.getValue());
+        String propMaxRetries = pool.getProperties().get(PROP_MAX_RETRIES);
+        if (propMaxRetries != null) {
+            try {
+                maxRetries = Integer.parseInt(propMaxRetries);
+            } catch (NumberFormatException ignore) {}
+        }
+        return Math.max(maxRetries, 0);
+    }
+
+    private int getPrewarmConnections() {
+        int connections = Integer.parseInt(SystemEnv.POOL_PREWARM_CONNECTIONS.getValue());
+        String propPrewarmConnections = pool.getProperties().get(PROP_PREWARM_CONNECTIONS);
+        if (propPrewarmConnections != null) {
+            try {
+                connections = Integer.parseInt(propPrewarmConnections);
+            } catch (NumberFormatException ignore) {}
+        }
+        return connections;
+    }
+
+    private RetryPolicy defineRetryPolicy() {
+        final String propRetryOn5xx = pool.getProperties().get(PROP_RETRY_ON_5XX);
+        final String propHedge = pool.getProperties().get(PROP_HEDGE);
+        final boolean retryOn5xx = Boolean.parseBoolean(propRetryOn5xx != null ? propRetryOn5xx : SystemEnv.POOL_RETRY_ON_5XX.getValue());
+        final boolean hedge = Boolean.parseBoolean(propHedge != null ? propHedge : SystemEnv.POOL_HEDGE.getValue());
+        final RetryPolicy retryPolicy = new RetryPolicy(new RetryBudget(), retryOn5xx, hedge);
+        if (retryPolicy.isEnabled()) {
+            logger.info("[Pool " + pool.getName() + "] retry on 5xx: " + retryOn5xx + ", hedge: " + hedge);
+        }
+        return retryPolicy;
+    }
+
+    private AdaptiveConcurrencyLimit defineConcurrencyLimit() {
+        final String propAdaptiveConcurrency = pool.getProperties().get(PROP_ADAPTIVE_CONCURRENCY);
+        final boolean enabled = Boolean.parseBoolean(propAdaptiveConcurrency != null ?
+                propAdaptiveConcurrency : SystemEnv.POOL_ADAPTIVE_CONCURRENCY.getValue());
+        if (!enabled) {
+            return null;
+        }
+        final AdaptiveConcurrencyLimit adaptiveConcurrencyLimit = new AdaptiveConcurrencyLimit();
+        logger.info("[Pool " + pool.getName() + "] adaptive concurrency limit (initial " + adaptiveConcurrencyLimit.getLimit() + ")");
+        return adaptiveConcurrencyLimit;
+    }
+
     private HttpHandler badGatewayHandler() {
         return exchange -> exchange.setStatusCode(502);
     }
@@ -149,10 +324,21 @@ public class PoolHandler implements HttpHandler {
             String value = target.getName();
             URI uri = URI.create(target.getName());
             proxyClient.addHost(uri);
+            proxyClient.setHostWeight(uri, targetWeight(target));
             logger.info("[pool:" + pool.getName() + "] added Target " + value);
         });
     }
 
+    private int targetWeight(final Target target) {
+        String propWeight = target.getProperties().get(PROP_TARGET_WEIGHT);
+        if (propWeight != null) {
+            try {
+                return Integer.parseInt(propWeight);
+            } catch (NumberFormatException ignore) {}
+        }
+        return 1;
+    }
+
     private HttpHandler healthcheckPoolHandler() {
         return exchange -> {
             logger.warn("detected header " + CHECK_RULE_HEADER);
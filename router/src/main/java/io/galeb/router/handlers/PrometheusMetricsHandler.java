@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers;
+
+import io.galeb.router.client.AdaptiveConcurrencyLimit;
+import io.galeb.router.client.PoolWaitQueue;
+import io.galeb.router.client.RetryPolicy;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.handlers.RoutingTable.Route;
+import io.galeb.router.handlers.cache.RequestCoalescingHandler;
+import io.galeb.router.handlers.cache.ResponseCache;
+import io.galeb.router.metrics.LatencyHistogram.Snapshot;
+import io.galeb.router.metrics.RequestPhases;
+import io.galeb.router.services.LatencyHistogramService;
+import io.galeb.router.services.LatencyHistogramService.Series;
+import io.undertow.Undertow;
+import io.undertow.client.ClientStatistics;
+import io.undertow.server.ConnectorStatistics;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyHandler;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Prometheus text format (0.0.4) of the connector, target and latency statistics.
+ *
+ * Scrapes are rendered one at a time, on a worker thread, in a reused buffer. The label strings of the
+ * targets and latency series are built once and kept while these objects are alive.
+ */
+@Component
+public class PrometheusMetricsHandler implements HttpHandler {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String PREFIX = "galeb_router_";
+    private static final long[] LATENCY_BUCKETS = { 1000L, 5000L, 10000L, 25000L, 50000L, 100000L, 250000L, 500000L,
+                                                    1000000L, 2500000L, 5000000L, 10000000L };
+    private static final String[] LATENCY_BUCKET_LABELS = { "0.001", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5",
+                                                            "1", "2.5", "5", "10" };
+
+    private final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler;
+    private final LatencyHistogramService latencyHistogramService;
+    private final ObjectProvider<Undertow> undertow;
+
+    private final StringBuilder buffer = new StringBuilder(64 * 1024);
+    private final Map<Object, String> labels = new WeakHashMap<>();
+    private final List<Host> hosts = new ArrayList<>();
+    private final List<String> hostLabels = new ArrayList<>();
+    private final List<AdaptiveConcurrencyLimit> limits = new ArrayList<>();
+    private final List<String> limitLabels = new ArrayList<>();
+    private final List<PoolWaitQueue> queues = new ArrayList<>();
+    private final List<String> queueLabels = new ArrayList<>();
+    private final List<RetryPolicy> retryPolicies = new ArrayList<>();
+    private final List<String> retryPolicyLabels = new ArrayList<>();
+    private final List<Series> series = new ArrayList<>();
+    private final List<Snapshot> snapshots = new ArrayList<>();
+
+    @Autowired
+    public PrometheusMetricsHandler(final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler,
+                                    final LatencyHistogramService latencyHistogramService,
+                                    final ObjectProvider<Undertow> undertow) {
+        this.nameVirtualHostDefaultHandler = nameVirtualHostDefaultHandler;
+        this.latencyHistogramService = latencyHistogramService;
+        this.undertow = undertow;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(this);
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, CONTENT_TYPE);
+        exchange.getResponseHeaders().put(Headers.SERVER, "GALEB");
+        exchange.setStatusCode(StatusCodes.OK);
+        exchange.getResponseSender().send(render());
+        exchange.endExchange();
+    }
+
+    public synchronized String render() {
+        buffer.setLength(0);
+        try {
+            renderConnectors();
+            renderRoutingTable();
+            renderTargets();
+            renderCaching();
+            renderLatencies();
+            return buffer.toString();
+        } finally {
+            hosts.clear();
+            hostLabels.clear();
+            limits.clear();
+            limitLabels.clear();
+            queues.clear();
+            queueLabels.clear();
+            retryPolicies.clear();
+            retryPolicyLabels.clear();
+            series.clear();
+            snapshots.clear();
+        }
+    }
+
+    private void renderConnectors() {
+        // the Undertow bean depends on this handler, so it is only resolved when scraped
+        final Undertow server = undertow != null ? undertow.getIfAvailable() : null;
+        final List<Undertow.ListenerInfo> listeners = server != null ? server.getListenerInfo() : new ArrayList<>();
+        connectorFamily(listeners, "connector_requests_total", "counter", ConnectorStatistics::getRequestCount);
+        connectorFamily(listeners, "connector_errors_total", "counter", ConnectorStatistics::getErrorCount);
+        connectorFamily(listeners, "connector_bytes_sent_total", "counter", ConnectorStatistics::getBytesSent);
+        connectorFamily(listeners, "connector_bytes_received_total", "counter", ConnectorStatistics::getBytesReceived);
+        connectorFamily(listeners, "connector_active_connections", "gauge", ConnectorStatistics::getActiveConnections);
+        connectorFamily(listeners, "connector_active_requests", "gauge", ConnectorStatistics::getActiveRequests);
+        connectorFamily(listeners, "connector_processing_time_nanoseconds_total", "counter", ConnectorStatistics::getProcessingTime);
+    }
+
+    private void connectorFamily(List<Undertow.ListenerInfo> listeners, String name, String type, ToLongFunction<ConnectorStatistics> value) {
+        type(name, type);
+        for (Undertow.ListenerInfo listener : listeners) {
+            final ConnectorStatistics statistics = listener.getConnectorStatistics();
+            if (statistics == null) continue;
+            buffer.append(PREFIX).append(name).append("{listener=\"");
+            escape(listener.getProtcol() + "://" + listener.getAddress());
+            buffer.append("\"} ").append(value.applyAsLong(statistics)).append('\n');
+        }
+    }
+
+    private void renderRoutingTable() {
+        final RoutingTable routingTable = nameVirtualHostDefaultHandler.getRoutingTable();
+        type("routing_table_version", "gauge");
+        buffer.append(PREFIX).append("routing_table_version ").append(routingTable.getVersion()).append('\n');
+        type("virtualhosts", "gauge");
+        buffer.append(PREFIX).append("virtualhosts ").append(routingTable.size()).append('\n');
+    }
+
+    private void renderTargets() {
+        for (Route route : nameVirtualHostDefaultHandler.getRoutingTable().routes()) {
+            final String virtualhost = route.getVirtualHost().getName();
+            for (PoolHandler poolHandler : route.getRuleTargetHandler().getPoolHandlers()) {
+                final ProxyHandler proxyHandler = poolHandler.getProxyHandler();
+                if (proxyHandler == null || !(proxyHandler.getProxyClient() instanceof ExtendedLoadBalancingProxyClient)) continue;
+                final String pool = poolHandler.getPool().getName();
+                final AdaptiveConcurrencyLimit limit = poolHandler.getConcurrencyLimit();
+                if (limit != null) {
+                    limits.add(limit);
+                    limitLabels.add(labels.computeIfAbsent(limit, l -> labels(virtualhost, pool, null)));
+                }
+                final ExtendedLoadBalancingProxyClient proxyClient = (ExtendedLoadBalancingProxyClient) proxyHandler.getProxyClient();
+                final RetryPolicy retryPolicy = proxyClient.getRetryPolicy();
+                if (retryPolicy != null) {
+                    retryPolicies.add(retryPolicy);
+                    retryPolicyLabels.add(labels.computeIfAbsent(retryPolicy, p -> labels(virtualhost, pool, null)));
+                }
+                final PoolWaitQueue queue = proxyClient.getWaitQueue();
+                if (queue != null) {
+                    queues.add(queue);
+                    queueLabels.add(labels.computeIfAbsent(queue, q -> labels(virtualhost, pool, null)));
+                }
+                for (Host host : proxyClient.getHosts()) {
+                    hosts.add(host);
+                    hostLabels.add(labels.computeIfAbsent(host, h -> labels(virtualhost, pool, host.getUri().toString())));
+                }
+            }
+        }
+        hostFamily("target_open_connections", "gauge", Host::getOpenConnection);
+        hostFamily("target_multiplexed_connections", "gauge", Host::getMultiplexedConnections);
+        hostFamily("target_selections_total", "counter", Host::getSelections);
+        hostFamily("target_ejected", "gauge", host -> host.getOutlierStatus().isEjected() ? 1L : 0L);
+        hostFamily("target_weight", "gauge", Host::getWeight);
+        final List<ClientStatistics> statistics = new ArrayList<>(hosts.size());
+        hosts.forEach(host -> statistics.add(host.getClientStatistics()));
+        clientFamily(statistics, "target_requests_total", ClientStatistics::getRequests);
+        clientFamily(statistics, "target_bytes_read_total", ClientStatistics::getRead);
+        clientFamily(statistics, "target_bytes_written_total", ClientStatistics::getWritten);
+        type("pool_concurrency_limit", "gauge");
+        for (int i = 0; i < limits.size(); i++) {
+            sample("pool_concurrency_limit", limitLabels.get(i), limits.get(i).getLimit());
+        }
+        type("pool_inflight_requests", "gauge");
+        for (int i = 0; i < limits.size(); i++) {
+            sample("pool_inflight_requests", limitLabels.get(i), limits.get(i).getInflight());
+        }
+        type("pool_overloaded_total", "counter");
+        buffer.append(PREFIX).append("pool_overloaded_total ").append(AdaptiveConcurrencyLimit.getRejected()).append('\n');
+        renderQueues();
+        renderRetries();
+    }
+
+    private void renderRetries() {
+        retryFamily("pool_retries_total", retryPolicy -> retryPolicy.getBudget().getRetries());
+        retryFamily("retry_budget_exhausted_total", retryPolicy -> retryPolicy.getBudget().getExhausted());
+        retryFamily("hedged_requests_total", RetryPolicy::getHedged);
+        retryFamily("retried_responses_total", RetryPolicy::getRetried);
+    }
+
+    private void retryFamily(String name, ToLongFunction<RetryPolicy> value) {
+        type(name, "counter");
+        for (int i = 0; i < retryPolicies.size(); i++) {
+            sample(name, retryPolicyLabels.get(i), value.applyAsLong(retryPolicies.get(i)));
+        }
+    }
+
+    private void renderCaching() {
+        final ResponseCache cache = ResponseCache.global();
+        type("response_cache_hits_total", "counter");
+        buffer.append(PREFIX).append("response_cache_hits_total ").append(cache.getHits()).append('\n');
+        type("response_cache_misses_total", "counter");
+        buffer.append(PREFIX).append("response_cache_misses_total ").append(cache.getMisses()).append('\n');
+        type("response_cache_revalidated_total", "counter");
+        buffer.append(PREFIX).append("response_cache_revalidated_total ").append(cache.getRevalidated()).append('\n');
+        type("response_cache_hit_ratio", "gauge");
+        buffer.append(PREFIX).append("response_cache_hit_ratio ").append(cache.getHitRatio()).append('\n');
+        type("response_cache_bytes_saved_total", "counter");
+        buffer.append(PREFIX).append("response_cache_bytes_saved_total ").append(cache.getBytesSaved()).append('\n');
+        type("response_cache_evictions_total", "counter");
+        buffer.append(PREFIX).append("response_cache_evictions_total ").append(cache.getEvictions()).append('\n');
+        type("response_cache_entries", "gauge");
+        buffer.append(PREFIX).append("response_cache_entries ").append(cache.size()).append('\n');
+        type("response_cache_memory_bytes", "gauge");
+        buffer.append(PREFIX).append("response_cache_memory_bytes ").append(cache.getMemoryUsed()).append('\n');
+        type("requests_coalesced_total", "counter");
+        buffer.append(PREFIX).append("requests_coalesced_total ").append(RequestCoalescingHandler.getCoalesced()).append('\n');
+        type("request_coalescing_fallbacks_total", "counter");
+        buffer.append(PREFIX).append("request_coalescing_fallbacks_total ").append(RequestCoalescingHandler.getFallbacks()).append('\n');
+    }
+
+    private void renderQueues() {
+        type("pool_queue_depth", "gauge");
+        for (int i = 0; i < queues.size(); i++) {
+            sample("pool_queue_depth", queueLabels.get(i), queues.get(i).getDepth());
+        }
+        type("pool_queue_dropped_total", "counter");
+        for (int i = 0; i < queues.size(); i++) {
+            sample("pool_queue_dropped_total", queueLabels.get(i), queues.get(i).getDropped());
+        }
+        type("pool_queue_expired_total", "counter");
+        for (int i = 0; i < queues.size(); i++) {
+            sample("pool_queue_expired_total", queueLabels.get(i), queues.get(i).getExpired());
+        }
+        type("pool_queue_sojourn_seconds", "histogram");
+        for (int i = 0; i < queues.size(); i++) {
+            histogram("pool_queue_sojourn_seconds", queueLabels.get(i), queues.get(i).getSojourn().snapshot());
+        }
+    }
+
+    private void hostFamily(String name, String type, ToLongFunction<Host> value) {
+        type(name, type);
+        for (int i = 0; i < hosts.size(); i++) {
+            sample(name, hostLabels.get(i), value.applyAsLong(hosts.get(i)));
+        }
+    }
+
+    private void clientFamily(List<ClientStatistics> statistics, String name, ToLongFunction<ClientStatistics> value) {
+        type(name, "counter");
+        for (int i = 0; i < statistics.size(); i++) {
+            final ClientStatistics clientStatistics = statistics.get(i);
+            if (clientStatistics != null) {
+                sample(name, hostLabels.get(i), value.applyAsLong(clientStatistics));
+            }
+        }
+    }
+
+    private void renderLatencies() {
+        final String name = "request_duration_seconds";
+        series.addAll(latencyHistogramService.getSeries());
+        series.forEach(s -> snapshots.add(s.snapshot()));
+        type(name, "histogram");
+        for (int i = 0; i < series.size(); i++) {
+            final Series s = series.get(i);
+            final String label = labels.computeIfAbsent(s, k -> labels(s.getVirtualhost(), s.getPool(), s.getTarget()));
+            histogram(name, label, snapshots.get(i));
+        }
+        if (RequestPhases.ENABLED) {
+            renderPhases();
+        }
+    }
+
+    private void renderPhases() {
+        final String name = "request_phase_duration_seconds";
+        type(name, "histogram");
+        for (final Series s : series) {
+            final String label = labels.get(s);
+            for (int phase = 0; phase < RequestPhases.PHASES; phase++) {
+                final Snapshot snapshot = s.phaseSnapshot(phase);
+                if (snapshot != null) {
+                    histogram(name, label + ",phase=\"" + RequestPhases.phaseName(phase) + '"', snapshot);
+                }
+            }
+        }
+    }
+
+    private void histogram(String name, String label, Snapshot snapshot) {
+        for (int b = 0; b < LATENCY_BUCKETS.length; b++) {
+            buffer.append(PREFIX).append(name).append("_bucket{").append(label)
+                  .append(",le=\"").append(LATENCY_BUCKET_LABELS[b]).append("\"} ")
+                  .append(snapshot.getCountAtOrBelow(LATENCY_BUCKETS[b])).append('\n');
+        }
+        buffer.append(PREFIX).append(name).append("_bucket{").append(label).append(",le=\"+Inf\"} ").append(snapshot.getCount()).append('\n');
+        buffer.append(PREFIX).append(name).append("_sum{").append(label).append("} ").append(snapshot.getSum() / 1e6).append('\n');
+        buffer.append(PREFIX).append(name).append("_count{").append(label).append("} ").append(snapshot.getCount()).append('\n');
+    }
+
+    private void type(String name, String type) {
+        buffer.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(String name, String label, long value) {
+        buffer.append(PREFIX).append(name).append('{').append(label).append("} ").append(value).append('\n');
+    }
+
+    private String labels(String virtualhost, String pool, String target) {
+        final int start = buffer.length();
+        buffer.append("virtualhost=\"");
+        escape(virtualhost);
+        buffer.append("\",pool=\"");
+        escape(pool);
+        if (target != null) {
+            buffer.append("\",target=\"");
+            escape(target);
+        }
+        buffer.append('"');
+        final String label = buffer.substring(start);
+        buffer.setLength(start);
+        return label;
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                buffer.append('\\').append(c);
+            } else if (c == '\n') {
+                buffer.append("\\n");
+            } else {
+                buffer.append(c);
+            }
+        }
+    }
+}
@@ -19,7 +19,10 @@ package io.galeb.router.handlers;
 import io.galeb.core.enums.SystemEnv;
 import io.galeb.router.ResponseCodeOnError;
 import io.galeb.router.handlers.completionListeners.AccessLogCompletionListener;
+import io.galeb.router.handlers.completionListeners.LatencyHistogramCompletionListener;
 import io.galeb.router.handlers.completionListeners.StatsdCompletionListener;
+import io.galeb.router.handlers.completionListeners.TrafficSketchCompletionListener;
+import io.galeb.router.metrics.RequestPhases;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.NameVirtualHostHandler;
@@ -34,22 +37,33 @@ public class RootHandler implements HttpHandler {
     private final NameVirtualHostHandler nameVirtualHostHandler;
     private final AccessLogCompletionListener accessLogCompletionListener;
     private final StatsdCompletionListener statsdCompletionListener;
+    private final LatencyHistogramCompletionListener latencyHistogramCompletionListener;
+    private final TrafficSketchCompletionListener trafficSketchCompletionListener;
 
     private final boolean enableAccessLog = Boolean.parseBoolean(SystemEnv.ENABLE_ACCESSLOG.getValue());
     private final boolean enableStatsd    = Boolean.parseBoolean(SystemEnv.ENABLE_STATSD.getValue());
+    private final boolean enableLatencyHistogram = Boolean.parseBoolean(SystemEnv.ENABLE_LATENCY_HISTOGRAM.getValue());
+    private final boolean enableTrafficSketch = Boolean.parseBoolean(SystemEnv.ENABLE_TRAFFIC_SKETCH.getValue());
 
     public RootHandler(final NameVirtualHostHandler nameVirtualHostHandler,
                        final AccessLogCompletionListener accessLogCompletionListener,
-                       final StatsdCompletionListener statsdCompletionListener) {
+                       final StatsdCompletionListener statsdCompletionListener,
+                       final LatencyHistogramCompletionListener latencyHistogramCompletionListener,
+                       final TrafficSketchCompletionListener trafficSketchCompletionListener) {
         this.nameVirtualHostHandler = nameVirtualHostHandler;
         this.accessLogCompletionListener = accessLogCompletionListener;
         this.statsdCompletionListener = statsdCompletionListener;
+        this.latencyHistogramCompletionListener = latencyHistogramCompletionListener;
+        this.trafficSketchCompletionListener = trafficSketchCompletionListener;
     }
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
         if (enableAccessLog) exchange.addExchangeCompleteListener(accessLogCompletionListener);
         if (enableStatsd) exchange.addExchangeCompleteListener(statsdCompletionListener);
+        if (enableLatencyHistogram) exchange.addExchangeCompleteListener(latencyHistogramCompletionListener);
+        if (enableTrafficSketch) exchange.addExchangeCompleteListener(trafficSketchCompletionListener);
+        RequestPhases.start(exchange);
         try {
             nameVirtualHostHandler.handleRequest(exchange);
         } catch (Exception e) {
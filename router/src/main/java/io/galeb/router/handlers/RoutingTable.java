@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.handlers;
+
+import io.galeb.core.entity.Pool;
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.router.handlers.cache.RequestCoalescingHandler;
+import io.galeb.router.handlers.cache.ResponseCacheHandler;
+import io.galeb.router.handlers.ratelimit.RateLimitHandler;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.IPAddressAccessControlHandler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static io.galeb.router.handlers.NameVirtualHostDefaultHandler.IPACL_ALLOW;
+
+/**
+ * Immutable snapshot of the virtualhost handlers (host -> rules -> pools).
+ * It is built by the sync thread and published with a single reference swap,
+ * so the request path only does a map lookup.
+ */
+public final class RoutingTable {
+
+    private static final AtomicLong VERSIONS = new AtomicLong(0L);
+
+    public static final RoutingTable EMPTY = new RoutingTable(Collections.emptyMap());
+
+    private final Map<String, Route> routes;
+    private final long version;
+
+    public RoutingTable(final Map<String, Route> routes) {
+        this.routes = Collections.unmodifiableMap(new HashMap<>(routes));
+        this.version = VERSIONS.getAndIncrement();
+    }
+
+    /**
+     * Sequence number of the table, incremented at each published table.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Route get(final String virtualhostName) {
+        return virtualhostName != null ? routes.get(virtualhostName) : null;
+    }
+
+    public Set<String> virtualhosts() {
+        return routes.keySet();
+    }
+
+    public Collection<Route> routes() {
+        return routes.values();
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    public static class Route {
+        private final VirtualHost virtualHost;
+        private final RuleTargetHandler ruleTargetHandler;
+        private final HttpHandler handler;
+
+        public Route(final VirtualHost virtualHost) {
+            this(virtualHost, PoolHandler::new);
+        }
+
+        public Route(final VirtualHost virtualHost, final Function<Pool, PoolHandler> poolHandlerProvider) {
+            this.virtualHost = virtualHost;
+            this.ruleTargetHandler = new RuleTargetHandler(virtualHost, poolHandlerProvider);
+            this.handler = defineHandler();
+        }
+
+        public VirtualHost getVirtualHost() {
+            return virtualHost;
+        }
+
+        public RuleTargetHandler getRuleTargetHandler() {
+            return ruleTargetHandler;
+        }
+
+        public HttpHandler getHandler() {
+            return handler;
+        }
+
+        private HttpHandler defineHandler() {
+            final HttpHandler coalescingHandler = RequestCoalescingHandler.wrap(virtualHost, ruleTargetHandler);
+            final HttpHandler rateLimitHandler = RateLimitHandler.wrap(virtualHost, ResponseCacheHandler.wrap(virtualHost, coalescingHandler));
+            if (virtualHost.getProperties().containsKey(IPACL_ALLOW)) {
+                final IPAddressAccessControlHandler ipAddressAccessControlHandler = new IPAddressAccessControlHandler().setNext(rateLimitHandler);
+                Arrays.asList(virtualHost.getProperties().get(IPACL_ALLOW).split(","))
+                        .forEach(ipAddressAccessControlHandler::addAllow);
+                ipAddressAccessControlHandler.setDefaultAllow(false);
+                return ipAddressAccessControlHandler;
+            }
+            return rateLimitHandler;
+        }
+    }
+}
@@ -27,8 +27,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
+import java.util.HashSet;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
+import java.util.function.Function;
 
 public class RuleTargetHandler implements HttpHandler {
 
@@ -37,15 +39,21 @@ public class RuleTargetHandler implements HttpHandler {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    private final AtomicBoolean firstLoad = new AtomicBoolean(true);
     private final VirtualHost virtualHost;
+    private final Function<Pool, PoolHandler> poolHandlerProvider;
     private final PathGlobHandler pathGlobHandler;
-    private PoolHandler poolHandler = null;
+    private final PoolHandler poolHandler;
 
     public RuleTargetHandler(final VirtualHost virtualHost) {
+        this(virtualHost, PoolHandler::new);
+    }
+
+    public RuleTargetHandler(final VirtualHost virtualHost, final Function<Pool, PoolHandler> poolHandlerProvider) {
         this.virtualHost = virtualHost;
         Assert.notNull(virtualHost, "[ Virtualhost NOT FOUND ]");
-        this.pathGlobHandler = new PathGlobHandler().setDefaultHandler(loadRulesHandler());
+        this.poolHandlerProvider = poolHandlerProvider;
+        this.pathGlobHandler = new PathGlobHandler();
+        this.poolHandler = loadRules();
     }
 
     @Override
@@ -65,62 +73,58 @@ public class RuleTargetHandler implements HttpHandler {
         return pathGlobHandler;
     }
 
-    private HttpHandler loadRulesHandler() {
-        return new HttpHandler() {
+    public VirtualHost getVirtualHost() {
+        return virtualHost;
+    }
 
-            @Override
-            public synchronized void handleRequest(HttpServerExchange exchange) throws Exception {
-                if (pathGlobHandler.getPaths().isEmpty()) {
-                    loadRules();
-                }
-                if (poolHandler != null) {
-                    poolHandler.handleRequest(exchange);
-                    return;
-                }
-                if (!pathGlobHandler.getPaths().isEmpty()) {
-                    if (firstLoad.getAndSet(false)) {
-                        pathGlobHandler.handleRequest(exchange);
-                    } else {
-                        ResponseCodeOnError.RULE_PATH_NOT_FOUND.getHandler().handleRequest(exchange);
-                    }
-                } else {
-                    ResponseCodeOnError.RULES_EMPTY.getHandler().handleRequest(exchange);
-                }
-            }
+    public Set<PoolHandler> getPoolHandlers() {
+        final Set<PoolHandler> poolHandlers = new HashSet<>();
+        if (poolHandler != null) {
+            poolHandlers.add(poolHandler);
+        }
+        pathGlobHandler.getPaths().values().stream()
+                .filter(PoolHandler.class::isInstance)
+                .map(PoolHandler.class::cast)
+                .forEach(poolHandlers::add);
+        final HttpHandler defaultHandler = pathGlobHandler.getDefaultHandler();
+        if (defaultHandler instanceof PoolHandler) {
+            poolHandlers.add((PoolHandler) defaultHandler);
+        }
+        return poolHandlers;
+    }
 
-            private void loadRules() {
-                final Rule ruleSlashOnly;
-                if (virtualHost.getRules().size() == 1 &&
-                        (ruleSlashOnly = virtualHost.getRules().stream().findAny().orElse(null)) != null &&
-                        EnumRuleType.PATH.toString().equals(ruleSlashOnly.getRuleType().getName()) &&
-                        ruleSlashOnly.getProperties().get(RULE_MATCH).equals("/")) {
-                    poolHandler = new PoolHandler(ruleSlashOnly.getPool());
-                    return;
-                }
+    private PoolHandler loadRules() {
+        final Rule ruleSlashOnly;
+        if (virtualHost.getRules().size() == 1 &&
+                (ruleSlashOnly = virtualHost.getRules().stream().findAny().orElse(null)) != null &&
+                EnumRuleType.PATH.toString().equals(ruleSlashOnly.getRuleType().getName()) &&
+                "/".equals(ruleSlashOnly.getProperties().get(RULE_MATCH))) {
+            return poolHandlerProvider.apply(ruleSlashOnly.getPool());
+        }
 
-                final Rule ruleDefault = virtualHost.getRuleDefault();
-                if (ruleDefault != null) {
-                    pathGlobHandler.setDefaultHandler(new PoolHandler(ruleDefault.getPool()));
-                }
+        virtualHost.getRules().forEach(rule -> {
+            String order = Optional.ofNullable(rule.getProperties().get(RULE_ORDER)).orElse(String.valueOf(Integer.MAX_VALUE));
+            String type = rule.getRuleType().getName();
+            Pool pool = rule.getPool();
+            String path = rule.getProperties().get(RULE_MATCH);
+            if (path != null) {
+                logger.info("[" + virtualHost.getName() + "] adding Rule " + rule.getName() + " [order:" + order + ", type:" + type + "]");
 
-                virtualHost.getRules().forEach(rule -> {
-                    String order = Optional.ofNullable(rule.getProperties().get(RULE_ORDER)).orElse(String.valueOf(Integer.MAX_VALUE));
-                    String type = rule.getRuleType().getName();
-                    Pool pool = rule.getPool();
-                    String path = rule.getProperties().get(RULE_MATCH);
-                    if (path != null) {
-                        logger.info("[" + virtualHost.getName() + "] adding Rule " + rule.getName() + " [order:" + order + ", type:" + type + "]");
-
-                        if (EnumRuleType.PATH.toString().equals(type)) {
-                            final PoolHandler poolHandler = new PoolHandler(pool);
-                            pathGlobHandler.addPath(path, Integer.parseInt(order), poolHandler);
-                        }
-                    } else {
-                        logger.warn("[" + virtualHost.getName() + "] Rule " + rule.getName() + " ignored. properties.match IS NULL");
-                    }
-                });
+                if (EnumRuleType.PATH.toString().equals(type)) {
+                    pathGlobHandler.addPath(path, Integer.parseInt(order), poolHandlerProvider.apply(pool));
+                }
+            } else {
+                logger.warn("[" + virtualHost.getName() + "] Rule " + rule.getName() + " ignored. properties.match IS NULL");
             }
-        };
+        });
+
+        final Rule ruleDefault = virtualHost.getRuleDefault();
+        if (ruleDefault != null) {
+            pathGlobHandler.setDefaultHandler(poolHandlerProvider.apply(ruleDefault.getPool()));
+        } else if (pathGlobHandler.getPaths().isEmpty()) {
+            pathGlobHandler.setDefaultHandler(ResponseCodeOnError.RULES_EMPTY.getHandler());
+        }
+        return null;
     }
 
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.galeb.router.metrics.TopK;
+import io.galeb.router.services.TrafficSketchService;
+import io.galeb.router.services.TrafficSketchService.VirtualHostSketch;
+import io.galeb.router.services.TrafficSketchService.Window;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Shows the top clients, URIs and user agents and the unique clients of the virtualhosts.
+ *
+ * Query parameters: "virtualhost" filters the virtualhosts, "window=current" shows the open window instead of
+ * the last closed one and "registers=true" adds the HyperLogLog registers (base64), so the sketches of several
+ * routers can be merged (see {@link TopK#merge} and {@link io.galeb.router.metrics.HyperLogLog#fromBytes}).
+ */
+@Component
+public class TrafficSketchHandler implements HttpHandler {
+
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final TrafficSketchService trafficSketchService;
+
+    @Autowired
+    public TrafficSketchHandler(final TrafficSketchService trafficSketchService) {
+        this.trafficSketchService = trafficSketchService;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(this);
+            return;
+        }
+        final Map<String, Deque<String>> params = exchange.getQueryParameters();
+        final boolean current = "current".equals(first(params, "window"));
+        final boolean registers = "true".equals(first(params, "registers"));
+        final List<Map<String, Object>> virtualhosts = trafficSketchService.getSketches().values().stream()
+                .filter(sketch -> matches(params, sketch.getVirtualhost()))
+                .sorted(Comparator.comparing(VirtualHostSketch::getVirtualhost))
+                .map(sketch -> toMap(sketch, current ? sketch.getCurrent() : sketch.getLast(), registers))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        final Map<String, Object> json = new HashMap<>();
+        json.put("window", current ? "current" : "last");
+        json.put("interval", trafficSketchService.getInterval());
+        json.put("virtualhosts", virtualhosts);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseHeaders().put(Headers.SERVER, "GALEB");
+        exchange.setStatusCode(StatusCodes.OK);
+        exchange.getResponseSender().send(gson.toJson(json));
+        exchange.endExchange();
+    }
+
+    private String first(Map<String, Deque<String>> params, String param) {
+        final Deque<String> values = params.get(param);
+        return values != null ? values.peekFirst() : null;
+    }
+
+    private boolean matches(Map<String, Deque<String>> params, String virtualhost) {
+        final Deque<String> expected = params.get("virtualhost");
+        return expected == null || expected.isEmpty() || expected.contains(virtualhost);
+    }
+
+    private Map<String, Object> toMap(VirtualHostSketch sketch, Window window, boolean registers) {
+        if (window == null) return null;
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("virtualhost", sketch.getVirtualhost());
+        map.put("requests", window.getRequests());
+        map.put("uniqueClients", window.getUniqueClients().cardinality());
+        map.put("topClients", toList(window.getClients()));
+        map.put("topUris", toList(window.getUris()));
+        map.put("topUserAgents", toList(window.getUserAgents()));
+        if (registers) {
+            map.put("uniqueClientsRegisters", Base64.getEncoder().encodeToString(window.getUniqueClients().toBytes()));
+        }
+        return map;
+    }
+
+    private List<Map<String, Object>> toList(TopK topK) {
+        return topK.top().stream().map(entry -> {
+            final Map<String, Object> map = new LinkedHashMap<>();
+            map.put("key", entry.getKey());
+            map.put("count", entry.getCount());
+            map.put("error", entry.getError());
+            return map;
+        }).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import io.galeb.router.ResponseCodeOnError;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The Cache-Control directives (RFC 7234, section 5.2) used by the response cache.
+ * Field names of no-cache and private are ignored, i.e. they apply to the whole response.
+ */
+final class CacheControl {
+
+    static final CacheControl EMPTY = new CacheControl();
+
+    // cacheable by default (RFC 7231, section 6.1)
+    private static final Set<Integer> CACHEABLE_STATUS = new HashSet<>(Arrays.asList(
+            StatusCodes.OK, StatusCodes.NON_AUTHORITATIVE_INFORMATION, StatusCodes.NO_CONTENT, StatusCodes.MULTIPLE_CHOICES,
+            StatusCodes.MOVED_PERMANENTLY, StatusCodes.NOT_FOUND, StatusCodes.METHOD_NOT_ALLOWED, StatusCodes.GONE,
+            StatusCodes.REQUEST_URI_TOO_LARGE, StatusCodes.NOT_IMPLEMENTED));
+
+    boolean noStore = false;
+    boolean noCache = false;
+    boolean isPrivate = false;
+    boolean isPublic = false;
+    long maxAge = -1L;
+    long sMaxAge = -1L;
+
+    private CacheControl() {
+    }
+
+    static CacheControl parse(final HeaderValues values) {
+        if (values == null || values.isEmpty()) {
+            return EMPTY;
+        }
+        final CacheControl cacheControl = new CacheControl();
+        for (String value : values) {
+            for (String directive : value.split(",")) {
+                cacheControl.apply(directive.trim());
+            }
+        }
+        return cacheControl;
+    }
+
+    static boolean isCacheableStatus(int status) {
+        return CACHEABLE_STATUS.contains(status);
+    }
+
+    /**
+     * Whether the response may be sent to other clients, i.e. it is not private, no-store, with Set-Cookie or Vary: *,
+     * nor an error of the router itself.
+     */
+    static boolean isShareable(final HeaderMap responseHeaders) {
+        final CacheControl cacheControl = parse(responseHeaders.get(Headers.CACHE_CONTROL));
+        if (cacheControl.noStore || cacheControl.isPrivate || responseHeaders.contains(Headers.SET_COOKIE) ||
+                responseHeaders.contains(ResponseCodeOnError.Header.X_GALEB_ERROR)) {
+            return false;
+        }
+        final HeaderValues vary = responseHeaders.get(Headers.VARY);
+        return vary == null || vary.stream().noneMatch(value -> value.contains("*"));
+    }
+
+    /**
+     * Whether the response is explicitly shareable (public or s-maxage), as required for the requests with credentials.
+     */
+    static boolean isPublic(final HeaderMap responseHeaders) {
+        final CacheControl cacheControl = parse(responseHeaders.get(Headers.CACHE_CONTROL));
+        return cacheControl.isPublic || cacheControl.sMaxAge >= 0L;
+    }
+
+    private void apply(final String directive) {
+        final int equals = directive.indexOf('=');
+        final String name = (equals < 0 ? directive : directive.substring(0, equals)).trim().toLowerCase();
+        switch (name) {
+            case "no-store":
+                noStore = true;
+                break;
+            case "no-cache":
+                noCache = true;
+                break;
+            case "private":
+                isPrivate = true;
+                break;
+            case "public":
+                isPublic = true;
+                break;
+            case "max-age":
+                maxAge = seconds(directive, equals);
+                break;
+            case "s-maxage":
+                sMaxAge = seconds(directive, equals);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Delta-seconds of the directive. An invalid value means stale (0).
+     */
+    private static long seconds(final String directive, int equals) {
+        if (equals < 0) {
+            return 0L;
+        }
+        String value = directive.substring(equals + 1).trim();
+        if (value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Math.max(Long.parseLong(value), 0L);
+        } catch (NumberFormatException e) {
+            // overflow is "forever" (RFC 7234, section 1.2.1), anything else is stale
+            return !value.isEmpty() && value.chars().allMatch(Character::isDigit) ? Integer.MAX_VALUE : 0L;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import org.xnio.Buffers;
+import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sends a stored body instead of the (empty) body of a 304 response to a revalidation.
+ * The body is written by the flushes after the writes are terminated.
+ */
+final class CachedBodyStreamSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+    private final ByteBuffer[] body;
+    private boolean terminated = false;
+    private boolean nextTerminated = false;
+
+    CachedBodyStreamSinkConduit(StreamSinkConduit next, ByteBuffer[] body) {
+        super(next);
+        this.body = body;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        final int remaining = src.remaining();
+        src.position(src.limit());
+        return remaining;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        final long remaining = Buffers.remaining(srcs, offs, len);
+        for (int i = 0; i < len; i++) {
+            srcs[offs + i].position(srcs[offs + i].limit());
+        }
+        return remaining;
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        final int written = write(src);
+        terminateWrites();
+        return written;
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        final long written = write(srcs, offs, len);
+        terminateWrites();
+        return written;
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return Math.max(Math.min(count, src.size() - position), 0L);
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        throughBuffer.clear().flip();
+        return Channels.drain(source, count);
+    }
+
+    @Override
+    public void terminateWrites() throws IOException {
+        terminated = true;
+    }
+
+    @Override
+    public boolean flush() throws IOException {
+        if (!terminated) {
+            return next.flush();
+        }
+        if (!nextTerminated) {
+            while (Buffers.hasRemaining(body)) {
+                if (next.write(body, 0, body.length) == 0L) {
+                    return false;
+                }
+            }
+            next.terminateWrites();
+            nextTerminated = true;
+        }
+        return next.flush();
+    }
+
+    @Override
+    public boolean isWriteShutdown() {
+        return terminated;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import io.undertow.util.DateUtils;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stored response: the body in slab chunks and the (replaceable) head with the headers and the freshness.
+ *
+ * The chunks are freed when the last reference is released: the cache holds one while the entry is
+ * stored, and each hit holds one while the body is sent.
+ */
+final class CachedResponse {
+
+    private static final Set<HttpString> NOT_STORED = new HashSet<>();
+    static {
+        NOT_STORED.add(Headers.CONNECTION);
+        NOT_STORED.add(HttpString.tryFromString("Keep-Alive"));
+        NOT_STORED.add(Headers.PROXY_AUTHENTICATE);
+        NOT_STORED.add(Headers.PROXY_AUTHORIZATION);
+        NOT_STORED.add(Headers.TE);
+        NOT_STORED.add(Headers.TRAILER);
+        NOT_STORED.add(Headers.TRANSFER_ENCODING);
+        NOT_STORED.add(Headers.UPGRADE);
+        NOT_STORED.add(Headers.CONTENT_LENGTH);
+        NOT_STORED.add(Headers.AGE);
+    }
+
+    final String key;
+    final int length;
+    final int[] chunks;
+    final int chunkCount;
+    private final HttpString[] varyNames;
+    private final String[] varyValues;
+    private volatile Head head;
+    int refs = 1; // guarded by the segment
+
+    CachedResponse(String key, Head head, HttpString[] varyNames, String[] varyValues, int[] chunks, int chunkCount, int length) {
+        this.key = key;
+        this.head = head;
+        this.varyNames = varyNames;
+        this.varyValues = varyValues;
+        this.chunks = chunks;
+        this.chunkCount = chunkCount;
+        this.length = length;
+    }
+
+    Head head() {
+        return head;
+    }
+
+    /**
+     * Replaces the head with the headers of a 304 (Not Modified) response (RFC 7234, section 4.3.4).
+     */
+    Head refresh(final HeaderMap notModified, long now) {
+        final Head current = head;
+        final HeaderMap merged = new HeaderMap();
+        for (int i = 0; i < current.names.length; i++) {
+            if (!notModified.contains(current.names[i])) merged.add(current.names[i], current.values[i]);
+        }
+        for (HeaderValues values : notModified) {
+            merged.addAll(values.getHeaderName(), values);
+        }
+        final Head refreshed = Head.of(current.status, merged, now);
+        head = refreshed;
+        return refreshed;
+    }
+
+    /**
+     * Whether the request selects this response, i.e. it has the same values of the Vary headers.
+     */
+    boolean matches(final HeaderMap requestHeaders) {
+        return matches(varyNames, varyValues, requestHeaders);
+    }
+
+    static boolean matches(final HttpString[] varyNames, final String[] varyValues, final HeaderMap requestHeaders) {
+        for (int i = 0; i < varyNames.length; i++) {
+            final String value = joined(requestHeaders.get(varyNames[i]));
+            if (value == null ? varyValues[i] != null : !value.equals(varyValues[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ByteBuffer[] body(final SlabAllocator allocator) {
+        final ByteBuffer[] buffers = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            buffers[i] = allocator.view(chunks[i], Math.min(length - i * SlabAllocator.CHUNK_SIZE, SlabAllocator.CHUNK_SIZE));
+        }
+        return buffers;
+    }
+
+    static HttpString[] varyNames(final HeaderValues vary) {
+        final List<HttpString> names = new ArrayList<>();
+        if (vary != null) {
+            for (String value : vary) {
+                for (String name : value.split(",")) {
+                    if (!name.trim().isEmpty()) names.add(HttpString.tryFromString(name.trim()));
+                }
+            }
+        }
+        return names.toArray(new HttpString[names.size()]);
+    }
+
+    static String[] varyValues(final HttpString[] varyNames, final HeaderMap requestHeaders) {
+        final String[] values = new String[varyNames.length];
+        for (int i = 0; i < varyNames.length; i++) {
+            values[i] = joined(requestHeaders.get(varyNames[i]));
+        }
+        return values;
+    }
+
+    private static String joined(final HeaderValues values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        return values.size() == 1 ? values.getFirst() : String.join(",", values);
+    }
+
+    /**
+     * Status, headers and freshness (RFC 7234, section 4.2) of a stored response. The age does not use
+     * the Date header, so the clock skew between the router and the targets does not matter.
+     */
+    static final class Head {
+        final int status;
+        final HttpString[] names;
+        final String[] values;
+        final String etag;
+        final long storedAt;
+        final long lifetime;
+        final long initialAge;
+
+        private Head(int status, HttpString[] names, String[] values, String etag, long storedAt, long lifetime, long initialAge) {
+            this.status = status;
+            this.names = names;
+            this.values = values;
+            this.etag = etag;
+            this.storedAt = storedAt;
+            this.lifetime = lifetime;
+            this.initialAge = initialAge;
+        }
+
+        static Head of(int status, final HeaderMap headers, long now) {
+            final List<HttpString> names = new ArrayList<>();
+            final List<String> values = new ArrayList<>();
+            for (HeaderValues header : headers) {
+                if (NOT_STORED.contains(header.getHeaderName())) continue;
+                for (String value : header) {
+                    names.add(header.getHeaderName());
+                    values.add(value);
+                }
+            }
+            return new Head(status, names.toArray(new HttpString[names.size()]), values.toArray(new String[values.size()]),
+                    headers.getFirst(Headers.ETAG), now, TimeUnit.SECONDS.toNanos(lifetime(headers)),
+                    TimeUnit.SECONDS.toNanos(seconds(headers.getFirst(Headers.AGE))));
+        }
+
+        boolean isFresh(long now) {
+            return age(now) < lifetime;
+        }
+
+        long ageSeconds(long now) {
+            return TimeUnit.NANOSECONDS.toSeconds(age(now));
+        }
+
+        private long age(long now) {
+            return initialAge + now - storedAt;
+        }
+
+        /**
+         * Replaces the response headers with the stored ones.
+         */
+        void copyTo(final HeaderMap responseHeaders) {
+            for (HttpString name : names) {
+                responseHeaders.remove(name);
+            }
+            for (int i = 0; i < names.length; i++) {
+                responseHeaders.add(names[i], values[i]);
+            }
+        }
+
+        private static long lifetime(final HeaderMap headers) {
+            final CacheControl cacheControl = CacheControl.parse(headers.get(Headers.CACHE_CONTROL));
+            if (cacheControl.noCache) {
+                return 0L;
+            }
+            if (cacheControl.sMaxAge >= 0L) {
+                return cacheControl.sMaxAge;
+            }
+            if (cacheControl.maxAge >= 0L) {
+                return cacheControl.maxAge;
+            }
+            final String expires = headers.getFirst(Headers.EXPIRES);
+            if (expires != null) {
+                final Date expiresDate = DateUtils.parseDate(expires);
+                final String date = headers.getFirst(Headers.DATE);
+                final Date dateDate = date != null ? DateUtils.parseDate(date) : null;
+                final long base = dateDate != null ? dateDate.getTime() : System.currentTimeMillis();
+                return expiresDate != null ? Math.max(TimeUnit.MILLISECONDS.toSeconds(expiresDate.getTime() - base), 0L) : 0L;
+            }
+            return 0L;
+        }
+
+        private static long seconds(final String value) {
+            if (value == null) {
+                return 0L;
+            }
+            try {
+                return Math.max(Long.parseLong(value.trim()), 0L);
+            } catch (NumberFormatException e) {
+                return 0L;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies the response body while it is sent. The copy is complete when the writes are terminated.
+ */
+final class CopyingStreamSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+    private final ResponseCopy copy;
+    private final Runnable onTerminated;
+    private int[] positions = new int[8];
+
+    CopyingStreamSinkConduit(StreamSinkConduit next, ResponseCopy copy, Runnable onTerminated) {
+        super(next);
+        this.copy = copy;
+        this.onTerminated = onTerminated;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        final int position = src.position();
+        final int written = next.write(src);
+        if (written > 0) {
+            copy.append(src, position, written);
+        }
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        savePositions(srcs, offs, len);
+        return copied(srcs, offs, len, next.write(srcs, offs, len));
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        final int position = src.position();
+        final int written = next.writeFinal(src);
+        if (written > 0) {
+            copy.append(src, position, written);
+        }
+        if (!src.hasRemaining()) {
+            onTerminated.run();
+        }
+        return written;
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        savePositions(srcs, offs, len);
+        final long written = copied(srcs, offs, len, next.writeFinal(srcs, offs, len));
+        if (!srcs[offs + len - 1].hasRemaining()) {
+            onTerminated.run();
+        }
+        return written;
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        copy.discard();
+        return next.transferFrom(src, position, count);
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        copy.discard();
+        return next.transferFrom(source, count, throughBuffer);
+    }
+
+    @Override
+    public void terminateWrites() throws IOException {
+        onTerminated.run();
+        next.terminateWrites();
+    }
+
+    @Override
+    public void truncateWrites() throws IOException {
+        copy.discard();
+        next.truncateWrites();
+    }
+
+    private void savePositions(ByteBuffer[] srcs, int offs, int len) {
+        if (positions.length < len) {
+            positions = new int[len];
+        }
+        for (int i = 0; i < len; i++) {
+            positions[i] = srcs[offs + i].position();
+        }
+    }
+
+    private long copied(ByteBuffer[] srcs, int offs, int len, long written) {
+        long remaining = written;
+        for (int i = 0; i < len && remaining > 0; i++) {
+            final int count = srcs[offs + i].position() - positions[i];
+            if (count > 0) {
+                copy.append(srcs[offs + i], positions[i], count);
+                remaining -= count;
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.client.hostselectors.HostSelector;
+import io.galeb.router.handlers.PoolHandler;
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.XnioExecutor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses identical concurrent GETs of a virtualhost, enabled by the "requestCoalescing" virtualhost property
+ * (or by REQUEST_COALESCING for the virtualhosts without it).
+ *
+ * The first request (leader) of a key (uri and conditional headers) is sent to the pool, the others (followers)
+ * wait for its response, up to REQUEST_COALESCING_TIMEOUT. A shareable response (see {@link CacheControl#isShareable})
+ * with a cacheable status (or 304) up to REQUEST_COALESCING_MAX_BODY is copied and sent to the followers with the same
+ * values of its Vary headers. Router errors (X-Galeb-Error) are not shared and pool checks (X-Check-Pool) are not coalesced.
+ * Requests with Cookie only share the responses that are public (or with s-maxage), as the response may be personalised.
+ * The other followers, and the ones that timed out, are sent to the pool. Behind the response cache, only
+ * its misses and revalidations are coalesced.
+ */
+public class RequestCoalescingHandler implements HttpHandler {
+
+    public static final String PROP_REQUEST_COALESCING = "requestCoalescing";
+
+    /**
+     * Attached to the requests with the response of their leader.
+     */
+    public static final AttachmentKey<Boolean> COALESCED = AttachmentKey.create(Boolean.class);
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescingHandler.class);
+
+    private static final LongAdder COALESCED_REQUESTS = new LongAdder();
+    private static final LongAdder FALLBACKS = new LongAdder();
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final HttpHandler next;
+    private final long timeout;
+    private final int maxBody;
+
+    public RequestCoalescingHandler(final HttpHandler next, long timeout, int maxBody) {
+        this.next = next;
+        this.timeout = timeout;
+        this.maxBody = maxBody;
+    }
+
+    /**
+     * Returns the handler coalescing the virtualhost requests, or next if the virtualhost does not coalesce requests.
+     */
+    public static HttpHandler wrap(final VirtualHost virtualHost, final HttpHandler next) {
+        if (!Boolean.parseBoolean(virtualHost.getProperties().getOrDefault(PROP_REQUEST_COALESCING,
+                SystemEnv.REQUEST_COALESCING.getValue()))) {
+            return next;
+        }
+        logger.info("Virtualhost " + virtualHost.getName() + ": request coalescing");
+        return new RequestCoalescingHandler(next,
+                Long.parseLong(SystemEnv.REQUEST_COALESCING_TIMEOUT.getValue()),
+                Integer.parseInt(SystemEnv.REQUEST_COALESCING_MAX_BODY.getValue()));
+    }
+
+    /**
+     * Requests sent with the response of their leader.
+     */
+    public static long getCoalesced() {
+        return COALESCED_REQUESTS.sum();
+    }
+
+    /**
+     * Followers sent to the pool: the response was not shareable, did not match or did not arrive in time.
+     */
+    public static long getFallbacks() {
+        return FALLBACKS.sum();
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!isCoalescible(exchange)) {
+            next.handleRequest(exchange);
+            return;
+        }
+        final Flight flight = new Flight(key(exchange));
+        final Flight current = flights.putIfAbsent(flight.key, flight);
+        if (current == null) {
+            lead(exchange, flight);
+        } else {
+            // waits out of the handler call, so the leader may resume it at any time
+            exchange.dispatch(SameThreadExecutor.INSTANCE, () -> follow(exchange, current));
+        }
+    }
+
+    private void lead(final HttpServerExchange exchange, final Flight flight) throws Exception {
+        exchange.addExchangeCompleteListener((completed, nextListener) -> {
+            land(flight, null);
+            nextListener.proceed();
+        });
+        exchange.addResponseWrapper((factory, wrapped) -> {
+            final long contentLength = wrapped.getResponseContentLength();
+            final int status = wrapped.getStatusCode();
+            final HeaderMap responseHeaders = wrapped.getResponseHeaders();
+            if ((status != StatusCodes.NOT_MODIFIED && !CacheControl.isCacheableStatus(status)) ||
+                    contentLength > maxBody || !CacheControl.isShareable(responseHeaders) ||
+                    (wrapped.getRequestHeaders().contains(Headers.COOKIE) && !CacheControl.isPublic(responseHeaders))) {
+                land(flight, null);
+                return factory.create();
+            }
+            final SharedResponse response = new SharedResponse(wrapped, contentLength);
+            return new CopyingStreamSinkConduit(factory.create(), response, () -> {
+                if (contentLength >= 0L && response.length != contentLength) {
+                    response.discard();
+                }
+                response.realDest = wrapped.getAttachment(HostSelector.REAL_DEST);
+                land(flight, response.body != null ? response : null);
+            });
+        });
+        next.handleRequest(exchange);
+    }
+
+    private void follow(final HttpServerExchange exchange, final Flight flight) {
+        synchronized (flight) {
+            if (!flight.landed) {
+                final Waiter waiter = new Waiter(exchange);
+                waiter.timeoutKey = exchange.getIoThread().executeAfter(() -> timeout(flight, waiter), timeout, TimeUnit.MILLISECONDS);
+                flight.waiters.add(waiter);
+                return;
+            }
+        }
+        Connectors.executeRootHandler(resumed -> respond(resumed, flight.response), exchange);
+    }
+
+    private void timeout(final Flight flight, final Waiter waiter) {
+        synchronized (flight) {
+            if (flight.landed || !flight.waiters.remove(waiter)) {
+                return;
+            }
+        }
+        FALLBACKS.increment();
+        Connectors.executeRootHandler(next, waiter.exchange);
+    }
+
+    /**
+     * Ends the flight (once) and resumes its followers in their IO threads.
+     */
+    private void land(final Flight flight, final SharedResponse response) {
+        final List<Waiter> waiters;
+        synchronized (flight) {
+            if (flight.landed) {
+                return;
+            }
+            flight.landed = true;
+            flight.response = response;
+            waiters = flight.waiters;
+            flight.waiters = null;
+        }
+        flights.remove(flight.key, flight);
+        for (Waiter waiter : waiters) {
+            waiter.timeoutKey.remove();
+            waiter.exchange.getIoThread().execute(() ->
+                    Connectors.executeRootHandler(resumed -> respond(resumed, response), waiter.exchange));
+        }
+    }
+
+    private void respond(final HttpServerExchange exchange, final SharedResponse response) throws Exception {
+        if (response == null || !CachedResponse.matches(response.varyNames, response.varyValues, exchange.getRequestHeaders())) {
+            FALLBACKS.increment();
+            next.handleRequest(exchange);
+            return;
+        }
+        COALESCED_REQUESTS.increment();
+        exchange.putAttachment(COALESCED, Boolean.TRUE);
+        if (response.realDest != null) {
+            exchange.putAttachment(HostSelector.REAL_DEST, response.realDest);
+        }
+        exchange.setStatusCode(response.head.status);
+        response.head.copyTo(exchange.getResponseHeaders());
+        if (response.length == 0) {
+            exchange.endExchange();
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, response.length);
+        exchange.getResponseSender().send(ByteBuffer.wrap(response.body, 0, response.length));
+    }
+
+    private static boolean isCoalescible(final HttpServerExchange exchange) {
+        final HeaderMap requestHeaders = exchange.getRequestHeaders();
+        return Methods.GET.equals(exchange.getRequestMethod()) &&
+                exchange.getRequestContentLength() <= 0L && !requestHeaders.contains(Headers.TRANSFER_ENCODING) &&
+                !requestHeaders.contains(Headers.AUTHORIZATION) && !requestHeaders.contains(Headers.RANGE) &&
+                !requestHeaders.contains(Headers.UPGRADE) && !requestHeaders.contains(PoolHandler.CHECK_RULE_HEADER);
+    }
+
+    /**
+     * The conditional headers are part of the key: a 304 is only shared with requests expecting it. Requests with
+     * and without Cookie are not coalesced together.
+     */
+    private static String key(final HttpServerExchange exchange) {
+        final HeaderMap requestHeaders = exchange.getRequestHeaders();
+        final String queryString = exchange.getQueryString();
+        return exchange.getRequestScheme() + ' ' + exchange.getRequestURI() + (queryString.isEmpty() ? "" : "?" + queryString) +
+                ' ' + requestHeaders.getFirst(Headers.IF_NONE_MATCH) + ' ' + requestHeaders.getFirst(Headers.IF_MODIFIED_SINCE) +
+                (requestHeaders.contains(Headers.COOKIE) ? " cookie" : "");
+    }
+
+    private static final class Flight {
+        private final String key;
+        private List<Waiter> waiters = new ArrayList<>();
+        private SharedResponse response = null;
+        private boolean landed = false;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Waiter {
+        private final HttpServerExchange exchange;
+        private XnioExecutor.Key timeoutKey;
+
+        private Waiter(HttpServerExchange exchange) {
+            this.exchange = exchange;
+        }
+    }
+
+    /**
+     * Status, headers and a heap copy of the body of the leader's response.
+     */
+    private final class SharedResponse implements ResponseCopy {
+        private final CachedResponse.Head head;
+        private final HttpString[] varyNames;
+        private final String[] varyValues;
+        private byte[] body;
+        private int length = 0;
+        private String realDest = null;
+
+        private SharedResponse(final HttpServerExchange exchange, long contentLength) {
+            final HeaderMap responseHeaders = exchange.getResponseHeaders();
+            this.head = CachedResponse.Head.of(exchange.getStatusCode(), responseHeaders, System.nanoTime());
+            this.varyNames = CachedResponse.varyNames(responseHeaders.get(Headers.VARY));
+            this.varyValues = CachedResponse.varyValues(varyNames, exchange.getRequestHeaders());
+            this.body = new byte[contentLength >= 0L ? (int) contentLength : 8192];
+        }
+
+        @Override
+        public boolean append(final ByteBuffer buffer, int position, int count) {
+            if (body == null) {
+                return false;
+            }
+            if ((long) length + count > maxBody) {
+                discard();
+                return false;
+            }
+            if (length + count > body.length) {
+                body = Arrays.copyOf(body, Math.min(Math.max(body.length * 2, length + count), maxBody));
+            }
+            final ByteBuffer source = buffer.duplicate();
+            source.limit(position + count).position(position);
+            source.get(body, length, count);
+            length += count;
+            return true;
+        }
+
+        @Override
+        public void discard() {
+            body = null;
+        }
+    }
+}
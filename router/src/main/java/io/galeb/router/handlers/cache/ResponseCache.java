@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import io.galeb.core.enums.SystemEnv;
+import io.undertow.util.HttpString;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Response bodies in off-heap slabs, under one memory budget (RESPONSE_CACHE_MEMORY) shared by all virtualhosts.
+ *
+ * The keys are striped into segments, each one with its share of the budget and a segmented LRU: new entries
+ * start in the probation segment and are promoted to the protected segment (80% of the share) on the first hit,
+ * so a scan of one-hit responses only evicts other one-hit responses.
+ */
+public final class ResponseCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private static final ResponseCache GLOBAL = new ResponseCache(
+            Long.parseLong(SystemEnv.RESPONSE_CACHE_MEMORY.getValue()),
+            Integer.parseInt(SystemEnv.RESPONSE_CACHE_MAX_OBJECT.getValue()));
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final SlabAllocator allocator;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int maxObject;
+
+    public ResponseCache(long memory, int maxObject) {
+        this.allocator = new SlabAllocator(memory);
+        final int maxChunks = Math.max(allocator.capacity() / SEGMENTS, 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxChunks);
+        }
+        // an object never takes more than half of its segment
+        this.maxObject = (int) Math.min(maxObject, (long) maxChunks * SlabAllocator.CHUNK_SIZE / 2);
+    }
+
+    public static ResponseCache global() {
+        return GLOBAL;
+    }
+
+    public int getMaxObject() {
+        return maxObject;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getRevalidated() {
+        return revalidated.sum();
+    }
+
+    /**
+     * Body bytes sent from the cache, i.e. not transferred from the targets (hits and revalidated responses).
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total > 0 ? (double) hitCount / total : 0.0;
+    }
+
+    /**
+     * Off-heap bytes in use (stored, being sent or being stored).
+     */
+    public long getMemoryUsed() {
+        return allocator.allocatedBytes();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.probation.size() + segment.protectedEntries.size();
+            }
+        }
+        return size;
+    }
+
+    void hit(int length) {
+        hits.increment();
+        bytesSaved.add(length);
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void revalidated(int length) {
+        revalidated.increment();
+        bytesSaved.add(length);
+    }
+
+    ByteBuffer[] body(final CachedResponse response) {
+        return response.body(allocator);
+    }
+
+    /**
+     * Returns the stored response retained, or null. The caller must release it.
+     */
+    CachedResponse get(final String key) {
+        return segment(key).get(key);
+    }
+
+    void release(final CachedResponse response) {
+        segment(response.key).release(response);
+    }
+
+    void invalidate(final String key) {
+        segment(key).remove(key);
+    }
+
+    Writer writer(final String key) {
+        return new Writer(key, segment(key));
+    }
+
+    private Segment segment(final String key) {
+        final int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, CachedResponse> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, CachedResponse> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxChunks;
+        private final int maxProtectedChunks;
+        private int usedChunks = 0;
+        private int protectedChunks = 0;
+
+        private Segment(int maxChunks) {
+            this.maxChunks = maxChunks;
+            this.maxProtectedChunks = maxChunks * PROTECTED_PERCENT / 100;
+        }
+
+        private synchronized CachedResponse get(final String key) {
+            CachedResponse response = probation.remove(key);
+            if (response != null) {
+                protectedEntries.put(key, response);
+                protectedChunks += response.chunkCount;
+                demote();
+            } else {
+                response = protectedEntries.get(key);
+            }
+            if (response != null) {
+                response.refs++;
+            }
+            return response;
+        }
+
+        private synchronized void put(final CachedResponse response) {
+            remove(response.key);
+            probation.put(response.key, response);
+        }
+
+        private synchronized void remove(final String key) {
+            CachedResponse response = probation.remove(key);
+            if (response == null && (response = protectedEntries.remove(key)) != null) {
+                protectedChunks -= response.chunkCount;
+            }
+            if (response != null) {
+                release(response);
+            }
+        }
+
+        private synchronized void release(final CachedResponse response) {
+            if (--response.refs == 0) {
+                free(response.chunks, response.chunkCount);
+            }
+        }
+
+        /**
+         * Returns a chunk of this segment's share, evicting the least recently used entries if needed, or -1.
+         */
+        private synchronized int reserve() {
+            while (usedChunks >= maxChunks && evict()) {
+                // the chunks of entries being sent are only freed later
+            }
+            if (usedChunks >= maxChunks) {
+                return -1;
+            }
+            final int chunk = allocator.allocate();
+            if (chunk >= 0) {
+                usedChunks++;
+            }
+            return chunk;
+        }
+
+        private synchronized void free(final int[] chunks, int count) {
+            allocator.free(chunks, count);
+            usedChunks -= count;
+        }
+
+        private boolean evict() {
+            final boolean fromProbation = !probation.isEmpty();
+            final Iterator<CachedResponse> iterator = (fromProbation ? probation : protectedEntries).values().iterator();
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            final CachedResponse eldest = iterator.next();
+            iterator.remove();
+            if (!fromProbation) {
+                protectedChunks -= eldest.chunkCount;
+            }
+            evictions.increment();
+            release(eldest);
+            return true;
+        }
+
+        private void demote() {
+            while (protectedChunks > maxProtectedChunks && protectedEntries.size() > 1) {
+                final Iterator<Map.Entry<String, CachedResponse>> iterator = protectedEntries.entrySet().iterator();
+                final Map.Entry<String, CachedResponse> eldest = iterator.next();
+                iterator.remove();
+                protectedChunks -= eldest.getValue().chunkCount;
+                probation.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Copies a response body, as it is sent, into chunks of the key's segment. Used by a single exchange.
+     */
+    final class Writer implements ResponseCopy {
+        private final String key;
+        private final Segment segment;
+        private int[] chunks = new int[4];
+        private int chunkCount = 0;
+        private int length = 0;
+        private ByteBuffer current = null;
+        private boolean done = false;
+
+        private Writer(String key, Segment segment) {
+            this.key = key;
+            this.segment = segment;
+        }
+
+        int length() {
+            return length;
+        }
+
+        /**
+         * Copies count bytes of the buffer from the position. Returns false (and discards the copy)
+         * if the body is too large or there is no memory left.
+         */
+        @Override
+        public boolean append(final ByteBuffer buffer, int position, int count) {
+            if (done) {
+                return false;
+            }
+            if ((long) length + count > maxObject) {
+                discard();
+                return false;
+            }
+            int offset = position;
+            int remaining = count;
+            while (remaining > 0) {
+                if (current == null || !current.hasRemaining()) {
+                    final int chunk = segment.reserve();
+                    if (chunk < 0) {
+                        discard();
+                        return false;
+                    }
+                    if (chunkCount == chunks.length) {
+                        chunks = Arrays.copyOf(chunks, chunkCount * 2);
+                    }
+                    chunks[chunkCount++] = chunk;
+                    current = allocator.view(chunk, SlabAllocator.CHUNK_SIZE);
+                }
+                final int n = Math.min(remaining, current.remaining());
+                final ByteBuffer source = buffer.duplicate();
+                source.limit(offset + n).position(offset);
+                current.put(source);
+                offset += n;
+                remaining -= n;
+            }
+            length += count;
+            return true;
+        }
+
+        /**
+         * Stores the body with the head. Returns false if the copy was discarded.
+         */
+        boolean commit(final CachedResponse.Head head, final HttpString[] varyNames, final String[] varyValues) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            current = null;
+            segment.put(new CachedResponse(key, head, varyNames, varyValues, chunks, chunkCount, length));
+            return true;
+        }
+
+        @Override
+        public void discard() {
+            if (!done) {
+                done = true;
+                current = null;
+                segment.free(chunks, chunkCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.client.hostselectors.HostSelector;
+import io.galeb.router.handlers.PoolHandler;
+import io.undertow.server.ConduitWrapper;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ConduitFactory;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.conduits.StreamSinkConduit;
+
+/**
+ * Shared cache (RFC 7234) of the virtualhost responses, enabled by the "responseCache" virtualhost property
+ * (or by RESPONSE_CACHE for the virtualhosts without it).
+ *
+ * GET responses with a cacheable status, without no-store, private or Set-Cookie, and with an explicit freshness
+ * (s-maxage, max-age or Expires) or an ETag are stored, for the same values of their Vary headers. Fresh hits are
+ * sent from the cache without a target. Stale responses with an ETag are revalidated with If-None-Match, and a 304
+ * from the target sends the stored body. Requests with Authorization, Range or no-store are only proxied,
+ * no-cache (or max-age=0) requests skip the stored response, and unsafe methods invalidate it.
+ */
+public class ResponseCacheHandler implements HttpHandler {
+
+    public static final String PROP_RESPONSE_CACHE = "responseCache";
+
+    /**
+     * Target (HostSelector.REAL_DEST) of the responses sent from the cache.
+     */
+    public static final String CACHE_DEST = "CACHE";
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCacheHandler.class);
+
+    private final ResponseCache cache;
+    private final String virtualhost;
+    private final HttpHandler next;
+
+    public ResponseCacheHandler(final ResponseCache cache, final String virtualhost, final HttpHandler next) {
+        this.cache = cache;
+        this.virtualhost = virtualhost;
+        this.next = next;
+    }
+
+    /**
+     * Returns the handler caching the virtualhost responses, or next if the virtualhost has no response cache.
+     */
+    public static HttpHandler wrap(final VirtualHost virtualHost, final HttpHandler next) {
+        if (!Boolean.parseBoolean(virtualHost.getProperties().getOrDefault(PROP_RESPONSE_CACHE, SystemEnv.RESPONSE_CACHE.getValue()))) {
+            return next;
+        }
+        final ResponseCache cache = ResponseCache.global();
+        if (cache.getMaxObject() <= 0) {
+            logger.warn("Virtualhost " + virtualHost.getName() + ": response cache without memory (RESPONSE_CACHE_MEMORY)");
+            return next;
+        }
+        logger.info("Virtualhost " + virtualHost.getName() + ": response cache (max object " + cache.getMaxObject() + " bytes)");
+        return new ResponseCacheHandler(cache, virtualHost.getName(), next);
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final HttpString method = exchange.getRequestMethod();
+        final boolean isGet = Methods.GET.equals(method);
+        if (!isGet && !Methods.HEAD.equals(method)) {
+            if (!Methods.OPTIONS.equals(method) && !Methods.TRACE.equals(method)) {
+                cache.invalidate(key(exchange));
+            }
+            next.handleRequest(exchange);
+            return;
+        }
+        final HeaderMap requestHeaders = exchange.getRequestHeaders();
+        final CacheControl cacheControl = CacheControl.parse(requestHeaders.get(Headers.CACHE_CONTROL));
+        if (cacheControl.noStore || requestHeaders.contains(Headers.AUTHORIZATION) ||
+                requestHeaders.contains(Headers.RANGE) || requestHeaders.contains(Headers.UPGRADE) ||
+                requestHeaders.contains(PoolHandler.CHECK_RULE_HEADER)) {
+            next.handleRequest(exchange);
+            return;
+        }
+        final String key = key(exchange);
+        final boolean reload = cacheControl.noCache || cacheControl.maxAge == 0L ||
+                "no-cache".equalsIgnoreCase(requestHeaders.getFirst(Headers.PRAGMA));
+        CachedResponse stale = reload ? null : cache.get(key);
+        if (stale != null && !stale.matches(requestHeaders)) {
+            cache.release(stale);
+            stale = null;
+        }
+        if (stale != null) {
+            final CachedResponse.Head head = stale.head();
+            final long now = System.nanoTime();
+            if (head.isFresh(now)) {
+                sendHit(exchange, stale, head, now);
+                return;
+            }
+            if (!isGet || head.etag == null ||
+                    requestHeaders.contains(Headers.IF_NONE_MATCH) || requestHeaders.contains(Headers.IF_MODIFIED_SINCE)) {
+                cache.release(stale);
+                stale = null;
+            } else {
+                requestHeaders.put(Headers.IF_NONE_MATCH, head.etag);
+                exchange.addExchangeCompleteListener(releaseOnComplete(stale));
+            }
+        }
+        cache.miss();
+        if (isGet) {
+            exchange.addResponseWrapper(responseWrapper(key, stale));
+        }
+        next.handleRequest(exchange);
+    }
+
+    private void sendHit(final HttpServerExchange exchange, final CachedResponse response, final CachedResponse.Head head, long now) {
+        exchange.addExchangeCompleteListener(releaseOnComplete(response));
+        exchange.putAttachment(HostSelector.REAL_DEST, CACHE_DEST);
+        cache.hit(response.length);
+        final HeaderMap responseHeaders = exchange.getResponseHeaders();
+        head.copyTo(responseHeaders);
+        responseHeaders.put(Headers.AGE, head.ageSeconds(now));
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst(Headers.IF_NONE_MATCH);
+        if (head.etag != null && ifNoneMatch != null && etagMatches(ifNoneMatch, head.etag)) {
+            exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+            exchange.endExchange();
+            return;
+        }
+        exchange.setStatusCode(head.status);
+        responseHeaders.put(Headers.CONTENT_LENGTH, response.length);
+        if (response.length == 0 || Methods.HEAD.equals(exchange.getRequestMethod())) {
+            exchange.endExchange();
+            return;
+        }
+        exchange.getResponseSender().send(cache.body(response));
+    }
+
+    private ConduitWrapper<StreamSinkConduit> responseWrapper(final String key, final CachedResponse stale) {
+        return (ConduitFactory<StreamSinkConduit> factory, HttpServerExchange exchange) -> {
+            final HeaderMap responseHeaders = exchange.getResponseHeaders();
+            final long now = System.nanoTime();
+            if (stale != null && exchange.getStatusCode() == StatusCodes.NOT_MODIFIED) {
+                final CachedResponse.Head head = stale.refresh(responseHeaders, now);
+                exchange.setStatusCode(head.status);
+                head.copyTo(responseHeaders);
+                responseHeaders.remove(Headers.TRANSFER_ENCODING);
+                responseHeaders.put(Headers.CONTENT_LENGTH, stale.length);
+                responseHeaders.put(Headers.AGE, head.ageSeconds(now));
+                cache.revalidated(stale.length);
+                return new CachedBodyStreamSinkConduit(factory.create(), cache.body(stale));
+            }
+            if (!isStorable(exchange)) {
+                return factory.create();
+            }
+            final CachedResponse.Head head = CachedResponse.Head.of(exchange.getStatusCode(), responseHeaders, now);
+            if (head.lifetime <= 0L && head.etag == null) {
+                return factory.create();
+            }
+            final HttpString[] varyNames = CachedResponse.varyNames(responseHeaders.get(Headers.VARY));
+            final String[] varyValues = CachedResponse.varyValues(varyNames, exchange.getRequestHeaders());
+            final long contentLength = exchange.getResponseContentLength();
+            final ResponseCache.Writer writer = cache.writer(key);
+            exchange.addExchangeCompleteListener((completed, nextListener) -> {
+                writer.discard();
+                nextListener.proceed();
+            });
+            return new CopyingStreamSinkConduit(factory.create(), writer, () -> {
+                if (contentLength >= 0L && writer.length() != contentLength) {
+                    writer.discard();
+                } else {
+                    writer.commit(head, varyNames, varyValues);
+                }
+            });
+        };
+    }
+
+    /**
+     * The coalesced requests are not stored: they have the response of the request stored by itself.
+     */
+    private boolean isStorable(final HttpServerExchange exchange) {
+        return CacheControl.isCacheableStatus(exchange.getStatusCode()) &&
+                exchange.getAttachment(RequestCoalescingHandler.COALESCED) == null &&
+                exchange.getResponseContentLength() <= cache.getMaxObject() &&
+                CacheControl.isShareable(exchange.getResponseHeaders());
+    }
+
+    private ExchangeCompletionListener releaseOnComplete(final CachedResponse response) {
+        return (exchange, nextListener) -> {
+            cache.release(response);
+            nextListener.proceed();
+        };
+    }
+
+    private String key(final HttpServerExchange exchange) {
+        final String queryString = exchange.getQueryString();
+        return exchange.getRequestScheme() + "://" + virtualhost + exchange.getRequestURI() +
+                (queryString.isEmpty() ? "" : "?" + queryString);
+    }
+
+    /**
+     * Weak comparison (RFC 7232, section 2.3.2) of the If-None-Match list with the stored ETag.
+     */
+    private static boolean etagMatches(final String ifNoneMatch, final String etag) {
+        final String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            final String tag = candidate.trim();
+            if ("*".equals(tag) || opaqueTag.equals(tag.startsWith("W/") ? tag.substring(2) : tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Destination of the body copied by {@link CopyingStreamSinkConduit}.
+ */
+interface ResponseCopy {
+
+    /**
+     * Copies count bytes of the buffer from the position. Returns false if the copy was discarded.
+     */
+    boolean append(ByteBuffer buffer, int position, int count);
+
+    void discard();
+}
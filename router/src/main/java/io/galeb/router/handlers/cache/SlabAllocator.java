@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed size chunks of direct (off-heap) slabs. The slabs are allocated on demand, up to the capacity,
+ * and never released: freed chunks are reused.
+ */
+final class SlabAllocator {
+
+    static final int CHUNK_SIZE = 8192;
+
+    private static final int CHUNKS_PER_SLAB = 128;
+
+    private final int capacity;
+    private final ByteBuffer[] slabs;
+    private final int[] free;
+    private int freeCount = 0;
+    private int next = 0;
+
+    SlabAllocator(long bytes) {
+        this.capacity = (int) Math.min(Math.max(bytes, 0L) / CHUNK_SIZE, Integer.MAX_VALUE - CHUNKS_PER_SLAB);
+        this.slabs = new ByteBuffer[(capacity + CHUNKS_PER_SLAB - 1) / CHUNKS_PER_SLAB];
+        this.free = new int[capacity];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns a free chunk, or -1 if all chunks are in use.
+     */
+    synchronized int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (next >= capacity) {
+            return -1;
+        }
+        final int slab = next / CHUNKS_PER_SLAB;
+        if (slabs[slab] == null) {
+            slabs[slab] = ByteBuffer.allocateDirect(Math.min(CHUNKS_PER_SLAB, capacity - slab * CHUNKS_PER_SLAB) * CHUNK_SIZE);
+        }
+        return next++;
+    }
+
+    synchronized void free(final int[] chunks, int count) {
+        for (int i = 0; i < count; i++) {
+            free[freeCount++] = chunks[i];
+        }
+    }
+
+    synchronized long allocatedBytes() {
+        return (long) (next - freeCount) * CHUNK_SIZE;
+    }
+
+    /**
+     * Returns a new buffer over the first length bytes of the chunk. The chunk ids reach the readers through
+     * the segment locks, so the slab is always visible here.
+     */
+    ByteBuffer view(int chunk, int length) {
+        final ByteBuffer buffer = slabs[chunk / CHUNKS_PER_SLAB].duplicate();
+        final int offset = (chunk % CHUNKS_PER_SLAB) * CHUNK_SIZE;
+        buffer.limit(offset + length).position(offset);
+        return buffer.slice();
+    }
+}
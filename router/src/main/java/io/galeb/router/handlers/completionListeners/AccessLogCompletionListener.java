@@ -19,6 +19,7 @@ package io.galeb.router.handlers.completionListeners;
 import io.galeb.core.enums.SystemEnv;
 import io.galeb.router.client.hostselectors.HostSelector;
 import io.galeb.router.handlers.RequestIDHandler;
+import io.galeb.router.metrics.RequestPhases;
 import io.undertow.server.ExchangeCompletionListener;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
@@ -27,60 +28,105 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.stereotype.Component;
 
-import static io.undertow.attribute.ExchangeAttributes.*;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
+import static io.undertow.attribute.ExchangeAttributes.requestList;
+
+/**
+ * Copies the access log fields to a slot of a ring buffer. The line is formatted and written by the
+ * "accesslog-writer" thread, out of the IO threads.
+ */
 @Component
 public class AccessLogCompletionListener extends ProcessorLocalStatusCode implements ExchangeCompletionListener {
 
     private static final int MAX_REQUEST_TIME = Integer.MAX_VALUE - 1;
     private static final String REQUESTID_HEADER = SystemEnv.REQUESTID_HEADER.getValue();
     private static final String TAGS = "GALEB," + SystemEnv.GROUP_ID.getValue() + "," + SystemEnv.ENVIRONMENT_NAME.getValue() + ",ROUTER,ACCESS";
-    private static final String TAB = "\t";
 
     private final Log logger = LogFactory.getLog(this.getClass());
 
+    private final boolean hasRequestIdHeader = !"".equals(REQUESTID_HEADER);
+    private final AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(
+            Integer.parseInt(SystemEnv.ACCESSLOG_BUFFER_SIZE.getValue()),
+            Boolean.parseBoolean(SystemEnv.ACCESSLOG_BLOCK_WHEN_FULL.getValue()));
+    private final AccessLogWriter writer = new AccessLogWriter(ringBuffer, logger, TAGS, SystemEnv.ACCESSLOG_FILE.getValue());
+
+    public AccessLogCompletionListener() {
+        final Thread writerThread = new Thread(writer, "accesslog-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
     @Override
     public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
         try {
-            final String remoteAddr = remoteIp().readAttribute(exchange); // %a
-            final String host = localServerName().readAttribute(exchange); // %v
-            final String requestElements[] = requestList().readAttribute(exchange).split(" "); // %r
-            final String method = exchange.getRequestMethod().toString();
-            final String requestUri = exchange.getRequestURI();
-            final String proto = exchange.getProtocol().toString();
-            final String refer = requestElements.length > 3 ? requestElements[3] : null;
-            final String xMobileGroup = requestElements.length > 4 ? requestElements[4] : null;
-            final int originalStatusCode = Integer.parseInt(responseCode().readAttribute(exchange)); // %s
-            final long responseBytesSent = exchange.getResponseBytesSent();
-            final String bytesSent = Long.toString(responseBytesSent); // %B
-            final String bytesSentOrDash = responseBytesSent == 0L ? "-" : bytesSent; // %b
-            final Integer responseTime = Math.round(Float.parseFloat(responseTimeAttribute.readAttribute(exchange))); // %D
-            final String realDestAttached = exchange.getAttachment(HostSelector.REAL_DEST);
-            final String realDest = realDestAttached != null ? realDestAttached : extractXGalebErrorHeader(exchange.getResponseHeaders());
-            final String userAgent = requestHeader(Headers.USER_AGENT).readAttribute(exchange); // %{i,User-Agent}
-            final String requestId = !"".equals(REQUESTID_HEADER) ? requestHeader(RequestIDHandler.requestIdHeader()).readAttribute(exchange) : null; // %{i,?REQUEST_ID?}
-            final String xForwardedFor = requestHeader(Headers.X_FORWARDED_FOR).readAttribute(exchange); // %{i,X-Forwarded-For}
-
-            final int fakeStatusCode = getFakeStatusCode(realDestAttached, originalStatusCode, responseBytesSent, responseTime, MAX_REQUEST_TIME);
-            final int statusCode = fakeStatusCode != ProcessorLocalStatusCode.NOT_MODIFIED ? fakeStatusCode : originalStatusCode;
-
-            final String message =
-                    remoteAddr + TAB + host + TAB + method + TAB + requestUri + TAB + proto +
-                    TAB + (refer != null ? refer : "-") + TAB + (xMobileGroup != null ? xMobileGroup : "-") +
-                    TAB + "Local:" + TAB + statusCode + TAB + "*-" +
-                    TAB + bytesSent + TAB + responseTime + TAB + "Proxy:" + TAB + realDest +
-                    TAB + statusCode + TAB + "-" + TAB + bytesSentOrDash +
-                    TAB + "-" + TAB + "-" + TAB + "Agent:" + TAB + (userAgent != null ? userAgent : "-") +
-                    (requestId != null ? TAB + requestId : "") +
-                    TAB + "Fwd:" + TAB + (xForwardedFor != null ? xForwardedFor : "-") +
-                    TAB + "tags: " + TAGS;
-
-            logger.info(message);
-
+            final AccessLogEntry entry = ringBuffer.claim();
+            if (entry != null) {
+                try {
+                    fill(entry, exchange);
+                } finally {
+                    ringBuffer.publish(entry);
+                }
+            }
         } catch (Exception e) {
             logger.error(ExceptionUtils.getStackTrace(e));
         } finally {
             nextListener.proceed();
         }
     }
+
+    public long getDroppedLines() {
+        return ringBuffer.getDroppedLines();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.stop();
+    }
+
+    private void fill(final AccessLogEntry entry, final HttpServerExchange exchange) {
+        final String requestUri = exchange.getRequestURI();
+        final long responseBytesSent = exchange.getResponseBytesSent();
+        final int originalStatusCode = exchange.getStatusCode(); // %s
+        final long responseTime = getResponseTime(exchange); // %D
+        final String realDestAttached = exchange.getAttachment(HostSelector.REAL_DEST);
+
+        final int fakeStatusCode = getFakeStatusCode(realDestAttached, originalStatusCode, responseBytesSent, (int) responseTime, MAX_REQUEST_TIME);
+
+        entry.remoteAddr = remoteAddress(exchange); // %a
+        entry.host = exchange.getHostName(); // %v
+        entry.method = exchange.getRequestMethod();
+        entry.requestUri = requestUri;
+        entry.proto = exchange.getProtocol();
+        entry.statusCode = fakeStatusCode != ProcessorLocalStatusCode.NOT_MODIFIED ? fakeStatusCode : originalStatusCode;
+        entry.bytesSent = responseBytesSent; // %B
+        entry.responseTime = responseTime;
+        entry.realDest = realDestAttached != null ? realDestAttached : extractXGalebErrorHeader(exchange.getResponseHeaders());
+        entry.userAgent = exchange.getRequestHeaders().getFirst(Headers.USER_AGENT); // %{i,User-Agent}
+        entry.requestId = hasRequestIdHeader ? exchange.getRequestHeaders().getFirst(RequestIDHandler.requestIdHeader()) : null; // %{i,?REQUEST_ID?}
+        entry.xForwardedFor = exchange.getRequestHeaders().getFirst(Headers.X_FORWARDED_FOR); // %{i,X-Forwarded-For}
+        if (RequestPhases.ENABLED) {
+            final RequestPhases phases = exchange.getAttachment(RequestPhases.KEY);
+            entry.hasPhases = phases != null && phases.copyMicrosTo(entry.phases);
+        }
+
+        // refer and xMobileGroup are the 4th and 5th words of the request line (%r), so they only exist if the uri has spaces
+        if (requestUri.indexOf(' ') >= 0 || exchange.getQueryString().indexOf(' ') >= 0) {
+            final String requestElements[] = requestList().readAttribute(exchange).split(" ");
+            entry.refer = requestElements.length > 3 ? requestElements[3] : null;
+            entry.xMobileGroup = requestElements.length > 4 ? requestElements[4] : null;
+        }
+    }
+
+    private InetAddress remoteAddress(final HttpServerExchange exchange) {
+        final InetSocketAddress sourceAddress = exchange.getSourceAddress();
+        InetAddress address = sourceAddress != null ? sourceAddress.getAddress() : null;
+        if (address == null && exchange.getConnection() != null) {
+            final InetSocketAddress peerAddress = exchange.getConnection().getPeerAddress(InetSocketAddress.class);
+            address = peerAddress != null ? peerAddress.getAddress() : null;
+        }
+        return address;
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.completionListeners;
+
+import io.galeb.router.metrics.RequestPhases;
+import io.undertow.util.HttpString;
+
+import java.net.InetAddress;
+
+/**
+ * Preallocated slot of the {@link AccessLogRingBuffer}. The IO thread only copies references and primitives,
+ * the line is formatted by the writer thread.
+ */
+public final class AccessLogEntry {
+
+    private static final char TAB = '\t';
+
+    volatile long sequence;
+    long position;
+
+    InetAddress remoteAddr;
+    String host;
+    HttpString method;
+    String requestUri;
+    HttpString proto;
+    String refer;
+    String xMobileGroup;
+    int statusCode;
+    long bytesSent;
+    long responseTime;
+    String realDest;
+    String userAgent;
+    String requestId;
+    String xForwardedFor;
+    final long[] phases = RequestPhases.ENABLED ? new long[RequestPhases.PHASES] : null;
+    boolean hasPhases;
+
+    AccessLogEntry(long sequence) {
+        this.sequence = sequence;
+    }
+
+    void clear() {
+        remoteAddr = null;
+        host = null;
+        method = null;
+        requestUri = null;
+        proto = null;
+        refer = null;
+        xMobileGroup = null;
+        realDest = null;
+        userAgent = null;
+        requestId = null;
+        xForwardedFor = null;
+        hasPhases = false;
+    }
+
+    StringBuilder appendTo(final StringBuilder line, final String tags) {
+        line.append(remoteAddr != null ? remoteAddr.getHostAddress() : null)
+            .append(TAB).append(host)
+            .append(TAB).append(method)
+            .append(TAB).append(requestUri)
+            .append(TAB).append(proto)
+            .append(TAB).append(refer != null ? refer : "-")
+            .append(TAB).append(xMobileGroup != null ? xMobileGroup : "-")
+            .append(TAB).append("Local:")
+            .append(TAB).append(statusCode)
+            .append(TAB).append("*-")
+            .append(TAB).append(bytesSent)
+            .append(TAB).append(responseTime)
+            .append(TAB).append("Proxy:")
+            .append(TAB).append(realDest)
+            .append(TAB).append(statusCode)
+            .append(TAB).append('-')
+            .append(TAB);
+        if (bytesSent == 0L) {
+            line.append('-');
+        } else {
+            line.append(bytesSent);
+        }
+        line.append(TAB).append('-')
+            .append(TAB).append('-')
+            .append(TAB).append("Agent:")
+            .append(TAB).append(userAgent != null ? userAgent : "-");
+        if (requestId != null) {
+            line.append(TAB).append(requestId);
+        }
+        line.append(TAB).append("Fwd:")
+            .append(TAB).append(xForwardedFor != null ? xForwardedFor : "-")
+            .append(TAB).append("tags: ").append(tags);
+        if (hasPhases) {
+            appendPhasesTo(line);
+        }
+        return line;
+    }
+
+    private void appendPhasesTo(final StringBuilder line) {
+        line.append(TAB).append("Phases:").append(TAB);
+        for (int phase = 0; phase < phases.length; phase++) {
+            if (phase > 0) line.append(' ');
+            line.append(RequestPhases.phaseName(phase)).append('=');
+            if (phases[phase] >= 0L) {
+                line.append(phases[phase]);
+            } else {
+                line.append('-');
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.completionListeners;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer single-consumer ring of preallocated {@link AccessLogEntry} slots.
+ *
+ * A producer claims a slot with a CAS on the tail, fills it and publishes it writing the slot sequence.
+ * When the ring is full the line is dropped (and counted), or the producer waits if blockWhenFull is set.
+ */
+public class AccessLogRingBuffer {
+
+    private static final long BLOCK_PARK_NANOS = 10_000L;
+
+    private final AccessLogEntry[] slots;
+    private final int mask;
+    private final boolean blockWhenFull;
+    private final AtomicLong tail = new AtomicLong(0L);
+    private final LongAdder dropped = new LongAdder();
+
+    private long head = 0L;
+
+    public AccessLogRingBuffer(int size, boolean blockWhenFull) {
+        final int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        this.slots = new AccessLogEntry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new AccessLogEntry(i);
+        }
+        this.mask = capacity - 1;
+        this.blockWhenFull = blockWhenFull;
+    }
+
+    /**
+     * Returns a free slot, or null if the line was dropped.
+     */
+    public AccessLogEntry claim() {
+        while (true) {
+            final long position = tail.get();
+            final AccessLogEntry entry = slots[(int) position & mask];
+            final long diff = entry.sequence - position;
+            if (diff == 0L) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    entry.position = position;
+                    return entry;
+                }
+            } else if (diff < 0L) {
+                if (!blockWhenFull) {
+                    dropped.increment();
+                    return null;
+                }
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+    }
+
+    public void publish(final AccessLogEntry entry) {
+        entry.sequence = entry.position + 1;
+    }
+
+    /**
+     * Consumes up to max published entries, in order. Must be called by a single thread.
+     */
+    public int drain(final Consumer<AccessLogEntry> consumer, int max) {
+        int count = 0;
+        while (count < max) {
+            final AccessLogEntry entry = slots[(int) head & mask];
+            if (entry.sequence != head + 1) {
+                break;
+            }
+            try {
+                consumer.accept(entry);
+            } finally {
+                entry.clear();
+                entry.sequence = head + slots.length;
+                head++;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public long getDroppedLines() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.completionListeners;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Consumer thread of the {@link AccessLogRingBuffer}. Lines are formatted in a reusable StringBuilder and
+ * written to the logger or, if a file is defined, encoded in a reusable buffer and written in batches.
+ */
+class AccessLogWriter implements Runnable {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private final AccessLogRingBuffer ringBuffer;
+    private final Log logger;
+    private final String tags;
+    private final FileChannel fileChannel;
+    private final Consumer<AccessLogEntry> writer = this::write;
+    private final StringBuilder line = new StringBuilder(1024);
+    private final ByteBuffer output = ByteBuffer.allocateDirect(64 * 1024);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private volatile boolean running = true;
+
+    AccessLogWriter(final AccessLogRingBuffer ringBuffer, final Log logger, final String tags, final String file) {
+        this.ringBuffer = ringBuffer;
+        this.logger = logger;
+        this.tags = tags;
+        this.fileChannel = openFile(file);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            if (ringBuffer.drain(writer, BATCH_SIZE) == 0) {
+                flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        ringBuffer.drain(writer, ringBuffer.capacity());
+        flush();
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    private void write(final AccessLogEntry entry) {
+        line.setLength(0);
+        entry.appendTo(line, tags);
+        if (fileChannel == null) {
+            logger.info(line.toString());
+            return;
+        }
+        line.append('\n');
+        final CharBuffer chars = CharBuffer.wrap(line);
+        while (encoder.encode(chars, output, true).isOverflow()) {
+            flush();
+        }
+        encoder.reset();
+    }
+
+    private void flush() {
+        if (fileChannel == null || output.position() == 0) return;
+        output.flip();
+        try {
+            while (output.hasRemaining()) {
+                fileChannel.write(output);
+            }
+        } catch (IOException e) {
+            logger.error("accesslog write failed: " + e.getMessage());
+        } finally {
+            output.clear();
+        }
+    }
+
+    private FileChannel openFile(final String file) {
+        if (file == null || file.isEmpty()) return null;
+        try {
+            return FileChannel.open(Paths.get(file), CREATE, WRITE, APPEND);
+        } catch (IOException e) {
+            logger.error("accesslog file " + file + " unavailable, using the logger: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.completionListeners;
+
+import io.galeb.router.client.hostselectors.HostSelector;
+import io.galeb.router.metrics.RequestPhases;
+import io.galeb.router.services.LatencyHistogramService;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpServerExchange;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.galeb.router.handlers.PoolHandler.POOL_NAME;
+
+/**
+ * Records the response time of the requests routed to a pool. Requests without pool (i.e. unknown virtualhosts)
+ * are ignored, so the cardinality is limited by the routing table.
+ */
+@Component
+public class LatencyHistogramCompletionListener extends ProcessorLocalStatusCode implements ExchangeCompletionListener {
+
+    private final Log logger = LogFactory.getLog(this.getClass());
+
+    private final LatencyHistogramService latencyHistogramService;
+
+    @Autowired
+    public LatencyHistogramCompletionListener(final LatencyHistogramService latencyHistogramService) {
+        this.latencyHistogramService = latencyHistogramService;
+    }
+
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            final String poolName = exchange.getAttachment(POOL_NAME);
+            final long requestStartTime = exchange.getRequestStartTime();
+            if (poolName != null && requestStartTime != -1) {
+                String targetUri = exchange.getAttachment(HostSelector.REAL_DEST);
+                targetUri = targetUri != null ? targetUri : extractXGalebErrorHeader(exchange.getResponseHeaders());
+                final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestStartTime);
+                final RequestPhases phases = RequestPhases.ENABLED ? exchange.getAttachment(RequestPhases.KEY) : null;
+                latencyHistogramService.record(exchange.getHostName(), poolName, targetUri, micros, phases);
+            }
+        } catch (Exception e) {
+            logger.error(ExceptionUtils.getStackTrace(e));
+        } finally {
+            nextListener.proceed();
+        }
+    }
+}
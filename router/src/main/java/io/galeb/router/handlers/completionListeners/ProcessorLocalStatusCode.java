@@ -16,7 +16,7 @@
 
 package io.galeb.router.handlers.completionListeners;
 
-import io.undertow.attribute.ResponseTimeAttribute;
+import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HeaderMap;
 import io.undertow.util.StatusCodes;
 
@@ -31,8 +31,6 @@ abstract class ProcessorLocalStatusCode {
     private static final String UNKNOWN_TARGET  = "UNKNOWN_TARGET";
     private static final int OFFSET_LOCAL_ERROR = 400;
 
-    final ResponseTimeAttribute responseTimeAttribute = new ResponseTimeAttribute(TimeUnit.MILLISECONDS);
-
     int getFakeStatusCode(final String backend,
                           int statusCode,
                           long responseBytesSent,
@@ -54,6 +52,14 @@ abstract class ProcessorLocalStatusCode {
         return statusLogged;
     }
 
+    /**
+     * Same value of the ResponseTimeAttribute (ms), without the String conversions. Returns -1 if the start time is unknown.
+     */
+    long getResponseTime(final HttpServerExchange exchange) {
+        final long requestStartTime = exchange.getRequestStartTime();
+        return requestStartTime != -1 ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStartTime) : -1L;
+    }
+
     String extractXGalebErrorHeader(final HeaderMap responseHeaders) {
         final String headerGalebError = responseHeaders != null ? responseHeaders.getFirst(X_GALEB_ERROR) : null;
         return headerGalebError != null ? headerGalebError : UNKNOWN_TARGET;
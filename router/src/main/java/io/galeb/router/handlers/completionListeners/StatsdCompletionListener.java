@@ -17,8 +17,12 @@
 package io.galeb.router.handlers.completionListeners;
 
 import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.client.OutlierDetector;
 import io.galeb.router.client.hostselectors.ClientStatisticsMarker;
 import io.galeb.router.client.hostselectors.HostSelector;
+import io.galeb.router.handlers.NameVirtualHostDefaultHandler;
+import io.galeb.router.handlers.RoutingTable;
+import io.galeb.router.metrics.RequestPhases;
 import io.galeb.router.services.StatsdClientService;
 import io.undertow.server.ExchangeCompletionListener;
 import io.undertow.server.HttpServerExchange;
@@ -28,6 +32,11 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static io.galeb.router.handlers.PoolHandler.POOL_NAME;
 
 @Component
@@ -39,6 +48,8 @@ public class StatsdCompletionListener extends ProcessorLocalStatusCode implement
     private static final String POOL_TAG   = SystemEnv.STATSD_POOL_TAG.getValue();
     private static final String TARGET_TAG = SystemEnv.STATSD_TARGET_TAG.getValue();
 
+    private static final int MAX_CACHED_KEYS = 50000;
+
     private final String environmentName = cleanUpKey(SystemEnv.ENVIRONMENT_NAME.getValue().replaceAll("-","_").toLowerCase());
 
     private final Log logger = LogFactory.getLog(this.getClass());
@@ -46,10 +57,14 @@ public class StatsdCompletionListener extends ProcessorLocalStatusCode implement
     private final boolean sendOpenconnCounter = Boolean.parseBoolean(SystemEnv.SEND_OPENCONN_COUNTER.getValue());
 
     private final StatsdClientService statsdClient;
+    private final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler;
+
+    private volatile KeyCache keyCache = new KeyCache(null);
 
     @Autowired
-    public StatsdCompletionListener(StatsdClientService statsdClient) {
+    public StatsdCompletionListener(StatsdClientService statsdClient, NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler) {
         this.statsdClient = statsdClient;
+        this.nameVirtualHostDefaultHandler = nameVirtualHostDefaultHandler;
     }
 
     @Override
@@ -64,19 +79,16 @@ public class StatsdCompletionListener extends ProcessorLocalStatusCode implement
             final boolean isTargetUnknown = targetIsUnknown(targetUri);
             final Integer statusCode = exchange.getStatusCode();
             final String method = exchange.getRequestMethod().toString();
-            final Integer responseTime = getResponseTime(exchange);
+            final long responseTime = getResponseTime(exchange);
 
-            // @formatter:off
-            final String key = ENV_TAG    + environmentName + "." +
-                               VH_TAG     + cleanUpKey(virtualhost) + "." +
-                               POOL_TAG   + cleanUpKey(poolName) + "." +
-                               TARGET_TAG + cleanUpKey(targetUri);
-            // @formatter:on
+            final MetricKeys keys = metricKeys(virtualhost, poolName, targetUri);
 
-            sendStatusCodeCount(key, statusCode, isTargetUnknown);
-            sendHttpMethodCount(key, method);
-            sendResponseTime(key, responseTime, isTargetUnknown);
-            if (sendOpenconnCounter) sendActiveConnCount(key, exchange.getAttachment(ClientStatisticsMarker.TARGET_CONN), isTargetUnknown);
+            sendStatusCodeCount(keys, statusCode, isTargetUnknown);
+            sendHttpMethodCount(keys, method);
+            sendResponseTime(keys, responseTime, isTargetUnknown);
+            if (sendOpenconnCounter) sendActiveConnCount(keys, exchange.getAttachment(ClientStatisticsMarker.TARGET_CONN), isTargetUnknown);
+            if (Boolean.TRUE.equals(exchange.getAttachment(OutlierDetector.EJECTED))) sendOutlierEjection(keys);
+            if (RequestPhases.ENABLED) sendPhases(keys, exchange.getAttachment(RequestPhases.KEY));
 
         } catch (Exception e) {
             logger.error(ExceptionUtils.getStackTrace(e));
@@ -85,27 +97,65 @@ public class StatsdCompletionListener extends ProcessorLocalStatusCode implement
         }
     }
 
-    private void sendStatusCodeCount(String key, Integer statusCode, boolean targetIsUndef) {
+    private void sendStatusCodeCount(MetricKeys keys, Integer statusCode, boolean targetIsUndef) {
         int realStatusCode = targetIsUndef ? 503 : statusCode;
-        statsdClient.incr(key + ".httpCode." + realStatusCode);
+        statsdClient.incr(keys.httpCode(realStatusCode));
     }
 
-    private void sendActiveConnCount(String key, Integer clientOpenConnection, boolean targetIsUndef) {
+    private void sendActiveConnCount(MetricKeys keys, Integer clientOpenConnection, boolean targetIsUndef) {
         int conn = (clientOpenConnection != null && !targetIsUndef) ? clientOpenConnection : 0;
-        statsdClient.gauge(key + ".activeConns", conn);
+        statsdClient.gauge(keys.activeConns, conn);
+    }
+
+    private void sendOutlierEjection(MetricKeys keys) {
+        statsdClient.incr(keys.outlierEjection);
     }
 
-    private void sendHttpMethodCount(String key, String method) {
-        statsdClient.count(key + ".httpMethod." + method, 1);
+    private void sendHttpMethodCount(MetricKeys keys, String method) {
+        statsdClient.count(keys.httpMethod(method), 1);
     }
 
-    private void sendResponseTime(String key, long requestTime, boolean targetIsUndef) {
+    private void sendResponseTime(MetricKeys keys, long requestTime, boolean targetIsUndef) {
         long realRequestTime = targetIsUndef ? 0 : requestTime;
-        statsdClient.timing(key + ".requestTime", realRequestTime);
+        statsdClient.timing(keys.requestTime, realRequestTime);
     }
 
-    private int getResponseTime(HttpServerExchange exchange) {
-        return Math.round(Float.parseFloat(responseTimeAttribute.readAttribute(exchange)));
+    private void sendPhases(MetricKeys keys, RequestPhases phases) {
+        if (phases == null) return;
+        for (int phase = 0; phase < RequestPhases.PHASES; phase++) {
+            final long micros = phases.getMicros(phase);
+            if (micros >= 0L) {
+                statsdClient.timing(keys.phase(phase), TimeUnit.MICROSECONDS.toMillis(micros));
+            }
+        }
+    }
+
+    /**
+     * Returns the metric names of (virtualhost, pool, target). They are built once per routing table,
+     * and the cache is bounded because the virtualhost comes from the Host header.
+     */
+    private MetricKeys metricKeys(String virtualhost, String poolName, String targetUri) {
+        final RoutingTable routingTable = nameVirtualHostDefaultHandler.getRoutingTable();
+        KeyCache cache = keyCache;
+        if (cache.routingTable != routingTable) {
+            cache = new KeyCache(routingTable);
+            keyCache = cache;
+        }
+        final Map<String, Map<String, MetricKeys>> pools = cache.keys.get(virtualhost);
+        final Map<String, MetricKeys> targets = pools != null ? pools.get(poolName) : null;
+        MetricKeys keys = targets != null ? targets.get(targetUri) : null;
+        if (keys == null) {
+            keys = new MetricKeys(ENV_TAG    + environmentName + "." +
+                                  VH_TAG     + cleanUpKey(virtualhost) + "." +
+                                  POOL_TAG   + cleanUpKey(poolName) + "." +
+                                  TARGET_TAG + cleanUpKey(targetUri));
+            if (cache.size.incrementAndGet() <= MAX_CACHED_KEYS) {
+                cache.keys.computeIfAbsent(virtualhost, k -> new ConcurrentHashMap<>())
+                          .computeIfAbsent(poolName, k -> new ConcurrentHashMap<>())
+                          .putIfAbsent(targetUri, keys);
+            }
+        }
+        return keys;
     }
 
     public String cleanUpKey(String str) {
@@ -127,4 +177,66 @@ public class StatsdCompletionListener extends ProcessorLocalStatusCode implement
         }
         return new String(buf);
     }
+
+    private static class KeyCache {
+        private final RoutingTable routingTable;
+        private final Map<String, Map<String, Map<String, MetricKeys>>> keys = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger(0);
+
+        private KeyCache(RoutingTable routingTable) {
+            this.routingTable = routingTable;
+        }
+    }
+
+    private static class MetricKeys {
+        private static final int MIN_STATUS = 100;
+        private static final int MAX_STATUS = 599;
+
+        private final String key;
+        private final String requestTime;
+        private final String activeConns;
+        private final String outlierEjection;
+        private final String[] httpCodes = new String[MAX_STATUS - MIN_STATUS + 1];
+        private final String[] phases = new String[RequestPhases.PHASES];
+        private final Map<String, String> httpMethods = new ConcurrentHashMap<>();
+
+        private MetricKeys(String key) {
+            this.key = key;
+            this.requestTime = key + ".requestTime";
+            this.activeConns = key + ".activeConns";
+            this.outlierEjection = key + ".outlierEjection";
+        }
+
+        String httpCode(int statusCode) {
+            if (statusCode < MIN_STATUS || statusCode > MAX_STATUS) {
+                return key + ".httpCode." + statusCode;
+            }
+            String httpCode = httpCodes[statusCode - MIN_STATUS];
+            if (httpCode == null) {
+                httpCode = key + ".httpCode." + statusCode;
+                httpCodes[statusCode - MIN_STATUS] = httpCode;
+            }
+            return httpCode;
+        }
+
+        String phase(int phase) {
+            String name = phases[phase];
+            if (name == null) {
+                name = key + ".phase." + RequestPhases.phaseName(phase);
+                phases[phase] = name;
+            }
+            return name;
+        }
+
+        String httpMethod(String method) {
+            String httpMethod = httpMethods.get(method);
+            if (httpMethod == null) {
+                httpMethod = key + ".httpMethod." + method;
+                if (httpMethods.size() < 16) {
+                    httpMethods.putIfAbsent(method, httpMethod);
+                }
+            }
+            return httpMethod;
+        }
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.completionListeners;
+
+import io.galeb.router.client.hostselectors.HashSourceIpHostSelector;
+import io.galeb.router.services.TrafficSketchService;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import static io.galeb.router.handlers.PoolHandler.POOL_NAME;
+
+/**
+ * Feeds the traffic sketches. Requests without pool (i.e. unknown virtualhosts) are ignored, so the number of
+ * sketches is limited by the routing table.
+ */
+@Component
+public class TrafficSketchCompletionListener implements ExchangeCompletionListener {
+
+    private final Log logger = LogFactory.getLog(this.getClass());
+
+    private final TrafficSketchService trafficSketchService;
+
+    @Autowired
+    public TrafficSketchCompletionListener(final TrafficSketchService trafficSketchService) {
+        this.trafficSketchService = trafficSketchService;
+    }
+
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            if (exchange.getAttachment(POOL_NAME) != null) {
+                final String userAgent = exchange.getRequestHeaders().getFirst(Headers.USER_AGENT);
+                trafficSketchService.record(exchange.getHostName(), HashSourceIpHostSelector.sourceIp(exchange),
+                        exchange.getRequestPath(), userAgent != null ? userAgent : "-");
+            }
+        } catch (Exception e) {
+            logger.error(ExceptionUtils.getStackTrace(e));
+        } finally {
+            nextListener.proceed();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.ratelimit;
+
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.ResponseCodeOnError;
+import io.galeb.router.client.hostselectors.HashSourceIpHostSelector;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects (429) the requests over the limits of the virtualhost properties:
+ *
+ * rateLimit / rateLimitBurst: requests per second (and burst) of the whole virtualhost
+ * rateLimitPerClient / rateLimitPerClientBurst: requests per second (and burst) of each client address
+ *
+ * Virtualhosts without the properties use the RATE_LIMIT* environment defaults.
+ */
+public class RateLimitHandler implements HttpHandler {
+
+    public static final String PROP_RATE_LIMIT                  = "rateLimit";
+    public static final String PROP_RATE_LIMIT_BURST            = "rateLimitBurst";
+    public static final String PROP_RATE_LIMIT_PER_CLIENT       = "rateLimitPerClient";
+    public static final String PROP_RATE_LIMIT_PER_CLIENT_BURST = "rateLimitPerClientBurst";
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitHandler.class);
+
+    private static final LongAdder REJECTED = new LongAdder();
+
+    private final HttpHandler rejectHandler = ResponseCodeOnError.RATE_LIMITED.getHandler();
+    private final TokenBucket virtualhostBucket;
+    private final TokenBuckets clientBuckets;
+    private final HttpHandler next;
+
+    public RateLimitHandler(final TokenBucket virtualhostBucket, final TokenBuckets clientBuckets, final HttpHandler next) {
+        this.virtualhostBucket = virtualhostBucket;
+        this.clientBuckets = clientBuckets;
+        this.next = next;
+    }
+
+    /**
+     * Returns the handler limiting the virtualhost, or next if the virtualhost has no (valid) limits.
+     */
+    public static HttpHandler wrap(final VirtualHost virtualHost, final HttpHandler next) {
+        final Map<String, String> properties = virtualHost.getProperties();
+        final double rate = rate(virtualHost, PROP_RATE_LIMIT, SystemEnv.RATE_LIMIT);
+        final double ratePerClient = rate(virtualHost, PROP_RATE_LIMIT_PER_CLIENT, SystemEnv.RATE_LIMIT_PER_CLIENT);
+        if (rate <= 0.0 && ratePerClient <= 0.0) {
+            return next;
+        }
+        final TokenBucket virtualhostBucket = rate > 0.0 ?
+                new TokenBucket(rate, burst(properties.getOrDefault(PROP_RATE_LIMIT_BURST,
+                        SystemEnv.RATE_LIMIT_BURST.getValue()), rate)) : null;
+        final TokenBuckets clientBuckets = ratePerClient > 0.0 ?
+                new TokenBuckets(ratePerClient, burst(properties.getOrDefault(PROP_RATE_LIMIT_PER_CLIENT_BURST,
+                        SystemEnv.RATE_LIMIT_PER_CLIENT_BURST.getValue()), ratePerClient),
+                        Integer.parseInt(SystemEnv.RATE_LIMIT_MAX_CLIENTS.getValue())) : null;
+        logger.info("Virtualhost " + virtualHost.getName() + ": rate limit " + (rate > 0.0 ? rate + " req/s" : "-") +
+                ", per client " + (ratePerClient > 0.0 ? ratePerClient + " req/s" : "-"));
+        return new RateLimitHandler(virtualhostBucket, clientBuckets, next);
+    }
+
+    public static long getRejected() {
+        return REJECTED.sum();
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if ((clientBuckets != null && !clientBuckets.tryAcquire(HashSourceIpHostSelector.sourceIp(exchange))) ||
+            (virtualhostBucket != null && !virtualhostBucket.tryAcquire())) {
+            REJECTED.increment();
+            rejectHandler.handleRequest(exchange);
+            return;
+        }
+        next.handleRequest(exchange);
+    }
+
+    private static double rate(final VirtualHost virtualHost, final String property, final SystemEnv defaultRate) {
+        final String value = virtualHost.getProperties().getOrDefault(property, defaultRate.getValue());
+        if (value == null) return 0.0;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Virtualhost " + virtualHost.getName() + ": invalid " + property + " (" + value + ")");
+            return 0.0;
+        }
+    }
+
+    private static int burst(final String value, double rate) {
+        if (value != null) {
+            try {
+                final int burst = Integer.parseInt(value);
+                if (burst > 0) return burst;
+            } catch (NumberFormatException ignore) {}
+        }
+        return Math.max((int) Math.ceil(rate), 1);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as GCRA (generic cell rate algorithm): the whole state is the
+ * theoretical arrival time of the next request, so acquiring a token is a single CAS.
+ *
+ * A bucket whose theoretical arrival time is in the past is full, i.e. equivalent to a new bucket.
+ */
+public final class TokenBucket {
+
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param rate tokens per second
+     * @param burst bucket size (tokens)
+     */
+    public TokenBucket(double rate, int burst) {
+        this(rate, burst, System.nanoTime());
+    }
+
+    public TokenBucket(double rate, int burst, long now) {
+        this.emissionInterval = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.burstTolerance = emissionInterval * Math.max(burst - 1, 0);
+        this.theoreticalArrival = new AtomicLong(now);
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    public boolean tryAcquire(long now) {
+        while (true) {
+            final long current = theoreticalArrival.get();
+            final long arrival = now - current > 0L ? now : current;
+            if (arrival - now > burstTolerance) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(current, arrival + emissionInterval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * True if the bucket is full, so it can be dropped without changing the limit.
+     */
+    public boolean isIdle(long now) {
+        return now - theoreticalArrival.get() >= 0L;
+    }
+
+    long theoreticalArrival() {
+        return theoreticalArrival.get();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.handlers.ratelimit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Token buckets by key (i.e. client address), striped by key hash and bounded.
+ *
+ * When a stripe is full, the first thread to notice it evicts the idle (full) buckets, which
+ * does not change the limits. If all buckets are busy, the ones closest to full are evicted.
+ */
+public final class TokenBuckets {
+
+    private static final int STRIPES = 16;
+
+    private final double rate;
+    private final int burst;
+    private final int maxKeysPerStripe;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public TokenBuckets(double rate, int burst, int maxKeys) {
+        this.rate = rate;
+        this.burst = burst;
+        this.maxKeysPerStripe = Math.max(maxKeys / STRIPES, 1);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public boolean tryAcquire(final String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    public boolean tryAcquire(final String key, long now) {
+        final int hash = key.hashCode();
+        final Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        TokenBucket bucket = stripe.buckets.get(key);
+        if (bucket == null) {
+            if (stripe.buckets.size() >= maxKeysPerStripe) {
+                stripe.evict(now, maxKeysPerStripe);
+            }
+            bucket = stripe.buckets.computeIfAbsent(key, k -> new TokenBucket(rate, burst, now));
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+        private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+        private void evict(long now, int maxKeys) {
+            if (!evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                buckets.values().removeIf(bucket -> bucket.isIdle(now));
+                if (buckets.size() >= maxKeys) {
+                    // no idle bucket: drop the oldest quarter (lowest theoretical arrival)
+                    final long[] arrivals = buckets.values().stream().mapToLong(TokenBucket::theoreticalArrival).sorted().toArray();
+                    if (arrivals.length > 0) {
+                        final long limit = arrivals[Math.min(arrivals.length / 4, arrivals.length - 1)];
+                        final Iterator<TokenBucket> iterator = buckets.values().iterator();
+                        while (iterator.hasNext()) {
+                            if (iterator.next().theoreticalArrival() - limit <= 0L) iterator.remove();
+                        }
+                    }
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram (same bucket layout of HdrHistogram with 2^5 sub-buckets, about 3% of error).
+ *
+ * Recording is lock-free and allocation-free. Snapshots are copies of the counters, and the interval
+ * snapshot is the difference to the previous interval snapshot, so writers never swap histograms.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS     = 5;
+    private static final int SUB_BUCKETS  = 1 << SUB_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+    private static final int MAX_EXP      = 36;
+    private static final long MAX_VALUE   = (1L << MAX_EXP) - 1;
+    private static final int BUCKETS      = LINEAR_LIMIT + (MAX_EXP - SUB_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong(0L);
+
+    private Snapshot lastInterval = Snapshot.EMPTY;
+    private Snapshot previous = Snapshot.EMPTY;
+
+    public void record(long value) {
+        final long clamped = value < 0L ? 0L : Math.min(value, MAX_VALUE);
+        counts.incrementAndGet(index(clamped));
+        sum.add(clamped);
+        long currentMax;
+        while (clamped > (currentMax = max.get()) && !max.compareAndSet(currentMax, clamped)) {
+            // retry
+        }
+    }
+
+    /**
+     * Values recorded since the histogram creation.
+     */
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    /**
+     * Closes the current interval, returning the values recorded since the last call.
+     */
+    public synchronized Snapshot interval() {
+        final Snapshot current = snapshot();
+        lastInterval = current.minus(previous);
+        previous = current;
+        return lastInterval;
+    }
+
+    /**
+     * The last closed interval.
+     */
+    public synchronized Snapshot lastInterval() {
+        return lastInterval;
+    }
+
+    static int index(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        final int exp = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exp - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        final int exp = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BITS + 1;
+        final int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        final long width = 1L << (exp - SUB_BITS);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+
+    public static class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new long[BUCKETS], 0L, 0L, 0L);
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0.0;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Number of values lower or equal to the value (within the histogram precision).
+         */
+        public long getCountAtOrBelow(long value) {
+            final int last = index(value < 0L ? 0L : Math.min(value, MAX_VALUE));
+            long accumulated = 0L;
+            for (int i = 0; i <= last; i++) {
+                accumulated += counts[i];
+            }
+            return accumulated;
+        }
+
+        /**
+         * Returns the highest value (within the histogram precision) below which the percentile of values falls.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) return 0L;
+            final long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+            long accumulated = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                accumulated += counts[i];
+                if (accumulated >= rank) {
+                    return Math.min(highestEquivalentValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        private Snapshot minus(Snapshot older) {
+            final long[] diff = new long[BUCKETS];
+            int last = -1;
+            for (int i = 0; i < BUCKETS; i++) {
+                diff[i] = counts[i] - older.counts[i];
+                if (diff[i] > 0) last = i;
+            }
+            final long intervalMax = last >= 0 ? Math.min(highestEquivalentValue(last), max) : 0L;
+            return new Snapshot(diff, count - older.count, sum - older.sum, intervalMax);
+        }
+    }
+}
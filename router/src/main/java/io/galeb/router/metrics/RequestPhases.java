@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics;
+
+import io.galeb.core.enums.SystemEnv;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ResponseCommitListener;
+import io.undertow.util.AttachmentKey;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * nanoTime stamps of the request phases, attached to the exchange.
+ *
+ * Each phase lasts from the previous stamp to its own stamp. When ENABLE_PHASE_TIMING is off nothing is
+ * attached and {@link #stamp(HttpServerExchange, Stamp)} returns at the first (constant) test.
+ */
+public final class RequestPhases {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(SystemEnv.ENABLE_PHASE_TIMING.getValue());
+
+    public static final AttachmentKey<RequestPhases> KEY = AttachmentKey.create(RequestPhases.class);
+
+    public enum Stamp {
+        START        (null),
+        VIRTUALHOST  ("vhost"),
+        RULE         ("rule"),
+        HOST_SELECTED("select"),
+        CONNECTED    ("connect"),
+        FIRST_BYTE   ("ttfb"),
+        END          ("stream");
+
+        /** Name of the phase ending at this stamp */
+        private final String phase;
+
+        Stamp(String phase) {
+            this.phase = phase;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+    }
+
+    private static final Stamp[] STAMPS = Stamp.values();
+
+    /** Number of phases (all stamps but START) */
+    public static final int PHASES = STAMPS.length - 1;
+
+    private static final ResponseCommitListener FIRST_BYTE_LISTENER = exchange -> stamp(exchange, Stamp.FIRST_BYTE);
+
+    private static final ExchangeCompletionListener END_LISTENER = (exchange, nextListener) -> {
+        stamp(exchange, Stamp.END);
+        nextListener.proceed();
+    };
+
+    private final long[] stamps = new long[STAMPS.length];
+
+    public RequestPhases(long start) {
+        stamps[Stamp.START.ordinal()] = start;
+    }
+
+    /**
+     * Attaches the phases to a new exchange. The END stamp listener must run before the listeners that
+     * read the phases, so it is added after them (Undertow calls the completion listeners in reverse order).
+     */
+    public static void start(final HttpServerExchange exchange) {
+        if (!ENABLED) return;
+        final long start = exchange.getRequestStartTime();
+        exchange.putAttachment(KEY, new RequestPhases(start != -1 ? start : System.nanoTime()));
+        exchange.addResponseCommitListener(FIRST_BYTE_LISTENER);
+        exchange.addExchangeCompleteListener(END_LISTENER);
+    }
+
+    public static void stamp(final HttpServerExchange exchange, final Stamp stamp) {
+        if (!ENABLED) return;
+        final RequestPhases phases = exchange.getAttachment(KEY);
+        if (phases != null) {
+            phases.stamp(stamp, System.nanoTime());
+        }
+    }
+
+    public void stamp(final Stamp stamp, long nanoTime) {
+        stamps[stamp.ordinal()] = nanoTime;
+    }
+
+    /**
+     * Stamps only if it was not stamped before (i.e. the rule of a virtualhost with a single pool).
+     */
+    public static void stampIfAbsent(final HttpServerExchange exchange, final Stamp stamp) {
+        if (!ENABLED) return;
+        final RequestPhases phases = exchange.getAttachment(KEY);
+        if (phases != null && phases.stamps[stamp.ordinal()] == 0L) {
+            phases.stamp(stamp, System.nanoTime());
+        }
+    }
+
+    public static String phaseName(int phase) {
+        return STAMPS[phase + 1].getPhase();
+    }
+
+    /**
+     * Duration (microseconds) of the phase, from the last previous stamp. Returns -1 if the phase was not stamped.
+     */
+    public long getMicros(int phase) {
+        final int index = phase + 1;
+        final long end = stamps[index];
+        if (end == 0L) return -1L;
+        for (int previous = index - 1; previous >= 0; previous--) {
+            if (stamps[previous] != 0L) {
+                return TimeUnit.NANOSECONDS.toMicros(Math.max(end - stamps[previous], 0L));
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Copies the durations (microseconds) of all phases to the array. Returns false if the array is too small.
+     */
+    public boolean copyMicrosTo(final long[] micros) {
+        if (micros == null || micros.length < PHASES) return false;
+        for (int phase = 0; phase < PHASES; phase++) {
+            micros[phase] = getMicros(phase);
+        }
+        return true;
+    }
+}
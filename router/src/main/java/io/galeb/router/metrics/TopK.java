@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics;
+
+import io.galeb.core.enums.SystemEnv;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Heavy hitters by SpaceSaving, striped by thread.
+ *
+ * Each IO thread feeds its own SpaceSaving summary, so a heavy hitter does not make the threads contend on
+ * one monitor. The summaries are created on the first offer of their thread and merged at query time.
+ * The count of a key is overestimated by at most its error.
+ */
+public final class TopK {
+
+    private static final int STRIPES = Integer.highestOneBit(Math.max(Integer.parseInt(SystemEnv.IO_THREADS.getValue()) - 1, 1)) << 1;
+
+    private final int k;
+    private final int capacity;
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    public TopK(int k) {
+        this.k = k;
+        // each summary sees the whole key space of its thread
+        this.capacity = Math.max(4 * k, 32);
+    }
+
+    public void offer(final String key) {
+        if (key == null) return;
+        final int index = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe(capacity));
+            stripe = stripes.get(index);
+        }
+        stripe.offer(key);
+    }
+
+    /**
+     * The k keys with the highest counts, in descending order.
+     */
+    public List<Entry> top() {
+        final List<List<Entry>> summaries = new ArrayList<>();
+        for (int i = 0; i < STRIPES; i++) {
+            final Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                final List<Entry> entries = new ArrayList<>();
+                stripe.copyTo(entries);
+                summaries.add(entries);
+            }
+        }
+        return merge(summaries, k);
+    }
+
+    /**
+     * Merges the top lists of several summaries (i.e. of several threads or routers). The counts and errors are added,
+     * so the error bound of the result is the sum of the error bounds.
+     */
+    public static List<Entry> merge(final Collection<List<Entry>> tops, int k) {
+        final Map<String, Entry> merged = new HashMap<>();
+        tops.forEach(top -> top.forEach(entry -> merged.merge(entry.key, entry,
+                (a, b) -> new Entry(a.key, a.count + b.count, a.error + b.error))));
+        return top(new ArrayList<>(merged.values()), k);
+    }
+
+    private static List<Entry> top(final List<Entry> entries, int k) {
+        entries.sort((a, b) -> Long.compare(b.count, a.count));
+        return entries.size() > k ? new ArrayList<>(entries.subList(0, k)) : entries;
+    }
+
+    public static final class Entry {
+        private final String key;
+        private final long count;
+        private final long error;
+
+        public Entry(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    private static final class Counter {
+        private String key;
+        private long count;
+        private long error;
+    }
+
+    private static final class Stripe {
+        private final Map<String, Counter> counters;
+        private final Counter[] slots;
+        private int size = 0;
+
+        private Stripe(int capacity) {
+            this.counters = new HashMap<>(capacity * 2);
+            this.slots = new Counter[capacity];
+        }
+
+        private synchronized void offer(final String key) {
+            final Counter counter = counters.get(key);
+            if (counter != null) {
+                counter.count++;
+                return;
+            }
+            if (size < slots.length) {
+                final Counter newCounter = new Counter();
+                newCounter.key = key;
+                newCounter.count = 1L;
+                slots[size++] = newCounter;
+                counters.put(key, newCounter);
+                return;
+            }
+            // replaces the key with the lowest count, which becomes the error of the new key
+            Counter min = slots[0];
+            for (int i = 1; i < slots.length; i++) {
+                if (slots[i].count < min.count) min = slots[i];
+            }
+            counters.remove(min.key);
+            min.key = key;
+            min.error = min.count;
+            min.count++;
+            counters.put(key, min);
+        }
+
+        private synchronized void copyTo(final List<Entry> entries) {
+            for (int i = 0; i < size; i++) {
+                entries.add(new Entry(slots[i].key, slots[i].count, slots[i].error));
+            }
+        }
+    }
+}
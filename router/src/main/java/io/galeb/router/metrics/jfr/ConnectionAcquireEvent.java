@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.galeb.router.ConnectionAcquire")
+@Label("Connection Acquire")
+@Description("Wait for a connection of the target connection pool, including the time queued when the pool is full")
+@Category(RouterEvents.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class ConnectionAcquireEvent extends Event {
+
+    @Label("Target")
+    private String target;
+
+    @Label("Outcome")
+    @Description("connected, failed, queueFailed or unresolved")
+    private String outcome;
+
+    /**
+     * Returns a started event, or null if the event is not enabled by the recording.
+     */
+    public static ConnectionAcquireEvent start() {
+        final ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    public void commit(String target, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.target = target;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
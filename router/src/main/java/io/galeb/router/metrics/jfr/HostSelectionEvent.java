@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.galeb.router.HostSelection")
+@Label("Host Selection")
+@Description("Choice of the target of a pool")
+@Category(RouterEvents.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class HostSelectionEvent extends Event {
+
+    @Label("Pool")
+    private String pool;
+
+    @Label("Target")
+    private String target;
+
+    @Label("Index")
+    @Description("Index of the chosen target in the hosts of the pool, -1 if none")
+    private int index;
+
+    @Label("Hosts")
+    private int hosts;
+
+    @Label("Reason")
+    @Description("sticky, available, warming, full, ejected, problem or none")
+    private String reason;
+
+    @Label("Attempt")
+    private int attempt;
+
+    /**
+     * Returns a started event, or null if the event is not enabled by the recording.
+     */
+    public static HostSelectionEvent start() {
+        final HostSelectionEvent event = new HostSelectionEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    public boolean finish() {
+        end();
+        return shouldCommit();
+    }
+
+    public void commit(String pool, String target, int index, int hosts, String reason, int attempt) {
+        this.pool = pool;
+        this.target = target;
+        this.index = index;
+        this.hosts = hosts;
+        this.reason = reason;
+        this.attempt = attempt;
+        commit();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics.jfr;
+
+import io.galeb.core.enums.SystemEnv;
+
+/**
+ * Flight Recorder events of the router. The event classes extend jdk.jfr.Event, so they must only be touched
+ * behind {@link #ENABLED}: JVMs without jdk.jfr never load them.
+ *
+ * All events are disabled by default, each one is enabled by the recording settings, i.e.
+ * -XX:StartFlightRecording=settings=/path/to/galeb-router.jfc
+ */
+public final class RouterEvents {
+
+    public static final String CATEGORY = "Galeb Router";
+
+    public static final boolean ENABLED = Boolean.parseBoolean(SystemEnv.ENABLE_JFR_EVENTS.getValue()) && isJfrAvailable();
+
+    private RouterEvents() {
+        // static only
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, RouterEvents.class.getClassLoader());
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
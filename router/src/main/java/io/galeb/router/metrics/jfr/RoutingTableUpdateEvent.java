@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("io.galeb.router.RoutingTableUpdate")
+@Label("Routing Table Update")
+@Description("Rebuild of the handlers of the changed virtualhosts and publication of the new routing table")
+@Category(RouterEvents.CATEGORY)
+@Enabled(false)
+public class RoutingTableUpdateEvent extends Event {
+
+    @Label("Virtualhosts")
+    private int virtualhosts;
+
+    @Label("Reused Pools")
+    private long reusedPools;
+
+    @Label("Rebuilt Pools")
+    private long rebuiltPools;
+
+    @Label("Released Pools")
+    private int releasedPools;
+
+    /**
+     * Returns a started event, or null if the event is not enabled by the recording.
+     */
+    public static RoutingTableUpdateEvent start() {
+        final RoutingTableUpdateEvent event = new RoutingTableUpdateEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    public void commit(int virtualhosts, long reusedPools, long rebuiltPools, int releasedPools) {
+        end();
+        if (shouldCommit()) {
+            this.virtualhosts = virtualhosts;
+            this.reusedPools = reusedPools;
+            this.rebuiltPools = rebuiltPools;
+            this.releasedPools = releasedPools;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.galeb.router.RuleMatch")
+@Label("Rule Match")
+@Description("Match of the request path against the path rules of the virtualhost")
+@Category(RouterEvents.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class RuleMatchEvent extends Event {
+
+    @Label("Host")
+    private String host;
+
+    @Label("Path")
+    private String path;
+
+    @Label("Rule")
+    @Description("Matched path rule, null if no rule matched")
+    private String rule;
+
+    @Label("Rule Order")
+    private int order;
+
+    /**
+     * Returns a started event, or null if the event is not enabled by the recording.
+     */
+    public static RuleMatchEvent start() {
+        final RuleMatchEvent event = new RuleMatchEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    public void commit(String host, String path, String rule, int order) {
+        end();
+        if (shouldCommit()) {
+            this.host = host;
+            this.path = path;
+            this.rule = rule;
+            this.order = order;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.galeb.router.VirtualHost")
+@Label("Virtualhost Resolution")
+@Description("Lookup of the virtualhost of a request in the routing table")
+@Category(RouterEvents.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class VirtualHostEvent extends Event {
+
+    @Label("Host")
+    private String host;
+
+    @Label("Found")
+    private boolean found;
+
+    /**
+     * Returns a started event, or null if the event is not enabled by the recording.
+     */
+    public static VirtualHostEvent start() {
+        final VirtualHostEvent event = new VirtualHostEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    public void commit(String host, boolean found) {
+        end();
+        if (shouldCommit()) {
+            this.host = host;
+            this.found = found;
+            commit();
+        }
+    }
+}
@@ -20,6 +20,12 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
 import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.client.AdaptiveConcurrencyLimit;
+import io.galeb.router.client.OutlierDetector;
+import io.galeb.router.handlers.cache.RequestCoalescingHandler;
+import io.galeb.router.handlers.cache.ResponseCache;
+import io.galeb.router.handlers.completionListeners.AccessLogCompletionListener;
+import io.galeb.router.handlers.ratelimit.RateLimitHandler;
 import io.undertow.Undertow;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -39,10 +45,16 @@ public class JmxReporterService {
     private final AtomicLong lastBytesReceived = new AtomicLong(0L);
     private final AtomicLong lastBytesSent = new AtomicLong(0L);
     private final Undertow undertow;
+    private final ReconcilerService reconcilerService;
+    private final AccessLogCompletionListener accessLogCompletionListener;
 
     @Autowired
-    public JmxReporterService(final Undertow undertow) {
+    public JmxReporterService(final Undertow undertow,
+                              final ReconcilerService reconcilerService,
+                              final AccessLogCompletionListener accessLogCompletionListener) {
         this.undertow = undertow;
+        this.reconcilerService = reconcilerService;
+        this.accessLogCompletionListener = accessLogCompletionListener;
     }
 
     @Bean
@@ -55,6 +67,19 @@ public class JmxReporterService {
         register.register("RequestCount", (Gauge<Long>) this::getRequestCount);
         register.register("BytesReceived", (Gauge<Long>) this::getBytesReceived);
         register.register("BytesSent", (Gauge<Long>) this::getBytesSent);
+        register.register("ReusedPools", (Gauge<Long>) reconcilerService::getReusedPools);
+        register.register("RebuiltPools", (Gauge<Long>) reconcilerService::getRebuiltPools);
+        register.register("OutlierEjections", (Gauge<Long>) OutlierDetector::getEjections);
+        register.register("AccessLogDroppedLines", (Gauge<Long>) accessLogCompletionListener::getDroppedLines);
+        register.register("RateLimitRejected", (Gauge<Long>) RateLimitHandler::getRejected);
+        register.register("PoolOverloaded", (Gauge<Long>) AdaptiveConcurrencyLimit::getRejected);
+        final ResponseCache responseCache = ResponseCache.global();
+        register.register("ResponseCacheHits", (Gauge<Long>) responseCache::getHits);
+        register.register("ResponseCacheMisses", (Gauge<Long>) responseCache::getMisses);
+        register.register("ResponseCacheHitRatio", (Gauge<Double>) responseCache::getHitRatio);
+        register.register("ResponseCacheBytesSaved", (Gauge<Long>) responseCache::getBytesSaved);
+        register.register("ResponseCacheMemoryUsed", (Gauge<Long>) responseCache::getMemoryUsed);
+        register.register("RequestsCoalesced", (Gauge<Long>) RequestCoalescingHandler::getCoalesced);
         final JmxReporter jmxReporter = JmxReporter.forRegistry(register).inDomain(MBEAN_DOMAIN).build();
         if (Boolean.parseBoolean(SystemEnv.ENABLE_UNDERTOW_JMX.getValue())) {
             jmxReporter.start();
@@ -63,12 +88,8 @@ public class JmxReporterService {
     }
 
     private long extractDelta(final AtomicLong last, final ToLongFunction<Undertow.ListenerInfo> longFunction) {
-        long start = System.nanoTime();
-        double localLast = last.get() * 1.0;
-        double current = undertow.getListenerInfo().stream().mapToLong(longFunction).sum() * 1.0;
-        long end = System.nanoTime();
-        last.set((long) current);
-        return Math.round((current * ((double) end / (double) start)) - localLast);
+        long current = undertow.getListenerInfo().stream().mapToLong(longFunction).sum();
+        return current - last.getAndSet(current);
     }
 
     private long getRequestCount() {
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.services;
+
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.metrics.LatencyHistogram;
+import io.galeb.router.metrics.LatencyHistogram.Snapshot;
+import io.galeb.router.metrics.RequestPhases;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency histograms (microseconds) per virtualhost, pool and target.
+ *
+ * The number of series is bounded: at the end of each interval, series without requests in the interval are
+ * released and, over the bound, the least recently used series are evicted. Each series is also a JMX MBean,
+ * registered at the end of its first interval. The request path only creates the missing series.
+ */
+@Service
+public class LatencyHistogramService {
+
+    private static final String MBEAN_DOMAIN = JmxReporterService.MBEAN_DOMAIN;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final int maxSeries;
+    private final boolean enableJmx;
+    private final Map<String, Map<String, Map<String, Series>>> series = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "latency-histogram-interval");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LatencyHistogramService() {
+        this(Integer.parseInt(SystemEnv.LATENCY_HISTOGRAM_MAX_SERIES.getValue()),
+             Boolean.parseBoolean(SystemEnv.ENABLE_UNDERTOW_JMX.getValue()));
+        final long interval = Long.parseLong(SystemEnv.LATENCY_HISTOGRAM_INTERVAL.getValue());
+        scheduler.scheduleWithFixedDelay(this::closeInterval, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public LatencyHistogramService(int maxSeries, boolean enableJmx) {
+        this.maxSeries = maxSeries;
+        this.enableJmx = enableJmx;
+    }
+
+    public void record(String virtualhost, String pool, String target, long micros) {
+        record(virtualhost, pool, target, micros, null);
+    }
+
+    /**
+     * Records the response time and, if present, the duration of each phase of the request.
+     */
+    public void record(String virtualhost, String pool, String target, long micros, RequestPhases phases) {
+        final Map<String, Map<String, Series>> pools = series.get(virtualhost);
+        final Map<String, Series> targets = pools != null ? pools.get(pool) : null;
+        Series current = targets != null ? targets.get(target) : null;
+        if (current == null) {
+            current = newSeries(virtualhost, pool, target);
+        }
+        current.lastUsed = System.currentTimeMillis();
+        current.histogram.record(micros);
+        if (phases != null && current.phases != null) {
+            for (int phase = 0; phase < RequestPhases.PHASES; phase++) {
+                final long phaseMicros = phases.getMicros(phase);
+                if (phaseMicros >= 0L) {
+                    current.phases[phase].record(phaseMicros);
+                }
+            }
+        }
+        // the series may have been released meanwhile (see closeInterval): then record in the new one
+        int state;
+        while ((state = current.state) == Series.CLOSING) {
+            Thread.yield();
+        }
+        if (state == Series.REMOVED) {
+            record(virtualhost, pool, target, micros, phases);
+        }
+    }
+
+    public List<Series> getSeries() {
+        final List<Series> all = new ArrayList<>();
+        series.values().forEach(pools -> pools.values().forEach(targets -> all.addAll(targets.values())));
+        return all;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Closes the interval of all series, releasing the idle ones and evicting the least recently used ones
+     * over the bound, and registers the MBeans of the new series.
+     */
+    public synchronized void closeInterval() {
+        final List<Series> all = getSeries();
+        for (Series s : all) {
+            if (s.histogram.interval().getCount() == 0) {
+                // a request may have fetched the series before the interval was closed: the state is published
+                // before looking again at the histogram, so either that request is seen here or it sees the state
+                s.state = Series.CLOSING;
+                if (s.histogram.interval().getCount() == 0) {
+                    remove(s);
+                } else {
+                    s.state = Series.ACTIVE;
+                }
+            }
+        }
+        final int excess = size.get() - maxSeries;
+        if (excess > 0) {
+            getSeries().stream().sorted(Comparator.comparingLong(s -> s.lastUsed)).limit(excess).forEach(this::remove);
+        }
+        all.stream().filter(s -> s.state == Series.ACTIVE && !s.registered).forEach(this::register);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        scheduler.shutdown();
+        getSeries().forEach(this::remove);
+    }
+
+    private Series newSeries(String virtualhost, String pool, String target) {
+        synchronized (series) {
+            final Map<String, Series> targets = series.computeIfAbsent(virtualhost, k -> new ConcurrentHashMap<>())
+                                                      .computeIfAbsent(pool, k -> new ConcurrentHashMap<>());
+            Series current = targets.get(target);
+            if (current == null) {
+                current = new Series(virtualhost, pool, target);
+                targets.put(target, current);
+                size.incrementAndGet();
+            }
+            return current;
+        }
+    }
+
+    private void remove(Series old) {
+        synchronized (series) {
+            final Map<String, Map<String, Series>> pools = series.get(old.virtualhost);
+            final Map<String, Series> targets = pools != null ? pools.get(old.pool) : null;
+            if (targets == null || !targets.remove(old.target, old)) {
+                return;
+            }
+            size.decrementAndGet();
+            if (targets.isEmpty()) pools.remove(old.pool, targets);
+            if (pools.isEmpty()) series.remove(old.virtualhost, pools);
+        }
+        old.state = Series.REMOVED;
+        if (old.registered) {
+            unregister(old);
+        }
+    }
+
+    private void register(Series newSeries) {
+        newSeries.registered = true;
+        if (!enableJmx) return;
+        try {
+            mBeanServer.registerMBean(new StandardMBean(newSeries, SeriesMBean.class), newSeries.objectName());
+        } catch (Exception e) {
+            logger.warn("latency histogram MBean not registered: " + e.getMessage());
+        }
+    }
+
+    private void unregister(Series oldSeries) {
+        oldSeries.registered = false;
+        if (!enableJmx) return;
+        try {
+            mBeanServer.unregisterMBean(oldSeries.objectName());
+        } catch (Exception e) {
+            logger.debug("latency histogram MBean not unregistered: " + e.getMessage());
+        }
+    }
+
+    public interface SeriesMBean {
+        long getCount();
+        double getMean();
+        long getMax();
+        long getP50();
+        long getP90();
+        long getP99();
+        long getP999();
+        long getIntervalCount();
+        long getIntervalMax();
+        long getIntervalP50();
+        long getIntervalP90();
+        long getIntervalP99();
+        long getIntervalP999();
+    }
+
+    public static class Series implements SeriesMBean {
+        private static final int ACTIVE  = 0;
+        private static final int CLOSING = 1;
+        private static final int REMOVED = 2;
+
+        private final String virtualhost;
+        private final String pool;
+        private final String target;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LatencyHistogram[] phases = RequestPhases.ENABLED ? newPhaseHistograms() : null;
+
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile int state = ACTIVE;
+        private boolean registered = false; // only used by closeInterval and shutdown
+
+        private Series(String virtualhost, String pool, String target) {
+            this.virtualhost = virtualhost;
+            this.pool = pool;
+            this.target = target;
+        }
+
+        public String getVirtualhost() {
+            return virtualhost;
+        }
+
+        public String getPool() {
+            return pool;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public Snapshot snapshot() {
+            return histogram.snapshot();
+        }
+
+        public Snapshot lastInterval() {
+            return histogram.lastInterval();
+        }
+
+        /**
+         * Returns the histogram of a phase (see {@link RequestPhases}), or null if the phase timing is disabled.
+         */
+        public Snapshot phaseSnapshot(int phase) {
+            return phases != null ? phases[phase].snapshot() : null;
+        }
+
+        private static LatencyHistogram[] newPhaseHistograms() {
+            final LatencyHistogram[] histograms = new LatencyHistogram[RequestPhases.PHASES];
+            for (int phase = 0; phase < histograms.length; phase++) {
+                histograms[phase] = new LatencyHistogram();
+            }
+            return histograms;
+        }
+
+        @Override public long getCount() { return snapshot().getCount(); }
+        @Override public double getMean() { return snapshot().getMean(); }
+        @Override public long getMax() { return snapshot().getMax(); }
+        @Override public long getP50() { return snapshot().getValueAtPercentile(50.0); }
+        @Override public long getP90() { return snapshot().getValueAtPercentile(90.0); }
+        @Override public long getP99() { return snapshot().getValueAtPercentile(99.0); }
+        @Override public long getP999() { return snapshot().getValueAtPercentile(99.9); }
+        @Override public long getIntervalCount() { return lastInterval().getCount(); }
+        @Override public long getIntervalMax() { return lastInterval().getMax(); }
+        @Override public long getIntervalP50() { return lastInterval().getValueAtPercentile(50.0); }
+        @Override public long getIntervalP90() { return lastInterval().getValueAtPercentile(90.0); }
+        @Override public long getIntervalP99() { return lastInterval().getValueAtPercentile(99.0); }
+        @Override public long getIntervalP999() { return lastInterval().getValueAtPercentile(99.9); }
+
+        private ObjectName objectName() throws Exception {
+            return new ObjectName(MBEAN_DOMAIN + ":type=LatencyHistogram" +
+                    ",virtualhost=" + ObjectName.quote(virtualhost) +
+                    ",pool=" + ObjectName.quote(pool) +
+                    ",target=" + ObjectName.quote(target));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.services;
+
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.handlers.PoolHandler;
+import io.undertow.Undertow;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.server.DefaultByteBufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.xnio.XnioWorker;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens keep-alive connections to the targets of the published pools, in every IO thread, before the
+ * first requests need them. The router is only ready (see PingHandler) after the first pre-warm finished
+ * or after POOL_PREWARM_TIMEOUT, whichever comes first.
+ */
+@Service
+public class PrewarmService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrewarmService.class);
+
+    private final ObjectProvider<Undertow> undertow;
+    private final long timeout;
+    private final ByteBufferPool bufferPool = new DefaultByteBufferPool(
+            Boolean.parseBoolean(SystemEnv.DIRECT_BUFFER.getValue()),
+            Integer.parseInt(SystemEnv.BUFFER_SIZE.getValue()));
+    private final AtomicLong firstStart = new AtomicLong(0L);
+
+    private volatile boolean ready = false;
+
+    @Autowired
+    public PrewarmService(final ObjectProvider<Undertow> undertow) {
+        this(undertow, Long.parseLong(SystemEnv.POOL_PREWARM_TIMEOUT.getValue()));
+    }
+
+    public PrewarmService(final ObjectProvider<Undertow> undertow, long timeout) {
+        this.undertow = undertow;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Pre-warms the pools asynchronously, in their IO threads.
+     */
+    public void prewarm(final Collection<PoolHandler> poolHandlers) {
+        firstStart.compareAndSet(0L, System.currentTimeMillis());
+        // the Undertow bean depends on the handlers, so it is only resolved here
+        final Undertow server = undertow != null ? undertow.getIfAvailable() : null;
+        final XnioWorker worker = server != null ? server.getWorker() : null;
+        if (worker == null || poolHandlers.isEmpty()) {
+            ready = true;
+            return;
+        }
+        final long start = System.nanoTime();
+        final AtomicInteger pending = new AtomicInteger(1);
+        final AtomicInteger prewarmed = new AtomicInteger(0);
+        final Runnable onDone = () -> {
+            if (pending.decrementAndGet() == 0) {
+                ready = true;
+                if (prewarmed.get() > 0) {
+                    logger.info("Pre-warm finished: " + prewarmed.get() + " pool(s) in " + worker.getIoThreadCount() +
+                            " IO thread(s), " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+                }
+            }
+        };
+        for (PoolHandler poolHandler : poolHandlers) {
+            boolean started = false;
+            for (int i = 0; i < worker.getIoThreadCount(); i++) {
+                pending.incrementAndGet();
+                if (poolHandler.prewarm(worker.getIoThread(i), bufferPool, onDone)) {
+                    started = true;
+                } else {
+                    pending.decrementAndGet();
+                }
+            }
+            if (started) {
+                prewarmed.incrementAndGet();
+            }
+        }
+        onDone.run();
+    }
+
+    public boolean isReady() {
+        if (ready) {
+            return true;
+        }
+        final long first = firstStart.get();
+        return first > 0L && System.currentTimeMillis() - first >= timeout;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.services;
+
+import com.google.common.collect.Sets;
+import io.galeb.core.entity.Pool;
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.core.logutils.ErrorLogger;
+import io.galeb.router.client.ExtendedProxyClient;
+import io.galeb.router.handlers.NameVirtualHostDefaultHandler;
+import io.galeb.router.handlers.PoolHandler;
+import io.galeb.router.handlers.RoutingTable;
+import io.galeb.router.handlers.RoutingTable.Route;
+import io.galeb.router.metrics.jfr.RouterEvents;
+import io.galeb.router.metrics.jfr.RoutingTableUpdateEvent;
+import io.undertow.server.handlers.proxy.ProxyHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconciles the published {@link RoutingTable} with the virtualhosts of the cache.
+ *
+ * Unchanged virtualhosts keep their routes. Changed virtualhosts get new rules, but their
+ * pools are reused whenever only the targets changed: just the added or removed targets
+ * are touched, so the connection pools of the other targets survive the update.
+ * The pools of the changed virtualhosts are pre-warmed after the table is published.
+ * A virtualhost whose new route can not be built keeps its previous route and pools.
+ */
+@Service
+public class ReconcilerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconcilerService.class);
+
+    private final AtomicLong reusedPools = new AtomicLong(0L);
+    private final AtomicLong rebuiltPools = new AtomicLong(0L);
+    private final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler;
+    private final PrewarmService prewarmService;
+
+    public ReconcilerService(final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler) {
+        this(nameVirtualHostDefaultHandler, null);
+    }
+
+    @Autowired
+    public ReconcilerService(final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler,
+                             final PrewarmService prewarmService) {
+        this.nameVirtualHostDefaultHandler = nameVirtualHostDefaultHandler;
+        this.prewarmService = prewarmService;
+    }
+
+    public synchronized void reconcile(final Collection<VirtualHost> virtualhosts) {
+        final RoutingTableUpdateEvent event = RouterEvents.ENABLED ? RoutingTableUpdateEvent.start() : null;
+        final RoutingTable current = nameVirtualHostDefaultHandler.getRoutingTable();
+        final Map<String, Route> routes = new HashMap<>();
+        final Set<PoolHandler> released = new HashSet<>();
+        final Set<PoolHandler> published = new HashSet<>();
+        final long reusedBefore = reusedPools.get();
+        final long rebuiltBefore = rebuiltPools.get();
+
+        virtualhosts.forEach(virtualHost -> {
+            final String virtualhostName = virtualHost.getName();
+            final Route route = current.get(virtualhostName);
+            if (route != null && route.getVirtualHost() == virtualHost) {
+                routes.put(virtualhostName, route);
+                return;
+            }
+            final Map<String, PoolHandler> previous = new HashMap<>();
+            if (route != null) {
+                logger.warn("Virtualhost " + virtualhostName + ": Reconciling handlers.");
+                route.getRuleTargetHandler().getPoolHandlers().forEach(poolHandler ->
+                        previous.putIfAbsent(poolHandler.getPool().getName(), poolHandler));
+            }
+            final Map<String, PoolHandler> poolHandlers = new HashMap<>();
+            final Map<PoolHandler, Pool> reused = new HashMap<>();
+            try {
+                routes.put(virtualhostName, new Route(virtualHost, pool ->
+                        poolHandlers.computeIfAbsent(pool.getName(), poolName -> reuseOrBuild(previous.get(poolName), pool, reused))));
+            } catch (Exception e) {
+                ErrorLogger.logError(e, this.getClass());
+                // keeps the previous route and its pools untouched
+                if (route != null) {
+                    routes.put(virtualhostName, route);
+                }
+                poolHandlers.values().stream().filter(poolHandler -> !reused.containsKey(poolHandler)).forEach(released::add);
+                return;
+            }
+            reused.forEach(PoolHandler::updateTargets);
+            reusedPools.addAndGet(reused.size());
+            if (route != null) {
+                rebuiltPools.addAndGet(poolHandlers.size() - reused.size());
+                route.getRuleTargetHandler().getPoolHandlers().stream()
+                        .filter(poolHandler -> !reused.containsKey(poolHandler)).forEach(released::add);
+            }
+            published.addAll(poolHandlers.values());
+        });
+        Sets.difference(current.virtualhosts(), routes.keySet())
+                .forEach(virtualhostName -> released.addAll(current.get(virtualhostName).getRuleTargetHandler().getPoolHandlers()));
+
+        nameVirtualHostDefaultHandler.setRoutingTable(new RoutingTable(routes));
+        released.forEach(this::release);
+        if (prewarmService != null) {
+            prewarmService.prewarm(published);
+        }
+        if (event != null) {
+            event.commit(routes.size(), reusedPools.get() - reusedBefore, rebuiltPools.get() - rebuiltBefore, released.size());
+        }
+
+        if (reusedPools.get() != reusedBefore || rebuiltPools.get() != rebuiltBefore || !released.isEmpty()) {
+            logger.info("Routing table updated: " + routes.size() + " virtualhost(s), " +
+                    (reusedPools.get() - reusedBefore) + " pool(s) reused, " +
+                    (rebuiltPools.get() - rebuiltBefore) + " pool(s) rebuilt, " +
+                    released.size() + " pool(s) released");
+        }
+    }
+
+    public long getReusedPools() {
+        return reusedPools.get();
+    }
+
+    public long getRebuiltPools() {
+        return rebuiltPools.get();
+    }
+
+    /**
+     * The targets of a reused pool are only updated after the new route was built.
+     */
+    private PoolHandler reuseOrBuild(final PoolHandler previous, final Pool pool, final Map<PoolHandler, Pool> reused) {
+        if (previous != null && previous.isReusable(pool)) {
+            reused.put(previous, pool);
+            return previous;
+        }
+        return new PoolHandler(pool);
+    }
+
+    private void release(final PoolHandler poolHandler) {
+        final ProxyHandler proxyHandler = poolHandler.getProxyHandler();
+        if (proxyHandler != null) {
+            final ExtendedProxyClient proxyClient = (ExtendedProxyClient) proxyHandler.getProxyClient();
+            proxyClient.removeAllHosts();
+        }
+    }
+}
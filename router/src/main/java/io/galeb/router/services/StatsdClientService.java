@@ -13,25 +13,75 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package io.galeb.router.services;
 
-import com.timgroup.statsd.NonBlockingStatsDClient;
 import io.galeb.core.enums.SystemEnv;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statsd client that aggregates the metrics in memory.
+ *
+ * Counters are summed in striped adders, timers are recorded in small log-linear histograms
+ * (exact up to 127 ms, then 8 buckets per power of two) and gauges keep the last value.
+ * Every STATSD_FLUSH_INTERVAL the aggregates are sent as newline separated multi-metric packets,
+ * so the request path never builds a datagram.
+ *
+ * Metrics without samples in an interval are removed from the maps but retired for one more interval,
+ * because a request thread may still hold a reference to it: what arrives late is recovered by the next flush.
+ */
 @Service
 public class StatsdClientService {
 
     private static final String STATSD_PREFIX = SystemEnv.STATSD_PREFIX.getValue();
     private static final String STATSD_HOST   = SystemEnv.STATSD_HOST.getValue();
     private static final int    STATSD_PORT   = Integer.parseInt(SystemEnv.STATSD_PORT.getValue());
+    private static final long   FLUSH_INTERVAL = Long.parseLong(SystemEnv.STATSD_FLUSH_INTERVAL.getValue());
+    private static final int    PACKET_SIZE   = Integer.parseInt(SystemEnv.STATSD_PACKET_SIZE.getValue());
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    private final NonBlockingStatsDClient client = new NonBlockingStatsDClient(STATSD_PREFIX, STATSD_HOST, STATSD_PORT);
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+    private final List<Counter> retiredCounters = new ArrayList<>();
+    private final List<Timer> retiredTimers = new ArrayList<>();
+    private final List<Gauge> retiredGauges = new ArrayList<>();
+    private final String prefix = STATSD_PREFIX == null || STATSD_PREFIX.isEmpty() ? "" : STATSD_PREFIX + ".";
+    private final ByteBuffer packet = ByteBuffer.allocate(PACKET_SIZE);
+    private final InetSocketAddress address = new InetSocketAddress(STATSD_HOST, STATSD_PORT);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "statsd-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DatagramChannel channel = null;
+    private String currentLine = null;
+
+    public StatsdClientService() {
+        scheduler.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
 
     public void incr(String metricName, int step, double rate) {
         count(metricName, step, rate);
@@ -50,7 +100,7 @@ public class StatsdClientService {
     }
 
     public void decr(String metricName, int step, double rate) {
-        client.count(metricName, -1L * step, rate);
+        count(metricName, -1 * step, rate);
     }
 
     public void decr(String metricName) {
@@ -66,7 +116,11 @@ public class StatsdClientService {
     }
 
     public void count(String metricName, int value, double rate) {
-        client.count(metricName, value, rate);
+        Counter counter = counters.get(metricName);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(metricName, Counter::new);
+        }
+        counter.adder.add(rate > 0.0 && rate < 1.0 ? Math.round(value / rate) : value);
     }
 
     public void count(String metricName, int value) {
@@ -74,7 +128,12 @@ public class StatsdClientService {
     }
 
     public void gauge(String metricName, double value, double rate) {
-        client.recordGaugeValue(metricName, value);
+        Gauge gauge = gauges.get(metricName);
+        if (gauge == null) {
+            gauge = gauges.computeIfAbsent(metricName, Gauge::new);
+        }
+        gauge.value.set(Double.doubleToRawLongBits(value));
+        gauge.updated = true;
     }
 
     public void gauge(String metricName, double value) {
@@ -82,7 +141,7 @@ public class StatsdClientService {
     }
 
     public void set(String metricName, String value, double rate) {
-        client.recordSetEvent(metricName, value);
+        sets.computeIfAbsent(metricName, k -> ConcurrentHashMap.newKeySet()).add(value);
     }
 
     public void set(String metricName, String value) {
@@ -90,10 +149,223 @@ public class StatsdClientService {
     }
 
     public void timing(String metricName, long value, double rate) {
-        client.recordExecutionTime(metricName, value, rate);
+        Timer timer = timers.get(metricName);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(metricName, Timer::new);
+        }
+        timer.record(value);
     }
 
     public void timing(String metricName, long value) {
         timing(metricName, value, 1.0);
     }
+
+    /**
+     * Sends the aggregates of the last interval. Metrics without samples in the interval are retired.
+     */
+    public synchronized void flush() {
+        try {
+            packet.clear();
+            currentLine = null;
+            recoverRetired();
+            counters.values().forEach(counter -> {
+                long sum = counter.adder.sumThenReset();
+                if (sum != 0) {
+                    append(counter.name, Long.toString(sum) + "|c");
+                } else if (counters.remove(counter.name, counter)) {
+                    retiredCounters.add(counter);
+                }
+            });
+            gauges.values().forEach(gauge -> {
+                if (gauge.updated) {
+                    gauge.updated = false;
+                    double value = Double.longBitsToDouble(gauge.value.get());
+                    append(gauge.name, (value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value)) + "|g");
+                } else if (gauges.remove(gauge.name, gauge)) {
+                    retiredGauges.add(gauge);
+                }
+            });
+            timers.values().forEach(timer -> {
+                if (!timer.drain(this) && timers.remove(timer.name, timer)) {
+                    retiredTimers.add(timer);
+                }
+            });
+            sets.keySet().forEach(name -> sets.remove(name).forEach(value -> append(name, value + "|s")));
+            send();
+        } catch (Exception e) {
+            logger.error("statsd flush failed: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * Moves what was recorded in the metrics retired by the previous flush back to the live ones.
+     */
+    private void recoverRetired() {
+        retiredCounters.forEach(counter -> {
+            long late = counter.adder.sumThenReset();
+            if (late != 0) {
+                counters.computeIfAbsent(counter.name, Counter::new).adder.add(late);
+            }
+        });
+        retiredGauges.forEach(gauge -> {
+            if (gauge.updated) {
+                gauges.putIfAbsent(gauge.name, gauge);
+            }
+        });
+        retiredTimers.forEach(timer -> {
+            if (timer.hasSamples()) {
+                timer.mergeInto(timers.computeIfAbsent(timer.name, Timer::new));
+            }
+        });
+        retiredCounters.clear();
+        retiredGauges.clear();
+        retiredTimers.clear();
+    }
+
+    private void append(String name, String value) {
+        append(name, value, 1);
+    }
+
+    /**
+     * Appends ":value" to the line of the metric, starting a new "name" line (or packet) whenever it does not fit.
+     */
+    private void append(String name, String value, long repeat) {
+        final byte[] sample = value.getBytes(StandardCharsets.UTF_8);
+        final byte[] key = name.equals(currentLine) ? null : (prefix + name).getBytes(StandardCharsets.UTF_8);
+        if (key != null && key.length + sample.length + 2 > packet.capacity()) {
+            logger.warn("statsd metric " + name + " ignored: larger than STATSD_PACKET_SIZE");
+            return;
+        }
+        byte[] lineKey = key;
+        for (long remaining = repeat; remaining > 0; remaining--) {
+            if (lineKey == null && packet.remaining() < sample.length + 1) {
+                lineKey = (prefix + name).getBytes(StandardCharsets.UTF_8);
+            }
+            if (lineKey != null) {
+                if (packet.remaining() < lineKey.length + sample.length + 2) {
+                    send();
+                }
+                if (packet.position() > 0) {
+                    packet.put((byte) '\n');
+                }
+                packet.put(lineKey);
+                currentLine = name;
+                lineKey = null;
+            }
+            packet.put((byte) ':').put(sample);
+        }
+    }
+
+    private void send() {
+        if (packet.position() == 0) return;
+        packet.flip();
+        try {
+            if (channel == null) {
+                channel = DatagramChannel.open();
+            }
+            channel.send(packet, address);
+        } catch (IOException e) {
+            logger.debug("statsd send failed: " + e.getMessage());
+        } finally {
+            packet.clear();
+            currentLine = null;
+        }
+    }
+
+    private static class Counter {
+        private final String name;
+        private final LongAdder adder = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Gauge {
+        private final String name;
+        private final AtomicLong value = new AtomicLong();
+        private volatile boolean updated = false;
+
+        private Gauge(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Timer {
+        private static final int EXACT_LIMIT = 128;
+        private static final int SUB_BUCKETS = 8;
+        private static final int SUB_BITS = 3;
+        private static final int FIRST_EXP = 7;
+        private static final int BUCKETS = EXACT_LIMIT + (Integer.SIZE - 1 - FIRST_EXP) * SUB_BUCKETS;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        private void record(long value) {
+            buckets.incrementAndGet(index(value));
+        }
+
+        private static int index(long value) {
+            if (value < EXACT_LIMIT) {
+                return value < 0 ? 0 : (int) value;
+            }
+            long clamped = Math.min(value, Integer.MAX_VALUE);
+            int exp = 63 - Long.numberOfLeadingZeros(clamped);
+            int sub = (int) (clamped >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return EXACT_LIMIT + (exp - FIRST_EXP) * SUB_BUCKETS + sub;
+        }
+
+        private static long value(int index) {
+            if (index < EXACT_LIMIT) {
+                return index;
+            }
+            int exp = (index - EXACT_LIMIT) / SUB_BUCKETS + FIRST_EXP;
+            int sub = (index - EXACT_LIMIT) % SUB_BUCKETS;
+            long width = 1L << (exp - SUB_BITS);
+            return (SUB_BUCKETS + sub) * width + width / 2;
+        }
+
+        /**
+         * Each bucket is sent as its middle value repeated once per sample, which keeps the statsd counts and percentiles.
+         */
+        private boolean drain(StatsdClientService client) {
+            boolean hasSamples = false;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (buckets.get(i) == 0) continue;
+                long samples = buckets.getAndSet(i, 0);
+                if (samples > 0) {
+                    hasSamples = true;
+                    client.append(name, value(i) + "|ms", samples);
+                }
+            }
+            return hasSamples;
+        }
+
+        private boolean hasSamples() {
+            for (int i = 0; i < BUCKETS; i++) {
+                if (buckets.get(i) != 0) return true;
+            }
+            return false;
+        }
+
+        private void mergeInto(Timer timer) {
+            for (int i = 0; i < BUCKETS; i++) {
+                if (buckets.get(i) == 0) continue;
+                long samples = buckets.getAndSet(i, 0);
+                if (samples > 0) {
+                    timer.buckets.addAndGet(i, samples);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.services;
+
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.metrics.HyperLogLog;
+import io.galeb.router.metrics.TopK;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming sketches of the traffic of each virtualhost: top clients, URIs and user agents and the number of
+ * unique clients. The sketches cover a window (TRAFFIC_SKETCH_INTERVAL); the last closed window is kept for
+ * the queries and virtualhosts without requests in a window are released.
+ */
+@Service
+public class TrafficSketchService {
+
+    private final int k;
+    private final int maxVirtualhosts;
+    private final long interval;
+    private final Map<String, VirtualHostSketch> sketches = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "traffic-sketch-interval");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TrafficSketchService() {
+        this(Integer.parseInt(SystemEnv.TRAFFIC_SKETCH_TOPK.getValue()),
+             Integer.parseInt(SystemEnv.TRAFFIC_SKETCH_MAX_VIRTUALHOSTS.getValue()),
+             Long.parseLong(SystemEnv.TRAFFIC_SKETCH_INTERVAL.getValue()));
+        scheduler.scheduleWithFixedDelay(this::closeWindow, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public TrafficSketchService(int k, int maxVirtualhosts, long interval) {
+        this.k = k;
+        this.maxVirtualhosts = maxVirtualhosts;
+        this.interval = interval;
+    }
+
+    public void record(String virtualhost, String client, String uri, String userAgent) {
+        VirtualHostSketch sketch = sketches.get(virtualhost);
+        if (sketch == null) {
+            if (size.get() >= maxVirtualhosts) {
+                return;
+            }
+            sketch = sketches.computeIfAbsent(virtualhost, key -> {
+                size.incrementAndGet();
+                return new VirtualHostSketch(key, k);
+            });
+        }
+        final Window window = sketch.current;
+        window.requests.increment();
+        if (client != null) {
+            window.clients.offer(client);
+            window.uniqueClients.offer(client);
+        }
+        window.uris.offer(uri);
+        window.userAgents.offer(userAgent);
+    }
+
+    public VirtualHostSketch get(String virtualhost) {
+        return sketches.get(virtualhost);
+    }
+
+    public Map<String, VirtualHostSketch> getSketches() {
+        return sketches;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Closes the window of all virtualhosts, releasing the idle ones.
+     */
+    public void closeWindow() {
+        sketches.values().forEach(sketch -> {
+            final Window closed = sketch.current;
+            if (closed.getRequests() == 0L && sketches.remove(sketch.virtualhost, sketch)) {
+                size.decrementAndGet();
+                return;
+            }
+            sketch.current = new Window(k);
+            sketch.last = closed;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    public static class VirtualHostSketch {
+        private final String virtualhost;
+        private volatile Window current;
+        private volatile Window last;
+
+        private VirtualHostSketch(String virtualhost, int k) {
+            this.virtualhost = virtualhost;
+            this.current = new Window(k);
+        }
+
+        public String getVirtualhost() {
+            return virtualhost;
+        }
+
+        public Window getCurrent() {
+            return current;
+        }
+
+        /**
+         * The last closed window, or null if no window was closed yet.
+         */
+        public Window getLast() {
+            return last;
+        }
+    }
+
+    public static class Window {
+        private final LongAdder requests = new LongAdder();
+        private final TopK clients;
+        private final TopK uris;
+        private final TopK userAgents;
+        private final HyperLogLog uniqueClients = new HyperLogLog();
+
+        private Window(int k) {
+            this.clients = new TopK(k);
+            this.uris = new TopK(k);
+            this.userAgents = new TopK(k);
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        public TopK getClients() {
+            return clients;
+        }
+
+        public TopK getUris() {
+            return uris;
+        }
+
+        public TopK getUserAgents() {
+            return userAgents;
+        }
+
+        public HyperLogLog getUniqueClients() {
+            return uniqueClients;
+        }
+    }
+}
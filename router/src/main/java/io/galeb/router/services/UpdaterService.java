@@ -25,18 +25,9 @@ import io.galeb.core.entity.AbstractEntity;
 import io.galeb.core.entity.VirtualHost;
 import io.galeb.core.enums.SystemEnv;
 import io.galeb.core.logutils.ErrorLogger;
-import io.galeb.router.VirtualHostsNotExpired;
-import io.galeb.router.client.ExtendedProxyClient;
 import io.galeb.router.configurations.ManagerClientCacheConfiguration.ManagerClientCache;
-import io.galeb.router.handlers.PathGlobHandler;
-import io.galeb.router.handlers.PoolHandler;
-import io.galeb.router.handlers.RuleTargetHandler;
 import io.galeb.router.sync.HttpClient;
 import io.galeb.router.sync.ManagerClient;
-import io.undertow.server.HttpHandler;
-import io.undertow.server.handlers.IPAddressAccessControlHandler;
-import io.undertow.server.handlers.NameVirtualHostHandler;
-import io.undertow.server.handlers.proxy.ProxyHandler;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -72,17 +63,17 @@ public class UpdaterService {
     private final AtomicBoolean executeSync = new AtomicBoolean(false);
     private final ManagerClient managerClient;
     private final ManagerClientCache cache;
-    private final NameVirtualHostHandler nameVirtualHostHandler;
+    private final ReconcilerService reconcilerService;
 
     private int count = 0;
 
     @Autowired
     public UpdaterService(final ManagerClient managerClient,
                           final ManagerClientCache cache,
-                          final NameVirtualHostHandler nameVirtualHostHandler) {
+                          final ReconcilerService reconcilerService) {
         this.managerClient = managerClient;
         this.cache = cache;
-        this.nameVirtualHostHandler = nameVirtualHostHandler;
+        this.reconcilerService = reconcilerService;
     }
 
     @Scheduled(fixedDelay = 5000)
@@ -108,6 +99,7 @@ public class UpdaterService {
                     logger.info("Processing " + virtualhosts.size() + " virtualhost(s): Check update initialized");
                     cleanup(virtualhosts);
                     virtualhosts.forEach(this::updateCache);
+                    reconcilerService.reconcile(cache.values());
                     updateEtagIfNecessary(virtualhosts);
                     logger.info("Processed " + count + " virtualhost(s): Done");
                 } else {
@@ -144,6 +136,7 @@ public class UpdaterService {
     private void rollback(List<VirtualHost> lastCache) {
         cleanup(lastCache);
         lastCache.forEach(this::updateCache);
+        reconcilerService.reconcile(cache.values());
         updateEtagIfNecessary(lastCache);
     }
 
@@ -179,13 +172,10 @@ public class UpdaterService {
         synchronized (cache) {
             Set<String> diff = Sets.difference(cache.getAll(), virtualhostSet);
             diff.forEach(virtualhostName -> {
-                expireHandlers(virtualhostName);
                 cache.remove(virtualhostName);
                 logger.warn("Virtualhost " + virtualhostName + " not exist. Removed.");
             });
         }
-        Set<String> diff = Sets.difference(nameVirtualHostHandler.getHosts().keySet(), virtualhostSet);
-        diff.forEach(this::expireHandlers);
     }
 
     private void updateCache(VirtualHost virtualHost) {
@@ -205,51 +195,7 @@ public class UpdaterService {
             }
         }
         cache.put(virtualhostName, virtualHost);
-        expireHandlers(virtualhostName);
         count++;
     }
 
-    private void expireHandlers(String virtualhostName) {
-        if (Arrays.stream(VirtualHostsNotExpired.values()).anyMatch(s -> s.getHost().equals(virtualhostName))) return;
-        if (nameVirtualHostHandler.getHosts().containsKey(virtualhostName)) {
-            logger.warn("Virtualhost " + virtualhostName + ": Rebuilding handlers.");
-            cleanUpNameVirtualHostHandler(virtualhostName);
-            nameVirtualHostHandler.removeHost(virtualhostName);
-        }
-    }
-
-    private void cleanPoolHandler(final PoolHandler poolHandler) {
-        final ProxyHandler proxyHandler = poolHandler.getProxyHandler();
-        if (proxyHandler != null) {
-            final ExtendedProxyClient proxyClient = (ExtendedProxyClient) proxyHandler.getProxyClient();
-            proxyClient.removeAllHosts();
-        }
-    }
-
-    private void cleanUpNameVirtualHostHandler(String virtualhost) {
-        final HttpHandler handler = nameVirtualHostHandler.getHosts().get(virtualhost);
-        RuleTargetHandler ruleTargetHandler = null;
-        if (handler instanceof RuleTargetHandler) {
-            ruleTargetHandler = (RuleTargetHandler)handler;
-        }
-        if (handler instanceof IPAddressAccessControlHandler) {
-            ruleTargetHandler = (RuleTargetHandler) ((IPAddressAccessControlHandler) handler).getNext();
-        }
-        if (ruleTargetHandler != null) {
-            final PoolHandler poolHandler = ruleTargetHandler.getPoolHandler();
-            if (poolHandler != null) {
-                cleanPoolHandler(poolHandler);
-            } else {
-                cleanUpPathGlobHandler(ruleTargetHandler.getPathGlobHandler());
-            }
-        }
-    }
-
-    private void cleanUpPathGlobHandler(final PathGlobHandler pathGlobHandler) {
-        pathGlobHandler.getPaths().forEach((k, poolHandler) -> {
-            cleanPoolHandler((PoolHandler) poolHandler);
-        });
-        pathGlobHandler.clear();
-    }
-
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tls;
+
+import io.galeb.core.enums.SystemEnv;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * SSLContext of the HTTPS listener.
+ *
+ * The TLS sessions of every virtualhost share one server session cache, bounded by TLS_SESSION_CACHE_SIZE.
+ * A session is resumable for TLS_SESSION_TIMEOUT seconds after its full handshake (JSSE counts the timeout
+ * from the creation of the session), which bounds the life of the resumption secrets as a ticket key rotation.
+ */
+public final class ServerSslContextFactory {
+
+    private ServerSslContextFactory() {
+        // static only
+    }
+
+    public static SSLContext fromSystemEnv() {
+        final String keystore = SystemEnv.TLS_KEYSTORE.getValue();
+        if (keystore.isEmpty()) {
+            throw new IllegalStateException("HTTPS_PORT requires TLS_KEYSTORE");
+        }
+        try {
+            return create(keystore,
+                    SystemEnv.TLS_KEYSTORE_TYPE.getValue(),
+                    SystemEnv.TLS_KEYSTORE_PASSWORD.getValue().toCharArray(),
+                    SystemEnv.TLS_DEFAULT_ALIAS.getValue(),
+                    Integer.parseInt(SystemEnv.TLS_SESSION_CACHE_SIZE.getValue()),
+                    Integer.parseInt(SystemEnv.TLS_SESSION_TIMEOUT.getValue()));
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalStateException("TLS_KEYSTORE " + keystore + ": " + e.getMessage(), e);
+        }
+    }
+
+    public static SSLContext create(final String keystore, final String type, final char[] password, final String defaultAlias,
+                                    int sessionCacheSize, int sessionTimeout) throws GeneralSecurityException, IOException {
+        final KeyStore keyStore = KeyStore.getInstance(type);
+        try (InputStream in = new FileInputStream(keystore)) {
+            keyStore.load(in, password);
+        }
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(new KeyManager[] { new SniKeyManager(keyStore, password, defaultAlias) }, null, null);
+        final SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+        sessionContext.setSessionCacheSize(Math.max(sessionCacheSize, 1));
+        sessionContext.setSessionTimeout(Math.max(sessionTimeout, 1));
+        return sslContext;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tls;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.security.auth.x500.X500Principal;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Chooses the certificate of the server name requested by the client (SNI). The names of a certificate are
+ * its alias (the virtualhost name), its DNS subject alternative names and its CN; wildcard names
+ * ("*.example.com") match one label. Without SNI, or for an unknown name, the default alias is used.
+ */
+public class SniKeyManager extends X509ExtendedKeyManager {
+
+    private static final int SAN_DNS_NAME = 2;
+
+    private final X509ExtendedKeyManager delegate;
+    private final Map<String, String> aliases;
+    private final String defaultAlias;
+
+    public SniKeyManager(final KeyStore keyStore, final char[] password, final String defaultAlias) throws GeneralSecurityException {
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance("SunX509");
+        keyManagerFactory.init(keyStore, password);
+        X509ExtendedKeyManager keyManager = null;
+        for (KeyManager candidate : keyManagerFactory.getKeyManagers()) {
+            if (candidate instanceof X509ExtendedKeyManager) {
+                keyManager = (X509ExtendedKeyManager) candidate;
+                break;
+            }
+        }
+        if (keyManager == null) {
+            throw new GeneralSecurityException("X509ExtendedKeyManager not found");
+        }
+        this.delegate = keyManager;
+
+        final List<String> keyAliases = new ArrayList<>();
+        for (String alias : Collections.list(keyStore.aliases())) {
+            if (keyStore.isKeyEntry(alias)) {
+                keyAliases.add(alias);
+            }
+        }
+        if (keyAliases.isEmpty()) {
+            throw new GeneralSecurityException("keystore without keys");
+        }
+        Collections.sort(keyAliases);
+        this.aliases = index(keyStore, keyAliases);
+        this.defaultAlias = defaultAlias != null && !defaultAlias.isEmpty() ? defaultAlias : keyAliases.get(0);
+    }
+
+    /**
+     * The alias of the certificate of the server name, or null.
+     */
+    public String lookup(final String serverName) {
+        if (serverName == null) {
+            return null;
+        }
+        final String name = serverName.toLowerCase(Locale.ROOT);
+        final String alias = aliases.get(name);
+        if (alias != null) {
+            return alias;
+        }
+        final int dot = name.indexOf('.');
+        return dot > 0 ? aliases.get("*" + name.substring(dot)) : null;
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+        final String alias = choose(keyType, engine != null ? engine.getHandshakeSession() : null);
+        return alias != null ? alias : delegate.chooseEngineServerAlias(keyType, issuers, engine);
+    }
+
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+        final String alias = choose(keyType, socket instanceof SSLSocket ? ((SSLSocket) socket).getHandshakeSession() : null);
+        return alias != null ? alias : delegate.chooseServerAlias(keyType, issuers, socket);
+    }
+
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+        return delegate.getServerAliases(keyType, issuers);
+    }
+
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+        return delegate.getClientAliases(keyType, issuers);
+    }
+
+    @Override
+    public String chooseClientAlias(String[] keyTypes, Principal[] issuers, Socket socket) {
+        return delegate.chooseClientAlias(keyTypes, issuers, socket);
+    }
+
+    @Override
+    public String chooseEngineClientAlias(String[] keyTypes, Principal[] issuers, SSLEngine engine) {
+        return delegate.chooseEngineClientAlias(keyTypes, issuers, engine);
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+        return delegate.getCertificateChain(alias);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        return delegate.getPrivateKey(alias);
+    }
+
+    private String choose(final String keyType, final SSLSession handshakeSession) {
+        final String alias = lookup(requestedServerName(handshakeSession));
+        if (alias != null && hasKeyType(alias, keyType)) {
+            return alias;
+        }
+        return hasKeyType(defaultAlias, keyType) ? defaultAlias : null;
+    }
+
+    private boolean hasKeyType(final String alias, final String keyType) {
+        final PrivateKey privateKey = delegate.getPrivateKey(alias);
+        return privateKey != null && privateKey.getAlgorithm().equalsIgnoreCase(keyType);
+    }
+
+    private static String requestedServerName(final SSLSession session) {
+        if (session instanceof ExtendedSSLSession) {
+            for (SNIServerName serverName : ((ExtendedSSLSession) session).getRequestedServerNames()) {
+                if (serverName instanceof SNIHostName) {
+                    return ((SNIHostName) serverName).getAsciiName();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> index(final KeyStore keyStore, final List<String> keyAliases) throws GeneralSecurityException {
+        final Map<String, String> aliases = new HashMap<>();
+        for (String alias : keyAliases) {
+            aliases.putIfAbsent(alias.toLowerCase(Locale.ROOT), alias);
+        }
+        for (String alias : keyAliases) {
+            final Certificate certificate = keyStore.getCertificate(alias);
+            if (certificate instanceof X509Certificate) {
+                for (String name : names((X509Certificate) certificate)) {
+                    aliases.putIfAbsent(name.toLowerCase(Locale.ROOT), alias);
+                }
+            }
+        }
+        return aliases;
+    }
+
+    private static List<String> names(final X509Certificate certificate) throws CertificateParsingException {
+        final List<String> names = new ArrayList<>();
+        final Collection<List<?>> alternativeNames = certificate.getSubjectAlternativeNames();
+        if (alternativeNames != null) {
+            for (List<?> alternativeName : alternativeNames) {
+                if (alternativeName.size() > 1 && Integer.valueOf(SAN_DNS_NAME).equals(alternativeName.get(0))) {
+                    names.add(String.valueOf(alternativeName.get(1)));
+                }
+            }
+        }
+        final String subject = certificate.getSubjectX500Principal().getName(X500Principal.RFC2253);
+        for (String attribute : subject.split(",")) {
+            if (attribute.startsWith("CN=")) {
+                names.add(attribute.substring(3));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.AdaptiveConcurrencyLimit;
+import io.undertow.server.HttpServerExchange;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private long now = System.nanoTime();
+
+    @Test
+    public void checkRequestsOverTheLimitAreRejected() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+        assertThat(limit.tryAcquire(new HttpServerExchange(null)), equalTo(true));
+        assertThat(limit.tryAcquire(new HttpServerExchange(null)), equalTo(true));
+        assertThat(limit.tryAcquire(new HttpServerExchange(null)), equalTo(false));
+        assertThat(limit.getInflight(), equalTo(2));
+    }
+
+    @Test
+    public void checkLimitGrowsWhileRttIsStableAndShrinksWhenItRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 10, 1000);
+        runWindows(limit, 20, 10L, false);
+        final int grown = limit.getLimit();
+        assertThat(grown, greaterThan(50));
+
+        runWindows(limit, 20, 100L, false);
+        assertThat(limit.getLimit(), lessThan(grown));
+    }
+
+    @Test
+    public void checkGatewayErrorsBackOff() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 10, 1000);
+        runWindows(limit, 5, 10L, true);
+        assertThat(limit.getLimit(), lessThan(100));
+    }
+
+    private void runWindows(AdaptiveConcurrencyLimit limit, int windows, long rttMs, boolean didDrop) {
+        for (int w = 0; w < windows; w++) {
+            now += TimeUnit.SECONDS.toNanos(1);
+            final int requests = limit.getLimit();
+            for (int i = 0; i < requests; i++) {
+                limit.tryAcquire(new HttpServerExchange(null));
+            }
+            for (int i = 0; i < requests; i++) {
+                limit.release(TimeUnit.MILLISECONDS.toNanos(rttMs), didDrop, now);
+            }
+        }
+    }
+}
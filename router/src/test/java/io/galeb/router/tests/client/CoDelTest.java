@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.CoDel;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class CoDelTest {
+
+    private final long target = TimeUnit.MILLISECONDS.toNanos(5L);
+    private final long interval = TimeUnit.MILLISECONDS.toNanos(100L);
+    private final long begin = System.nanoTime();
+
+    @Test
+    public void checkBurstIsAbsorbed() {
+        final CoDel coDel = new CoDel(target, interval, begin);
+        // long waits, but the queue empties (zero sojourn) within the interval
+        assertThat(coDel.shouldDrop(target * 10, begin + 1L), equalTo(false));
+        assertThat(coDel.shouldDrop(0L, begin + 2L), equalTo(false));
+        assertThat(coDel.shouldDrop(target * 10, begin + interval), equalTo(false));
+        assertThat(coDel.isOverloaded(), equalTo(false));
+    }
+
+    @Test
+    public void checkStandingQueueIsDropped() {
+        final CoDel coDel = new CoDel(target, interval, begin);
+        assertThat(coDel.shouldDrop(target * 2, begin + 1L), equalTo(false));
+        assertThat(coDel.shouldDrop(target * 3, begin + interval / 2), equalTo(false));
+        // the minimum sojourn of the last interval exceeded the target
+        assertThat(coDel.shouldDrop(target * 2, begin + interval), equalTo(true));
+        assertThat(coDel.isOverloaded(), equalTo(true));
+        assertThat(coDel.shouldDrop(target / 2, begin + interval + 1L), equalTo(false));
+    }
+
+    @Test
+    public void checkRecovery() {
+        final CoDel coDel = new CoDel(target, interval, begin);
+        coDel.shouldDrop(target * 2, begin + 1L);
+        coDel.shouldDrop(target * 2, begin + interval);
+        assertThat(coDel.isOverloaded(), equalTo(true));
+        coDel.shouldDrop(target / 2, begin + interval + 1L);
+        assertThat(coDel.shouldDrop(target * 2, begin + interval * 2), equalTo(false));
+        assertThat(coDel.isOverloaded(), equalTo(false));
+    }
+}
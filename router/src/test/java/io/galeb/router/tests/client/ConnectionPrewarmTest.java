@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.undertow.Undertow;
+import io.undertow.server.DefaultByteBufferPool;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ConnectionPrewarmTest {
+
+    private static final int BACKEND_PORT = 8091;
+
+    private final DefaultByteBufferPool bufferPool = new DefaultByteBufferPool(false, 16 * 1024);
+    private Undertow backend;
+    private XnioWorker worker;
+
+    @Before
+    public void setUp() throws Exception {
+        backend = Undertow.builder().addHttpListener(BACKEND_PORT, "127.0.0.1", ResponseCodeHandler.HANDLE_200).build();
+        backend.start();
+        worker = Xnio.getInstance().createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 2));
+    }
+
+    @After
+    public void tearDown() {
+        worker.shutdownNow();
+        backend.stop();
+    }
+
+    @Test
+    public void checkConnectionsAreOpenedAndKept() throws Exception {
+        final ExtendedLoadBalancingProxyClient proxyClient = new ExtendedLoadBalancingProxyClient().setConnectionsPerThread(10);
+        proxyClient.addHost(URI.create("http://127.0.0.1:" + BACKEND_PORT));
+        final Host host = proxyClient.getHosts()[0];
+
+        prewarm(proxyClient, 3);
+        assertThat(host.getOpenConnection(), equalTo(6));
+
+        // already warm: the idle connections are reused, not opened again
+        prewarm(proxyClient, 3);
+        assertThat(host.getOpenConnection(), equalTo(6));
+    }
+
+    @Test
+    public void checkLimitedByConnectionsPerThread() throws Exception {
+        final ExtendedLoadBalancingProxyClient proxyClient = new ExtendedLoadBalancingProxyClient().setConnectionsPerThread(2);
+        proxyClient.addHost(URI.create("http://127.0.0.1:" + BACKEND_PORT));
+
+        prewarm(proxyClient, 5);
+        assertThat(proxyClient.getHosts()[0].getOpenConnection(), equalTo(4));
+    }
+
+    private void prewarm(final ExtendedLoadBalancingProxyClient proxyClient, int connections) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(worker.getIoThreadCount());
+        for (int i = 0; i < worker.getIoThreadCount(); i++) {
+            proxyClient.prewarm(worker.getIoThread(i), bufferPool, connections, latch::countDown);
+        }
+        assertThat(latch.await(10, TimeUnit.SECONDS), equalTo(true));
+    }
+}
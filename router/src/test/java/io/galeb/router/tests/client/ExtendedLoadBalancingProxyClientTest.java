@@ -17,13 +17,26 @@
 package io.galeb.router.tests.client;
 
 import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.client.SlowStart;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ServerConnection;
 
 import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
 
 import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ExtendedLoadBalancingProxyClientTest {
 
@@ -44,5 +57,50 @@ public class ExtendedLoadBalancingProxyClientTest {
         assertThat(proxyClient.isHostsEmpty(), Matchers.equalTo(true));
     }
 
+    @Test
+    public void testRefusedWarmingHostIsSpreadOverAdmittedHosts() throws Exception {
+        final SelectingProxyClient selectingClient = new SelectingProxyClient();
+        selectingClient.addHost(URI.create("http://127.0.0.1:8080"));
+        selectingClient.addHost(URI.create("http://127.0.0.2:8080"));
+        selectingClient.addHost(URI.create("http://127.0.0.3:8080"));
+        selectingClient.setSlowStart(new SlowStart(3600000L, SlowStart.Mode.LINEAR));
+        selectingClient.addHost(URI.create("http://127.0.0.4:8080"));
+        final Host warming = selectingClient.getHosts()[3];
+        final ServerConnection serverConnection = mock(ServerConnection.class);
+        when(serverConnection.getUndertowOptions()).thenReturn(OptionMap.EMPTY);
+
+        final int requests = 12000;
+        // the connection pools are only queried from an IO thread
+        final FutureTask<Map<Host, Integer>> task = new FutureTask<>(() -> {
+            final Map<Host, Integer> selections = new HashMap<>();
+            for (int i = 0; i < requests; i++) {
+                selections.merge(selectingClient.select(new HttpServerExchange(serverConnection)), 1, Integer::sum);
+            }
+            return selections;
+        });
+        final XnioWorker worker = Xnio.getInstance().createWorker(OptionMap.EMPTY);
+        final Map<Host, Integer> selections;
+        try {
+            worker.getIoThread().execute(task);
+            selections = task.get(10L, TimeUnit.SECONDS);
+        } finally {
+            worker.shutdown();
+        }
+
+        // the warming host keeps ~10% of its round robin share, the rest goes evenly to the others (~32.5% each)
+        assertThat(selections.getOrDefault(warming, 0), Matchers.lessThan(requests / 20));
+        for (Host host : selectingClient.getHosts()) {
+            if (host != warming) {
+                assertThat(selections.get(host), Matchers.allOf(Matchers.greaterThan(requests * 29 / 100),
+                        Matchers.lessThan(requests * 36 / 100)));
+            }
+        }
+    }
+
+    private static class SelectingProxyClient extends ExtendedLoadBalancingProxyClient {
 
+        Host select(HttpServerExchange exchange) {
+            return selectHost(exchange);
+        }
+    }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.client.RetryBudget;
+import io.galeb.router.client.RetryPolicy;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.server.handlers.proxy.ProxyHandler;
+import io.undertow.util.StatusCodes;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class HedgingClientConnectionTest {
+
+    private static final int BACKEND1_PORT = 8101;
+    private static final int BACKEND2_PORT = 8102;
+    private static final int ROUTER_PORT = 8103;
+    private static final int CLOSED_PORT = 8104;
+
+    // the next request of any backend is held, so the first attempt is slow and its hedge is not
+    private final AtomicBoolean slowNext = new AtomicBoolean(false);
+    private final Backend backend1 = new Backend(BACKEND1_PORT);
+    private final Backend backend2 = new Backend(BACKEND2_PORT);
+    private ExtendedLoadBalancingProxyClient proxyClient;
+    private Undertow router;
+
+    @After
+    public void tearDown() {
+        if (router != null) {
+            router.stop();
+        }
+        backend1.server.stop();
+        backend2.server.stop();
+    }
+
+    @Test
+    public void checkConnectFailureIsRetriedOnAnotherHost() throws Exception {
+        final RetryPolicy policy = new RetryPolicy(new RetryBudget(0.0, 10), false, false, 100L);
+        startRouter(policy, CLOSED_PORT, BACKEND1_PORT);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(get(), equalTo(StatusCodes.OK));
+        }
+        assertThat(backend1.hits.get(), equalTo(4));
+        assertThat(policy.getBudget().getRetries(), greaterThanOrEqualTo(1L));
+    }
+
+    @Test
+    public void checkUnavailableResponseIsRetriedOnAnotherHost() throws Exception {
+        final RetryPolicy policy = new RetryPolicy(new RetryBudget(1.0, 10), true, false, 100L);
+        startRouter(policy, BACKEND1_PORT, BACKEND2_PORT);
+        backend1.status = StatusCodes.SERVICE_UNAVAILABLE;
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(get(), equalTo(StatusCodes.OK));
+        }
+        assertThat(backend1.hits.get(), equalTo(2));
+        assertThat(backend2.hits.get(), equalTo(4));
+        assertThat(policy.getRetried(), equalTo(2L));
+        // the 503 responses were drained, so their connection was kept
+        assertThat(backend1.connections.size(), equalTo(1));
+    }
+
+    @Test
+    public void checkRetryDoesNotRepeatHost() throws Exception {
+        final RetryPolicy policy = new RetryPolicy(new RetryBudget(1.0, 10), true, false, 100L);
+        startRouter(policy, BACKEND1_PORT, BACKEND2_PORT);
+        backend1.status = StatusCodes.SERVICE_UNAVAILABLE;
+        backend2.status = StatusCodes.BAD_GATEWAY;
+
+        final int status = get();
+
+        assertThat(status == StatusCodes.SERVICE_UNAVAILABLE || status == StatusCodes.BAD_GATEWAY, equalTo(true));
+        assertThat(backend1.hits.get(), equalTo(1));
+        assertThat(backend2.hits.get(), equalTo(1));
+        assertThat(policy.getRetried(), equalTo(1L));
+    }
+
+    @Test
+    public void checkExhaustedBudgetRefusesRetry() throws Exception {
+        final RetryPolicy policy = new RetryPolicy(new RetryBudget(0.0, 0), true, false, 100L);
+        startRouter(policy, BACKEND1_PORT, BACKEND2_PORT);
+        backend1.status = StatusCodes.SERVICE_UNAVAILABLE;
+        backend2.status = StatusCodes.SERVICE_UNAVAILABLE;
+
+        assertThat(get(), equalTo(StatusCodes.SERVICE_UNAVAILABLE));
+        assertThat(backend1.hits.get() + backend2.hits.get(), equalTo(1));
+        assertThat(policy.getRetried(), equalTo(0L));
+        assertThat(policy.getBudget().getExhausted(), equalTo(1L));
+    }
+
+    @Test
+    public void checkSlowRequestIsHedgedAndLoserCancelled() throws Exception {
+        final RetryPolicy policy = new RetryPolicy(new RetryBudget(1.0, 10), false, true, 100L);
+        startRouter(policy, BACKEND1_PORT, BACKEND2_PORT);
+        // the hedging delay is only known with enough samples, refreshed after a second
+        for (int i = 0; i < 40; i++) {
+            assertThat(get(), equalTo(StatusCodes.OK));
+        }
+        Thread.sleep(1100L);
+        assertThat(policy.getHedged(), equalTo(0L));
+
+        slowNext.set(true);
+        final long start = System.nanoTime();
+        assertThat(get(), equalTo(StatusCodes.OK));
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(1500L));
+        assertThat(policy.getHedged(), equalTo(1L));
+        // the connection of the slow request is closed cleanly: it is gone once its backend answers
+        final Host loser = backend1.held ? proxyClient.getHosts()[0] : proxyClient.getHosts()[1];
+        for (int i = 0; i < 100 && loser.getOpenConnection() > 0; i++) {
+            Thread.sleep(50L);
+        }
+        assertThat(loser.getOpenConnection(), equalTo(0));
+    }
+
+    private void startRouter(final RetryPolicy policy, int... ports) {
+        proxyClient = new ExtendedLoadBalancingProxyClient().setRetryPolicy(policy);
+        for (int port : ports) {
+            proxyClient.addHost(URI.create("http://127.0.0.1:" + port));
+        }
+        router = Undertow.builder()
+                .addHttpListener(ROUTER_PORT, "127.0.0.1", new ProxyHandler(proxyClient, 10000, ResponseCodeHandler.HANDLE_404, false, false, 1))
+                .setIoThreads(1)
+                .build();
+        router.start();
+    }
+
+    private int get() throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + ROUTER_PORT + "/").openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private final class Backend {
+        private final Undertow server;
+        private final AtomicInteger hits = new AtomicInteger(0);
+        private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+        private volatile int status = StatusCodes.OK;
+        private volatile boolean held = false;
+
+        private Backend(int port) {
+            server = Undertow.builder()
+                    .addHttpListener(port, "127.0.0.1", new BlockingHandler(this::handle))
+                    .build();
+            server.start();
+        }
+
+        private void handle(final HttpServerExchange exchange) throws InterruptedException {
+            hits.incrementAndGet();
+            connections.add(exchange.getSourceAddress().getPort());
+            if (slowNext.compareAndSet(true, false)) {
+                held = true;
+                Thread.sleep(3000L);
+            }
+            exchange.setStatusCode(status);
+            exchange.getResponseSender().send("backend");
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.client.UpstreamProtocol;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.server.handlers.proxy.ProxyHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class Http2UpstreamTest {
+
+    private static final int BACKEND_PORT = 8093;
+    private static final int ROUTER_PORT = 8094;
+    private static final int REQUESTS = 8;
+
+    private final Set<String> protocols = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger maxInFlight = new AtomicInteger(0);
+    private final ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+    private Undertow backend;
+    private Undertow router;
+
+    @Before
+    public void setUp() {
+        backend = Undertow.builder()
+                .addHttpListener(BACKEND_PORT, "127.0.0.1", new BlockingHandler(exchange -> {
+                    protocols.add(exchange.getProtocol().toString());
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    final Deque<String> sleep = exchange.getQueryParameters().get("sleep");
+                    Thread.sleep(sleep == null ? 200L : Long.parseLong(sleep.getFirst()));
+                    inFlight.decrementAndGet();
+                    exchange.getResponseSender().send("OK");
+                }))
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+                .build();
+        backend.start();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        if (router != null) {
+            router.stop();
+        }
+        backend.stop();
+    }
+
+    @Test
+    public void checkRequestsShareOneConnection() throws Exception {
+        final ExtendedLoadBalancingProxyClient proxyClient = startRouter(100);
+
+        assertThat(sendConcurrentRequests(), contains(200, 200, 200, 200, 200, 200, 200, 200));
+        final Host host = proxyClient.getHosts()[0];
+        assertThat(protocols, contains("HTTP/2.0"));
+        assertThat(maxInFlight.get(), greaterThan(1));
+        assertThat(host.getMultiplexedConnections(), equalTo(1));
+        assertThat(waitForIdle(host), equalTo(0));
+    }
+
+    @Test
+    public void checkStreamsAreLimitedPerConnection() throws Exception {
+        final ExtendedLoadBalancingProxyClient proxyClient = startRouter(2);
+
+        assertThat(sendConcurrentRequests(), contains(200, 200, 200, 200, 200, 200, 200, 200));
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(2));
+        assertThat(proxyClient.getHosts()[0].getMultiplexedConnections(), equalTo(1));
+    }
+
+    @Test
+    public void checkTimeoutResetsOnlyItsStream() throws Exception {
+        final ExtendedLoadBalancingProxyClient proxyClient = startRouter(100, 1000);
+        // opens the connection, so the timings below do not include it
+        assertThat(get("/"), equalTo(200));
+
+        final Future<Integer> timedOut = executor.submit(() -> get("/?sleep=3000"));
+        Thread.sleep(500L);
+        // in flight when the first one times out, on the same connection
+        final Future<Integer> completed = executor.submit(() -> get("/?sleep=800"));
+
+        assertThat(timedOut.get(), equalTo(503));
+        assertThat(completed.get(), equalTo(200));
+        final Host host = proxyClient.getHosts()[0];
+        assertThat(host.getMultiplexedConnections(), equalTo(1));
+        assertThat(waitForIdle(host), equalTo(0));
+    }
+
+    private ExtendedLoadBalancingProxyClient startRouter(int maxStreams) {
+        return startRouter(maxStreams, 10000);
+    }
+
+    private ExtendedLoadBalancingProxyClient startRouter(int maxStreams, int maxRequestTime) {
+        final ExtendedLoadBalancingProxyClient proxyClient = new ExtendedLoadBalancingProxyClient()
+                .setUpstreamProtocol(UpstreamProtocol.H2C, 1, maxStreams)
+                .setMaxQueueSize(REQUESTS);
+        proxyClient.addHost(URI.create("http://127.0.0.1:" + BACKEND_PORT));
+        router = Undertow.builder()
+                .addHttpListener(ROUTER_PORT, "127.0.0.1", new ProxyHandler(proxyClient, maxRequestTime, ResponseCodeHandler.HANDLE_404))
+                .setIoThreads(1)
+                .build();
+        router.start();
+        return proxyClient;
+    }
+
+    private List<Integer> sendConcurrentRequests() throws Exception {
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.submit(() -> get("/")));
+        }
+        final List<Integer> statusCodes = new ArrayList<>();
+        for (Future<Integer> future : futures) {
+            statusCodes.add(future.get());
+        }
+        return statusCodes;
+    }
+
+    private int get(final String path) throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + ROUTER_PORT + path).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private int waitForIdle(final Host host) throws InterruptedException {
+        // the streams are released by the completion listeners, after the responses were sent
+        for (int i = 0; i < 50 && host.getOpenConnection() > 0; i++) {
+            Thread.sleep(20L);
+        }
+        return host.getOpenConnection();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.client.OutlierDetector;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OutlierDetectorTest {
+
+    private static final int NUM_HOSTS = 4;
+
+    private final Host[] hosts = new Host[NUM_HOSTS];
+    private final long now = System.nanoTime();
+    private final long oneMs = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private OutlierDetector outlierDetector;
+
+    @Before
+    public void setUp() {
+        for (int x = 0; x < NUM_HOSTS; x++) {
+            final Host host = mock(Host.class, Mockito.withSettings().stubOnly());
+            when(host.getUri()).thenReturn(URI.create("http://127.0.0.1:" + x));
+            when(host.getOutlierStatus()).thenReturn(new OutlierDetector.Status());
+            hosts[x] = host;
+        }
+        outlierDetector = new OutlierDetector(3, 3, 10.0, 1000L, 8000L, 50);
+    }
+
+    @Test
+    public void checkConsecutive5xxEjects() {
+        assertThat(outlierDetector.onResponse(hosts, hosts[0], 500, oneMs, now), equalTo(false));
+        assertThat(outlierDetector.onResponse(hosts, hosts[0], 502, oneMs, now), equalTo(false));
+        assertThat(outlierDetector.onResponse(hosts, hosts[0], 503, oneMs, now), equalTo(true));
+        assertThat(outlierDetector.isEjected(hosts[0], now), equalTo(true));
+        assertThat(outlierDetector.isEjected(hosts[0], now + TimeUnit.SECONDS.toNanos(2)), equalTo(false));
+    }
+
+    @Test
+    public void checkSuccessResetsCounter() {
+        outlierDetector.onResponse(hosts, hosts[0], 500, oneMs, now);
+        outlierDetector.onResponse(hosts, hosts[0], 500, oneMs, now);
+        outlierDetector.onResponse(hosts, hosts[0], 200, oneMs, now);
+        assertThat(outlierDetector.onResponse(hosts, hosts[0], 500, oneMs, now), equalTo(false));
+        assertThat(outlierDetector.isEjected(hosts[0], now), equalTo(false));
+    }
+
+    @Test
+    public void checkSlowHostEjects() {
+        IntStream.range(0, 100).forEach(x -> outlierDetector.onResponse(hosts, hosts[x % 3 + 1], 200, oneMs, now));
+        boolean ejected = false;
+        for (int x = 0; x < 3; x++) {
+            IntStream.range(0, 10).forEach(y -> outlierDetector.onResponse(hosts, hosts[y % 3 + 1], 200, oneMs, now));
+            ejected = outlierDetector.onResponse(hosts, hosts[0], 200, 20 * oneMs, now);
+        }
+        assertThat(ejected, equalTo(true));
+        assertThat(outlierDetector.isEjected(hosts[0], now), equalTo(true));
+    }
+
+    @Test
+    public void checkEjectionBackOff() {
+        long time = now;
+        long[] expected = {1000L, 2000L, 4000L, 8000L, 8000L};
+        for (long ejectionTime : expected) {
+            final long ejectedAt = time;
+            IntStream.range(0, 3).forEach(x -> outlierDetector.onResponse(hosts, hosts[0], 500, oneMs, ejectedAt));
+            time += TimeUnit.MILLISECONDS.toNanos(ejectionTime);
+            assertThat(outlierDetector.isEjected(hosts[0], time - 1), equalTo(true));
+            assertThat(outlierDetector.isEjected(hosts[0], time), equalTo(false));
+        }
+    }
+
+    @Test
+    public void checkMaxEjectionPercent() {
+        for (Host host : hosts) {
+            IntStream.range(0, 3).forEach(x -> outlierDetector.onResponse(hosts, host, 500, oneMs, now));
+        }
+        long ejected = IntStream.range(0, NUM_HOSTS).filter(x -> outlierDetector.isEjected(hosts[x], now)).count();
+        assertThat(ejected, equalTo((long) NUM_HOSTS / 2));
+    }
+}
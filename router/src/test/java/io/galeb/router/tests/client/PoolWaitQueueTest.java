@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.PoolWaitQueue;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.ProxyCallback;
+import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class PoolWaitQueueTest {
+
+    private static final int PORT = 8100;
+
+    private final PoolWaitQueue queue = new PoolWaitQueue(10, TimeUnit.SECONDS.toNanos(5L), TimeUnit.SECONDS.toNanos(10L));
+    @SuppressWarnings("unchecked")
+    private final ProxyCallback<ProxyConnection> callback = mock(ProxyCallback.class);
+    private Undertow server;
+
+    @Before
+    public void setUp() {
+        server = Undertow.builder()
+                .addHttpListener(PORT, "127.0.0.1", this::handle)
+                .build();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void checkEndedExchangeLeavesQueue() throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + PORT).openConnection();
+        assertThat(connection.getResponseCode(), equalTo(StatusCodes.GATEWAY_TIME_OUT));
+
+        // the deadline of the waiter passes after its exchange ended
+        Thread.sleep(300L);
+        assertThat(queue.getDepth(), equalTo(0));
+        verify(callback, never()).queuedRequestFailed(any(HttpServerExchange.class));
+        assertThat(queue.getExpired(), equalTo(0L));
+    }
+
+    /**
+     * Queues the request until its deadline, but ends it before (like the cancel of POOL_MAX_REQUEST_TIME).
+     */
+    private void handle(final HttpServerExchange exchange) {
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200L);
+            assertThat(queue.offer(null, exchange, callback, -1L, TimeUnit.MILLISECONDS, deadline), equalTo(true));
+            exchange.getIoThread().executeAfter(() -> {
+                exchange.setStatusCode(StatusCodes.GATEWAY_TIME_OUT);
+                exchange.endExchange();
+            }, 50L, TimeUnit.MILLISECONDS);
+        });
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.RetryBudget;
+import io.galeb.router.client.RetryPolicy;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class RetryBudgetTest {
+
+    private final long now = System.nanoTime();
+
+    @Test
+    public void checkRatioOfRequests() {
+        final RetryBudget budget = new RetryBudget(0.1, 0);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        int retries = 0;
+        while (budget.tryWithdraw(now)) {
+            retries++;
+        }
+        assertThat(retries, equalTo(10));
+        assertThat(budget.getRetries(), equalTo(10L));
+    }
+
+    @Test
+    public void checkMinPerSecond() {
+        final RetryBudget budget = new RetryBudget(0.1, 3);
+        int retries = 0;
+        while (budget.tryWithdraw(now)) {
+            retries++;
+        }
+        assertThat(retries, equalTo(3));
+        assertThat(budget.tryWithdraw(now + TimeUnit.SECONDS.toNanos(1L)), equalTo(true));
+    }
+
+    @Test
+    public void checkBalanceIsBounded() {
+        final RetryBudget budget = new RetryBudget(0.5, 0);
+        for (int i = 0; i < 100000; i++) {
+            budget.deposit();
+        }
+        int retries = 0;
+        while (budget.tryWithdraw(now)) {
+            retries++;
+        }
+        assertThat(retries, equalTo(500));
+    }
+
+    @Test
+    public void checkPolicyAppliesToRequestsWithoutBody() {
+        final RetryPolicy policy = new RetryPolicy(new RetryBudget(0.1, 0), true, false, 10L);
+        final HttpServerExchange exchange = new HttpServerExchange(null);
+        exchange.setRequestMethod(Methods.GET);
+        assertThat(policy.appliesTo(exchange), equalTo(true));
+        exchange.getRequestHeaders().put(Headers.CONTENT_LENGTH, "10");
+        assertThat(policy.appliesTo(exchange), equalTo(false));
+        exchange.getRequestHeaders().remove(Headers.CONTENT_LENGTH);
+        exchange.setRequestMethod(Methods.POST);
+        assertThat(policy.appliesTo(exchange), equalTo(false));
+        assertThat(policy.isRetriable(503), equalTo(true));
+        assertThat(policy.isRetriable(500), equalTo(false));
+    }
+
+    @Test
+    public void checkNoHedgeWithoutSamples() {
+        final RetryPolicy policy = new RetryPolicy(new RetryBudget(0.1, 0), false, true, 10L);
+        assertThat(policy.hedgeDelay(Methods.GET, now + TimeUnit.SECONDS.toNanos(2L)), equalTo(0L));
+        for (int i = 0; i < 100; i++) {
+            policy.recordFirstByte(TimeUnit.MILLISECONDS.toNanos(i < 95 ? 20L : 1000L));
+        }
+        final long delay = policy.hedgeDelay(Methods.GET, now + TimeUnit.SECONDS.toNanos(4L));
+        assertThat(delay >= TimeUnit.MILLISECONDS.toNanos(19L) && delay <= TimeUnit.MILLISECONDS.toNanos(21L), equalTo(true));
+        assertThat(policy.hedgeDelay(Methods.POST, now + TimeUnit.SECONDS.toNanos(4L)), equalTo(0L));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.galeb.router.tests.client;
+
+import io.galeb.router.client.SlowStart;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class SlowStartTest {
+
+    private final long window = TimeUnit.SECONDS.toNanos(10L);
+    private final long begin = System.nanoTime();
+
+    @Test
+    public void checkLinearRamp() {
+        final SlowStart slowStart = new SlowStart(10000L, SlowStart.Mode.LINEAR);
+        assertThat(slowStart.weight(begin, begin), closeTo(SlowStart.MIN_WEIGHT, 0.0001));
+        assertThat(slowStart.weight(begin, begin + window / 2), closeTo(0.55, 0.0001));
+        assertThat(slowStart.weight(begin, begin + window), equalTo(1.0));
+    }
+
+    @Test
+    public void checkExponentialRamp() {
+        final SlowStart slowStart = new SlowStart(10000L, SlowStart.Mode.fromString("exponential"));
+        assertThat(slowStart.weight(begin, begin), closeTo(SlowStart.MIN_WEIGHT, 0.0001));
+        assertThat(slowStart.weight(begin, begin + window / 2), closeTo(Math.sqrt(SlowStart.MIN_WEIGHT), 0.0001));
+        assertThat(slowStart.weight(begin, begin + window), equalTo(1.0));
+    }
+
+    @Test
+    public void checkDisabled() {
+        assertThat(SlowStart.DISABLED.isEnabled(), equalTo(false));
+        assertThat(SlowStart.DISABLED.weight(begin, begin), equalTo(1.0));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.completionListeners;
+
+import io.galeb.router.handlers.completionListeners.AccessLogEntry;
+import io.galeb.router.handlers.completionListeners.AccessLogRingBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class AccessLogRingBufferTest {
+
+    @Test
+    public void checkCapacityIsPowerOfTwo() {
+        assertThat(new AccessLogRingBuffer(1000, false).capacity(), equalTo(1024));
+        assertThat(new AccessLogRingBuffer(1024, false).capacity(), equalTo(1024));
+    }
+
+    @Test
+    public void checkDropWhenFull() {
+        final AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(4, false);
+        final List<AccessLogEntry> claimed = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            AccessLogEntry entry = ringBuffer.claim();
+            assertThat(entry, notNullValue());
+            claimed.add(entry);
+        }
+        assertThat(ringBuffer.claim(), nullValue());
+        assertThat(ringBuffer.getDroppedLines(), equalTo(1L));
+
+        // not published entries are not consumed
+        final List<AccessLogEntry> consumed = new ArrayList<>();
+        ringBuffer.publish(claimed.get(0));
+        ringBuffer.publish(claimed.get(2));
+        assertThat(ringBuffer.drain(consumed::add, Integer.MAX_VALUE), equalTo(1));
+        assertThat(consumed, contains(claimed.get(0)));
+
+        ringBuffer.publish(claimed.get(1));
+        ringBuffer.publish(claimed.get(3));
+        assertThat(ringBuffer.drain(consumed::add, Integer.MAX_VALUE), equalTo(3));
+        assertThat(consumed, contains(claimed.toArray()));
+        assertThat(ringBuffer.claim(), notNullValue());
+    }
+
+    @Test
+    public void checkConcurrentProducersWithBlockWhenFull() throws Exception {
+        final int producers = 4;
+        final int linesPerProducer = 10000;
+        final AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(64, true);
+        final ExecutorService executor = Executors.newFixedThreadPool(producers);
+        final CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            executor.execute(() -> {
+                for (int i = 0; i < linesPerProducer; i++) {
+                    ringBuffer.publish(ringBuffer.claim());
+                }
+                done.countDown();
+            });
+        }
+        final AtomicInteger consumed = new AtomicInteger(0);
+        while (done.getCount() > 0 || ringBuffer.drain(entry -> consumed.incrementAndGet(), Integer.MAX_VALUE) > 0) {
+            ringBuffer.drain(entry -> consumed.incrementAndGet(), Integer.MAX_VALUE);
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+
+        assertThat(consumed.get(), equalTo(producers * linesPerProducer));
+        assertThat(ringBuffer.getDroppedLines(), equalTo(0L));
+    }
+}
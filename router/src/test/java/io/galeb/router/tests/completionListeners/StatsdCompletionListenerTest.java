@@ -16,6 +16,7 @@
 
 package io.galeb.router.tests.completionListeners;
 
+import io.galeb.router.handlers.NameVirtualHostDefaultHandler;
 import io.galeb.router.handlers.completionListeners.StatsdCompletionListener;
 import io.galeb.router.services.StatsdClientService;
 import org.junit.Test;
@@ -29,7 +30,7 @@ import static org.mockito.Mockito.mock;
 public class StatsdCompletionListenerTest {
 
     private StatsdClientService statsdClientService = mock(StatsdClientService.class);
-    private final StatsdCompletionListener statsdCompletionListener = new StatsdCompletionListener(statsdClientService);
+    private final StatsdCompletionListener statsdCompletionListener = new StatsdCompletionListener(statsdClientService, new NameVirtualHostDefaultHandler());
     private final Map<String, String> results = new HashMap<String, String>(){{
         put("http://127.0.0.1","127_0_0_1");
         put("a.b.c.d", "a_b_c_d");
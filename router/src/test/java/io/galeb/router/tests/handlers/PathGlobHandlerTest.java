@@ -223,4 +223,51 @@ public class PathGlobHandlerTest {
             throw assertionError;
         }
     }
+
+    @Test
+    public void checkMatchRespectOrderBetweenLiteralPrefixAndGlob() throws Exception {
+        final AtomicReference<String> result = new AtomicReference<>("default");
+
+        PathGlobHandler pathGlobHandler = new PathGlobHandler();
+        pathGlobHandler.setDefaultHandler(exchange -> result.set("default"));
+
+        pathGlobHandler.addPath("/api/*", 10, exchange -> result.set("prefix"));
+        pathGlobHandler.addPath("/api/*.json", 5, exchange -> result.set("glob"));
+        pathGlobHandler.addPath("/api/v?/status", 1, exchange -> result.set("question"));
+        pathGlobHandler.addPath("/api/literal", 20, exchange -> result.set("literal"));
+        pathGlobHandler.addPath("/a", 0, exchange -> result.set("short"));
+
+        ServerConnection serverConnection = mock(ServerConnection.class);
+        HttpServerExchange exchange = new HttpServerExchange(serverConnection);
+
+        exchange.setRelativePath("/api/x.json");
+        pathGlobHandler.handleRequest(exchange);
+        assertThat(result.get(), equalTo("glob"));
+
+        exchange.setRelativePath("/api/v1/status");
+        pathGlobHandler.handleRequest(exchange);
+        assertThat(result.get(), equalTo("question"));
+
+        exchange.setRelativePath("/api/literal");
+        pathGlobHandler.handleRequest(exchange);
+        assertThat(result.get(), equalTo("prefix"));
+
+        exchange.setRelativePath("/api/other");
+        pathGlobHandler.handleRequest(exchange);
+        assertThat(result.get(), equalTo("prefix"));
+
+        exchange.setRelativePath("/ap");
+        pathGlobHandler.handleRequest(exchange);
+        assertThat(result.get(), equalTo("default"));
+
+        pathGlobHandler.removePath("/api/*");
+        exchange.setRelativePath("/api/literal");
+        pathGlobHandler.handleRequest(exchange);
+        assertThat(result.get(), equalTo("literal"));
+
+        pathGlobHandler.clear();
+        exchange.setRelativePath("/api/x.json");
+        pathGlobHandler.handleRequest(exchange);
+        assertThat(result.get(), equalTo("default"));
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.handlers;
+import io.galeb.router.handlers.PathGlobHandler.PathOrdered;
+import io.galeb.router.handlers.PathGlobMatcher;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import jodd.util.Wildcard;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The compiled PathGlobMatcher versus the linear Wildcard scan it replaced. Not part of the suite, run it with
+ * {@code mvn test -Dtest=PathGlobMatcherBenchmark [-Dbenchmark.iterations=N]}.
+ */
+public class PathGlobMatcherBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200000);
+    private static final int WARMUP = Math.max(ITERATIONS / 5, 1000);
+    private static final int PATHS = 1024;
+
+    private final Log logger = LogFactory.getLog(this.getClass());
+
+    private long sink = 0L;
+
+    @Test
+    public void compiledVersusLinearScan() {
+        for (int rules : new int[] { 10, 100, 1000 }) {
+            final Map<PathOrdered, HttpHandler> paths = rules(rules);
+            final PathGlobMatcher matcher = PathGlobMatcher.compile(paths);
+            final String[] requests = requests(rules);
+            for (String request : requests) {
+                final Map.Entry<PathOrdered, HttpHandler> expected = linear(paths, request);
+                final Map.Entry<PathOrdered, HttpHandler> actual = matcher.match(request);
+                assertThat(actual != null ? actual.getKey() : null, equalTo(expected != null ? expected.getKey() : null));
+            }
+            runLinear(paths, requests, WARMUP);
+            runCompiled(matcher, requests, WARMUP);
+
+            final long linear = runLinear(paths, requests, ITERATIONS);
+            final long compiled = runCompiled(matcher, requests, ITERATIONS);
+
+            logger.info(String.format("rules=%d linear=%d ns/op compiled=%d ns/op", rules, linear, compiled));
+        }
+        logger.debug(sink);
+    }
+
+    /**
+     * Mix of prefix ("/svcN/*"), literal ("/svcN/health") and glob ("/svcN/*.json") rules, ordered as the rule orders.
+     */
+    private static Map<PathOrdered, HttpHandler> rules(int count) {
+        final Map<PathOrdered, HttpHandler> paths = new ConcurrentSkipListMap<>();
+        for (int i = 0; i < count; i++) {
+            final String path;
+            switch (i % 3) {
+                case 0:  path = "/svc" + i + "/*"; break;
+                case 1:  path = "/svc" + i + "/health"; break;
+                default: path = "/svc" + i + "/*.json"; break;
+            }
+            paths.put(new PathOrdered(path, i), ResponseCodeHandler.HANDLE_200);
+        }
+        paths.put(new PathOrdered("/", Integer.MAX_VALUE), ResponseCodeHandler.HANDLE_200);
+        return paths;
+    }
+
+    private static String[] requests(int rules) {
+        final Random random = new Random(rules);
+        final String[] requests = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            final int rule = random.nextInt(rules + rules / 10 + 1);
+            requests[i] = "/svc" + rule + (i % 2 == 0 ? "/health" : "/items/" + i + ".json");
+        }
+        return requests;
+    }
+
+    /**
+     * The scan of the PathGlobHandler before the compiled matcher: first rule (in order) that matches.
+     */
+    private static Map.Entry<PathOrdered, HttpHandler> linear(final Map<PathOrdered, HttpHandler> paths, final String path) {
+        for (Map.Entry<PathOrdered, HttpHandler> entry : paths.entrySet()) {
+            if (Wildcard.match(path, entry.getKey().getPath())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private long runLinear(final Map<PathOrdered, HttpHandler> paths, final String[] requests, int iterations) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            final Map.Entry<PathOrdered, HttpHandler> entry = linear(paths, requests[i & (PATHS - 1)]);
+            sink += entry != null ? entry.getKey().getOrder() : 0;
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private long runCompiled(final PathGlobMatcher matcher, final String[] requests, int iterations) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            final Map.Entry<PathOrdered, HttpHandler> entry = matcher.match(requests[i & (PATHS - 1)]);
+            sink += entry != null ? entry.getKey().getOrder() : 0;
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.handlers;
+
+import io.galeb.core.entity.Environment;
+import io.galeb.core.entity.Pool;
+import io.galeb.core.entity.Project;
+import io.galeb.core.entity.Rule;
+import io.galeb.core.entity.RuleType;
+import io.galeb.core.entity.Target;
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.core.enums.EnumRuleType;
+import io.galeb.router.handlers.NameVirtualHostDefaultHandler;
+import io.galeb.router.handlers.PrometheusMetricsHandler;
+import io.galeb.router.services.LatencyHistogramService;
+import io.galeb.router.services.ReconcilerService;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static io.galeb.router.handlers.RuleTargetHandler.RULE_MATCH;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class PrometheusMetricsHandlerTest {
+
+    private final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler = new NameVirtualHostDefaultHandler();
+    private final LatencyHistogramService latencyHistogramService = new LatencyHistogramService(10, false);
+    private final PrometheusMetricsHandler prometheusMetricsHandler =
+            new PrometheusMetricsHandler(nameVirtualHostDefaultHandler, latencyHistogramService, null);
+
+    @Test
+    public void checkTargetsAndLatencies() {
+        final Pool pool = new Pool("pool1");
+        pool.setTargets(Collections.singleton(new Target("http://127.0.0.1:8081")));
+        final Rule rule = new Rule("rule_slash", new RuleType(EnumRuleType.PATH.toString()), pool);
+        rule.getProperties().put(RULE_MATCH, "/");
+        final VirtualHost virtualHost = new VirtualHost("test.com", new Environment("env1"), new Project("project1"));
+        virtualHost.setRules(new HashSet<>(Collections.singletonList(rule)));
+        new ReconcilerService(nameVirtualHostDefaultHandler).reconcile(Collections.singleton(virtualHost));
+
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8081", 3000);
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8081", 200000);
+
+        final String labels = "virtualhost=\"test.com\",pool=\"pool1\",target=\"http://127.0.0.1:8081\"";
+        final List<String> lines = Arrays.asList(prometheusMetricsHandler.render().split("\n"));
+        assertThat(lines, hasItems(
+                "# TYPE galeb_router_routing_table_version gauge",
+                "galeb_router_virtualhosts 1",
+                "galeb_router_target_open_connections{" + labels + "} 0",
+                "galeb_router_target_selections_total{" + labels + "} 0",
+                "galeb_router_target_ejected{" + labels + "} 0",
+                "# TYPE galeb_router_request_duration_seconds histogram",
+                "galeb_router_request_duration_seconds_bucket{" + labels + ",le=\"0.001\"} 0",
+                "galeb_router_request_duration_seconds_bucket{" + labels + ",le=\"0.005\"} 1",
+                "galeb_router_request_duration_seconds_bucket{" + labels + ",le=\"0.25\"} 2",
+                "galeb_router_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 2",
+                "galeb_router_request_duration_seconds_count{" + labels + "} 2",
+                "galeb_router_request_duration_seconds_sum{" + labels + "} 0.203"));
+
+        // each family is declared once
+        assertThat(lines.stream().filter(l -> l.equals("# TYPE galeb_router_target_weight gauge")).count(), equalTo(1L));
+        assertThat(lines, not(hasItem(containsString("null"))));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.handlers;
+
+import io.galeb.core.entity.Environment;
+import io.galeb.core.entity.Project;
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.router.handlers.ratelimit.RateLimitHandler;
+import io.galeb.router.handlers.ratelimit.TokenBucket;
+import io.galeb.router.handlers.ratelimit.TokenBuckets;
+import io.undertow.server.HttpHandler;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class RateLimitHandlerTest {
+
+    private static final long NOW = 1000000000L;
+
+    @Test
+    public void checkBurstThenRate() {
+        TokenBucket bucket = new TokenBucket(10.0, 5, NOW);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(NOW), equalTo(true));
+        }
+        assertThat(bucket.tryAcquire(NOW), equalTo(false));
+        assertThat(bucket.tryAcquire(NOW + TimeUnit.MILLISECONDS.toNanos(100)), equalTo(true));
+        assertThat(bucket.tryAcquire(NOW + TimeUnit.MILLISECONDS.toNanos(100)), equalTo(false));
+        assertThat(bucket.isIdle(NOW + TimeUnit.SECONDS.toNanos(1)), equalTo(true));
+    }
+
+    @Test
+    public void checkClientsAreLimitedIndependently() {
+        TokenBuckets buckets = new TokenBuckets(1.0, 1, 1000);
+        assertThat(buckets.tryAcquire("10.0.0.1", NOW), equalTo(true));
+        assertThat(buckets.tryAcquire("10.0.0.1", NOW), equalTo(false));
+        assertThat(buckets.tryAcquire("10.0.0.2", NOW), equalTo(true));
+    }
+
+    @Test
+    public void checkKeyTableIsBounded() {
+        TokenBuckets buckets = new TokenBuckets(1.0, 1, 160);
+        for (int i = 0; i < 10000; i++) {
+            buckets.tryAcquire("10.0." + (i >> 8) + "." + (i & 0xff), NOW + i);
+        }
+        assertThat(buckets.size(), lessThanOrEqualTo(160));
+    }
+
+    @Test
+    public void checkVirtualhostWithoutLimitsIsNotWrapped() {
+        HttpHandler next = exchange -> {};
+        VirtualHost virtualHost = new VirtualHost("test.com", new Environment("env1"), new Project("project1"));
+        assertThat(RateLimitHandler.wrap(virtualHost, next), sameInstance(next));
+
+        virtualHost.getProperties().put(RateLimitHandler.PROP_RATE_LIMIT_PER_CLIENT, "100");
+        assertThat(RateLimitHandler.wrap(virtualHost, next), instanceOf(RateLimitHandler.class));
+    }
+}
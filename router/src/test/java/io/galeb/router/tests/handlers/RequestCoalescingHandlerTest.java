@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.handlers;
+import io.galeb.core.entity.Environment;
+import io.galeb.core.entity.Project;
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.router.ResponseCodeOnError;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.handlers.PoolHandler;
+import io.galeb.router.handlers.cache.RequestCoalescingHandler;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.server.handlers.proxy.ProxyHandler;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class RequestCoalescingHandlerTest {
+
+    private static final int BACKEND_PORT = 8098;
+    private static final int ROUTER_PORT = 8099;
+    private static final int FOLLOWERS = 8;
+
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final CountDownLatch leaderArrived = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newFixedThreadPool(FOLLOWERS + 1);
+    private Undertow backend;
+    private Undertow router;
+    private boolean checkPool = false;
+    private String leaderCookie = null;
+    private String followerCookie = null;
+
+    @Before
+    public void setUp() {
+        backend = Undertow.builder()
+                .addHttpListener(BACKEND_PORT, "127.0.0.1", new BlockingHandler(this::handleBackend))
+                .build();
+        backend.start();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+        if (router != null) {
+            router.stop();
+        }
+        backend.stop();
+    }
+
+    @Test
+    public void checkFollowersShareLeaderResponse() throws Exception {
+        startRouter(5000L);
+        final long coalesced = RequestCoalescingHandler.getCoalesced();
+
+        final List<String> bodies = sendLeaderAndFollowers("/shared", "pt", "pt");
+
+        assertThat(bodies, everyItem(equalTo("shared pt 1")));
+        assertThat(requests.get(), equalTo(1));
+        assertThat(RequestCoalescingHandler.getCoalesced() - coalesced, equalTo((long) FOLLOWERS));
+    }
+
+    @Test
+    public void checkPrivateResponseIsNotShared() throws Exception {
+        startRouter(5000L);
+
+        final List<String> bodies = sendLeaderAndFollowers("/private", "pt", "pt");
+
+        assertThat(bodies.size(), equalTo(FOLLOWERS + 1));
+        assertThat(requests.get(), equalTo(FOLLOWERS + 1));
+    }
+
+    @Test
+    public void checkErrorResponsesAreNotShared() throws Exception {
+        startRouter(5000L);
+
+        assertThat(sendLeaderAndFollowers("/galeb-error", "pt", "pt"), everyItem(equalTo("galeb error")));
+        assertThat(requests.get(), equalTo(FOLLOWERS + 1));
+    }
+
+    @Test
+    public void checkUncacheableStatusIsNotShared() throws Exception {
+        startRouter(5000L);
+
+        assertThat(sendLeaderAndFollowers("/server-error", "pt", "pt"), everyItem(equalTo("server error")));
+        assertThat(requests.get(), equalTo(FOLLOWERS + 1));
+    }
+
+    @Test
+    public void checkResponseToCookieIsNotShared() throws Exception {
+        startRouter(5000L);
+        leaderCookie = "session=a";
+        followerCookie = "session=b";
+
+        final List<String> bodies = sendLeaderAndFollowers("/session", "pt", "pt");
+
+        assertThat(bodies.get(0), equalTo("session=a"));
+        assertThat(bodies.subList(1, bodies.size()), everyItem(equalTo("session=b")));
+        assertThat(requests.get(), equalTo(FOLLOWERS + 1));
+    }
+
+    @Test
+    public void checkPublicResponseToCookieIsShared() throws Exception {
+        startRouter(5000L);
+        leaderCookie = "session=a";
+        followerCookie = "session=b";
+
+        final List<String> bodies = sendLeaderAndFollowers("/public", "pt", "pt");
+
+        assertThat(bodies, everyItem(equalTo("public")));
+        assertThat(requests.get(), equalTo(1));
+    }
+
+    @Test
+    public void checkPoolCheckIsNotCoalesced() throws Exception {
+        startRouter(5000L);
+        checkPool = true;
+
+        final List<String> bodies = sendLeaderAndFollowers("/shared", "pt", "pt");
+
+        assertThat(bodies.size(), equalTo(FOLLOWERS + 1));
+        assertThat(requests.get(), equalTo(FOLLOWERS + 1));
+    }
+
+    @Test
+    public void checkVaryMismatchIsSentToPool() throws Exception {
+        startRouter(5000L);
+
+        final List<String> bodies = sendLeaderAndFollowers("/shared", "pt", "en");
+
+        assertThat(bodies.get(0), equalTo("shared pt 1"));
+        assertThat(bodies.subList(1, bodies.size()), everyItem(equalTo("shared en")));
+        assertThat(requests.get(), equalTo(FOLLOWERS + 1));
+    }
+
+    @Test
+    public void checkFollowersTimeOut() throws Exception {
+        startRouter(50L);
+        final long fallbacks = RequestCoalescingHandler.getFallbacks();
+
+        final List<String> bodies = sendLeaderAndFollowers("/shared", "pt", "pt");
+
+        assertThat(bodies.size(), equalTo(FOLLOWERS + 1));
+        assertThat(requests.get(), equalTo(FOLLOWERS + 1));
+        assertThat(RequestCoalescingHandler.getFallbacks() - fallbacks, equalTo((long) FOLLOWERS));
+    }
+
+    @Test
+    public void checkVirtualhostWithoutCoalescingIsNotWrapped() {
+        HttpHandler next = exchange -> {};
+        VirtualHost virtualHost = new VirtualHost("test.com", new Environment("env1"), new Project("project1"));
+        assertThat(RequestCoalescingHandler.wrap(virtualHost, next), sameInstance(next));
+
+        virtualHost.getProperties().put(RequestCoalescingHandler.PROP_REQUEST_COALESCING, "true");
+        assertThat(RequestCoalescingHandler.wrap(virtualHost, next), instanceOf(RequestCoalescingHandler.class));
+    }
+
+    private void startRouter(long timeout) {
+        final ExtendedLoadBalancingProxyClient proxyClient = new ExtendedLoadBalancingProxyClient();
+        proxyClient.addHost(URI.create("http://127.0.0.1:" + BACKEND_PORT));
+        router = Undertow.builder()
+                .addHttpListener(ROUTER_PORT, "127.0.0.1", new RequestCoalescingHandler(
+                        new ProxyHandler(proxyClient, 10000, ResponseCodeHandler.HANDLE_404), timeout, 1024 * 1024))
+                .build();
+        router.start();
+    }
+
+    /**
+     * The leader is held by the backend until the followers are waiting (or sent to the pool).
+     */
+    private List<String> sendLeaderAndFollowers(final String path, final String leaderLanguage, final String followerLanguage) throws Exception {
+        final List<Future<String>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> get(path, leaderLanguage, leaderCookie)));
+        assertThat(leaderArrived.await(5, TimeUnit.SECONDS), equalTo(true));
+        for (int i = 0; i < FOLLOWERS; i++) {
+            futures.add(executor.submit(() -> get(path, followerLanguage, followerCookie)));
+        }
+        Thread.sleep(300L);
+        release.countDown();
+        final List<String> bodies = new ArrayList<>();
+        for (Future<String> future : futures) {
+            bodies.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return bodies;
+    }
+
+    private void handleBackend(final HttpServerExchange exchange) throws InterruptedException {
+        final int count = requests.incrementAndGet();
+        final String language = exchange.getRequestHeaders().getFirst(Headers.ACCEPT_LANGUAGE);
+        if (count == 1) {
+            leaderArrived.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        }
+        if ("/galeb-error".equals(exchange.getRequestPath())) {
+            exchange.setStatusCode(StatusCodes.NOT_FOUND);
+            exchange.getResponseHeaders().put(ResponseCodeOnError.Header.X_GALEB_ERROR, "test");
+            exchange.getResponseSender().send("galeb error");
+            return;
+        }
+        if ("/server-error".equals(exchange.getRequestPath())) {
+            exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+            exchange.getResponseSender().send("server error");
+            return;
+        }
+        if ("/session".equals(exchange.getRequestPath())) {
+            exchange.getResponseSender().send(exchange.getRequestHeaders().getFirst(Headers.COOKIE));
+            return;
+        }
+        if ("/public".equals(exchange.getRequestPath())) {
+            exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "public");
+            exchange.getResponseSender().send("public");
+            return;
+        }
+        if ("/private".equals(exchange.getRequestPath())) {
+            exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "private");
+            exchange.getResponseSender().send("private " + count);
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.VARY, "Accept-Language");
+        exchange.getResponseSender().send("shared " + language + (count == 1 ? " 1" : ""));
+    }
+
+    private String get(final String path, final String language, final String cookie) throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + ROUTER_PORT + path).openConnection();
+        connection.setRequestProperty(Headers.ACCEPT_LANGUAGE_STRING, language);
+        if (cookie != null) {
+            connection.setRequestProperty(Headers.COOKIE_STRING, cookie);
+        }
+        if (checkPool) {
+            connection.setRequestProperty(PoolHandler.CHECK_RULE_HEADER, "test");
+        }
+        try (InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
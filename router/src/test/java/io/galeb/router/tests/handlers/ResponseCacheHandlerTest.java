@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.handlers;
+import io.galeb.core.entity.Environment;
+import io.galeb.core.entity.Project;
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.handlers.cache.ResponseCache;
+import io.galeb.router.handlers.cache.ResponseCacheHandler;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.server.handlers.proxy.ProxyHandler;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ResponseCacheHandlerTest {
+
+    private static final int BACKEND_PORT = 8096;
+    private static final int ROUTER_PORT = 8097;
+    private static final String LARGE_BODY = String.join("", Collections.nCopies(3000, "0123456789"));
+
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final Queue<String> ifNoneMatch = new ConcurrentLinkedQueue<>();
+    private final ResponseCache cache = new ResponseCache(16L * 1024 * 1024, 64 * 1024);
+    private final Semaphore completed = new Semaphore(0);
+    private Undertow backend;
+    private Undertow router;
+
+    @Before
+    public void setUp() {
+        backend = Undertow.builder()
+                .addHttpListener(BACKEND_PORT, "127.0.0.1", this::handleBackend)
+                .build();
+        backend.start();
+        final ExtendedLoadBalancingProxyClient proxyClient = new ExtendedLoadBalancingProxyClient();
+        proxyClient.addHost(URI.create("http://127.0.0.1:" + BACKEND_PORT));
+        final HttpHandler cacheHandler = new ResponseCacheHandler(cache, "test.com",
+                new ProxyHandler(proxyClient, 10000, ResponseCodeHandler.HANDLE_404));
+        router = Undertow.builder()
+                .addHttpListener(ROUTER_PORT, "127.0.0.1", exchange -> {
+                    // runs after the listener that stores the response
+                    exchange.addExchangeCompleteListener((completedExchange, nextListener) -> {
+                        nextListener.proceed();
+                        completed.release();
+                    });
+                    cacheHandler.handleRequest(exchange);
+                })
+                .build();
+        router.start();
+    }
+
+    @After
+    public void tearDown() {
+        router.stop();
+        backend.stop();
+    }
+
+    @Test
+    public void checkFreshResponseIsSentFromCache() throws Exception {
+        assertThat(get("/fresh", null), equalTo("fresh 1"));
+        assertThat(get("/fresh", null), equalTo("fresh 1"));
+        assertThat(get("/fresh?other", null), equalTo("fresh 2"));
+        assertThat(requests.get("/fresh").get(), equalTo(2));
+        assertThat(cache.getHits(), equalTo(1L));
+        assertThat(cache.getMisses(), equalTo(2L));
+        assertThat(cache.getBytesSaved(), equalTo(7L));
+        assertThat(cache.size(), equalTo(2));
+    }
+
+    @Test
+    public void checkStaleResponseIsRevalidated() throws Exception {
+        assertThat(get("/etag", null), equalTo(LARGE_BODY));
+        assertThat(get("/etag", null), equalTo(LARGE_BODY));
+        assertThat(get("/etag", null), equalTo(LARGE_BODY));
+        assertThat(requests.get("/etag").get(), equalTo(3));
+        assertThat(ifNoneMatch, contains("\"v1\"", "\"v1\""));
+        assertThat(cache.getRevalidated(), equalTo(2L));
+        assertThat(cache.getBytesSaved(), equalTo(2L * LARGE_BODY.length()));
+    }
+
+    @Test
+    public void checkConditionalRequestOfFreshResponse() throws Exception {
+        get("/fresh-etag", null);
+        final HttpURLConnection connection = open("/fresh-etag", null);
+        connection.setRequestProperty("If-None-Match", "W/\"v2\"");
+        assertThat(connection.getResponseCode(), equalTo(StatusCodes.NOT_MODIFIED));
+        assertThat(requests.get("/fresh-etag").get(), equalTo(1));
+    }
+
+    @Test
+    public void checkPrivateAndLargeResponsesAreNotStored() throws Exception {
+        get("/private", null);
+        get("/private", null);
+        get("/large", null);
+        get("/large", null);
+        assertThat(requests.get("/private").get(), equalTo(2));
+        assertThat(requests.get("/large").get(), equalTo(2));
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.getMemoryUsed(), equalTo(0L));
+    }
+
+    @Test
+    public void checkVaryHeaderSelectsResponse() throws Exception {
+        assertThat(get("/vary", "pt"), equalTo("vary pt 1"));
+        assertThat(get("/vary", "pt"), equalTo("vary pt 1"));
+        assertThat(get("/vary", "en"), equalTo("vary en 2"));
+        assertThat(requests.get("/vary").get(), equalTo(2));
+    }
+
+    @Test
+    public void checkUnsafeMethodInvalidatesResponse() throws Exception {
+        get("/fresh", null);
+        final HttpURLConnection connection = open("/fresh", null);
+        connection.setRequestMethod("DELETE");
+        assertThat(connection.getResponseCode(), equalTo(StatusCodes.OK));
+        assertThat(get("/fresh", null), equalTo("fresh 3"));
+    }
+
+    @Test
+    public void checkVirtualhostWithoutCacheIsNotWrapped() {
+        HttpHandler next = exchange -> {};
+        VirtualHost virtualHost = new VirtualHost("test.com", new Environment("env1"), new Project("project1"));
+        assertThat(ResponseCacheHandler.wrap(virtualHost, next), sameInstance(next));
+
+        virtualHost.getProperties().put(ResponseCacheHandler.PROP_RESPONSE_CACHE, "true");
+        assertThat(ResponseCacheHandler.wrap(virtualHost, next), instanceOf(ResponseCacheHandler.class));
+    }
+
+    private void handleBackend(final HttpServerExchange exchange) {
+        final String path = exchange.getRequestPath();
+        final int count = requests.computeIfAbsent(path, p -> new AtomicInteger(0)).incrementAndGet();
+        switch (path) {
+            case "/fresh":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "public, max-age=60");
+                exchange.getResponseSender().send("fresh " + count);
+                break;
+            case "/fresh-etag":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseHeaders().put(Headers.ETAG, "\"v2\"");
+                exchange.getResponseSender().send("fresh-etag");
+                break;
+            case "/etag":
+                final String tag = exchange.getRequestHeaders().getFirst(Headers.IF_NONE_MATCH);
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "no-cache");
+                exchange.getResponseHeaders().put(Headers.ETAG, "\"v1\"");
+                if (tag != null) {
+                    ifNoneMatch.add(tag);
+                    exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+                    exchange.endExchange();
+                } else {
+                    exchange.getResponseSender().send(LARGE_BODY);
+                }
+                break;
+            case "/private":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "private, max-age=60");
+                exchange.getResponseSender().send("private");
+                break;
+            case "/large":
+                final char[] body = new char[128 * 1024];
+                Arrays.fill(body, 'x');
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseSender().send(new String(body));
+                break;
+            case "/vary":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseHeaders().put(Headers.VARY, "Accept-Language");
+                exchange.getResponseSender().send("vary " + exchange.getRequestHeaders().getFirst(Headers.ACCEPT_LANGUAGE) + " " + count);
+                break;
+            default:
+                exchange.getResponseSender().send("");
+        }
+    }
+
+    private HttpURLConnection open(final String path, final String language) throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + ROUTER_PORT + path).openConnection();
+        if (language != null) {
+            connection.setRequestProperty(Headers.ACCEPT_LANGUAGE_STRING, language);
+        }
+        return connection;
+    }
+
+    private String get(final String path, final String language) throws Exception {
+        final HttpURLConnection connection = open(path, language);
+        assertThat(connection.getResponseCode(), equalTo(StatusCodes.OK));
+        try (InputStream in = connection.getInputStream()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            // the client may read the whole body before the response is stored
+            assertThat(completed.tryAcquire(5, TimeUnit.SECONDS), equalTo(true));
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -23,9 +23,15 @@ import io.galeb.router.client.hostselectors.HostSelectorLookup;
 import io.undertow.server.HttpServerExchange;
 import org.junit.Test;
 
+import java.net.URI;
 import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 
 public class HashUriPathHostSelectorTest extends AbstractHashHostSelectorTest {
@@ -41,6 +47,43 @@ public class HashUriPathHostSelectorTest extends AbstractHashHostSelectorTest {
         doRandomTest(errorPercentMax, limitOfNotHitsPercent, numPopulation);
     }
 
+    @Test
+    public void testSelectHostIsConsistentWhenHostRemoved() throws Exception {
+        final Host[] lessHosts = Stream.of(hosts).filter(host -> host != hosts[NUM_HOSTS / 2]).toArray(Host[]::new);
+        final HostSelector otherHostSelector = new HashUriPathHostSelector();
+        final HttpServerExchange exchange = new HttpServerExchange(null);
+        int numKeys = 10000;
+        long moved = IntStream.range(0, numKeys).filter(x -> {
+            changeExchange(exchange, x);
+            URI before = hosts[hashUriPathHostSelector.selectHost(hosts, exchange)].getUri();
+            URI after = lessHosts[otherHostSelector.selectHost(lessHosts, exchange)].getUri();
+            return !before.equals(after) && !before.equals(hosts[NUM_HOSTS / 2].getUri());
+        }).count();
+        // only the keys of the removed host should move (Maglev allows a small disruption)
+        assertThat((double) moved / numKeys, lessThan(0.02));
+    }
+
+    @Test
+    public void testSelectHostWithBoundedLoad() throws Exception {
+        final HostSelector boundedHostSelector = new HashUriPathHostSelector().setBoundedLoadFactor(0.25);
+        final HttpServerExchange exchange = new HttpServerExchange(null);
+        // open connections of host x is x, so the average is (NUM_HOSTS - 1) / 2
+        final double capacity = Math.ceil((1.0 + (NUM_HOSTS - 1) * NUM_HOSTS / 2.0) * 1.25 / NUM_HOSTS);
+        IntStream.range(0, 1000).forEach(x -> {
+            changeExchange(exchange, x);
+            int result = boundedHostSelector.selectHost(hosts, exchange);
+            assertThat((double) hosts[result].getOpenConnection(), lessThan(capacity));
+            assertThat(boundedHostSelector.selectHost(hosts, exchange), equalTo(result));
+        });
+        exchange.setRelativePath("/hot");
+        int unbounded = hashUriPathHostSelector.selectHost(hosts, exchange);
+        if (unbounded < capacity) {
+            assertThat(boundedHostSelector.selectHost(hosts, exchange), equalTo(unbounded));
+        } else {
+            assertThat((double) boundedHostSelector.selectHost(hosts, exchange), lessThanOrEqualTo(capacity));
+        }
+    }
+
     @Override
     int getResult(HttpServerExchange exchange, Host[] newHosts) {
         return hashUriPathHostSelector.selectHost(newHosts, exchange);
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.client.hostselectors.HostSelector;
+import io.galeb.router.client.hostselectors.HostSelectorLookup;
+import io.undertow.server.HttpServerExchange;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Selection cost of the host selectors, and of the stream based least-conn selectors they replaced, over real
+ * hosts of a proxy client. The debug line of the statistics stamp is disabled, it is not part of the selection.
+ * Not part of the suite, run it with
+ * {@code mvn test -Dtest=HostSelectorBenchmark [-Dbenchmark.iterations=N]}.
+ */
+public class HostSelectorBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200000);
+    private static final int WARMUP = Math.max(ITERATIONS / 5, 1000);
+
+    private final Log logger = LogFactory.getLog(this.getClass());
+    private final HttpServerExchange exchange = new HttpServerExchange(null);
+
+    private long sink = 0L;
+
+    @Before
+    public void setUp() {
+        Configurator.setLevel("io.galeb.router.client.hostselectors", Level.INFO);
+    }
+
+    @Test
+    public void selectHost() {
+        for (int count : new int[] { 2, 20, 200 }) {
+            final ExtendedLoadBalancingProxyClient proxyClient = new ExtendedLoadBalancingProxyClient();
+            for (int i = 0; i < count; i++) {
+                proxyClient.addHost(URI.create("http://127.0.0.1:" + (10000 + i)));
+            }
+            final Host[] hosts = proxyClient.getHosts();
+            report("StrictLeastConn (old)", count, new StreamStrictLeastConn(), hosts);
+            report("StrictLeastConn", count, HostSelectorLookup.getHostSelector("StrictLeastConn"), hosts);
+            report("LeastConn (old)", count, new QueueLeastConn(), hosts);
+            report("LeastConn", count, HostSelectorLookup.getHostSelector("LeastConn"), hosts);
+            report("P2CLeastConn", count, HostSelectorLookup.getHostSelector("P2CLeastConn"), hosts);
+            report("RoundRobin", count, HostSelectorLookup.getHostSelector("RoundRobin"), hosts);
+        }
+        logger.debug(sink);
+    }
+
+    private void report(final String name, int count, final HostSelector hostSelector, final Host[] hosts) {
+        run(hostSelector, hosts, WARMUP);
+        logger.info(String.format("%-22s hosts=%-4d %d ns/op", name, count, run(hostSelector, hosts, ITERATIONS)));
+    }
+
+    private long run(final HostSelector hostSelector, final Host[] hosts, int iterations) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += hostSelector.selectHost(hosts, exchange);
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static Stream<Map.Entry<Integer, Host>> convertToMapStream(final Host[] availableHosts) {
+        return IntStream.range(0, availableHosts.length)
+                .boxed()
+                .collect(Collectors.toMap(i -> i, i -> availableHosts[i]))
+                .entrySet()
+                .stream();
+    }
+
+    /**
+     * The stream based StrictLeastConnHostSelector (without the statistics stamp).
+     */
+    private static class StreamStrictLeastConn implements HostSelector {
+        @Override
+        public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
+            return convertToMapStream(availableHosts)
+                    .sorted(Comparator.comparing(e -> e.getValue().getOpenConnection()))
+                    .findFirst()
+                    .map(Map.Entry::getKey)
+                    .orElse(DEFAULT_POS);
+        }
+    }
+
+    /**
+     * The stream and queue based LeastConnWithRRHostSelector (without the statistics stamp).
+     */
+    private static class QueueLeastConn implements HostSelector {
+        private ConcurrentLinkedQueue<Integer> leastConnList = null;
+
+        @Override
+        public int selectHost(final Host[] availableHosts, final HttpServerExchange exchange) {
+            if (leastConnList == null || leastConnList.isEmpty()) {
+                final long limit = (int) Math.ceil((float) availableHosts.length * 0.666f);
+                leastConnList = convertToMapStream(availableHosts)
+                        .sorted(Comparator.comparing(e -> e.getValue().getOpenConnection()))
+                        .limit(limit)
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
+            }
+            final Integer pos = leastConnList.poll();
+            return pos != null ? pos : selectHost(availableHosts, exchange);
+        }
+    }
+}
@@ -22,13 +22,17 @@ import io.galeb.router.client.hostselectors.HostSelectorLookup;
 import io.galeb.router.client.hostselectors.LeastConnWithRRHostSelector;
 import org.junit.Test;
 
+import java.net.URI;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Random;
 import java.util.stream.IntStream;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class LeastConnWithRRHostSelectorTest extends AbstractHostSelectorTest {
 
@@ -48,4 +52,30 @@ public class LeastConnWithRRHostSelectorTest extends AbstractHostSelectorTest {
             ((LeastConnWithRRHostSelector)leastConnWithRRHostSelector).reset();
         }
     }
-} 
+
+    @Test
+    public void testSelectHostRanksUnorderedHosts() {
+        final Host[] shuffledHosts = Arrays.copyOf(hosts, NUM_HOSTS + 1);
+        final Host tied = mock(Host.class);
+        when(tied.getUri()).thenReturn(URI.create("http://127.0.0.2:0"));
+        when(tied.getOpenConnection()).thenReturn(0);
+        shuffledHosts[NUM_HOSTS] = tied;
+        Collections.shuffle(Arrays.asList(shuffledHosts), new Random(42L));
+        final int limit = (int) Math.ceil((float) shuffledHosts.length * ((LeastConnWithRRHostSelector) leastConnWithRRHostSelector).getCuttingLine());
+
+        // one round: the least loaded hosts in ascending order, the tie in the host order
+        int previous = -1;
+        int previousPos = -1;
+        for (int x = 0; x < limit; x++) {
+            int pos = leastConnWithRRHostSelector.selectHost(shuffledHosts, commonExchange);
+            int openConnection = shuffledHosts[pos].getOpenConnection();
+            assertThat(openConnection, equalTo(Math.max(x - 1, 0)));
+            assertThat(openConnection > previous || pos > previousPos, equalTo(true));
+            previous = openConnection;
+            previousPos = pos;
+        }
+        // and again from the least loaded
+        int pos = leastConnWithRRHostSelector.selectHost(shuffledHosts, commonExchange);
+        assertThat(shuffledHosts[pos].getOpenConnection(), equalTo(0));
+    }
+}
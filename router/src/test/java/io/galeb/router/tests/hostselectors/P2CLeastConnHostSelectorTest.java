@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.galeb.router.tests.hostselectors;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.client.hostselectors.HostSelector;
+import io.galeb.router.client.hostselectors.HostSelectorLookup;
+import io.galeb.router.client.hostselectors.P2CLeastConnHostSelector;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class P2CLeastConnHostSelectorTest extends AbstractHostSelectorTest {
+
+    private final HostSelector p2cLeastConnHostSelector = HostSelectorLookup.getHostSelector(getName(P2CLeastConnHostSelector.class));
+
+    @Test
+    public void testSelectHost() throws Exception {
+        assertThat(p2cLeastConnHostSelector, instanceOf(P2CLeastConnHostSelector.class));
+        int loopLimit = NUM_HOSTS * NUM_RETRIES;
+        long total = IntStream.range(0, loopLimit).mapToLong(x -> {
+            int result = p2cLeastConnHostSelector.selectHost(hosts, commonExchange);
+            // the most loaded host never wins a comparison
+            assertThat(result, lessThan(NUM_HOSTS - 1));
+            return result;
+        }).sum();
+        // the expected position of the lower of two random picks is about a third of the hosts
+        assertThat((double) total / loopLimit, lessThan(NUM_HOSTS / 2.0));
+    }
+
+    @Test
+    public void testSelectHostWithFewHosts() throws Exception {
+        final Host[] oneHost = Arrays.copyOf(hosts, 1);
+        final Host[] twoHosts = Arrays.copyOf(hosts, 2);
+        IntStream.range(0, NUM_RETRIES).forEach(x -> {
+            assertThat(p2cLeastConnHostSelector.selectHost(oneHost, commonExchange), equalTo(0));
+            assertThat(p2cLeastConnHostSelector.selectHost(twoHosts, commonExchange), equalTo(0));
+        });
+    }
+}
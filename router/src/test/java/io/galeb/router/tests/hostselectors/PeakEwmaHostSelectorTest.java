@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.galeb.router.tests.hostselectors;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.client.PeakEwma;
+import io.galeb.router.client.hostselectors.HostSelector;
+import io.galeb.router.client.hostselectors.HostSelectorLookup;
+import io.galeb.router.client.hostselectors.PeakEwmaHostSelector;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+public class PeakEwmaHostSelectorTest extends AbstractHostSelectorTest {
+
+    private final HostSelector peakEwmaHostSelector = HostSelectorLookup.getHostSelector(getName(PeakEwmaHostSelector.class));
+
+    @Test
+    public void testSelectHost() throws Exception {
+        assertThat(peakEwmaHostSelector, instanceOf(PeakEwmaHostSelector.class));
+        final Host[] twoHosts = Arrays.copyOf(hosts, 2);
+        final PeakEwma slow = new PeakEwma();
+        final PeakEwma fast = new PeakEwma();
+        slow.observe(TimeUnit.SECONDS.toNanos(1));
+        fast.observe(TimeUnit.MILLISECONDS.toNanos(1));
+        when(twoHosts[0].getPeakEwma()).thenReturn(slow);
+        when(twoHosts[1].getPeakEwma()).thenReturn(fast);
+        // host 0 has fewer connections (0 x 1), but it is too slow
+        IntStream.range(0, NUM_RETRIES).forEach(x ->
+                assertThat(peakEwmaHostSelector.selectHost(twoHosts, commonExchange), equalTo(1)));
+    }
+
+    @Test
+    public void testSelectHostWithoutLatency() throws Exception {
+        final Host[] twoHosts = Arrays.copyOf(hosts, 2);
+        when(twoHosts[0].getPeakEwma()).thenReturn(new PeakEwma());
+        when(twoHosts[1].getPeakEwma()).thenReturn(new PeakEwma());
+        IntStream.range(0, NUM_RETRIES).forEach(x ->
+                assertThat(peakEwmaHostSelector.selectHost(twoHosts, commonExchange), equalTo(0)));
+    }
+
+    @Test
+    public void checkPeakAndDecay() {
+        final PeakEwma peakEwma = new PeakEwma();
+        long now = System.nanoTime();
+        peakEwma.observe(1000L, now);
+        assertThat(peakEwma.get(now), closeTo(1000.0, 0.001));
+
+        // a peak is adopted at once
+        peakEwma.observe(5000L, now);
+        assertThat(peakEwma.get(now), closeTo(5000.0, 0.001));
+
+        // a lower sample is merged with a weight
+        peakEwma.observe(1000L, now + TimeUnit.SECONDS.toNanos(1));
+        double merged = peakEwma.get(now + TimeUnit.SECONDS.toNanos(1));
+        assertThat(merged, lessThan(5000.0));
+        assertThat(merged > 1000.0, equalTo(true));
+
+        // without samples, it decays to zero
+        assertThat(peakEwma.get(now + TimeUnit.MINUTES.toNanos(10)), lessThan(1.0));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.hostselectors;
+
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient.Host;
+import io.galeb.router.client.hostselectors.HostSelectorLookup;
+import io.galeb.router.client.hostselectors.WeightedRoundRobinHostSelector;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+public class WeightedRoundRobinHostSelectorTest extends AbstractHostSelectorTest {
+
+    private final WeightedRoundRobinHostSelector weightedRoundRobinHostSelector =
+            (WeightedRoundRobinHostSelector) HostSelectorLookup.getHostSelector(getName(WeightedRoundRobinHostSelector.class));
+
+    @Test
+    public void testSelectHostWithSameWeights() {
+        assertThat(weightedRoundRobinHostSelector, instanceOf(WeightedRoundRobinHostSelector.class));
+        weightedRoundRobinHostSelector.reset();
+        IntStream.range(0, NUM_HOSTS * NUM_RETRIES).forEach(x ->
+                assertThat(weightedRoundRobinHostSelector.selectHost(hosts, commonExchange), equalTo(x % NUM_HOSTS)));
+    }
+
+    @Test
+    public void testSelectHostIsSmooth() {
+        final Host[] threeHosts = Arrays.copyOf(hosts, 3);
+        when(threeHosts[0].getWeight()).thenReturn(5);
+        when(threeHosts[1].getWeight()).thenReturn(1);
+        when(threeHosts[2].getWeight()).thenReturn(1);
+        weightedRoundRobinHostSelector.reset();
+        Integer[] sequence = IntStream.range(0, 7)
+                .mapToObj(x -> weightedRoundRobinHostSelector.selectHost(threeHosts, commonExchange))
+                .toArray(Integer[]::new);
+        assertThat(Arrays.asList(sequence), contains(0, 0, 1, 0, 2, 0, 0));
+    }
+
+    @Test
+    public void testSelectHostDistribution() {
+        final Host[] twoHosts = Arrays.copyOf(hosts, 2);
+        when(twoHosts[0].getWeight()).thenReturn(300);
+        when(twoHosts[1].getWeight()).thenReturn(100);
+        weightedRoundRobinHostSelector.reset();
+        int[] counters = new int[2];
+        IntStream.range(0, 4 * NUM_RETRIES).forEach(x -> counters[weightedRoundRobinHostSelector.selectHost(twoHosts, commonExchange)]++);
+        assertThat(counters[0], equalTo(3 * NUM_RETRIES));
+        assertThat(counters[1], equalTo(NUM_RETRIES));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.metrics;
+
+import io.galeb.router.metrics.HyperLogLog;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void checkCardinalityError() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        for (int i = 0; i < 100000; i++) {
+            hyperLogLog.offer("10.0." + (i >> 8 & 0xff) + "." + (i & 0xff) + ":" + i);
+            hyperLogLog.offer("10.0." + (i >> 8 & 0xff) + "." + (i & 0xff) + ":" + i);
+        }
+        assertThat((double) hyperLogLog.cardinality(), closeTo(100000.0, 5000.0));
+    }
+
+    @Test
+    public void checkSmallCardinalityIsExact() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        for (int i = 0; i < 10; i++) {
+            hyperLogLog.offer("192.168.0." + i);
+        }
+        assertThat(hyperLogLog.cardinality(), equalTo(10L));
+    }
+
+    @Test
+    public void checkMergeIsTheUnion() {
+        HyperLogLog router1 = new HyperLogLog();
+        HyperLogLog router2 = new HyperLogLog();
+        for (int i = 0; i < 20000; i++) {
+            router1.offer("client" + i);
+            router2.offer("client" + (i + 10000));
+        }
+        HyperLogLog merged = HyperLogLog.fromBytes(router1.toBytes()).merge(router2);
+        assertThat((double) merged.cardinality(), closeTo(30000.0, 1500.0));
+    }
+}
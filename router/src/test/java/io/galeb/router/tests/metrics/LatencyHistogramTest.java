@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.metrics;
+
+import io.galeb.router.metrics.LatencyHistogram;
+import io.galeb.router.metrics.LatencyHistogram.Snapshot;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void checkPercentilesPrecision() {
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        final Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), equalTo(100000L));
+        assertThat(snapshot.getMax(), equalTo(100000L));
+        assertThat(snapshot.getMean(), closeTo(50000.5, 0.001));
+        assertThat((double) snapshot.getValueAtPercentile(50.0), closeTo(50000.0, 50000.0 * 0.04));
+        assertThat((double) snapshot.getValueAtPercentile(99.0), closeTo(99000.0, 99000.0 * 0.04));
+        assertThat((double) snapshot.getValueAtPercentile(99.9), closeTo(99900.0, 99900.0 * 0.04));
+        assertThat(snapshot.getValueAtPercentile(100.0), equalTo(100000L));
+    }
+
+    @Test
+    public void checkSmallValuesAreExact() {
+        for (long value = 0; value < 64; value++) {
+            histogram.record(value);
+        }
+        final Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getValueAtPercentile(50.0), equalTo(31L));
+        assertThat(snapshot.getValueAtPercentile(100.0), equalTo(63L));
+    }
+
+    @Test
+    public void checkIntervalHasOnlyNewValues() {
+        histogram.record(10);
+        histogram.record(1000000);
+        assertThat(histogram.interval().getCount(), equalTo(2L));
+
+        histogram.record(20);
+        final Snapshot interval = histogram.interval();
+        assertThat(interval.getCount(), equalTo(1L));
+        assertThat(interval.getMax(), equalTo(20L));
+        assertThat(interval.getValueAtPercentile(99.9), equalTo(20L));
+        assertThat(histogram.lastInterval().getCount(), equalTo(1L));
+        assertThat(histogram.snapshot().getCount(), equalTo(3L));
+
+        assertThat(histogram.interval().getCount(), equalTo(0L));
+    }
+}
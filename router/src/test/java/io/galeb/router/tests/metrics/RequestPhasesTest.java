@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.metrics;
+
+import io.galeb.router.metrics.RequestPhases;
+import io.galeb.router.metrics.RequestPhases.Stamp;
+import io.undertow.server.HttpServerExchange;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RequestPhasesTest {
+
+    private static final long START = 1000000000L;
+
+    @Test
+    public void checkPhasesAreMeasuredFromThePreviousStamp() {
+        RequestPhases phases = new RequestPhases(START);
+        phases.stamp(Stamp.VIRTUALHOST, START + micros(10));
+        phases.stamp(Stamp.RULE, START + micros(30));
+        phases.stamp(Stamp.HOST_SELECTED, START + micros(35));
+        phases.stamp(Stamp.CONNECTED, START + micros(135));
+        phases.stamp(Stamp.FIRST_BYTE, START + micros(1135));
+        phases.stamp(Stamp.END, START + micros(1200));
+
+        long[] micros = new long[RequestPhases.PHASES];
+        assertThat(phases.copyMicrosTo(micros), equalTo(true));
+        assertThat(micros, equalTo(new long[] {10L, 20L, 5L, 100L, 1000L, 65L}));
+    }
+
+    @Test
+    public void checkMissingStampsAreSkipped() {
+        RequestPhases phases = new RequestPhases(START);
+        phases.stamp(Stamp.VIRTUALHOST, START + micros(10));
+        phases.stamp(Stamp.FIRST_BYTE, START + micros(110));
+
+        assertThat(phases.getMicros(Stamp.RULE.ordinal() - 1), equalTo(-1L));
+        assertThat(phases.getMicros(Stamp.FIRST_BYTE.ordinal() - 1), equalTo(100L));
+        assertThat(phases.getMicros(Stamp.END.ordinal() - 1), equalTo(-1L));
+        assertThat(RequestPhases.phaseName(Stamp.FIRST_BYTE.ordinal() - 1), equalTo("ttfb"));
+    }
+
+    @Test
+    public void checkNothingIsAttachedWhenDisabled() {
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        RequestPhases.start(exchange);
+        RequestPhases.stamp(exchange, Stamp.VIRTUALHOST);
+
+        assertThat(RequestPhases.ENABLED, equalTo(false));
+        assertThat(exchange.getAttachment(RequestPhases.KEY), nullValue());
+    }
+
+    private long micros(long value) {
+        return TimeUnit.MICROSECONDS.toNanos(value);
+    }
+}
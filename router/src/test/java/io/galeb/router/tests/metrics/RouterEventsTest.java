@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.metrics;
+
+import io.galeb.router.handlers.NameVirtualHostDefaultHandler;
+import io.galeb.router.metrics.jfr.RouterEvents;
+import io.galeb.router.services.ReconcilerService;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.junit.Assert.assertThat;
+
+public class RouterEventsTest {
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(RouterEvents.ENABLED);
+    }
+
+    @Test
+    public void checkRoutingTableUpdateIsRecorded() throws Exception {
+        ReconcilerService reconcilerService = new ReconcilerService(new NameVirtualHostDefaultHandler());
+        Path file = Files.createTempFile("galeb-router", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.galeb.router.RoutingTableUpdate").withThreshold(Duration.ZERO);
+            recording.start();
+            reconcilerService.reconcile(Collections.emptyList());
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> "io.galeb.router.RoutingTableUpdate".equals(e.getEventType().getName()))
+                    .collect(Collectors.toList());
+            assertThat(events.size(), equalTo(1));
+            assertThat(events.get(0).getInt("virtualhosts"), equalTo(0));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void checkSettingsEnableAllEvents() throws Exception {
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/jfr/galeb-router.jfc"), StandardCharsets.UTF_8)) {
+            Configuration configuration = Configuration.create(reader);
+            assertThat(configuration.getSettings().keySet(), hasItems(
+                    "io.galeb.router.VirtualHost#enabled",
+                    "io.galeb.router.RuleMatch#enabled",
+                    "io.galeb.router.HostSelection#enabled",
+                    "io.galeb.router.ConnectionAcquire#enabled",
+                    "io.galeb.router.RoutingTableUpdate#enabled"));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.metrics;
+
+import io.galeb.router.metrics.TopK;
+import io.galeb.router.metrics.TopK.Entry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class TopKTest {
+
+    @Test
+    public void checkHeavyHittersAmongLongTail() {
+        TopK topK = new TopK(3);
+        for (int i = 0; i < 10000; i++) {
+            topK.offer("/tail/" + i);
+            if (i % 2 == 0) topK.offer("/heavy1");
+            if (i % 4 == 0) topK.offer("/heavy2");
+            if (i % 8 == 0) topK.offer("/heavy3");
+        }
+        List<Entry> top = topK.top();
+        assertThat(keys(top), contains("/heavy1", "/heavy2", "/heavy3"));
+        assertThat(top.get(0).getCount(), greaterThanOrEqualTo(5000L));
+        assertThat(top.get(0).getCount() - top.get(0).getError(), equalTo(5000L));
+    }
+
+    @Test
+    public void checkMergeAddsCounts() {
+        TopK router1 = new TopK(2);
+        TopK router2 = new TopK(2);
+        for (int i = 0; i < 10; i++) {
+            router1.offer("10.0.0.1");
+            router2.offer("10.0.0.2");
+        }
+        router1.offer("10.0.0.2");
+        router2.offer("10.0.0.3");
+
+        List<Entry> merged = TopK.merge(Arrays.asList(router1.top(), router2.top()), 2);
+        assertThat(keys(merged), contains("10.0.0.2", "10.0.0.1"));
+        assertThat(merged.get(0).getCount(), equalTo(11L));
+    }
+
+    @Test
+    public void checkSummariesOfSeveralThreadsAreMerged() throws InterruptedException {
+        final TopK topK = new TopK(2);
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    topK.offer("/tail/" + thread + "/" + i);
+                    topK.offer("/heavy1");
+                    if (i % 2 == 0) topK.offer("/heavy2");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<Entry> top = topK.top();
+        assertThat(keys(top), contains("/heavy1", "/heavy2"));
+        assertThat(top.get(0).getCount() - top.get(0).getError(), equalTo(4000L));
+        assertThat(top.get(1).getCount() - top.get(1).getError(), equalTo(2000L));
+    }
+
+    private List<String> keys(List<Entry> entries) {
+        return entries.stream().map(Entry::getKey).collect(Collectors.toList());
+    }
+}
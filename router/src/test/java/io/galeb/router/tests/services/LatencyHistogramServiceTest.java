@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.services;
+
+import io.galeb.router.services.JmxReporterService;
+import io.galeb.router.services.LatencyHistogramService;
+import io.galeb.router.services.LatencyHistogramService.Series;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramServiceTest {
+
+    private final LatencyHistogramService latencyHistogramService = new LatencyHistogramService(2, false);
+
+    @Test
+    public void checkLeastRecentlyUsedSeriesIsEvicted() throws Exception {
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8081", 100);
+        Thread.sleep(2);
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8082", 100);
+        Thread.sleep(2);
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8081", 100);
+        Thread.sleep(2);
+        latencyHistogramService.record("other.com", "pool2", "http://127.0.0.1:8083", 100);
+        // the request path does not evict
+        assertThat(latencyHistogramService.size(), equalTo(3));
+
+        latencyHistogramService.closeInterval();
+        assertThat(latencyHistogramService.size(), equalTo(2));
+        assertThat(latencyHistogramService.getSeries().stream().map(Series::getTarget).collect(Collectors.toList()),
+                containsInAnyOrder("http://127.0.0.1:8081", "http://127.0.0.1:8083"));
+        assertThat(latencyHistogramService.getSeries().stream()
+                .filter(s -> s.getTarget().equals("http://127.0.0.1:8081")).findAny().get().getCount(), equalTo(2L));
+    }
+
+    @Test
+    public void checkIdleSeriesIsReleased() {
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8081", 100);
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8082", 100);
+        latencyHistogramService.closeInterval();
+        assertThat(latencyHistogramService.size(), equalTo(2));
+
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8082", 200);
+        latencyHistogramService.closeInterval();
+        assertThat(latencyHistogramService.size(), equalTo(1));
+        assertThat(latencyHistogramService.getSeries().get(0).getIntervalP99(), equalTo(200L));
+
+        // a released series is created again by the next request
+        latencyHistogramService.record("test.com", "pool1", "http://127.0.0.1:8081", 300);
+        assertThat(latencyHistogramService.size(), equalTo(2));
+    }
+
+    @Test
+    public void checkMBeanIsRegisteredAtTheEndOfTheInterval() throws Exception {
+        final LatencyHistogramService jmxService = new LatencyHistogramService(2, true);
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(JmxReporterService.MBEAN_DOMAIN + ":type=LatencyHistogram" +
+                ",virtualhost=" + ObjectName.quote("jmx.com") + ",pool=" + ObjectName.quote("pool1") +
+                ",target=" + ObjectName.quote("http://127.0.0.1:8081"));
+        try {
+            jmxService.record("jmx.com", "pool1", "http://127.0.0.1:8081", 100);
+            assertThat(mBeanServer.isRegistered(objectName), equalTo(false));
+
+            jmxService.closeInterval();
+            assertThat(mBeanServer.isRegistered(objectName), equalTo(true));
+            assertThat(mBeanServer.getAttribute(objectName, "IntervalCount"), equalTo(1L));
+
+            jmxService.closeInterval();
+            assertThat(mBeanServer.isRegistered(objectName), equalTo(false));
+        } finally {
+            jmxService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.services;
+
+import io.galeb.core.entity.Environment;
+import io.galeb.core.entity.Pool;
+import io.galeb.core.entity.Project;
+import io.galeb.core.entity.Rule;
+import io.galeb.core.entity.RuleType;
+import io.galeb.core.entity.Target;
+import io.galeb.core.entity.VirtualHost;
+import io.galeb.core.enums.EnumRuleType;
+import io.galeb.router.client.ExtendedLoadBalancingProxyClient;
+import io.galeb.router.handlers.NameVirtualHostDefaultHandler;
+import io.galeb.router.handlers.PoolHandler;
+import io.galeb.router.services.ReconcilerService;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.stream.Collectors;
+
+import static io.galeb.router.handlers.RuleTargetHandler.RULE_MATCH;
+import static io.galeb.router.handlers.RuleTargetHandler.RULE_ORDER;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ReconcilerServiceTest {
+
+    private final Environment env1 = new Environment("env1");
+    private final Project project1 = new Project("project1");
+    private final NameVirtualHostDefaultHandler nameVirtualHostDefaultHandler = new NameVirtualHostDefaultHandler();
+    private final ReconcilerService reconcilerService = new ReconcilerService(nameVirtualHostDefaultHandler);
+
+    @Test
+    public void checkPoolReusedWhenOnlyTargetsChanged() {
+        reconcilerService.reconcile(Collections.singleton(newVirtualHost("test.com", newPool("pool1", "http://127.0.0.1:8081", "http://127.0.0.1:8082"))));
+        PoolHandler before = poolHandlerOf("test.com");
+
+        reconcilerService.reconcile(Collections.singleton(newVirtualHost("test.com", newPool("pool1", "http://127.0.0.1:8082", "http://127.0.0.1:8083"))));
+        PoolHandler after = poolHandlerOf("test.com");
+
+        assertThat(after, sameInstance(before));
+        assertThat(reconcilerService.getReusedPools(), equalTo(1L));
+        assertThat(reconcilerService.getRebuiltPools(), equalTo(0L));
+        assertThat(((ExtendedLoadBalancingProxyClient) after.getProxyHandler().getProxyClient()).getHostUris(),
+                containsInAnyOrder(URI.create("http://127.0.0.1:8082"), URI.create("http://127.0.0.1:8083")));
+    }
+
+    @Test
+    public void checkPoolRebuiltWhenPropertiesChanged() {
+        reconcilerService.reconcile(Collections.singleton(newVirtualHost("test.com", newPool("pool1", "http://127.0.0.1:8081"))));
+        PoolHandler before = poolHandlerOf("test.com");
+
+        Pool pool = newPool("pool1", "http://127.0.0.1:8081");
+        pool.getProperties().put(PoolHandler.PROP_CONN_PER_THREAD, "10");
+        reconcilerService.reconcile(Collections.singleton(newVirtualHost("test.com", pool)));
+
+        assertThat(poolHandlerOf("test.com"), not(sameInstance(before)));
+        assertThat(reconcilerService.getReusedPools(), equalTo(0L));
+        assertThat(reconcilerService.getRebuiltPools(), equalTo(1L));
+        assertThat(((ExtendedLoadBalancingProxyClient) before.getProxyHandler().getProxyClient()).isHostsEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void checkUnchangedVirtualHostKeepsRoute() {
+        VirtualHost virtualHost = newVirtualHost("test.com", newPool("pool1", "http://127.0.0.1:8081"));
+        reconcilerService.reconcile(Collections.singleton(virtualHost));
+        PoolHandler before = poolHandlerOf("test.com");
+
+        reconcilerService.reconcile(Collections.singleton(virtualHost));
+
+        assertThat(poolHandlerOf("test.com"), sameInstance(before));
+        assertThat(reconcilerService.getReusedPools(), equalTo(0L));
+        assertThat(reconcilerService.getRebuiltPools(), equalTo(0L));
+    }
+
+    @Test
+    public void checkRemovedVirtualHostReleasesPools() {
+        reconcilerService.reconcile(Collections.singleton(newVirtualHost("test.com", newPool("pool1", "http://127.0.0.1:8081"))));
+        PoolHandler before = poolHandlerOf("test.com");
+
+        reconcilerService.reconcile(Collections.emptyList());
+
+        assertThat(nameVirtualHostDefaultHandler.getRoutingTable().get("test.com"), nullValue());
+        assertThat(((ExtendedLoadBalancingProxyClient) before.getProxyHandler().getProxyClient()).isHostsEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void checkInvalidVirtualHostKeepsPreviousRoute() {
+        reconcilerService.reconcile(Collections.singleton(newVirtualHost("test.com", newPool("pool1", "http://127.0.0.1:8081"))));
+        PoolHandler before = poolHandlerOf("test.com");
+
+        Pool pool = newPool("pool1", "http://127.0.0.1:8082");
+        VirtualHost invalid = newVirtualHost("test.com", pool);
+        invalid.getRules().forEach(rule -> rule.getProperties().put(RULE_ORDER, "1"));
+        Rule rule = new Rule("rule_api", new RuleType(EnumRuleType.PATH.toString()), pool);
+        rule.getProperties().put(RULE_MATCH, "/api");
+        rule.getProperties().put(RULE_ORDER, "first");
+        invalid.getRules().add(rule);
+        reconcilerService.reconcile(Collections.singleton(invalid));
+
+        assertThat(poolHandlerOf("test.com"), sameInstance(before));
+        assertThat(reconcilerService.getReusedPools(), equalTo(0L));
+        assertThat(((ExtendedLoadBalancingProxyClient) before.getProxyHandler().getProxyClient()).getHostUris(),
+                containsInAnyOrder(URI.create("http://127.0.0.1:8081")));
+    }
+
+    private PoolHandler poolHandlerOf(String virtualhostName) {
+        return nameVirtualHostDefaultHandler.getRoutingTable().get(virtualhostName).getRuleTargetHandler().getPoolHandler();
+    }
+
+    private Pool newPool(String name, String... targets) {
+        Pool pool = new Pool(name);
+        pool.setTargets(Arrays.stream(targets).map(Target::new).collect(Collectors.toSet()));
+        return pool;
+    }
+
+    private VirtualHost newVirtualHost(String name, Pool pool) {
+        Rule rule = new Rule("rule_slash", new RuleType(EnumRuleType.PATH.toString()), pool);
+        rule.getProperties().put(RULE_MATCH, "/");
+        VirtualHost virtualHost = new VirtualHost(name, env1, project1);
+        virtualHost.setRules(new HashSet<>(Collections.singletonList(rule)));
+        return virtualHost;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.galeb.router.tests.services;
+
+import io.galeb.core.enums.SystemEnv;
+import io.galeb.router.services.StatsdClientService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class StatsdClientServiceTest {
+
+    private final StatsdClientService statsdClientService = new StatsdClientService();
+    private DatagramChannel server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = DatagramChannel.open().bind(new InetSocketAddress(SystemEnv.STATSD_HOST.getValue(), Integer.parseInt(SystemEnv.STATSD_PORT.getValue())));
+        server.configureBlocking(false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        statsdClientService.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void checkAggregatedMetricsInOnePacket() throws Exception {
+        statsdClientService.incr("test.counter");
+        statsdClientService.incr("test.counter", 2);
+        statsdClientService.decr("test.counter");
+        statsdClientService.gauge("test.gauge", 5);
+        statsdClientService.gauge("test.gauge", 7);
+        statsdClientService.timing("test.timer", 10);
+        statsdClientService.timing("test.timer", 10);
+        statsdClientService.timing("test.timer", 200);
+        statsdClientService.flush();
+
+        List<String> packets = receive();
+        assertThat(packets.size(), equalTo(1));
+        assertThat(Arrays.asList(packets.get(0).split("\n")),
+                containsInAnyOrder("galeb.test.counter:2|c", "galeb.test.gauge:7|g", "galeb.test.timer:10|ms:10|ms:200|ms"));
+
+        statsdClientService.flush();
+        assertThat(receive(), empty());
+    }
+
+    @Test
+    public void checkLargeTimerIsSplitInPackets() throws Exception {
+        final int samples = 1000;
+        for (int i = 0; i < samples; i++) {
+            statsdClientService.timing("test.timer", i % 2 == 0 ? 42 : 7);
+        }
+        statsdClientService.flush();
+
+        List<String> packets = receive();
+        assertThat(packets.size(), greaterThan(1));
+        int received = 0;
+        for (String packet : packets) {
+            assertThat(packet.length(), lessThanOrEqualTo(Integer.parseInt(SystemEnv.STATSD_PACKET_SIZE.getValue())));
+            for (String sample : packet.substring(packet.indexOf(':') + 1).split(":")) {
+                // every sample keeps its weight in the statsd means and percentiles
+                assertThat(sample, anyOf(equalTo("42|ms"), equalTo("7|ms")));
+                received++;
+            }
+        }
+        assertThat(received, equalTo(samples));
+    }
+
+    private List<String> receive() throws InterruptedException, IOException {
+        final List<String> packets = new ArrayList<>();
+        final ByteBuffer buffer = ByteBuffer.allocate(65536);
+        Thread.sleep(100);
+        while (server.receive(buffer) != null) {
+            buffer.flip();
+            final String packet = StandardCharsets.UTF_8.decode(buffer).toString();
+            // ignores metrics of other router instances of the test suite
+            if (packet.startsWith("galeb.test.")) {
+                packets.add(packet);
+            }
+            buffer.clear();
+        }
+        return packets;
+    }
+}
@@ -19,16 +19,42 @@ package io.galeb.router.tests.suites;
 
 import io.galeb.router.tests.cache.ManagerClientCacheTest;
 import io.galeb.router.tests.client.ExtendedLoadBalancingProxyClientTest;
+import io.galeb.router.tests.client.OutlierDetectorTest;
+import io.galeb.router.tests.client.SlowStartTest;
+import io.galeb.router.tests.client.AdaptiveConcurrencyLimitTest;
+import io.galeb.router.tests.client.CoDelTest;
+import io.galeb.router.tests.client.PoolWaitQueueTest;
+import io.galeb.router.tests.client.ConnectionPrewarmTest;
+import io.galeb.router.tests.client.Http2UpstreamTest;
+import io.galeb.router.tests.client.RetryBudgetTest;
+import io.galeb.router.tests.client.HedgingClientConnectionTest;
+import io.galeb.router.tests.completionListeners.AccessLogRingBufferTest;
 import io.galeb.router.tests.completionListeners.StatsdCompletionListenerTest;
 import io.galeb.router.tests.cucumber.CucumberTest;
 import io.galeb.router.tests.handlers.PathGlobHandlerTest;
+import io.galeb.router.tests.handlers.PrometheusMetricsHandlerTest;
+import io.galeb.router.tests.handlers.RateLimitHandlerTest;
+import io.galeb.router.tests.handlers.RequestCoalescingHandlerTest;
+import io.galeb.router.tests.handlers.ResponseCacheHandlerTest;
 import io.galeb.router.tests.handlers.RequestIDHandlerTest;
 import io.galeb.router.tests.hostselectors.GuavaConsistentHashTest;
 import io.galeb.router.tests.hostselectors.HashSourceIpHostSelectorTest;
 import io.galeb.router.tests.hostselectors.HashUriPathHostSelectorTest;
 import io.galeb.router.tests.hostselectors.LeastConnHostSelectorTest;
 import io.galeb.router.tests.hostselectors.LeastConnWithRRHostSelectorTest;
+import io.galeb.router.tests.hostselectors.P2CLeastConnHostSelectorTest;
+import io.galeb.router.tests.hostselectors.PeakEwmaHostSelectorTest;
 import io.galeb.router.tests.hostselectors.RoundRobinHostSelectorTest;
+import io.galeb.router.tests.hostselectors.WeightedRoundRobinHostSelectorTest;
+import io.galeb.router.tests.metrics.LatencyHistogramTest;
+import io.galeb.router.tests.metrics.RequestPhasesTest;
+import io.galeb.router.tests.metrics.RouterEventsTest;
+import io.galeb.router.tests.metrics.HyperLogLogTest;
+import io.galeb.router.tests.metrics.TopKTest;
+import io.galeb.router.tests.services.LatencyHistogramServiceTest;
+import io.galeb.router.tests.services.ReconcilerServiceTest;
+import io.galeb.router.tests.services.StatsdClientServiceTest;
+import io.galeb.router.tests.tls.HttpsListenerTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -36,15 +62,41 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
         LeastConnHostSelectorTest.class,
         LeastConnWithRRHostSelectorTest.class,
+        P2CLeastConnHostSelectorTest.class,
+        PeakEwmaHostSelectorTest.class,
         RoundRobinHostSelectorTest.class,
+        WeightedRoundRobinHostSelectorTest.class,
         HashUriPathHostSelectorTest.class,
         HashSourceIpHostSelectorTest.class,
         ExtendedLoadBalancingProxyClientTest.class,
+        OutlierDetectorTest.class,
+        SlowStartTest.class,
+        AdaptiveConcurrencyLimitTest.class,
+        CoDelTest.class,
+        PoolWaitQueueTest.class,
+        ConnectionPrewarmTest.class,
+        Http2UpstreamTest.class,
+        HttpsListenerTest.class,
+        RetryBudgetTest.class,
+        HedgingClientConnectionTest.class,
         GuavaConsistentHashTest.class,
         PathGlobHandlerTest.class,
+        PrometheusMetricsHandlerTest.class,
+        RateLimitHandlerTest.class,
+        RequestCoalescingHandlerTest.class,
+        ResponseCacheHandlerTest.class,
         RequestIDHandlerTest.class,
         ManagerClientCacheTest.class,
+        AccessLogRingBufferTest.class,
         StatsdCompletionListenerTest.class,
+        LatencyHistogramTest.class,
+        RequestPhasesTest.class,
+        RouterEventsTest.class,
+        HyperLogLogTest.class,
+        TopKTest.class,
+        LatencyHistogramServiceTest.class,
+        ReconcilerServiceTest.class,
+        StatsdClientServiceTest.class,
         CucumberTest.class
 })
 public class ManagerTestSuite {
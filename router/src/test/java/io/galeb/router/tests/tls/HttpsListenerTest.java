@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.tls;
+
+import io.galeb.router.tls.ServerSslContextFactory;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class HttpsListenerTest {
+
+    static final int HTTPS_PORT = 8095;
+    static final String KEYSTORE = "src/test/resources/tls/keystore.p12";
+    static final char[] PASSWORD = "changeit".toCharArray();
+
+    private Undertow server;
+    private SSLContext serverContext;
+
+    @Before
+    public void setUp() throws Exception {
+        serverContext = ServerSslContextFactory.create(KEYSTORE, "PKCS12", PASSWORD, "default", 100, 60);
+        server = Undertow.builder()
+                .addHttpsListener(HTTPS_PORT, "127.0.0.1", serverContext, ResponseCodeHandler.HANDLE_200)
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+                .build();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void checkCertificateIsChosenBySni() throws Exception {
+        // a new client context for each name: the client would resume the previous session
+        assertThat(peerName(handshake(clientContext(), "www.example.com", "http/1.1")), equalTo("CN=www.example.com"));
+        assertThat(peerName(handshake(clientContext(), "api.example.org", "http/1.1")), equalTo("CN=*.example.org"));
+        assertThat(peerName(handshake(clientContext(), "unknown.example.net", "http/1.1")), equalTo("CN=localhost"));
+        assertThat(peerName(handshake(clientContext(), null, "http/1.1")), equalTo("CN=localhost"));
+    }
+
+    @Test
+    public void checkHttp2IsNegotiated() throws Exception {
+        try (SSLSocket socket = connect(clientContext(), "www.example.com", "h2", "http/1.1")) {
+            socket.startHandshake();
+            assertThat(socket.getApplicationProtocol(), equalTo("h2"));
+        }
+    }
+
+    @Test
+    public void checkSessionIsResumed() throws Exception {
+        final SSLContext clientContext = clientContext();
+        final SSLSession first = handshake(clientContext, "www.example.com", "http/1.1");
+        final SSLSession second = handshake(clientContext, "www.example.com", "http/1.1");
+        assertThat(Arrays.equals(first.getId(), second.getId()), equalTo(true));
+        assertThat(Collections.list(serverContext.getServerSessionContext().getIds()).size(), equalTo(1));
+    }
+
+    static SSLContext clientContext() throws Exception {
+        final SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+        sslContext.init(null, new TrustManager[] { new TrustAllManager() }, null);
+        return sslContext;
+    }
+
+    static SSLSession handshake(final SSLContext clientContext, final String serverName, final String... protocols) throws Exception {
+        try (SSLSocket socket = connect(clientContext, serverName, protocols)) {
+            socket.startHandshake();
+            return socket.getSession();
+        }
+    }
+
+    private static SSLSocket connect(final SSLContext clientContext, final String serverName, final String... protocols) throws Exception {
+        final SSLSocket socket = (SSLSocket) clientContext.getSocketFactory().createSocket("127.0.0.1", HTTPS_PORT);
+        final SSLParameters parameters = socket.getSSLParameters();
+        if (serverName != null) {
+            parameters.setServerNames(Collections.singletonList(new SNIHostName(serverName)));
+        }
+        parameters.setApplicationProtocols(protocols);
+        socket.setSSLParameters(parameters);
+        return socket;
+    }
+
+    private static String peerName(final SSLSession session) throws Exception {
+        return ((X509Certificate) session.getPeerCertificates()[0]).getSubjectX500Principal().getName();
+    }
+
+    private static class TrustAllManager implements X509TrustManager {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            // test only
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            // test only
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
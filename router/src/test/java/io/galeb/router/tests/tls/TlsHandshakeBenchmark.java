@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014-2017 Globo.com - ATeam
+ * All rights reserved.
+ *
+ * This source is subject to the Apache License, Version 2.0.
+ * Please see the LICENSE file for more information.
+ *
+ * Authors: See AUTHORS file
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.galeb.router.tests.tls;
+
+import io.galeb.router.tls.ServerSslContextFactory;
+import io.undertow.Undertow;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static io.galeb.router.tests.tls.HttpsListenerTest.HTTPS_PORT;
+import static io.galeb.router.tests.tls.HttpsListenerTest.KEYSTORE;
+import static io.galeb.router.tests.tls.HttpsListenerTest.PASSWORD;
+import static io.galeb.router.tests.tls.HttpsListenerTest.clientContext;
+import static io.galeb.router.tests.tls.HttpsListenerTest.handshake;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Full TLS handshakes versus resumed ones against the HTTPS listener. Not part of the suite, run it with
+ * {@code mvn test -Dtest=TlsHandshakeBenchmark [-Dbenchmark.iterations=N]}.
+ */
+public class TlsHandshakeBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 500);
+    private static final int WARMUP = Math.max(ITERATIONS / 5, 10);
+
+    private final Log logger = LogFactory.getLog(this.getClass());
+
+    private Undertow server;
+
+    @Before
+    public void setUp() throws Exception {
+        final SSLContext serverContext = ServerSslContextFactory.create(KEYSTORE, "PKCS12", PASSWORD, "default", 20480, 3600);
+        server = Undertow.builder().addHttpsListener(HTTPS_PORT, "127.0.0.1", serverContext, ResponseCodeHandler.HANDLE_200).build();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void fullVersusResumedHandshakes() throws Exception {
+        final SSLContext clientContext = clientContext();
+        run(clientContext, WARMUP, false);
+        run(clientContext, WARMUP, true);
+
+        final long full = run(clientContext, ITERATIONS, false);
+        final long resumed = run(clientContext, ITERATIONS, true);
+
+        logger.info(String.format("TLS handshakes (%d iterations): full %.1f us, resumed %.1f us, speedup %.2fx",
+                ITERATIONS, micros(full), micros(resumed), (double) full / resumed));
+    }
+
+    /**
+     * Mean nanos per handshake. The client session is invalidated after each full handshake, so the next one
+     * is full again.
+     */
+    private long run(final SSLContext clientContext, int iterations, boolean resume) throws Exception {
+        SSLSession previous = handshake(clientContext, "www.example.com", "http/1.1");
+        long elapsed = 0L;
+        for (int i = 0; i < iterations; i++) {
+            if (!resume) {
+                previous.invalidate();
+            }
+            final long start = System.nanoTime();
+            final SSLSession session = handshake(clientContext, "www.example.com", "http/1.1");
+            elapsed += System.nanoTime() - start;
+            assertThat(Arrays.equals(previous.getId(), session.getId()), equalTo(resume));
+            previous = session;
+        }
+        return elapsed / iterations;
+    }
+
+    private static double micros(long nanos) {
+        return (double) nanos / TimeUnit.MICROSECONDS.toNanos(1L);
+    }
+}